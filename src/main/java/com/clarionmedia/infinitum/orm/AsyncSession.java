@@ -0,0 +1,535 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm;
+
+import android.os.Handler;
+import android.os.Looper;
+import com.clarionmedia.infinitum.logging.Logger;
+import com.clarionmedia.infinitum.logging.impl.SmartLogger;
+import com.clarionmedia.infinitum.orm.criteria.Criteria;
+import com.clarionmedia.infinitum.orm.rest.impl.RestfulSession;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p> Asynchronous facade over a {@link Session}, which runs {@code Session} operations on background threads and
+ * returns a {@link Future} for each of them. A {@link Callback} can also be given, which is invoked on the thread that
+ * created the {@code AsyncSession} if it has a {@link Looper}, such as the main thread, or on the background thread
+ * otherwise. </p> <p> Reads run in parallel on a fixed number of threads. Writes are serialized on a single thread,
+ * and writes which are queued while another batch is being written are coalesced into a single transaction, with each
+ * write in its own nested transaction so that a failed write does not roll back the others. Since {@link
+ * RestfulSession} does not support transactions, its writes are serialized but not coalesced. </p> <p> The {@code
+ * Session} must be opened before operations are submitted and should not be closed until they have completed.
+ * {@link #shutdown()} stops the background threads once the submitted operations have completed. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 10/17/26
+ * @since 1.1.0
+ */
+public class AsyncSession {
+
+    /**
+     * The default number of threads reads run on.
+     */
+    public static final int DEFAULT_READ_THREADS = 2;
+
+    /**
+     * The maximum number of writes coalesced into a single transaction.
+     */
+    public static final int MAX_BATCH_SIZE = 100;
+
+    private final Session mSession;
+    private final ExecutorService mReadExecutor;
+    private final ExecutorService mWriteExecutor;
+    private final Queue<Result<?>> mPendingWrites;
+    private final boolean mIsTransactional;
+    private final Handler mHandler;
+    private final Logger mLogger;
+
+    /**
+     * Constructs a new {@code AsyncSession} which runs reads on {@link #DEFAULT_READ_THREADS} threads.
+     *
+     * @param session the {@link Session} to run operations on
+     */
+    public AsyncSession(Session session) {
+        this(session, DEFAULT_READ_THREADS);
+    }
+
+    /**
+     * Constructs a new {@code AsyncSession}.
+     *
+     * @param session     the {@link Session} to run operations on
+     * @param readThreads the number of threads reads run on
+     */
+    public AsyncSession(Session session, int readThreads) {
+        mSession = session;
+        mReadExecutor = Executors.newFixedThreadPool(readThreads, new NamedThreadFactory("read"));
+        mWriteExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("write"));
+        mPendingWrites = new ConcurrentLinkedQueue<Result<?>>();
+        mIsTransactional = !(session instanceof RestfulSession);
+        mHandler = Looper.myLooper() == null ? null : new Handler();
+        mLogger = new SmartLogger(getClass().getSimpleName());
+    }
+
+    /**
+     * Loads the entity with the given {@link Class} and primary key.
+     *
+     * @param c  the entity {@code Class}
+     * @param id the entity's primary key
+     * @return {@link Future} of the entity or {@code null} if it does not exist
+     * @see Session#load(Class, Serializable)
+     */
+    public <T> Future<T> load(Class<T> c, Serializable id) {
+        return load(c, id, null);
+    }
+
+    /**
+     * Loads the entity with the given {@link Class} and primary key.
+     *
+     * @param c        the entity {@code Class}
+     * @param id       the entity's primary key
+     * @param callback the {@link Callback} to invoke on completion, or {@code null}
+     * @return {@link Future} of the entity or {@code null} if it does not exist
+     * @see Session#load(Class, Serializable)
+     */
+    public <T> Future<T> load(final Class<T> c, final Serializable id, Callback<T> callback) {
+        return read(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return mSession.load(c, id);
+            }
+        }, callback);
+    }
+
+    /**
+     * Lists the results of the given {@link Criteria}.
+     *
+     * @param criteria the {@code Criteria} to run
+     * @return {@link Future} of the results
+     * @see Criteria#list()
+     */
+    public <T> Future<List<T>> list(Criteria<T> criteria) {
+        return list(criteria, null);
+    }
+
+    /**
+     * Lists the results of the given {@link Criteria}.
+     *
+     * @param criteria the {@code Criteria} to run
+     * @param callback the {@link Callback} to invoke on completion, or {@code null}
+     * @return {@link Future} of the results
+     * @see Criteria#list()
+     */
+    public <T> Future<List<T>> list(final Criteria<T> criteria, Callback<List<T>> callback) {
+        return read(new Callable<List<T>>() {
+            @Override
+            public List<T> call() throws Exception {
+                return criteria.list();
+            }
+        }, callback);
+    }
+
+    /**
+     * Counts the results of the given {@link Criteria}.
+     *
+     * @param criteria the {@code Criteria} to run
+     * @return {@link Future} of the number of results
+     * @see Criteria#count()
+     */
+    public Future<Long> count(Criteria<?> criteria) {
+        return count(criteria, null);
+    }
+
+    /**
+     * Counts the results of the given {@link Criteria}.
+     *
+     * @param criteria the {@code Criteria} to run
+     * @param callback the {@link Callback} to invoke on completion, or {@code null}
+     * @return {@link Future} of the number of results
+     * @see Criteria#count()
+     */
+    public Future<Long> count(final Criteria<?> criteria, Callback<Long> callback) {
+        return read(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return criteria.count();
+            }
+        }, callback);
+    }
+
+    /**
+     * Saves the given entity.
+     *
+     * @param model the entity to save
+     * @return {@link Future} of the result of {@link Session#save(Object)}
+     */
+    public Future<Long> save(Object model) {
+        return save(model, null);
+    }
+
+    /**
+     * Saves the given entity.
+     *
+     * @param model    the entity to save
+     * @param callback the {@link Callback} to invoke on completion, or {@code null}
+     * @return {@link Future} of the result of {@link Session#save(Object)}
+     */
+    public Future<Long> save(final Object model, Callback<Long> callback) {
+        return write(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return mSession.save(model);
+            }
+        }, callback);
+    }
+
+    /**
+     * Updates the given entity.
+     *
+     * @param model the entity to update
+     * @return {@link Future} of the result of {@link Session#update(Object)}
+     */
+    public Future<Boolean> update(Object model) {
+        return update(model, null);
+    }
+
+    /**
+     * Updates the given entity.
+     *
+     * @param model    the entity to update
+     * @param callback the {@link Callback} to invoke on completion, or {@code null}
+     * @return {@link Future} of the result of {@link Session#update(Object)}
+     */
+    public Future<Boolean> update(final Object model, Callback<Boolean> callback) {
+        return write(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return mSession.update(model);
+            }
+        }, callback);
+    }
+
+    /**
+     * Saves or updates the given entity.
+     *
+     * @param model the entity to save or update
+     * @return {@link Future} of the result of {@link Session#saveOrUpdate(Object)}
+     */
+    public Future<Long> saveOrUpdate(Object model) {
+        return saveOrUpdate(model, null);
+    }
+
+    /**
+     * Saves or updates the given entity.
+     *
+     * @param model    the entity to save or update
+     * @param callback the {@link Callback} to invoke on completion, or {@code null}
+     * @return {@link Future} of the result of {@link Session#saveOrUpdate(Object)}
+     */
+    public Future<Long> saveOrUpdate(final Object model, Callback<Long> callback) {
+        return write(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return mSession.saveOrUpdate(model);
+            }
+        }, callback);
+    }
+
+    /**
+     * Deletes the given entity.
+     *
+     * @param model the entity to delete
+     * @return {@link Future} of the result of {@link Session#delete(Object)}
+     */
+    public Future<Boolean> delete(Object model) {
+        return delete(model, null);
+    }
+
+    /**
+     * Deletes the given entity.
+     *
+     * @param model    the entity to delete
+     * @param callback the {@link Callback} to invoke on completion, or {@code null}
+     * @return {@link Future} of the result of {@link Session#delete(Object)}
+     */
+    public Future<Boolean> delete(final Object model, Callback<Boolean> callback) {
+        return write(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return mSession.delete(model);
+            }
+        }, callback);
+    }
+
+    /**
+     * Saves the given entities.
+     *
+     * @param models the entities to save
+     * @return {@link Future} of the result of {@link Session#saveAll(Collection)}
+     */
+    public Future<Integer> saveAll(Collection<?> models) {
+        return saveAll(models, null);
+    }
+
+    /**
+     * Saves the given entities.
+     *
+     * @param models   the entities to save
+     * @param callback the {@link Callback} to invoke on completion, or {@code null}
+     * @return {@link Future} of the result of {@link Session#saveAll(Collection)}
+     */
+    public Future<Integer> saveAll(final Collection<?> models, Callback<Integer> callback) {
+        return write(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return mSession.saveAll(models);
+            }
+        }, callback);
+    }
+
+    /**
+     * Deletes the given entities.
+     *
+     * @param models the entities to delete
+     * @return {@link Future} of the result of {@link Session#deleteAll(Collection)}
+     */
+    public Future<Integer> deleteAll(Collection<?> models) {
+        return deleteAll(models, null);
+    }
+
+    /**
+     * Deletes the given entities.
+     *
+     * @param models   the entities to delete
+     * @param callback the {@link Callback} to invoke on completion, or {@code null}
+     * @return {@link Future} of the result of {@link Session#deleteAll(Collection)}
+     */
+    public Future<Integer> deleteAll(final Collection<?> models, Callback<Integer> callback) {
+        return write(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return mSession.deleteAll(models);
+            }
+        }, callback);
+    }
+
+    /**
+     * Runs the given read-only operation on one of the read threads.
+     *
+     * @param operation the operation to run, which must not modify the datastore
+     * @param callback  the {@link Callback} to invoke on completion, or {@code null}
+     * @return {@link Future} of the result of the operation
+     */
+    public <T> Future<T> read(Callable<T> operation, Callback<T> callback) {
+        Result<T> result = new Result<T>(operation, callback);
+        mReadExecutor.execute(result);
+        return result;
+    }
+
+    /**
+     * Runs the given operation on the write thread, within the same transaction as any other writes queued alongside
+     * it.
+     *
+     * @param operation the operation to run
+     * @param callback  the {@link Callback} to invoke on completion, or {@code null}
+     * @return {@link Future} of the result of the operation
+     */
+    public <T> Future<T> write(Callable<T> operation, Callback<T> callback) {
+        Result<T> result = new Result<T>(operation, callback);
+        mPendingWrites.add(result);
+        // Every write schedules a batch, but a batch writes everything queued so later ones may find nothing left
+        mWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeBatch();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Stops accepting operations and releases the background threads once the submitted operations have completed.
+     */
+    public void shutdown() {
+        mReadExecutor.shutdown();
+        mWriteExecutor.shutdown();
+    }
+
+    // Runs on the write thread
+    private void writeBatch() {
+        List<Result<?>> batch = new ArrayList<Result<?>>();
+        Result<?> next;
+        while (batch.size() < MAX_BATCH_SIZE && (next = mPendingWrites.poll()) != null)
+            batch.add(next);
+        if (batch.isEmpty())
+            return;
+        if (!mIsTransactional) {
+            for (Result<?> result : batch)
+                result.run();
+            return;
+        }
+        List<Object> values = new ArrayList<Object>(batch.size());
+        List<Throwable> errors = new ArrayList<Throwable>(batch.size());
+        try {
+            // Autocommit is disabled for this thread only, so the batch can be wrapped in a transaction
+            mSession.setAutocommit(false);
+            mSession.beginTransaction();
+            for (Result<?> result : batch) {
+                mSession.beginTransaction();
+                try {
+                    values.add(result.call());
+                    errors.add(null);
+                    mSession.commit();
+                } catch (Exception e) {
+                    values.add(null);
+                    errors.add(e);
+                    mSession.rollback();
+                }
+            }
+            mSession.commit();
+        } catch (RuntimeException e) {
+            abortBatch(batch, e);
+            return;
+        } catch (Error e) {
+            abortBatch(batch, e);
+            throw e;
+        }
+        // Only reached once the outermost commit has succeeded, so no write is reported before it is durable
+        mLogger.debug(batch.size() + " writes committed in one transaction");
+        for (int i = 0; i < batch.size(); i++) {
+            if (errors.get(i) == null)
+                complete(batch.get(i), values.get(i));
+            else
+                batch.get(i).fail(errors.get(i));
+        }
+    }
+
+    private void abortBatch(List<Result<?>> batch, Throwable cause) {
+        mLogger.error("Write batch failed", cause);
+        try {
+            // The failure may have left nested transactions open as well as the outermost one
+            while (mSession.isTransactionOpen())
+                mSession.rollback();
+        } catch (RuntimeException e) {
+            mLogger.error("Write batch could not be rolled back", e);
+        }
+        for (Result<?> result : batch)
+            result.fail(cause);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void complete(Result<T> result, Object value) {
+        result.succeed((T) value);
+    }
+
+    /**
+     * Receives the result of an asynchronous {@link Session} operation.
+     *
+     * @param <T> the type of the result
+     */
+    public static interface Callback<T> {
+
+        /**
+         * Invoked when the operation completes successfully.
+         *
+         * @param result the result of the operation
+         */
+        void onSuccess(T result);
+
+        /**
+         * Invoked when the operation fails.
+         *
+         * @param error the cause of the failure
+         */
+        void onFailure(Throwable error);
+
+    }
+
+    // A Future which notifies its Callback once it is done, and which writes can complete once their batch commits
+    private final class Result<T> extends FutureTask<T> {
+
+        private final Callable<T> mOperation;
+        private final Callback<T> mCallback;
+
+        Result(Callable<T> operation, Callback<T> callback) {
+            super(operation);
+            mOperation = operation;
+            mCallback = callback;
+        }
+
+        T call() throws Exception {
+            return mOperation.call();
+        }
+
+        void succeed(T value) {
+            set(value);
+        }
+
+        void fail(Throwable error) {
+            setException(error);
+        }
+
+        @Override
+        protected void done() {
+            if (mCallback == null || isCancelled())
+                return;
+            Runnable notification = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        mCallback.onSuccess(get());
+                    } catch (ExecutionException e) {
+                        mCallback.onFailure(e.getCause());
+                    } catch (InterruptedException e) {
+                        mCallback.onFailure(e);
+                    }
+                }
+            };
+            if (mHandler == null)
+                notification.run();
+            else
+                mHandler.post(notification);
+        }
+
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+
+        private final String mName;
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        NamedThreadFactory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "AsyncSession-" + mName + "-" + mCount.incrementAndGet());
+            // Background threads must not keep the process alive
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
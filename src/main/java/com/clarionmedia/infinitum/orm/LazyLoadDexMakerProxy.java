@@ -91,6 +91,15 @@ public abstract class LazyLoadDexMakerProxy extends DexMakerProxy {
 		return mTarget;
 	}
 	
+	/**
+	 * Indicates if the proxied {@link Object} has been loaded.
+	 * 
+	 * @return {@code true} if it has been loaded, {@code false} if not
+	 */
+	public boolean isLoaded() {
+		return mTarget != null;
+	}
+
 	@Override
 	public LazyLoadDexMakerProxy clone() {
 		throw new UnsupportedOperationException("Clone is not supported for LazyLoadDexMakerProxy!");
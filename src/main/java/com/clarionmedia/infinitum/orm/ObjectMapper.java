@@ -121,53 +121,64 @@ public abstract class ObjectMapper {
      * @param model the model containing the relationship
      * @param field the relationship {@code Field}
      */
-    @SuppressWarnings("unchecked")
     protected void mapRelationship(ModelMap map, Object model, Field field) {
-        if (mPersistencePolicy.isRelationship(field)) {
-            ModelRelationship rel = mPersistencePolicy.getRelationship(field);
-            Object related;
-            switch (rel.getRelationType()) {
-                case ManyToMany:
-                    ManyToManyRelationship mtm = (ManyToManyRelationship) rel;
-                    related = mClassReflector.getFieldValue(model, field);
-                    if (!(related instanceof Iterable))
-                        throw new ModelConfigurationException(String.format(
-                                "Field '%s' is marked as a many-to-many relationship in '%s', " +
-                                        "but it is not a collection.", field.getName(),
-                                field.getDeclaringClass().getName()));
-                    map.addManyToManyRelationship(new Pair<ManyToManyRelationship, Iterable<Object>>(mtm,
-                            (Iterable<Object>) related));
-                    break;
-                case ManyToOne:
-                    ManyToOneRelationship mto = (ManyToOneRelationship) rel;
-                    related = mClassReflector.getFieldValue(model, field);
-                    if (related != null && !mTypePolicy.isDomainModel(related.getClass()))
-                        throw new ModelConfigurationException(String.format(
-                                "Field '%s' is marked as a many-to-one relationship in '%s', " +
-                                        "but it is not a domain entity.", field.getName(),
-                                field.getDeclaringClass().getName()));
-                    map.addManyToOneRelationship(new Pair<ManyToOneRelationship, Object>(mto, related));
-                    break;
-                case OneToMany:
-                    OneToManyRelationship otm = (OneToManyRelationship) rel;
-                    related = mClassReflector.getFieldValue(model, field);
-                    if (!(related instanceof Iterable))
-                        throw new ModelConfigurationException(String.format(
-                                "Field '%s' is marked as a one-to-many relationship in '%s', " +
-                                        "but it is not a collection.", field.getName(),
-                                field.getDeclaringClass().getName()));
-                    map.addOneToManyRelationship(new Pair<OneToManyRelationship, Iterable<Object>>(otm, (Iterable<Object>) related));
-                    break;
-                case OneToOne:
-                    OneToOneRelationship oto = (OneToOneRelationship) rel;
-                    related = mClassReflector.getFieldValue(model, field);
-                    if (related != null && !mTypePolicy.isDomainModel(related.getClass()))
-                        throw new ModelConfigurationException(String.format(
-                                "Field '%s' is marked as a one-to-one relationship in '%s', but it is not a domain entity.", field.getName(),
-                                field.getDeclaringClass().getName()));
-                    map.addOneToOneRelationship(new Pair<OneToOneRelationship, Object>(oto, related));
-                    break;
-            }
+        if (mPersistencePolicy.isRelationship(field))
+            mapRelationship(map, model, field, mPersistencePolicy.getRelationship(field));
+    }
+
+    /**
+     * Maps the given relationship {@link Field}, whose {@link ModelRelationship} has already been resolved, to the
+     * given {@link ModelMap}.
+     *
+     * @param map   the {@code ModelMap} to add the relationship to
+     * @param model the model containing the relationship
+     * @param field the relationship {@code Field}
+     * @param rel   the {@code ModelRelationship} the {@code Field} represents
+     */
+    @SuppressWarnings("unchecked")
+    protected void mapRelationship(ModelMap map, Object model, Field field, ModelRelationship rel) {
+        Object related;
+        switch (rel.getRelationType()) {
+            case ManyToMany:
+                ManyToManyRelationship mtm = (ManyToManyRelationship) rel;
+                related = mClassReflector.getFieldValue(model, field);
+                if (!(related instanceof Iterable))
+                    throw new ModelConfigurationException(String.format(
+                            "Field '%s' is marked as a many-to-many relationship in '%s', " +
+                                    "but it is not a collection.", field.getName(),
+                            field.getDeclaringClass().getName()));
+                map.addManyToManyRelationship(new Pair<ManyToManyRelationship, Iterable<Object>>(mtm,
+                        (Iterable<Object>) related));
+                break;
+            case ManyToOne:
+                ManyToOneRelationship mto = (ManyToOneRelationship) rel;
+                related = mClassReflector.getFieldValue(model, field);
+                if (related != null && !mTypePolicy.isDomainModel(related.getClass()))
+                    throw new ModelConfigurationException(String.format(
+                            "Field '%s' is marked as a many-to-one relationship in '%s', " +
+                                    "but it is not a domain entity.", field.getName(),
+                            field.getDeclaringClass().getName()));
+                map.addManyToOneRelationship(new Pair<ManyToOneRelationship, Object>(mto, related));
+                break;
+            case OneToMany:
+                OneToManyRelationship otm = (OneToManyRelationship) rel;
+                related = mClassReflector.getFieldValue(model, field);
+                if (!(related instanceof Iterable))
+                    throw new ModelConfigurationException(String.format(
+                            "Field '%s' is marked as a one-to-many relationship in '%s', " +
+                                    "but it is not a collection.", field.getName(),
+                            field.getDeclaringClass().getName()));
+                map.addOneToManyRelationship(new Pair<OneToManyRelationship, Iterable<Object>>(otm, (Iterable<Object>) related));
+                break;
+            case OneToOne:
+                OneToOneRelationship oto = (OneToOneRelationship) rel;
+                related = mClassReflector.getFieldValue(model, field);
+                if (related != null && !mTypePolicy.isDomainModel(related.getClass()))
+                    throw new ModelConfigurationException(String.format(
+                            "Field '%s' is marked as a one-to-one relationship in '%s', but it is not a domain entity.", field.getName(),
+                            field.getDeclaringClass().getName()));
+                map.addOneToOneRelationship(new Pair<OneToOneRelationship, Object>(oto, related));
+                break;
         }
     }
 
@@ -76,10 +76,29 @@ public @interface Entity {
 	 */
 	boolean lazy() default true;
 
+	/**
+	 * Indicates if the entity is stored in the second-level cache, which is
+	 * shared by every {@code Session} and survives the {@code Session} cache
+	 * being recycled. This suits reference data which is read often and
+	 * rarely modified.
+	 * 
+	 * @return {@code true} if the entity is cacheable, {@code false} if not
+	 */
+	boolean cacheable() default false;
+
 	/**
 	 * Returns the REST endpoint name for this entity.
 	 * 
 	 * @return REST endpoint name
 	 */
 	String endpoint() default "";
+
+	/**
+	 * Returns the name of the REST endpoint which accepts a collection of
+	 * these entities in a single POST. If it is not provided, entities are
+	 * always saved one at a time.
+	 * 
+	 * @return bulk REST endpoint name
+	 */
+	String bulkEndpoint() default "";
 }
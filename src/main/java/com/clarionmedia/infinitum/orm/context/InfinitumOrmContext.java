@@ -145,6 +145,48 @@ public interface InfinitumOrmContext extends InfinitumContext, BeanProvider {
 	 */
 	boolean isAutocommit();
 
+	/**
+	 * Returns the maximum number of entities of each cacheable type held in
+	 * the process-wide {@link com.clarionmedia.infinitum.orm.persistence.SecondLevelCache}.
+	 * 
+	 * @return second-level cache capacity per entity type
+	 */
+	int getSecondLevelCacheSize();
+
+	/**
+	 * Returns the number of milliseconds an entity remains valid in the
+	 * process-wide {@link com.clarionmedia.infinitum.orm.persistence.SecondLevelCache}.
+	 * 
+	 * @return second-level cache time to live, or 0 if entities do not expire
+	 */
+	long getSecondLevelCacheTtl();
+
+	/**
+	 * Returns the maximum number of results held in the process-wide
+	 * {@link com.clarionmedia.infinitum.orm.persistence.QueryCache}.
+	 * 
+	 * @return query cache capacity
+	 */
+	int getQueryCacheSize();
+
+	/**
+	 * Indicates if write-ahead logging should be enabled for the SQLite
+	 * database, which allows reads to run in parallel with writes. It is only
+	 * supported on API level 11 and above.
+	 * 
+	 * @return {@code true} if write-ahead logging is enabled, {@code false} if
+	 *         not
+	 */
+	boolean isWriteAheadLogging();
+
+	/**
+	 * Returns the number of read-only connections opened to the SQLite
+	 * database when write-ahead logging is enabled.
+	 * 
+	 * @return reader connection pool size
+	 */
+	int getReaderPoolSize();
+
 	/**
 	 * Retrieves the application {@link PersistencePolicy}, which is configured
 	 * in {@code infinitum.cfg.xml}.
@@ -33,9 +33,12 @@ import com.clarionmedia.infinitum.orm.Session;
 import com.clarionmedia.infinitum.orm.annotation.Entity;
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
+import com.clarionmedia.infinitum.orm.persistence.QueryCache;
+import com.clarionmedia.infinitum.orm.persistence.SecondLevelCache;
 import com.clarionmedia.infinitum.orm.persistence.impl.AnnotationsPersistencePolicy;
 import com.clarionmedia.infinitum.orm.persistence.impl.DefaultTypeResolutionPolicy;
 import com.clarionmedia.infinitum.orm.persistence.impl.XmlPersistencePolicy;
+import com.clarionmedia.infinitum.orm.rest.RestfulEntityCache;
 import com.clarionmedia.infinitum.orm.rest.impl.*;
 import com.clarionmedia.infinitum.orm.sqlite.SqliteUtils;
 import com.clarionmedia.infinitum.orm.sqlite.impl.*;
@@ -91,9 +94,20 @@ public class XmlInfinitumOrmContext implements InfinitumOrmContext {
                 .build());
         Map<String, Object> properties = new HashMap<String, Object>();
         properties.put("mIsAutocommit", isAutocommit());
+        properties.put("mIsWriteAheadLogging", isWriteAheadLogging());
+        properties.put("mReaderPoolSize", getReaderPoolSize());
         beans.add(beanDefinitionBuilder.setName("_" + SqliteTemplate.class.getSimpleName()).setType(SqliteTemplate
                 .class)
                 .setProperties(properties).build());
+        Map<String, Object> cacheProperties = new HashMap<String, Object>();
+        cacheProperties.put("mCapacity", getSecondLevelCacheSize());
+        cacheProperties.put("mTimeToLive", getSecondLevelCacheTtl());
+        beans.add(beanDefinitionBuilder.setName("_" + SecondLevelCache.class.getSimpleName()).setType
+                (SecondLevelCache.class).setProperties(cacheProperties).build());
+        Map<String, Object> queryCacheProperties = new HashMap<String, Object>();
+        queryCacheProperties.put("mCapacity", getQueryCacheSize());
+        beans.add(beanDefinitionBuilder.setName("_" + QueryCache.class.getSimpleName()).setType(QueryCache.class)
+                .setProperties(queryCacheProperties).build());
         beans.add(beanDefinitionBuilder.setName("_" + SqliteSession.class.getSimpleName()).setType(SqliteSession
                 .class).build());
         beans.add(beanDefinitionBuilder.setName("_" + SqliteMapper.class.getSimpleName()).setType(SqliteMapper.class)
@@ -113,6 +127,8 @@ public class XmlInfinitumOrmContext implements InfinitumOrmContext {
         beans.add(beanDefinitionBuilder.setName("_" + RestfulNameValueMapper.class.getSimpleName()).setType
                 (RestfulNameValueMapper.class)
                 .build());
+        beans.add(beanDefinitionBuilder.setName("_" + RestfulEntityCache.class.getSimpleName()).setType
+                (RestfulEntityCache.class).build());
         beans.add(beanDefinitionBuilder.setName("_" + RestfulJsonSession.class.getSimpleName()).setType
                 (RestfulJsonSession.class).build());
         beans.add(beanDefinitionBuilder.setName("_" + RestfulXmlSession.class.getSimpleName()).setType
@@ -237,6 +253,46 @@ public class XmlInfinitumOrmContext implements InfinitumOrmContext {
         return autocommit == null || parseBoolean(autocommit);
     }
 
+    @Override
+    public int getSecondLevelCacheSize() {
+        if (!hasSqliteDb())
+            return SecondLevelCache.DEFAULT_CAPACITY;
+        String size = mParentContext.getSqliteConfig().get("secondLevelCacheSize");
+        return size == null ? SecondLevelCache.DEFAULT_CAPACITY : Integer.parseInt(size);
+    }
+
+    @Override
+    public long getSecondLevelCacheTtl() {
+        if (!hasSqliteDb())
+            return SecondLevelCache.DEFAULT_TIME_TO_LIVE;
+        String ttl = mParentContext.getSqliteConfig().get("secondLevelCacheTtl");
+        return ttl == null ? SecondLevelCache.DEFAULT_TIME_TO_LIVE : Long.parseLong(ttl);
+    }
+
+    @Override
+    public int getQueryCacheSize() {
+        if (!hasSqliteDb())
+            return QueryCache.DEFAULT_CAPACITY;
+        String size = mParentContext.getSqliteConfig().get("queryCacheSize");
+        return size == null ? QueryCache.DEFAULT_CAPACITY : Integer.parseInt(size);
+    }
+
+    @Override
+    public boolean isWriteAheadLogging() {
+        if (!hasSqliteDb())
+            return false;
+        String writeAheadLogging = mParentContext.getSqliteConfig().get("writeAheadLogging");
+        return writeAheadLogging == null || parseBoolean(writeAheadLogging);
+    }
+
+    @Override
+    public int getReaderPoolSize() {
+        if (!hasSqliteDb())
+            return SqliteConnectionManager.DEFAULT_READER_POOL_SIZE;
+        String size = mParentContext.getSqliteConfig().get("readerPoolSize");
+        return size == null ? SqliteConnectionManager.DEFAULT_READER_POOL_SIZE : Integer.parseInt(size);
+    }
+
     @Override
     public boolean isDebug() {
         return mParentContext.isDebug();
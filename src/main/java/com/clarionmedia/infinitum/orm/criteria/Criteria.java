@@ -21,7 +21,9 @@ import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
 import com.clarionmedia.infinitum.orm.ObjectMapper;
 import com.clarionmedia.infinitum.orm.Session;
 import com.clarionmedia.infinitum.orm.criteria.criterion.Criterion;
+import com.clarionmedia.infinitum.orm.exception.InvalidCriteriaException;
 
+import java.lang.reflect.Field;
 import java.util.List;
 
 /**
@@ -100,6 +102,53 @@ public interface Criteria<T> {
      */
     Criteria<T> offset(int offset);
 
+    /**
+     * Restricts the query results to those ordered strictly after the given values using keyset (seek) pagination.
+     * Unlike {@link #offset(int)}, the database does not scan and discard the preceding rows, so every page costs the
+     * same. One value must be given for each {@link Order} added with {@link #orderBy(Order)}, in the same order, and
+     * the orderings should end with a unique property, such as the primary key, so that pages do not overlap.
+     *
+     * @param orderValues the property values of the last result of the previous page, one per ordering
+     * @return this {@code Criteria} to allow for method chaining
+     */
+    Criteria<T> seekAfter(Object... orderValues);
+
+    /**
+     * Restricts the query results to those ordered strictly after the given entity using keyset (seek) pagination.
+     * This is equivalent to calling {@link #seekAfter(Object...)} with the entity's values for each ordering.
+     *
+     * @param lastEntity the last result of the previous page
+     * @return this {@code Criteria} to allow for method chaining
+     */
+    Criteria<T> after(T lastEntity);
+
+    /**
+     * Restricts the query results to those ordered strictly after the position encoded in the given continuation
+     * token using keyset (seek) pagination.
+     *
+     * @param continuationToken a token previously returned by {@link #getContinuationToken(Object)}
+     * @return this {@code Criteria} to allow for method chaining
+     * @throws InvalidCriteriaException if the token is malformed
+     */
+    Criteria<T> resumeFrom(String continuationToken) throws InvalidCriteriaException;
+
+    /**
+     * Returns an opaque continuation token encoding the position of the given entity within this {@code Criteria}'s
+     * orderings. The token can be persisted and passed to {@link #resumeFrom(String)} to fetch the next page.
+     *
+     * @param lastEntity the last result of the current page
+     * @return continuation token
+     */
+    String getContinuationToken(T lastEntity);
+
+    /**
+     * Returns the column values results must be ordered after, one per ordering, or {@code null} if keyset pagination
+     * is not being used.
+     *
+     * @return seek column values or {@code null}
+     */
+    Object[] getSeekValues();
+
     /**
      * Retrieves the query results as a {@link List}.
      *
@@ -107,6 +156,26 @@ public interface Criteria<T> {
      */
     List<T> list();
 
+    /**
+     * Retrieves the query results as a {@link CriteriaIterator}, which hydrates one entity per row as it is advanced
+     * instead of loading the entire result set into memory. Hydrated entities are stored in the {@link Session}
+     * cache. The returned iterator must be closed if it is not exhausted.
+     *
+     * @return {@code CriteriaIterator} over the query results
+     */
+    CriteriaIterator<T> iterate();
+
+    /**
+     * Retrieves the query results as a {@link CriteriaIterator}, which hydrates one entity per row as it is advanced
+     * instead of loading the entire result set into memory. The returned iterator must be closed if it is not
+     * exhausted.
+     *
+     * @param cacheResults {@code true} if hydrated entities should be stored in the {@link Session} cache, {@code
+     *                     false} if not, e.g. when streaming a large table once
+     * @return {@code CriteriaIterator} over the query results
+     */
+    CriteriaIterator<T> iterate(boolean cacheResults);
+
     /**
      * Retrieves a unique query result for the {@code Criteria} query.
      *
@@ -166,4 +235,41 @@ public interface Criteria<T> {
      */
     List<AssociationCriteria<?>> getAssociationCriteria();
 
+    /**
+     * Loads the given to-one association together with the query results, using a single {@code LEFT JOIN} rather
+     * than a follow-up query per result. Unlike {@link #createCriteria(String)}, this does not filter the results;
+     * entities without an associated entity are still returned.
+     *
+     * @param association the name of the many-to-one or one-to-one association {@link Field}
+     * @return this {@code Criteria} to allow for method chaining
+     * @throws InvalidCriteriaException if the association does not exist or is not a to-one association
+     */
+    Criteria<T> fetch(String association) throws InvalidCriteriaException;
+
+    /**
+     * Returns the association {@link Field Fields} which are fetched with the query results, in the order they were
+     * added with {@link #fetch(String)}.
+     *
+     * @return {@code List} of fetched association {@code Fields}
+     */
+    List<Field> getFetches();
+
+    /**
+     * Caches the results of this {@code Criteria} in the process-wide query cache. The primary keys returned by {@link
+     * #list()} and {@link #unique()} are stored under the query and its arguments, and running the same query again
+     * only hydrates those entities, typically from the {@link Session} or second-level cache. A cached result is
+     * discarded as soon as any entity type the query reads is saved, updated or deleted.
+     *
+     * @return this {@code Criteria} to allow for method chaining
+     */
+    Criteria<T> cacheable();
+
+    /**
+     * Indicates if the results of this {@code Criteria} are cached.
+     *
+     * @return {@code true} if cacheable, {@code false} if not
+     * @see #cacheable()
+     */
+    boolean isCacheable();
+
 }
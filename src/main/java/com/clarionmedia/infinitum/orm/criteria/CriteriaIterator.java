@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.criteria;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * <p> {@link Iterator} over the results of a {@link Criteria} query which hydrates one entity at a time as it is
+ * advanced, rather than materializing the entire result set. A {@code CriteriaIterator} holds an open database cursor
+ * until it is exhausted or {@link #close()} is called, so callers which stop iterating early must close it. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 10/17/26
+ * @see Criteria#iterate()
+ * @since 1.1.0
+ */
+public interface CriteriaIterator<T> extends Iterator<T>, Closeable {
+
+    /**
+     * Releases the underlying database cursor. Calling this method more than once has no effect.
+     */
+    @Override
+    void close();
+
+}
@@ -17,6 +17,7 @@
 package com.clarionmedia.infinitum.orm.criteria.criterion;
 
 import java.lang.reflect.Field;
+import java.util.List;
 
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
@@ -59,6 +60,11 @@ public class BetweenExpression extends Criterion {
 
 	@Override
 	public String toSql(Criteria<?> criteria) throws InvalidCriteriaException {
+		return toSql(criteria, null);
+	}
+
+	@Override
+	public String toSql(Criteria<?> criteria, List<Object> args) throws InvalidCriteriaException {
 		StringBuilder query = new StringBuilder();
 		Class<?> clazz = criteria.getEntityClass();
 		Field field = null;
@@ -68,6 +74,12 @@ public class BetweenExpression extends Criterion {
 		    throw new InvalidCriteriaException(String.format("Invalid Criteria for type '%s'", clazz.getName()));
 		String columnName = policy.getFieldColumnName(field);
 		query.append(columnName).append(' ').append(SqlConstants.OP_BETWEEN).append(' ');
+		if (args != null) {
+			query.append("? ").append(SqlConstants.AND).append(" ?");
+			args.add(mLow);
+			args.add(mHigh);
+			return query.toString();
+		}
 		if (criteria.getObjectMapper().isTextColumn(field))
 			query.append("'").append(mLow.toString()).append("'");
 		else
@@ -80,4 +92,33 @@ public class BetweenExpression extends Criterion {
 		return query.toString();
 	}
 
+	/**
+	 * Returns the lower bound of the range.
+	 * 
+	 * @return lower bound
+	 */
+	public Object getLow() {
+		return mLow;
+	}
+
+	/**
+	 * Returns the upper bound of the range.
+	 * 
+	 * @return upper bound
+	 */
+	public Object getHigh() {
+		return mHigh;
+	}
+
+	@Override
+	public void appendShape(Criteria<?> criteria, StringBuilder shape) throws InvalidCriteriaException {
+		shape.append(getClass().getName()).append(':').append(mFieldName);
+	}
+
+	@Override
+	public void collectArgs(Criteria<?> criteria, List<Object> args) throws InvalidCriteriaException {
+		args.add(mLow);
+		args.add(mHigh);
+	}
+
 }
@@ -24,6 +24,7 @@ import com.clarionmedia.infinitum.orm.sql.SqlConstants;
 
 import java.io.Serializable;
 import java.lang.reflect.Field;
+import java.util.List;
 
 /**
  * <p> Represents a binary logical expression {@link Criterion}. </p>
@@ -54,6 +55,11 @@ public class BinaryExpression extends Criterion {
 
     @Override
     public String toSql(Criteria<?> criteria) throws InvalidCriteriaException {
+        return toSql(criteria, null);
+    }
+
+    @Override
+    public String toSql(Criteria<?> criteria, List<Object> args) throws InvalidCriteriaException {
         StringBuilder query = new StringBuilder();
         Class<?> c = criteria.getEntityClass();
         Field f;
@@ -77,12 +83,18 @@ public class BinaryExpression extends Criterion {
         // If it's a related object, use its primary key
         if (policy.isToOneRelationship(f)) {
             Serializable pk = policy.getPrimaryKey(mValue);
-            if (criteria.getObjectMapper().isTextColumn(f))
+            if (args != null && pk != null) {
+                query.append('?');
+                args.add(pk);
+            } else if (criteria.getObjectMapper().isTextColumn(f))
                 query.append("'").append(pk).append("'");
             else
                 query.append(pk);
         } else {
-            if (criteria.getObjectMapper().isTextColumn(f))
+            if (args != null && mValue != null) {
+                query.append('?');
+                args.add(mValue);
+            } else if (criteria.getObjectMapper().isTextColumn(f))
                 query.append("'").append(mValue).append("'");
             else
                 query.append(mValue);
@@ -90,4 +102,59 @@ public class BinaryExpression extends Criterion {
         return query.toString();
     }
 
+    /**
+     * Returns the value the {@link Field} is compared to.
+     *
+     * @return comparison value
+     */
+    public Object getValue() {
+        return mValue;
+    }
+
+    /**
+     * Returns the SQL comparison operator, one of the {@code OP} constants in {@link SqlConstants}.
+     *
+     * @return comparison operator
+     */
+    public String getOperator() {
+        return mOperator;
+    }
+
+    /**
+     * Indicates if case is ignored when the {@link Field} is compared to the value.
+     *
+     * @return {@code true} if case is ignored, {@code false} if not
+     */
+    public boolean isIgnoreCase() {
+        return mIgnoreCase;
+    }
+
+    @Override
+    public void appendShape(Criteria<?> criteria, StringBuilder shape) throws InvalidCriteriaException {
+        shape.append(getClass().getName()).append(':').append(mFieldName).append(' ').append(mOperator);
+        if (mIgnoreCase)
+            shape.append(" nocase");
+        // Null values are inlined rather than bound
+        shape.append(getBoundValue(criteria) == null ? " null" : " ?");
+    }
+
+    @Override
+    public void collectArgs(Criteria<?> criteria, List<Object> args) throws InvalidCriteriaException {
+        Object value = getBoundValue(criteria);
+        if (value != null)
+            args.add(value);
+    }
+
+    private Object getBoundValue(Criteria<?> criteria) {
+        Class<?> c = criteria.getEntityClass();
+        PersistencePolicy policy = mContextFactory.getContext(InfinitumOrmContext.class).getPersistencePolicy();
+        Field f = policy.findPersistentField(c, mFieldName);
+        if (f == null)
+            throw new InvalidCriteriaException(String.format("Invalid Criteria for type '%s'.", c.getName()));
+        // If it's a related object, use its primary key
+        if (policy.isToOneRelationship(f))
+            return policy.getPrimaryKey(mValue);
+        return mValue;
+    }
+
 }
@@ -17,6 +17,7 @@
 package com.clarionmedia.infinitum.orm.criteria.criterion;
 
 import java.io.Serializable;
+import java.util.List;
 
 import com.clarionmedia.infinitum.context.ContextFactory;
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
@@ -57,6 +58,46 @@ public abstract class Criterion implements Serializable {
     public abstract String toSql(Criteria<?> criteria)
             throws InvalidCriteriaException;
 
+    /**
+     * Retrieves the SQL fragment for the {@code Criterion} as a {@link String}, using {@code ?} placeholders in place
+     * of values. The values themselves are added to {@code args} in the order their placeholders appear. Subclasses
+     * which have no values to bind need not override this, as it defaults to {@link #toSql(Criteria)}.
+     *
+     * @param criteria the {@link Criteria} this {@code Criterion} belongs to
+     * @param args     the {@link List} to add bound values to, or {@code null} to inline values into the SQL
+     * @return SQL {@code String}
+     * @throws InvalidCriteriaException if there was a problem creating the {@code Criteria} instance
+     */
+    public String toSql(Criteria<?> criteria, List<Object> args) throws InvalidCriteriaException {
+        return toSql(criteria);
+    }
+
+    /**
+     * Appends a structural description of the {@code Criterion} to the given {@link StringBuilder}. The shape must
+     * capture everything which affects the SQL produced by {@link #toSql(Criteria, List)}, but none of the bound
+     * values, so that two {@code Criterion} with equal shapes produce identical SQL. The default implementation
+     * uses the inlined SQL, which is always safe but never shared between different values.
+     *
+     * @param criteria the {@link Criteria} this {@code Criterion} belongs to
+     * @param shape    the {@code StringBuilder} to append to
+     * @throws InvalidCriteriaException if there was a problem creating the {@code Criteria} instance
+     */
+    public void appendShape(Criteria<?> criteria, StringBuilder shape) throws InvalidCriteriaException {
+        shape.append(getClass().getName()).append(':').append(toSql(criteria));
+    }
+
+    /**
+     * Adds the values bound by {@link #toSql(Criteria, List)} to the given {@link List}, in placeholder order, without
+     * generating any SQL.
+     *
+     * @param criteria the {@link Criteria} this {@code Criterion} belongs to
+     * @param args     the {@code List} to add bound values to
+     * @throws InvalidCriteriaException if there was a problem creating the {@code Criteria} instance
+     */
+    public void collectArgs(Criteria<?> criteria, List<Object> args) throws InvalidCriteriaException {
+        toSql(criteria, args);
+    }
+
     /**
      * Returns the name of the {@link Field} this {@code Criterion} is being applied to.
      *
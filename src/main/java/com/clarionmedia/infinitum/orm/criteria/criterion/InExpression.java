@@ -17,6 +17,7 @@
 package com.clarionmedia.infinitum.orm.criteria.criterion;
 
 import java.lang.reflect.Field;
+import java.util.List;
 
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
@@ -55,6 +56,11 @@ public class InExpression extends Criterion {
 
 	@Override
 	public String toSql(Criteria<?> criteria) throws InvalidCriteriaException {
+		return toSql(criteria, null);
+	}
+
+	@Override
+	public String toSql(Criteria<?> criteria, List<Object> args) throws InvalidCriteriaException {
 		StringBuilder query = new StringBuilder();
 		Class<?> c = criteria.getEntityClass();
 		Field f = null;
@@ -75,7 +81,10 @@ public class InExpression extends Criterion {
 		for (Object val : mValues) {
 			query.append(prefix);
 			prefix = ", ";
-			if (criteria.getObjectMapper().isTextColumn(f))
+			if (args != null) {
+				query.append('?');
+				args.add(val);
+			} else if (criteria.getObjectMapper().isTextColumn(f))
 				query.append("'").append(val.toString()).append("'");
 			else
 				query.append(val.toString());
@@ -84,4 +93,24 @@ public class InExpression extends Criterion {
 		return query.toString();
 	}
 
+	/**
+	 * Returns the values the {@link Field} is checked against.
+	 * 
+	 * @return values
+	 */
+	public Object[] getValues() {
+		return mValues;
+	}
+
+	@Override
+	public void appendShape(Criteria<?> criteria, StringBuilder shape) throws InvalidCriteriaException {
+		shape.append(getClass().getName()).append(':').append(mFieldName).append(' ').append(mValues.length);
+	}
+
+	@Override
+	public void collectArgs(Criteria<?> criteria, List<Object> args) throws InvalidCriteriaException {
+		for (Object val : mValues)
+			args.add(val);
+	}
+
 }
@@ -16,6 +16,8 @@
 
 package com.clarionmedia.infinitum.orm.criteria.criterion;
 
+import java.util.List;
+
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
 import com.clarionmedia.infinitum.orm.exception.InvalidCriteriaException;
 
@@ -45,8 +47,30 @@ public class LogicalExpression extends Criterion {
 
 	@Override
 	public String toSql(Criteria<?> criteria) throws InvalidCriteriaException {
-		return new StringBuilder("(").append(mLhs.toSql(criteria)).append(' ').append(mOperator).append(' ')
-				.append(mRhs.toSql(criteria)).append(')').toString();
+		return toSql(criteria, null);
+	}
+
+	@Override
+	public String toSql(Criteria<?> criteria, List<Object> args) throws InvalidCriteriaException {
+		String lhs = args == null ? mLhs.toSql(criteria) : mLhs.toSql(criteria, args);
+		String rhs = args == null ? mRhs.toSql(criteria) : mRhs.toSql(criteria, args);
+		return new StringBuilder("(").append(lhs).append(' ').append(mOperator).append(' ').append(rhs).append(')')
+				.toString();
+	}
+
+	@Override
+	public void appendShape(Criteria<?> criteria, StringBuilder shape) throws InvalidCriteriaException {
+		shape.append('(');
+		mLhs.appendShape(criteria, shape);
+		shape.append(' ').append(mOperator).append(' ');
+		mRhs.appendShape(criteria, shape);
+		shape.append(')');
+	}
+
+	@Override
+	public void collectArgs(Criteria<?> criteria, List<Object> args) throws InvalidCriteriaException {
+		mLhs.collectArgs(criteria, args);
+		mRhs.collectArgs(criteria, args);
 	}
 
 }
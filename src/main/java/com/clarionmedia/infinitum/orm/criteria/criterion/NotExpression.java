@@ -16,6 +16,8 @@
 
 package com.clarionmedia.infinitum.orm.criteria.criterion;
 
+import java.util.List;
+
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
 import com.clarionmedia.infinitum.orm.exception.InvalidCriteriaException;
 import com.clarionmedia.infinitum.orm.sql.SqlConstants;
@@ -41,8 +43,25 @@ public class NotExpression extends Criterion {
 
 	@Override
 	public String toSql(Criteria<?> criteria) throws InvalidCriteriaException {
-		return new StringBuilder(SqlConstants.NEGATION).append(" (").append(mExpression.toSql(criteria)).append(')')
-				.toString();
+		return toSql(criteria, null);
+	}
+
+	@Override
+	public String toSql(Criteria<?> criteria, List<Object> args) throws InvalidCriteriaException {
+		String expression = args == null ? mExpression.toSql(criteria) : mExpression.toSql(criteria, args);
+		return new StringBuilder(SqlConstants.NEGATION).append(" (").append(expression).append(')').toString();
+	}
+
+	@Override
+	public void appendShape(Criteria<?> criteria, StringBuilder shape) throws InvalidCriteriaException {
+		shape.append(SqlConstants.NEGATION).append(" (");
+		mExpression.appendShape(criteria, shape);
+		shape.append(')');
+	}
+
+	@Override
+	public void collectArgs(Criteria<?> criteria, List<Object> args) throws InvalidCriteriaException {
+		mExpression.collectArgs(criteria, args);
 	}
 
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.internal;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.simpleframework.xml.Serializer;
+import org.simpleframework.xml.core.Persister;
+import org.simpleframework.xml.stream.InputNode;
+import org.simpleframework.xml.stream.NodeBuilder;
+
+/**
+ * <p>
+ * Holds the Simple {@link Persister} shared by the framework's XML
+ * serialization. A {@code Persister} builds a schema for each class it reads
+ * or writes by scanning its annotations and caches it, which makes the first
+ * read of a class far more expensive than the ones after it. Constructing a
+ * {@code Persister} per read throws that cache away, so every read pays the
+ * cost of the first. {@code Persister} is threadsafe, so a single instance is
+ * shared by every caller.
+ * </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 10/17/26
+ * @since 1.1.0
+ */
+public class XmlSerializationEngine {
+
+	// Created on first use rather than when the class is loaded
+	private static class PersisterHolder {
+		private static final Persister INSTANCE = new Persister();
+	}
+
+	private XmlSerializationEngine() {
+	}
+
+	/**
+	 * Returns the shared {@link Serializer}.
+	 *
+	 * @return {@code Serializer}
+	 */
+	public static Serializer getSerializer() {
+		return PersisterHolder.INSTANCE;
+	}
+
+	/**
+	 * Deserializes an instance of the given {@link Class} from the given
+	 * {@link InputStream}, which is decoded as it is read and left open.
+	 *
+	 * @param type
+	 *            the {@code Class} to deserialize
+	 * @param in
+	 *            the {@code InputStream} to read
+	 * @return deserialized instance
+	 * @throws Exception
+	 *             if the XML cannot be deserialized
+	 */
+	public static <T> T read(Class<T> type, InputStream in) throws Exception {
+		return PersisterHolder.INSTANCE.read(type, in);
+	}
+
+	/**
+	 * Deserializes an instance of the given {@link Class} from each child of
+	 * the root element of the given {@link InputStream}, which is decoded as it
+	 * is read and left open.
+	 *
+	 * @param type
+	 *            the {@code Class} to deserialize
+	 * @param in
+	 *            the {@code InputStream} to read
+	 * @return deserialized instances
+	 * @throws Exception
+	 *             if the XML cannot be deserialized
+	 */
+	public static <T> List<T> readList(Class<T> type, InputStream in) throws Exception {
+		List<T> ret = new ArrayList<T>();
+		InputNode root = NodeBuilder.read(in);
+		InputNode node;
+		while ((node = root.getNext()) != null)
+			ret.add(PersisterHolder.INSTANCE.read(type, node));
+		return ret;
+	}
+
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.persistence;
+
+import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy.Cascade;
+import com.clarionmedia.infinitum.orm.relationship.ModelRelationship;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p> Immutable description of how a domain model {@link Class} is persisted. {@code EntityMetadata} is computed once
+ * per {@code Class} by a {@link PersistencePolicy}, from either annotations or XML map files, and exposes the table
+ * name, primary key, ordered column descriptors, relationship descriptors, cascade mode, lazy-loading flag and
+ * second-level cache flag so that mapping and hydration code does not need to consult the policy for every field of
+ * every row. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 10/17/26
+ * @see PersistencePolicy#getEntityMetadata(Class)
+ * @since 1.1.0
+ */
+public final class EntityMetadata {
+
+    private final Class<?> mEntityClass;
+    private final String mTableName;
+    private final Field mPrimaryKeyField;
+    private final List<Field> mPersistentFields;
+    private final List<ColumnMetadata> mColumns;
+    private final List<RelationshipMetadata> mRelationships;
+    private final Cascade mCascadeMode;
+    private final boolean mIsLazy;
+    private final boolean mIsCacheable;
+
+    /**
+     * Constructs a new {@code EntityMetadata}.
+     *
+     * @param entityClass      the domain model {@code Class} described
+     * @param tableName        the name of the table the model is persisted to
+     * @param primaryKeyField  the primary key {@link Field}
+     * @param persistentFields every persistent {@code Field}, in declaration order
+     * @param columns          the column descriptors, in declaration order
+     * @param relationships    the relationship descriptors, in declaration order
+     * @param cascadeMode      the model's {@link Cascade} mode
+     * @param isLazy           {@code true} if the model's relationships are lazily loaded
+     */
+    public EntityMetadata(Class<?> entityClass, String tableName, Field primaryKeyField, List<Field> persistentFields,
+                          List<ColumnMetadata> columns, List<RelationshipMetadata> relationships, Cascade cascadeMode,
+                          boolean isLazy) {
+        this(entityClass, tableName, primaryKeyField, persistentFields, columns, relationships, cascadeMode, isLazy,
+                false);
+    }
+
+    /**
+     * Constructs a new {@code EntityMetadata}.
+     *
+     * @param entityClass      the domain model {@code Class} described
+     * @param tableName        the name of the table the model is persisted to
+     * @param primaryKeyField  the primary key {@link Field}
+     * @param persistentFields every persistent {@code Field}, in declaration order
+     * @param columns          the column descriptors, in declaration order
+     * @param relationships    the relationship descriptors, in declaration order
+     * @param cascadeMode      the model's {@link Cascade} mode
+     * @param isLazy           {@code true} if the model's relationships are lazily loaded
+     * @param isCacheable      {@code true} if the model is stored in the second-level cache
+     */
+    public EntityMetadata(Class<?> entityClass, String tableName, Field primaryKeyField, List<Field> persistentFields,
+                          List<ColumnMetadata> columns, List<RelationshipMetadata> relationships, Cascade cascadeMode,
+                          boolean isLazy, boolean isCacheable) {
+        mEntityClass = entityClass;
+        mTableName = tableName;
+        mPrimaryKeyField = primaryKeyField;
+        mPersistentFields = Collections.unmodifiableList(new ArrayList<Field>(persistentFields));
+        mColumns = Collections.unmodifiableList(new ArrayList<ColumnMetadata>(columns));
+        mRelationships = Collections.unmodifiableList(new ArrayList<RelationshipMetadata>(relationships));
+        mCascadeMode = cascadeMode;
+        mIsLazy = isLazy;
+        mIsCacheable = isCacheable;
+    }
+
+    /**
+     * Returns the domain model {@link Class} this {@code EntityMetadata} describes.
+     *
+     * @return entity {@code Class}
+     */
+    public Class<?> getEntityClass() {
+        return mEntityClass;
+    }
+
+    /**
+     * Returns the name of the table the entity is persisted to.
+     *
+     * @return table name
+     */
+    public String getTableName() {
+        return mTableName;
+    }
+
+    /**
+     * Returns the primary key {@link Field} of the entity.
+     *
+     * @return primary key {@code Field}
+     */
+    public Field getPrimaryKeyField() {
+        return mPrimaryKeyField;
+    }
+
+    /**
+     * Returns every persistent {@link Field} of the entity, columns and relationships alike.
+     *
+     * @return unmodifiable {@link List} of persistent {@code Fields}
+     */
+    public List<Field> getPersistentFields() {
+        return mPersistentFields;
+    }
+
+    /**
+     * Returns the descriptors of the entity's non-relationship columns, including the primary key.
+     *
+     * @return unmodifiable {@link List} of {@link ColumnMetadata}
+     */
+    public List<ColumnMetadata> getColumns() {
+        return mColumns;
+    }
+
+    /**
+     * Returns the descriptors of the entity's relationships.
+     *
+     * @return unmodifiable {@link List} of {@link RelationshipMetadata}
+     */
+    public List<RelationshipMetadata> getRelationships() {
+        return mRelationships;
+    }
+
+    /**
+     * Indicates if the entity has any relationships.
+     *
+     * @return {@code true} if it has relationships, {@code false} if not
+     */
+    public boolean hasRelationships() {
+        return mRelationships.size() > 0;
+    }
+
+    /**
+     * Returns the entity's {@link Cascade} mode.
+     *
+     * @return {@code Cascade} mode
+     */
+    public Cascade getCascadeMode() {
+        return mCascadeMode;
+    }
+
+    /**
+     * Indicates if the entity's relationships are lazily loaded.
+     *
+     * @return {@code true} if lazy, {@code false} if eager
+     */
+    public boolean isLazy() {
+        return mIsLazy;
+    }
+
+    /**
+     * Indicates if the entity is stored in the second-level cache.
+     *
+     * @return {@code true} if cacheable, {@code false} if not
+     */
+    public boolean isCacheable() {
+        return mIsCacheable;
+    }
+
+    /**
+     * <p> Describes a single persistent, non-relationship {@link Field} and the column it maps to. </p>
+     */
+    public static final class ColumnMetadata {
+
+        private final Field mField;
+        private final String mColumnName;
+        private final boolean mIsPrimaryKey;
+        private final boolean mIsAutoIncrement;
+        private final boolean mIsNullable;
+        private final boolean mIsUnique;
+
+        /**
+         * Constructs a new {@code ColumnMetadata}.
+         *
+         * @param field           the persistent {@code Field}
+         * @param columnName      the name of the column the {@code Field} maps to
+         * @param isPrimaryKey    {@code true} if the {@code Field} is the primary key
+         * @param isAutoIncrement {@code true} if the {@code Field} is an autoincrementing primary key
+         * @param isNullable      {@code true} if the column is nullable
+         * @param isUnique        {@code true} if the column is unique
+         */
+        public ColumnMetadata(Field field, String columnName, boolean isPrimaryKey, boolean isAutoIncrement,
+                              boolean isNullable, boolean isUnique) {
+            mField = field;
+            mColumnName = columnName;
+            mIsPrimaryKey = isPrimaryKey;
+            mIsAutoIncrement = isAutoIncrement;
+            mIsNullable = isNullable;
+            mIsUnique = isUnique;
+        }
+
+        public Field getField() {
+            return mField;
+        }
+
+        public String getColumnName() {
+            return mColumnName;
+        }
+
+        public boolean isPrimaryKey() {
+            return mIsPrimaryKey;
+        }
+
+        public boolean isAutoIncrement() {
+            return mIsAutoIncrement;
+        }
+
+        public boolean isNullable() {
+            return mIsNullable;
+        }
+
+        public boolean isUnique() {
+            return mIsUnique;
+        }
+
+    }
+
+    /**
+     * <p> Describes a single relationship {@link Field} and its resolved {@link ModelRelationship}. </p>
+     */
+    public static final class RelationshipMetadata {
+
+        private final Field mField;
+        private final ModelRelationship mRelationship;
+
+        /**
+         * Constructs a new {@code RelationshipMetadata}.
+         *
+         * @param field        the relationship {@code Field}
+         * @param relationship the {@code ModelRelationship} the {@code Field} represents
+         */
+        public RelationshipMetadata(Field field, ModelRelationship relationship) {
+            mField = field;
+            mRelationship = relationship;
+        }
+
+        public Field getField() {
+            return mField;
+        }
+
+        public ModelRelationship getRelationship() {
+            return mRelationship;
+        }
+
+    }
+
+}
@@ -0,0 +1,480 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.persistence;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p> Identity map of persistent entities keyed by their {@link Class} and primary key. Every entity {@code Class} is
+ * held in its own least-recently-used region with its own capacity, so a single heavily loaded type cannot evict all
+ * others, and the least recently used entity of a region is evicted once the region is full. Keys are compared with
+ * {@link Object#equals(Object)}, so distinct entities never collide. </p> <p> Integral primary keys are stored as
+ * primitive {@code long} values in an open-addressing table, which lets callers holding a raw key, such as one read
+ * from a database cursor, look entities up and store them without boxing the key or allocating an entry. Since those
+ * lookups run once per row, this keeps the session cache from producing garbage while a large result is read. Any
+ * other primary key is held in an access-ordered {@link LinkedHashMap}. </p> <p> {@code IdentityMap} is threadsafe.
+ * </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 10/17/26
+ * @since 1.1.0
+ */
+public class IdentityMap {
+
+    private final Map<Class<?>, LongRegion> mLongRegions;
+    private final Map<Class<?>, ObjectRegion> mObjectRegions;
+    private final Map<Class<?>, Integer> mCapacities;
+    private int mDefaultCapacity;
+
+    /**
+     * Constructs a new {@code IdentityMap}.
+     *
+     * @param defaultCapacity the maximum number of entities stored for each {@link Class} without its own capacity
+     */
+    public IdentityMap(int defaultCapacity) {
+        mLongRegions = new HashMap<Class<?>, LongRegion>();
+        mObjectRegions = new HashMap<Class<?>, ObjectRegion>();
+        mCapacities = new HashMap<Class<?>, Integer>();
+        mDefaultCapacity = defaultCapacity;
+    }
+
+    /**
+     * Returns the entity of the given {@link Class} with the given primary key and marks it as recently used.
+     *
+     * @param c  the entity {@code Class}
+     * @param pk the entity's primary key
+     * @return the cached entity or {@code null} if it is not in the {@code IdentityMap}
+     */
+    public synchronized Object get(Class<?> c, Serializable pk) {
+        if (pk == null)
+            return null;
+        if (isIntegral(pk))
+            return get(c, ((Number) pk).longValue());
+        ObjectRegion region = mObjectRegions.get(c);
+        return region == null ? null : region.get(pk);
+    }
+
+    /**
+     * Returns the entity of the given {@link Class} with the given integral primary key and marks it as recently used.
+     *
+     * @param c  the entity {@code Class}
+     * @param pk the entity's primary key
+     * @return the cached entity or {@code null} if it is not in the {@code IdentityMap}
+     */
+    public synchronized Object get(Class<?> c, long pk) {
+        LongRegion region = mLongRegions.get(c);
+        return region == null ? null : region.get(pk);
+    }
+
+    /**
+     * Indicates if the entity of the given {@link Class} with the given primary key is in the {@code IdentityMap}.
+     *
+     * @param c  the entity {@code Class}
+     * @param pk the entity's primary key
+     * @return {@code true} if it is cached, {@code false} if not
+     */
+    public synchronized boolean contains(Class<?> c, Serializable pk) {
+        return get(c, pk) != null;
+    }
+
+    /**
+     * Stores the given entity under its {@link Class} and primary key, replacing any entity already stored under them.
+     * If this exceeds the capacity of the {@code Class}, its least recently used entity is evicted. Storing {@code
+     * null} removes the entity.
+     *
+     * @param c      the entity {@code Class}
+     * @param pk     the entity's primary key
+     * @param entity the entity to store
+     */
+    public synchronized void put(Class<?> c, Serializable pk, Object entity) {
+        if (pk == null)
+            return;
+        if (isIntegral(pk)) {
+            put(c, ((Number) pk).longValue(), entity);
+        } else if (entity == null) {
+            remove(c, pk);
+        } else {
+            ObjectRegion region = mObjectRegions.get(c);
+            if (region == null) {
+                region = new ObjectRegion(getCapacity(c));
+                mObjectRegions.put(c, region);
+            }
+            region.put(pk, entity);
+        }
+    }
+
+    /**
+     * Stores the given entity under its {@link Class} and integral primary key, replacing any entity already stored
+     * under them. If this exceeds the capacity of the {@code Class}, its least recently used entity is evicted. Storing
+     * {@code null} removes the entity.
+     *
+     * @param c      the entity {@code Class}
+     * @param pk     the entity's primary key
+     * @param entity the entity to store
+     */
+    public synchronized void put(Class<?> c, long pk, Object entity) {
+        LongRegion region = mLongRegions.get(c);
+        if (entity == null) {
+            if (region != null)
+                region.remove(pk);
+            return;
+        }
+        if (region == null) {
+            region = new LongRegion(getCapacity(c));
+            mLongRegions.put(c, region);
+        }
+        region.put(pk, entity);
+    }
+
+    /**
+     * Removes the entity of the given {@link Class} with the given primary key.
+     *
+     * @param c  the entity {@code Class}
+     * @param pk the entity's primary key
+     * @return the removed entity or {@code null} if it was not in the {@code IdentityMap}
+     */
+    public synchronized Object remove(Class<?> c, Serializable pk) {
+        if (pk == null)
+            return null;
+        if (isIntegral(pk)) {
+            LongRegion region = mLongRegions.get(c);
+            return region == null ? null : region.remove(((Number) pk).longValue());
+        }
+        ObjectRegion region = mObjectRegions.get(c);
+        return region == null ? null : region.remove(pk);
+    }
+
+    /**
+     * Removes every entity from the {@code IdentityMap}. Capacities are retained.
+     */
+    public synchronized void clear() {
+        mLongRegions.clear();
+        mObjectRegions.clear();
+    }
+
+    /**
+     * Removes every entity of the given {@link Class}.
+     *
+     * @param c the entity {@code Class}
+     */
+    public synchronized void clear(Class<?> c) {
+        mLongRegions.remove(c);
+        mObjectRegions.remove(c);
+    }
+
+    /**
+     * Returns the number of entities in the {@code IdentityMap}.
+     *
+     * @return number of cached entities
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (LongRegion region : mLongRegions.values())
+            size += region.mSize;
+        for (ObjectRegion region : mObjectRegions.values())
+            size += region.size();
+        return size;
+    }
+
+    /**
+     * Returns the number of entities of the given {@link Class} in the {@code IdentityMap}.
+     *
+     * @param c the entity {@code Class}
+     * @return number of cached entities of the {@code Class}
+     */
+    public synchronized int size(Class<?> c) {
+        LongRegion longRegion = mLongRegions.get(c);
+        ObjectRegion objectRegion = mObjectRegions.get(c);
+        return (longRegion == null ? 0 : longRegion.mSize) + (objectRegion == null ? 0 : objectRegion.size());
+    }
+
+    /**
+     * Returns a snapshot of every entity in the {@code IdentityMap}.
+     *
+     * @return {@link List} of cached entities
+     */
+    public synchronized List<Object> values() {
+        List<Object> ret = new ArrayList<Object>(size());
+        for (LongRegion region : mLongRegions.values())
+            region.addValuesTo(ret);
+        for (ObjectRegion region : mObjectRegions.values())
+            ret.addAll(region.values());
+        return ret;
+    }
+
+    /**
+     * Sets the capacity used for each {@link Class} which has not been given its own. Regions which are over the new
+     * capacity are trimmed.
+     *
+     * @param capacity the maximum number of entities stored per {@code Class}
+     */
+    public synchronized void setDefaultCapacity(int capacity) {
+        mDefaultCapacity = capacity;
+        for (Map.Entry<Class<?>, LongRegion> region : mLongRegions.entrySet()) {
+            if (!mCapacities.containsKey(region.getKey()))
+                region.getValue().setCapacity(capacity);
+        }
+        for (Map.Entry<Class<?>, ObjectRegion> region : mObjectRegions.entrySet()) {
+            if (!mCapacities.containsKey(region.getKey()))
+                region.getValue().setCapacity(capacity);
+        }
+    }
+
+    /**
+     * Returns the capacity used for each {@link Class} which has not been given its own.
+     *
+     * @return the maximum number of entities stored per {@code Class}
+     */
+    public synchronized int getDefaultCapacity() {
+        return mDefaultCapacity;
+    }
+
+    /**
+     * Sets the capacity of the given {@link Class}, trimming its entities if they exceed it.
+     *
+     * @param c        the entity {@code Class}
+     * @param capacity the maximum number of entities of the {@code Class} to store
+     */
+    public synchronized void setCapacity(Class<?> c, int capacity) {
+        mCapacities.put(c, capacity);
+        LongRegion longRegion = mLongRegions.get(c);
+        if (longRegion != null)
+            longRegion.setCapacity(capacity);
+        ObjectRegion objectRegion = mObjectRegions.get(c);
+        if (objectRegion != null)
+            objectRegion.setCapacity(capacity);
+    }
+
+    /**
+     * Returns the capacity of the given {@link Class}.
+     *
+     * @param c the entity {@code Class}
+     * @return the maximum number of entities of the {@code Class} to store
+     */
+    public synchronized int getCapacity(Class<?> c) {
+        Integer capacity = mCapacities.get(c);
+        return capacity == null ? mDefaultCapacity : capacity;
+    }
+
+    /**
+     * Indicates if the given primary key is stored as a primitive {@code long}.
+     *
+     * @param pk the primary key to check
+     * @return {@code true} if it is an integral {@link Number}, {@code false} if not
+     */
+    public static boolean isIntegral(Serializable pk) {
+        return pk instanceof Long || pk instanceof Integer || pk instanceof Short || pk instanceof Byte;
+    }
+
+    /**
+     * Entities of a single {@code Class} keyed by primitive {@code long}. Entries live in parallel arrays probed
+     * linearly, and are chained by slot index through a doubly linked list in access order whose sentinel is the slot
+     * one past the end of the table. Removal shifts the following entries of a probe run back, so the table never
+     * holds tombstones.
+     */
+    private static final class LongRegion {
+
+        private static final int INITIAL_TABLE_SIZE = 16;
+
+        private long[] mKeys;
+        private Object[] mValues;
+        private int[] mBefore;
+        private int[] mAfter;
+        private int mHead;
+        private int mSize;
+        private int mCapacity;
+
+        LongRegion(int capacity) {
+            mCapacity = capacity;
+            allocate(INITIAL_TABLE_SIZE);
+        }
+
+        Object get(long key) {
+            int slot = find(key);
+            if (slot < 0)
+                return null;
+            unlink(slot);
+            linkLast(slot);
+            return mValues[slot];
+        }
+
+        void put(long key, Object value) {
+            int slot = find(key);
+            if (slot >= 0) {
+                mValues[slot] = value;
+                unlink(slot);
+                linkLast(slot);
+                return;
+            }
+            if (mCapacity <= 0)
+                return;
+            slot = -slot - 1;
+            mKeys[slot] = key;
+            mValues[slot] = value;
+            linkLast(slot);
+            mSize++;
+            trim();
+            // Keep a quarter of the table free so that probing always reaches an empty slot
+            if (mSize > mKeys.length * 3 / 4)
+                resize();
+        }
+
+        Object remove(long key) {
+            int slot = find(key);
+            if (slot < 0)
+                return null;
+            Object value = mValues[slot];
+            removeSlot(slot);
+            return value;
+        }
+
+        void setCapacity(int capacity) {
+            mCapacity = capacity;
+            trim();
+        }
+
+        void addValuesTo(List<Object> values) {
+            for (int slot = mAfter[mHead]; slot != mHead; slot = mAfter[slot])
+                values.add(mValues[slot]);
+        }
+
+        private void trim() {
+            while (mSize > Math.max(mCapacity, 0))
+                removeSlot(mAfter[mHead]);
+        }
+
+        // Returns the slot holding the key, or -(slot) - 1 of the empty slot where it would be inserted
+        private int find(long key) {
+            int mask = mKeys.length - 1;
+            for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+                if (mValues[slot] == null)
+                    return -slot - 1;
+                if (mKeys[slot] == key)
+                    return slot;
+            }
+        }
+
+        private void removeSlot(int slot) {
+            unlink(slot);
+            mValues[slot] = null;
+            mSize--;
+            int mask = mKeys.length - 1;
+            int hole = slot;
+            for (int next = (hole + 1) & mask; mValues[next] != null; next = (next + 1) & mask) {
+                // An entry may fill the hole only if the hole lies between its home slot and where it is now
+                int home = hash(mKeys[next]) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    move(next, hole);
+                    hole = next;
+                }
+            }
+        }
+
+        private void move(int from, int to) {
+            mKeys[to] = mKeys[from];
+            mValues[to] = mValues[from];
+            mValues[from] = null;
+            int before = mBefore[from];
+            int after = mAfter[from];
+            mBefore[to] = before;
+            mAfter[to] = after;
+            mAfter[before] = to;
+            mBefore[after] = to;
+        }
+
+        private void resize() {
+            long[] keys = mKeys;
+            Object[] values = mValues;
+            int[] after = mAfter;
+            int head = mHead;
+            allocate(keys.length * 2);
+            // Reinserted in access order, so recency is preserved
+            for (int slot = after[head]; slot != head; slot = after[slot]) {
+                int to = -find(keys[slot]) - 1;
+                mKeys[to] = keys[slot];
+                mValues[to] = values[slot];
+                linkLast(to);
+            }
+        }
+
+        private void allocate(int length) {
+            mKeys = new long[length];
+            mValues = new Object[length];
+            mBefore = new int[length + 1];
+            mAfter = new int[length + 1];
+            mHead = length;
+            mBefore[mHead] = mHead;
+            mAfter[mHead] = mHead;
+        }
+
+        private void linkLast(int slot) {
+            mAfter[slot] = mHead;
+            mBefore[slot] = mBefore[mHead];
+            mAfter[mBefore[mHead]] = slot;
+            mBefore[mHead] = slot;
+        }
+
+        private void unlink(int slot) {
+            mAfter[mBefore[slot]] = mAfter[slot];
+            mBefore[mAfter[slot]] = mBefore[slot];
+        }
+
+        private static int hash(long key) {
+            int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+    }
+
+    /**
+     * Entities of a single {@code Class} keyed by any other primary key, kept in access order so the eldest entry is
+     * the least recently used.
+     */
+    private static final class ObjectRegion extends LinkedHashMap<Object, Object> {
+
+        private static final long serialVersionUID = 1L;
+
+        private int mCapacity;
+
+        ObjectRegion(int capacity) {
+            super(16, 0.75f, true);
+            mCapacity = capacity;
+        }
+
+        void setCapacity(int capacity) {
+            mCapacity = capacity;
+            Iterator<Object> keys = keySet().iterator();
+            while (size() > Math.max(capacity, 0)) {
+                keys.next();
+                keys.remove();
+            }
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+            return size() > mCapacity;
+        }
+
+    }
+
+}
@@ -32,6 +32,7 @@ import com.clarionmedia.infinitum.reflection.ClassReflector;
 import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p> Provides a runtime resolution policy for model persistence based on the Infinitum configuration. There are two
@@ -58,6 +59,21 @@ public abstract class PersistencePolicy {
 
     ;
 
+    // The caches below are filled lazily from whichever thread asks first, so they are backed by ConcurrentHashMaps.
+    // Entries are never removed and a lost race only recomputes the same value.
+
+    // This Map caches whether each class is persistent
+    protected Map<Class<?>, Boolean> mClassPersistenceCache;
+
+    // This Map caches the table name for each persistent class
+    protected Map<Class<?>, String> mTableNameCache;
+
+    // This Map caches the cascade mode for each persistent class
+    protected Map<Class<?>, Cascade> mCascadeCache;
+
+    // This Map caches whether each persistent class is cacheable
+    protected Map<Class<?>, Boolean> mCacheableCache;
+
     // This Map caches which fields are persistent
     protected Map<Class<?>, List<Field>> mPersistenceCache;
 
@@ -73,6 +89,9 @@ public abstract class PersistencePolicy {
     // This Map caches the uniqueness of Fields
     protected Map<Field, Boolean> mFieldUniqueCache;
 
+    // This Map caches whether Fields are relationships
+    protected Map<Field, Boolean> mRelationshipFieldCache;
+
     // This Map caches the many-to-many relationships
     protected Map<Field, ManyToManyRelationship> mManyToManyCache;
 
@@ -94,6 +113,9 @@ public abstract class PersistencePolicy {
     // This Map caches the endpoint field names for model Fields
     protected Map<Field, String> mRestFieldCache;
 
+    // This Map caches the compiled metadata for each persistent class
+    protected Map<Class<?>, EntityMetadata> mEntityMetadataCache;
+
     @Autowired
     protected TypeResolutionPolicy mTypePolicy;
 
@@ -109,21 +131,75 @@ public abstract class PersistencePolicy {
      * Constructs a new {@code PersistencePolicy}.
      */
     public PersistencePolicy() {
-        mPersistenceCache = new HashMap<Class<?>, List<Field>>();
-        mColumnCache = new HashMap<Field, String>();
-        mPrimaryKeyCache = new HashMap<Class<?>, Field>();
-        mFieldNullableCache = new HashMap<Field, Boolean>();
-        mFieldUniqueCache = new HashMap<Field, Boolean>();
-        mManyToManyCache = new HashMap<Field, ManyToManyRelationship>();
-        mManyToOneCache = new HashMap<Field, ManyToOneRelationship>();
-        mOneToManyCache = new HashMap<Field, OneToManyRelationship>();
-        mOneToOneCache = new HashMap<Field, OneToOneRelationship>();
-        mLazyLoadingCache = new HashMap<Class<?>, Boolean>();
-        mRestEndpointCache = new HashMap<Class<?>, String>();
-        mRestFieldCache = new HashMap<Field, String>();
+        mClassPersistenceCache = new ConcurrentHashMap<Class<?>, Boolean>();
+        mTableNameCache = new ConcurrentHashMap<Class<?>, String>();
+        mCascadeCache = new ConcurrentHashMap<Class<?>, Cascade>();
+        mCacheableCache = new ConcurrentHashMap<Class<?>, Boolean>();
+        mPersistenceCache = new ConcurrentHashMap<Class<?>, List<Field>>();
+        mColumnCache = new ConcurrentHashMap<Field, String>();
+        mPrimaryKeyCache = new ConcurrentHashMap<Class<?>, Field>();
+        mFieldNullableCache = new ConcurrentHashMap<Field, Boolean>();
+        mFieldUniqueCache = new ConcurrentHashMap<Field, Boolean>();
+        mRelationshipFieldCache = new ConcurrentHashMap<Field, Boolean>();
+        mManyToManyCache = new ConcurrentHashMap<Field, ManyToManyRelationship>();
+        mManyToOneCache = new ConcurrentHashMap<Field, ManyToOneRelationship>();
+        mOneToManyCache = new ConcurrentHashMap<Field, OneToManyRelationship>();
+        mOneToOneCache = new ConcurrentHashMap<Field, OneToOneRelationship>();
+        mLazyLoadingCache = new ConcurrentHashMap<Class<?>, Boolean>();
+        mRestEndpointCache = new ConcurrentHashMap<Class<?>, String>();
+        mRestFieldCache = new ConcurrentHashMap<Field, String>();
+        mEntityMetadataCache = new ConcurrentHashMap<Class<?>, EntityMetadata>();
         mLogger = new SmartLogger(getClass().getSimpleName());
     }
 
+    /**
+     * Retrieves the {@link EntityMetadata} for the given persistent {@code Class}. The metadata is computed from this
+     * policy the first time it is requested and served from a cache afterwards, so callers mapping many rows should
+     * prefer it over the individual per-{@link Field} lookups.
+     *
+     * @param c the persistent {@code Class} to retrieve metadata for
+     * @return {@code EntityMetadata} for the {@code Class}
+     * @throws IllegalArgumentException    if the {@code Class} is transient
+     * @throws ModelConfigurationException if the {@code Class} is configured incorrectly
+     */
+    public EntityMetadata getEntityMetadata(Class<?> c) throws IllegalArgumentException, ModelConfigurationException {
+        EntityMetadata metadata = mEntityMetadataCache.get(c);
+        if (metadata == null) {
+            metadata = createEntityMetadata(c);
+            mEntityMetadataCache.put(c, metadata);
+        }
+        return metadata;
+    }
+
+    /**
+     * Computes the {@link EntityMetadata} for the given persistent {@code Class} using this policy's configuration.
+     *
+     * @param c the persistent {@code Class} to compute metadata for
+     * @return {@code EntityMetadata} for the {@code Class}
+     * @throws IllegalArgumentException    if the {@code Class} is transient
+     * @throws ModelConfigurationException if the {@code Class} is configured incorrectly
+     */
+    protected EntityMetadata createEntityMetadata(Class<?> c) throws IllegalArgumentException,
+            ModelConfigurationException {
+        String tableName = getModelTableName(c);
+        Field pkField = getPrimaryKeyField(c);
+        List<Field> fields = getPersistentFields(c);
+        List<EntityMetadata.ColumnMetadata> columns = new ArrayList<EntityMetadata.ColumnMetadata>();
+        List<EntityMetadata.RelationshipMetadata> relationships = new ArrayList<EntityMetadata.RelationshipMetadata>();
+        for (Field f : fields) {
+            f.setAccessible(true);
+            if (isRelationship(f)) {
+                relationships.add(new EntityMetadata.RelationshipMetadata(f, getRelationship(f)));
+                continue;
+            }
+            boolean isPk = f.equals(pkField);
+            columns.add(new EntityMetadata.ColumnMetadata(f, getFieldColumnName(f), isPk,
+                    isPk && isPrimaryKeyAutoIncrement(f), isFieldNullable(f), isFieldUnique(f)));
+        }
+        return new EntityMetadata(c, tableName, pkField, fields, columns, relationships, getCascadeMode(c),
+                isLazy(c), isCacheable(c));
+    }
+
     /**
      * Indicates if the given {@code Class} is persistent or transient.
      *
@@ -288,6 +364,14 @@ public abstract class PersistencePolicy {
      */
     public abstract boolean isLazy(Class<?> c);
 
+    /**
+     * Indicates if the given persistent {@link Class} is stored in the second-level cache.
+     *
+     * @param c the {@code Class} to check
+     * @return {@code true} if the {@code Class} is cacheable, {@code false} if not
+     */
+    public abstract boolean isCacheable(Class<?> c);
+
     /**
      * Retrieves the REST endpoint name for the given persistent {@link Class}.
      *
@@ -298,6 +382,17 @@ public abstract class PersistencePolicy {
     public abstract String getRestEndpoint(Class<?> c)
             throws IllegalArgumentException;
 
+    /**
+     * Retrieves the name of the REST endpoint which saves a collection of entities of the given persistent {@link
+     * Class} in a single request.
+     *
+     * @param c the {@code Class} to retrieve the bulk REST endpoint name for
+     * @return bulk endpoint name or {@code null} if the {@code Class} has none
+     * @throws IllegalArgumentException if the given {@code Class} is not a domain model or persistent
+     */
+    public abstract String getRestBulkEndpoint(Class<?> c)
+            throws IllegalArgumentException;
+
     /**
      * Retrieves the REST endpoint field name for the given persistent {@link Field}.
      *
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.persistence;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * <p> Process-wide cache of query results. A result is stored as the primary keys of the matching entities, keyed by
+ * the query and its arguments, so running the same query again only has to hydrate the entities, which can usually be
+ * served from the {@code Session} or {@link SecondLevelCache}. </p> <p> Every result records the entity {@link Class
+ * Classes} whose tables the query reads. {@link #invalidate(Class)} discards every result which depends on a {@code
+ * Class}, and must be called whenever one of its rows is written. To guard against a write which races with a query,
+ * callers obtain a timestamp with {@link #getTimestamp()} before running the query and pass it to {@link
+ * #put(String, Set, List, long)}, which drops the result if any of its {@code Classes} was invalidated in the meantime.
+ * The least recently used result is evicted once {@link #getCapacity()} is reached. </p> <p> {@code QueryCache} is
+ * threadsafe. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 10/17/26
+ * @since 1.1.0
+ */
+public class QueryCache {
+
+    /**
+     * The default number of query results stored.
+     */
+    public static final int DEFAULT_CAPACITY = 100;
+
+    private final Map<Class<?>, Set<String>> mDependents;
+    private final Map<Class<?>, Long> mInvalidations;
+    private int mCapacity;
+    private long mClock;
+    private long mCleared;
+    private Map<String, Result> mResults;
+
+    /**
+     * Constructs a new {@code QueryCache} with the default capacity.
+     */
+    public QueryCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new {@code QueryCache}.
+     *
+     * @param capacity the maximum number of query results to store
+     */
+    public QueryCache(int capacity) {
+        mDependents = new HashMap<Class<?>, Set<String>>();
+        mInvalidations = new HashMap<Class<?>, Long>();
+        mCapacity = capacity;
+    }
+
+    /**
+     * Returns the primary keys of the cached result of the given query.
+     *
+     * @param query the query and its arguments
+     * @return {@link List} of primary keys or {@code null} if the result is not cached
+     */
+    public synchronized List<Serializable> get(String query) {
+        Result result = getResults().get(query);
+        return result == null ? null : result.mPrimaryKeys;
+    }
+
+    /**
+     * Stores the result of the given query, unless one of the {@link Class Classes} it depends on was invalidated after
+     * the given timestamp.
+     *
+     * @param query       the query and its arguments
+     * @param types       the entity {@code Classes} whose tables the query reads
+     * @param primaryKeys the primary keys of the matching entities, in result order
+     * @param timestamp   the value of {@link #getTimestamp()} before the query was run
+     * @return {@code true} if the result was stored, {@code false} if it was stale
+     */
+    public synchronized boolean put(String query, Set<Class<?>> types, List<Serializable> primaryKeys,
+                                    long timestamp) {
+        if (mCleared > timestamp)
+            return false;
+        for (Class<?> c : types) {
+            Long invalidated = mInvalidations.get(c);
+            if (invalidated != null && invalidated > timestamp)
+                return false;
+        }
+        remove(query);
+        types = new HashSet<Class<?>>(types);
+        getResults().put(query, new Result(types, Collections.unmodifiableList(new ArrayList<Serializable>
+                (primaryKeys))));
+        for (Class<?> c : types) {
+            Set<String> dependents = mDependents.get(c);
+            if (dependents == null) {
+                dependents = new HashSet<String>();
+                mDependents.put(c, dependents);
+            }
+            dependents.add(query);
+        }
+        return true;
+    }
+
+    /**
+     * Discards every result which depends on the given {@link Class}.
+     *
+     * @param c the entity {@code Class} which was written
+     */
+    public synchronized void invalidate(Class<?> c) {
+        mInvalidations.put(c, ++mClock);
+        Set<String> dependents = mDependents.remove(c);
+        if (dependents == null)
+            return;
+        for (String query : dependents)
+            remove(query);
+    }
+
+    /**
+     * Discards every result. Timestamps obtained before this call become stale.
+     */
+    public synchronized void clear() {
+        mCleared = ++mClock;
+        mDependents.clear();
+        getResults().clear();
+    }
+
+    /**
+     * Returns the current timestamp, which is to be passed to {@link #put(String, Set, List, long)} once the query has
+     * been run.
+     *
+     * @return timestamp
+     */
+    public synchronized long getTimestamp() {
+        return mClock;
+    }
+
+    /**
+     * Returns the number of cached results.
+     *
+     * @return number of results
+     */
+    public synchronized int size() {
+        return getResults().size();
+    }
+
+    /**
+     * Returns the maximum number of query results stored.
+     *
+     * @return capacity
+     */
+    public synchronized int getCapacity() {
+        return mCapacity;
+    }
+
+    private void remove(String query) {
+        Result result = getResults().remove(query);
+        if (result == null)
+            return;
+        for (Class<?> c : result.mTypes) {
+            Set<String> dependents = mDependents.get(c);
+            if (dependents != null)
+                dependents.remove(query);
+        }
+    }
+
+    // Created on first use, since the capacity may be injected after construction
+    private Map<String, Result> getResults() {
+        if (mResults == null) {
+            mResults = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+                    if (size() <= mCapacity)
+                        return false;
+                    // Unlink the evicted result from its dependencies before the map drops it
+                    for (Class<?> c : eldest.getValue().mTypes) {
+                        Set<String> dependents = mDependents.get(c);
+                        if (dependents != null)
+                            dependents.remove(eldest.getKey());
+                    }
+                    return true;
+                }
+            };
+        }
+        return mResults;
+    }
+
+    private static final class Result {
+
+        private final Set<Class<?>> mTypes;
+        private final List<Serializable> mPrimaryKeys;
+
+        Result(Set<Class<?>> types, List<Serializable> primaryKeys) {
+            mTypes = types;
+            mPrimaryKeys = primaryKeys;
+        }
+
+    }
+
+}
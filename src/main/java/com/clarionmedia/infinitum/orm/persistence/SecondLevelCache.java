@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.persistence;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p> Process-wide cache of entity state which is shared by every {@code Session}. Unlike the {@code Session} cache,
+ * it is not cleared when a {@code Session} is closed, so entities which are read often and rarely modified, such as
+ * reference data, are not reloaded each time a {@code Session} is reopened. Only entities whose {@link EntityMetadata}
+ * is marked cacheable are stored. </p> <p> The cache holds the persistent state of an entity rather than the entity
+ * instance, so each {@code Session} hydrates its own instance from it. Entries are keyed by entity {@link Class} and
+ * primary key, each {@code Class} holding at most {@link #getCapacity()} entries in least-recently-used order, and
+ * entries expire once they are older than {@link #getTimeToLive()}. The ORM evicts an entity when it is saved, updated
+ * or deleted. </p> <p> {@code SecondLevelCache} is threadsafe. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 10/17/26
+ * @since 1.1.0
+ */
+public class SecondLevelCache {
+
+    /**
+     * The default number of entries stored per entity {@link Class}.
+     */
+    public static final int DEFAULT_CAPACITY = 500;
+
+    /**
+     * The default number of milliseconds an entry is valid for.
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = 5 * 60 * 1000;
+
+    private final AtomicLong mHitCount;
+    private final AtomicLong mMissCount;
+    private int mCapacity;
+    private long mTimeToLive;
+    private IdentityMap mEntries;
+
+    /**
+     * Constructs a new {@code SecondLevelCache} with the default capacity and time to live.
+     */
+    public SecondLevelCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * Constructs a new {@code SecondLevelCache}.
+     *
+     * @param capacity   the maximum number of entries stored per entity {@link Class}
+     * @param timeToLive the number of milliseconds an entry is valid for, or 0 if entries do not expire
+     */
+    public SecondLevelCache(int capacity, long timeToLive) {
+        mHitCount = new AtomicLong();
+        mMissCount = new AtomicLong();
+        mCapacity = capacity;
+        mTimeToLive = timeToLive;
+    }
+
+    /**
+     * Returns the cached state of the entity with the given {@link Class} and primary key.
+     *
+     * @param c  the entity {@code Class}
+     * @param pk the entity's primary key
+     * @return the entity state or {@code null} if it is not cached or has expired
+     */
+    public Object get(Class<?> c, Serializable pk) {
+        return unwrap(c, pk, (Entry) getEntries().get(c, pk));
+    }
+
+    /**
+     * Returns the cached state of the entity with the given {@link Class} and integral primary key.
+     *
+     * @param c  the entity {@code Class}
+     * @param pk the entity's primary key
+     * @return the entity state or {@code null} if it is not cached or has expired
+     */
+    public Object get(Class<?> c, long pk) {
+        return unwrap(c, pk, (Entry) getEntries().get(c, pk));
+    }
+
+    /**
+     * Stores the state of the entity with the given {@link Class} and primary key.
+     *
+     * @param c     the entity {@code Class}
+     * @param pk    the entity's primary key
+     * @param state the entity state to cache
+     */
+    public void put(Class<?> c, Serializable pk, Object state) {
+        getEntries().put(c, pk, new Entry(state, System.currentTimeMillis()));
+    }
+
+    /**
+     * Removes the state of the entity with the given {@link Class} and primary key.
+     *
+     * @param c  the entity {@code Class}
+     * @param pk the entity's primary key
+     */
+    public void evict(Class<?> c, Serializable pk) {
+        getEntries().remove(c, pk);
+    }
+
+    /**
+     * Removes the state of every entity of the given {@link Class}.
+     *
+     * @param c the entity {@code Class}
+     */
+    public void evict(Class<?> c) {
+        getEntries().clear(c);
+    }
+
+    /**
+     * Removes every entry from the cache. Statistics are retained.
+     */
+    public void clear() {
+        getEntries().clear();
+    }
+
+    /**
+     * Returns the number of entries in the cache, including any which have expired but have not been looked up since.
+     *
+     * @return number of entries
+     */
+    public int size() {
+        return getEntries().size();
+    }
+
+    /**
+     * Returns the number of lookups which found a valid entry.
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * Returns the number of lookups which found no entry or an expired one.
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * Returns the fraction of lookups which found a valid entry.
+     *
+     * @return hit ratio between 0 and 1, or 0 if there have been no lookups
+     */
+    public double getHitRatio() {
+        long hits = mHitCount.get();
+        long total = hits + mMissCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Resets the hit and miss counts.
+     */
+    public void resetStatistics() {
+        mHitCount.set(0);
+        mMissCount.set(0);
+    }
+
+    /**
+     * Returns the maximum number of entries stored per entity {@link Class}.
+     *
+     * @return capacity
+     */
+    public synchronized int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Sets the maximum number of entries stored per entity {@link Class}.
+     *
+     * @param capacity the capacity
+     */
+    public synchronized void setCapacity(int capacity) {
+        mCapacity = capacity;
+        if (mEntries != null)
+            mEntries.setDefaultCapacity(capacity);
+    }
+
+    /**
+     * Returns the number of milliseconds an entry is valid for.
+     *
+     * @return time to live, or 0 if entries do not expire
+     */
+    public synchronized long getTimeToLive() {
+        return mTimeToLive;
+    }
+
+    /**
+     * Sets the number of milliseconds an entry is valid for.
+     *
+     * @param timeToLive the time to live, or 0 if entries do not expire
+     */
+    public synchronized void setTimeToLive(long timeToLive) {
+        mTimeToLive = timeToLive;
+    }
+
+    private Object unwrap(Class<?> c, Serializable pk, Entry entry) {
+        if (entry == null) {
+            mMissCount.incrementAndGet();
+            return null;
+        }
+        long timeToLive = getTimeToLive();
+        if (timeToLive > 0 && System.currentTimeMillis() - entry.mCreated > timeToLive) {
+            getEntries().remove(c, pk);
+            mMissCount.incrementAndGet();
+            return null;
+        }
+        mHitCount.incrementAndGet();
+        return entry.mState;
+    }
+
+    // Created on first use, since the capacity may be injected after construction
+    private synchronized IdentityMap getEntries() {
+        if (mEntries == null)
+            mEntries = new IdentityMap(mCapacity);
+        return mEntries;
+    }
+
+    private static final class Entry {
+
+        private final Object mState;
+        private final long mCreated;
+
+        Entry(Object state, long created) {
+            mState = state;
+            mCreated = created;
+        }
+
+    }
+
+}
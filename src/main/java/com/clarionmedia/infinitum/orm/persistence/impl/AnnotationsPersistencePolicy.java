@@ -44,6 +44,7 @@ import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
 import com.clarionmedia.infinitum.orm.relationship.ManyToManyRelationship;
 import com.clarionmedia.infinitum.orm.relationship.ManyToOneRelationship;
 import com.clarionmedia.infinitum.orm.relationship.ModelRelationship;
+import com.clarionmedia.infinitum.orm.relationship.ModelRelationship.RelationType;
 import com.clarionmedia.infinitum.orm.relationship.OneToManyRelationship;
 import com.clarionmedia.infinitum.orm.relationship.OneToOneRelationship;
 
@@ -64,18 +65,22 @@ public class AnnotationsPersistencePolicy extends PersistencePolicy {
 
 	@Override
 	public boolean isPersistent(Class<?> clazz) {
+		Boolean cached = mClassPersistenceCache.get(clazz);
+		if (cached != null)
+			return cached;
 		Entity entity = clazz.getAnnotation(Entity.class);
-		if (entity == null || entity.mode() == PersistenceMode.Persistent)
-			return true;
-		else
-			return false;
+		boolean ret = entity == null || entity.mode() == PersistenceMode.Persistent;
+		mClassPersistenceCache.put(clazz, ret);
+		return ret;
 	}
 
 	@Override
 	public String getModelTableName(Class<?> c) {
+		String ret = mTableNameCache.get(c);
+		if (ret != null)
+			return ret;
 		if (!isPersistent(c) || !mTypePolicy.isDomainModel(c))
 			throw new IllegalArgumentException("Class '" + c.getName() + "' is transient.");
-		String ret;
 		Table table = c.getAnnotation(Table.class);
 		if (table == null) {
 			if (mTypePolicy.isDomainProxy(c)) {
@@ -87,6 +92,7 @@ public class AnnotationsPersistencePolicy extends PersistencePolicy {
 		} else {
 			ret = table.value();
 		}
+		mTableNameCache.put(c, ret);
 		return ret;
 	}
 
@@ -212,62 +218,91 @@ public class AnnotationsPersistencePolicy extends PersistencePolicy {
 		if (!isPersistent(c))
 			throw new IllegalArgumentException("Class '" + c.getName() + "' is transient.");
 		Set<ManyToManyRelationship> ret = new HashSet<ManyToManyRelationship>();
+		// Relationships declared by c are always added, since getRelationship may have cached only some of them
+		for (Field f : getPersistentFields(c)) {
+			if (isManyToManyRelationship(f))
+				ret.add((ManyToManyRelationship) getRelationship(f));
+		}
 		for (ManyToManyRelationship r : mManyToManyCache.values()) {
 			if (r.contains(c))
 				ret.add(r);
 		}
-		if (ret.size() > 0)
-			return ret;
-		List<Field> fields = getPersistentFields(c);
-		for (Field f : fields) {
-			if (!f.isAnnotationPresent(ManyToMany.class))
-				continue;
-			ManyToManyRelationship rel = new ManyToManyRelationship(f);
-			mManyToManyCache.put(f, rel);
-			ret.add(rel);
-		}
 		return ret;
 	}
 
 	@Override
 	public Cascade getCascadeMode(Class<?> c) {
-		if (!c.isAnnotationPresent(Entity.class))
-			return Cascade.ALL;
+		Cascade ret = mCascadeCache.get(c);
+		if (ret != null)
+			return ret;
 		Entity entity = c.getAnnotation(Entity.class);
-		return entity.cascade();
+		ret = entity == null ? Cascade.ALL : entity.cascade();
+		mCascadeCache.put(c, ret);
+		return ret;
 	}
 
 	@Override
 	public boolean isRelationship(Field f) {
-		return f.isAnnotationPresent(ManyToMany.class) || f.isAnnotationPresent(ManyToOne.class) || f.isAnnotationPresent(OneToMany.class)
-				|| f.isAnnotationPresent(OneToOne.class);
+		Boolean cached = mRelationshipFieldCache.get(f);
+		if (cached != null)
+			return cached;
+		boolean ret = f.isAnnotationPresent(ManyToMany.class) || f.isAnnotationPresent(ManyToOne.class)
+				|| f.isAnnotationPresent(OneToMany.class) || f.isAnnotationPresent(OneToOne.class);
+		mRelationshipFieldCache.put(f, ret);
+		return ret;
 	}
 
 	@Override
 	public boolean isManyToManyRelationship(Field f) {
-		return f.isAnnotationPresent(ManyToMany.class);
+		return isRelationship(f) && getRelationship(f).getRelationType() == RelationType.ManyToMany;
 	}
 
 	@Override
 	public boolean isOneToOneRelationship(Field f) {
-		return f.isAnnotationPresent(OneToOne.class);
+		return isRelationship(f) && getRelationship(f).getRelationType() == RelationType.OneToOne;
 	}
 
 	@Override
 	public boolean isToOneRelationship(Field f) {
-		return f.isAnnotationPresent(ManyToOne.class) || f.isAnnotationPresent(OneToOne.class);
+		if (!isRelationship(f))
+			return false;
+		RelationType type = getRelationship(f).getRelationType();
+		return type == RelationType.ManyToOne || type == RelationType.OneToOne;
 	}
 
 	@Override
 	public ModelRelationship getRelationship(Field f) {
-		if (f.isAnnotationPresent(ManyToMany.class))
-			return new ManyToManyRelationship(f);
-		if (f.isAnnotationPresent(ManyToOne.class))
-			return new ManyToOneRelationship(f);
-		if (f.isAnnotationPresent(OneToMany.class))
-			return new OneToManyRelationship(f);
-		if (f.isAnnotationPresent(OneToOne.class))
-			return new OneToOneRelationship(f);
+		if (!isRelationship(f))
+			return null;
+		ModelRelationship ret = mManyToManyCache.get(f);
+		if (ret == null)
+			ret = mManyToOneCache.get(f);
+		if (ret == null)
+			ret = mOneToManyCache.get(f);
+		if (ret == null)
+			ret = mOneToOneCache.get(f);
+		if (ret != null)
+			return ret;
+		if (f.isAnnotationPresent(ManyToMany.class)) {
+			ManyToManyRelationship rel = new ManyToManyRelationship(f);
+			mManyToManyCache.put(f, rel);
+			return rel;
+		}
+		if (f.isAnnotationPresent(ManyToOne.class)) {
+			ManyToOneRelationship rel = new ManyToOneRelationship(f);
+			mManyToOneCache.put(f, rel);
+			return rel;
+		}
+		if (f.isAnnotationPresent(OneToMany.class)) {
+			OneToManyRelationship rel = new OneToManyRelationship(f);
+			mOneToManyCache.put(f, rel);
+			return rel;
+		}
+		if (f.isAnnotationPresent(OneToOne.class)) {
+			OneToOneRelationship rel = new OneToOneRelationship(f);
+			mOneToOneCache.put(f, rel);
+			return rel;
+		}
 		return null;
 	}
 
@@ -317,6 +352,17 @@ public class AnnotationsPersistencePolicy extends PersistencePolicy {
 		return ret;
 	}
 
+	@Override
+	public boolean isCacheable(Class<?> c) {
+		Boolean cached = mCacheableCache.get(c);
+		if (cached != null)
+			return cached;
+		Entity entity = c.getAnnotation(Entity.class);
+		boolean ret = entity != null && entity.cacheable();
+		mCacheableCache.put(c, ret);
+		return ret;
+	}
+
 	@Override
 	public String getRestEndpoint(Class<?> c) throws IllegalArgumentException {
 		if (!isPersistent(c) || !mTypePolicy.isDomainModel(c))
@@ -336,6 +382,16 @@ public class AnnotationsPersistencePolicy extends PersistencePolicy {
 		return ret;
 	}
 
+	@Override
+	public String getRestBulkEndpoint(Class<?> c) throws IllegalArgumentException {
+		if (!isPersistent(c) || !mTypePolicy.isDomainModel(c))
+			throw new IllegalArgumentException();
+		if (!c.isAnnotationPresent(Entity.class))
+			return null;
+		String ret = c.getAnnotation(Entity.class).bulkEndpoint();
+		return ret.equals("") ? null : ret;
+	}
+
 	@Override
 	public String getEndpointFieldName(Field f) throws IllegalArgumentException {
 		if (!isPersistent(f.getDeclaringClass()) || !mTypePolicy.isDomainModel(f.getDeclaringClass()))
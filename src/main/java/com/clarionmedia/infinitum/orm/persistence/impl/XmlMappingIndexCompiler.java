@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.persistence.impl;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * Build-time tool which compiles XML map files into the binary mapping index
+ * read by {@link XmlPersistencePolicy}, so map files do not need to be parsed
+ * when the application runs. It is run with the output file followed by the
+ * map files or directories of map files to compile, for example:
+ * </p>
+ *
+ * <pre>
+ * java -cp infinitum-orm.jar:simple-xml.jar \
+ *     com.clarionmedia.infinitum.orm.persistence.impl.XmlMappingIndexCompiler \
+ *     res/raw/infinitum_mapping_index mappings/
+ * </pre>
+ * <p>
+ * Every {@code .xml} file in a directory is compiled, so map files should be
+ * kept apart from other XML resources or passed individually. The index must
+ * be recompiled whenever a map file changes, since it takes precedence over
+ * them.
+ * </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 10/17/26
+ * @since 1.1.0
+ */
+public class XmlMappingIndexCompiler {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: XmlMappingIndexCompiler <index file> <map file or directory>...");
+			System.exit(1);
+		}
+		List<File> mapFiles = new ArrayList<File>();
+		for (int i = 1; i < args.length; i++) {
+			File file = new File(args[i]);
+			if (file.isDirectory()) {
+				File[] children = file.listFiles(new FileFilter() {
+					@Override
+					public boolean accept(File child) {
+						return child.isFile() && child.getName().endsWith(".xml");
+					}
+				});
+				if (children != null) {
+					// Sorted so the same map files always compile to the same index
+					Arrays.sort(children);
+					mapFiles.addAll(Arrays.asList(children));
+				}
+			} else {
+				mapFiles.add(file);
+			}
+		}
+		OutputStream out = new FileOutputStream(args[0]);
+		try {
+			XmlPersistencePolicy.compileIndex(mapFiles.toArray(new File[mapFiles.size()]), out);
+		} finally {
+			out.close();
+		}
+		System.out.println("Compiled " + mapFiles.size() + " map files into " + args[0]);
+	}
+
+}
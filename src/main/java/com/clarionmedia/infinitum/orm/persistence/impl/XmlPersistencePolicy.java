@@ -16,7 +16,15 @@
 
 package com.clarionmedia.infinitum.orm.persistence.impl;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -24,14 +32,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
 import org.simpleframework.xml.ElementList;
 import org.simpleframework.xml.Root;
-import org.simpleframework.xml.Serializer;
-import org.simpleframework.xml.core.Persister;
 import android.content.Context;
 import android.content.res.Resources;
 import com.clarionmedia.infinitum.context.InfinitumContext;
@@ -40,6 +46,7 @@ import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
 import com.clarionmedia.infinitum.internal.StringUtil;
 import com.clarionmedia.infinitum.orm.exception.InvalidMapFileException;
 import com.clarionmedia.infinitum.orm.exception.ModelConfigurationException;
+import com.clarionmedia.infinitum.orm.internal.XmlSerializationEngine;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
 import com.clarionmedia.infinitum.orm.relationship.ManyToManyRelationship;
 import com.clarionmedia.infinitum.orm.relationship.ManyToOneRelationship;
@@ -55,6 +62,13 @@ import com.clarionmedia.infinitum.reflection.ClassReflector;
  * {@code imf.xml} file associated with it and placed in res/raw. If an entity
  * has no such file, it is marked as transient.
  * </p>
+ * <p>
+ * Parsing map files at runtime can be avoided by compiling them into a binary
+ * index with {@link XmlMappingIndexCompiler} and placing it in res/raw as
+ * {@code infinitum_mapping_index}. If present, the index is read in full the
+ * first time a mapping is needed, and map files are only parsed for classes
+ * missing from it.
+ * </p>
  * 
  * @author Tyler Treat
  * @version 1.0 05/09/12
@@ -69,10 +83,20 @@ public class XmlPersistencePolicy extends PersistencePolicy {
 	@Autowired
 	private ClassReflector mClassReflector;
 
+	/**
+	 * The name of the raw resource the compiled mapping index is read from.
+	 */
+	public static final String INDEX_RESOURCE = "infinitum_mapping_index";
+
+	// Identifies the index format, so an index from an incompatible version is ignored
+	private static final int INDEX_MAGIC = 0x494d4958;
+	private static final int INDEX_VERSION = 1;
+
 	private Map<Class<?>, EntityMapping> mMappingCache;
+	private Map<String, EntityMapping> mMappingIndex;
 
 	public XmlPersistencePolicy() {
-		mMappingCache = new HashMap<Class<?>, EntityMapping>();
+		mMappingCache = new ConcurrentHashMap<Class<?>, EntityMapping>();
 	}
 
 	@Override
@@ -278,6 +302,14 @@ public class XmlPersistencePolicy extends PersistencePolicy {
 		return mapping.isLazy();
 	}
 
+	@Override
+	public boolean isCacheable(Class<?> c) {
+		if (!isPersistent(c) || !mTypePolicy.isDomainModel(c))
+			throw new IllegalArgumentException("Class '" + c.getName() + "' is transient.");
+		EntityMapping mapping = loadEntityMapping(c);
+		return mapping.isCacheable();
+	}
+
 	@Override
 	public String getRestEndpoint(Class<?> c) throws IllegalArgumentException {
 		if (!isPersistent(c) || !mTypePolicy.isDomainModel(c))
@@ -286,6 +318,14 @@ public class XmlPersistencePolicy extends PersistencePolicy {
 		return mapping.getRest();
 	}
 
+	@Override
+	public String getRestBulkEndpoint(Class<?> c) throws IllegalArgumentException {
+		if (!isPersistent(c) || !mTypePolicy.isDomainModel(c))
+			throw new IllegalArgumentException("Class '" + c.getName() + "' is transient.");
+		EntityMapping mapping = loadEntityMapping(c);
+		return mapping.getBulkRest();
+	}
+
 	@Override
 	public String getEndpointFieldName(Field f) throws IllegalArgumentException {
 		EntityMapping mapping = loadEntityMapping(f.getDeclaringClass());
@@ -296,24 +336,248 @@ public class XmlPersistencePolicy extends PersistencePolicy {
 	private EntityMapping loadEntityMapping(Class<?> clazz) {
 		if (mMappingCache.containsKey(clazz))
 			return mMappingCache.get(clazz);
+		String name = clazz.getSimpleName().toLowerCase(Locale.getDefault());
+		EntityMapping indexed = getMappingIndex().get(name);
+		if (indexed != null) {
+			mMappingCache.put(clazz, indexed);
+			return indexed;
+		}
 		Context context = mContext.getAndroidContext();
 		Resources res = context.getResources();
-		int id = res.getIdentifier(clazz.getSimpleName().toLowerCase(Locale.getDefault()), "raw", context.getPackageName());
+		int id = res.getIdentifier(name, "raw", context.getPackageName());
 		if (id == 0)
 			return null;
-		Resources resources = context.getResources();
-		Serializer serializer = new Persister();
+		InputStream stream = res.openRawResource(id);
+		EntityMapping ret;
 		try {
-			InputStream stream = resources.openRawResource(id);
-			String xml = new Scanner(stream).useDelimiter("\\A").next();
-			EntityMapping ret = serializer.read(EntityMapping.class, xml);
-			if (ret == null)
-				throw new InfinitumRuntimeException("Unable to read map file for class '" + clazz.getName() + "'.");
-			mMappingCache.put(clazz, ret);
-			return ret;
+			// Parsed as it is read rather than copied into a String first
+			ret = XmlSerializationEngine.read(EntityMapping.class, stream);
 		} catch (Exception e) {
 			throw new InfinitumRuntimeException("Unable to read map file for class '" + clazz.getName() + "'.", e);
+		} finally {
+			try {
+				stream.close();
+			} catch (IOException e) {
+				// Nothing left to read from it
+			}
+		}
+		if (ret == null)
+			throw new InfinitumRuntimeException("Unable to read map file for class '" + clazz.getName() + "'.");
+		mMappingCache.put(clazz, ret);
+		return ret;
+	}
+
+	/**
+	 * Compiles the given map files into a binary index which
+	 * {@code XmlPersistencePolicy} reads in a single pass instead of parsing
+	 * each map file. Each mapping is indexed by the name of its map file
+	 * without the extension, which is its raw resource name.
+	 * 
+	 * @param mapFiles
+	 *            the map files to compile
+	 * @param out
+	 *            the {@link OutputStream} to write the index to, which is left
+	 *            open
+	 * @throws IOException
+	 *             if a map file cannot be read or the index cannot be written
+	 */
+	public static void compileIndex(File[] mapFiles, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+		data.writeInt(INDEX_MAGIC);
+		data.writeInt(INDEX_VERSION);
+		data.writeInt(mapFiles.length);
+		for (File file : mapFiles) {
+			EntityMapping mapping;
+			InputStream in = new FileInputStream(file);
+			try {
+				mapping = XmlSerializationEngine.read(EntityMapping.class, in);
+			} catch (IOException e) {
+				throw e;
+			} catch (Exception e) {
+				IOException ex = new IOException("Unable to read map file '" + file + "'.");
+				ex.initCause(e);
+				throw ex;
+			} finally {
+				in.close();
+			}
+			String name = file.getName();
+			int extension = name.lastIndexOf('.');
+			data.writeUTF(extension < 0 ? name : name.substring(0, extension));
+			writeMapping(data, mapping);
 		}
+		data.flush();
+	}
+
+	// Read once, since resolving the resource is as costly as reading it
+	private synchronized Map<String, EntityMapping> getMappingIndex() {
+		if (mMappingIndex != null)
+			return mMappingIndex;
+		mMappingIndex = new HashMap<String, EntityMapping>();
+		Context context = mContext.getAndroidContext();
+		Resources res = context.getResources();
+		int id = res.getIdentifier(INDEX_RESOURCE, "raw", context.getPackageName());
+		if (id == 0)
+			return mMappingIndex;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(res.openRawResource(id)));
+		try {
+			if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+				mLogger.warn("Ignoring mapping index from an incompatible version, map files will be parsed instead");
+				return mMappingIndex;
+			}
+			Map<String, EntityMapping> index = new HashMap<String, EntityMapping>();
+			int count = in.readInt();
+			for (int i = 0; i < count; i++)
+				index.put(in.readUTF(), readMapping(in));
+			mMappingIndex = index;
+		} catch (IOException e) {
+			mLogger.error("Unable to read mapping index, map files will be parsed instead", e);
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+				// Nothing left to read from it
+			}
+		}
+		return mMappingIndex;
+	}
+
+	private static void writeMapping(DataOutputStream out, EntityMapping mapping) throws IOException {
+		EntityMapping.ClassMapping c = mapping.mClassMapping;
+		out.writeUTF(c.mName);
+		writeNullable(out, c.mTable);
+		out.writeBoolean(c.mLazy);
+		writeNullable(out, c.mCascade);
+		out.writeBoolean(c.mCacheable);
+		writeNullable(out, c.mRest);
+		writeNullable(out, c.mBulkRest);
+		writeProperty(out, c.mPrimaryKey);
+		out.writeBoolean(c.mPrimaryKey.mAutoincrement);
+		List<Property> properties = mapping.getProperties();
+		out.writeInt(properties.size());
+		for (Property property : properties)
+			writeProperty(out, property);
+		List<ManyToMany> manyToMany = mapping.getManyToMany();
+		out.writeInt(manyToMany.size());
+		for (ManyToMany mtm : manyToMany) {
+			out.writeUTF(mtm.mName);
+			out.writeUTF(mtm.mClass);
+			out.writeUTF(mtm.mForeignField);
+			out.writeUTF(mtm.mKeyField);
+			out.writeUTF(mtm.mTable);
+		}
+		List<ManyToOne> manyToOne = mapping.getManyToOne();
+		out.writeInt(manyToOne.size());
+		for (ManyToOne mto : manyToOne)
+			writeRelationship(out, mto.mName, mto.mField, mto.mClass, mto.mColumn);
+		List<OneToMany> oneToMany = mapping.getOneToMany();
+		out.writeInt(oneToMany.size());
+		for (OneToMany otm : oneToMany)
+			writeRelationship(out, otm.mName, otm.mField, otm.mClass, otm.mColumn);
+		List<OneToOne> oneToOne = mapping.getOneToOne();
+		out.writeInt(oneToOne.size());
+		for (OneToOne oto : oneToOne)
+			writeRelationship(out, oto.mName, oto.mField, oto.mClass, oto.mColumn);
+	}
+
+	private static EntityMapping readMapping(DataInputStream in) throws IOException {
+		EntityMapping.ClassMapping c = new EntityMapping.ClassMapping();
+		c.mName = in.readUTF();
+		c.mTable = readNullable(in);
+		c.mLazy = in.readBoolean();
+		c.mCascade = readNullable(in);
+		c.mCacheable = in.readBoolean();
+		c.mRest = readNullable(in);
+		c.mBulkRest = readNullable(in);
+		c.mPrimaryKey = new PrimaryKey();
+		readProperty(in, c.mPrimaryKey);
+		c.mPrimaryKey.mAutoincrement = in.readBoolean();
+		int count = in.readInt();
+		c.mProperties = new ArrayList<Property>(count);
+		for (int i = 0; i < count; i++) {
+			Property property = new Property();
+			readProperty(in, property);
+			c.mProperties.add(property);
+		}
+		count = in.readInt();
+		c.mManyToMany = new ArrayList<ManyToMany>(count);
+		for (int i = 0; i < count; i++) {
+			ManyToMany mtm = new ManyToMany();
+			mtm.mName = in.readUTF();
+			mtm.mClass = in.readUTF();
+			mtm.mForeignField = in.readUTF();
+			mtm.mKeyField = in.readUTF();
+			mtm.mTable = in.readUTF();
+			c.mManyToMany.add(mtm);
+		}
+		count = in.readInt();
+		c.mManyToOne = new ArrayList<ManyToOne>(count);
+		for (int i = 0; i < count; i++) {
+			ManyToOne mto = new ManyToOne();
+			mto.mName = in.readUTF();
+			mto.mField = in.readUTF();
+			mto.mClass = in.readUTF();
+			mto.mColumn = in.readUTF();
+			c.mManyToOne.add(mto);
+		}
+		count = in.readInt();
+		c.mOneToMany = new ArrayList<OneToMany>(count);
+		for (int i = 0; i < count; i++) {
+			OneToMany otm = new OneToMany();
+			otm.mName = in.readUTF();
+			otm.mField = in.readUTF();
+			otm.mClass = in.readUTF();
+			otm.mColumn = in.readUTF();
+			c.mOneToMany.add(otm);
+		}
+		count = in.readInt();
+		c.mOneToOne = new ArrayList<OneToOne>(count);
+		for (int i = 0; i < count; i++) {
+			OneToOne oto = new OneToOne();
+			oto.mName = in.readUTF();
+			oto.mField = in.readUTF();
+			oto.mClass = in.readUTF();
+			oto.mColumn = in.readUTF();
+			c.mOneToOne.add(oto);
+		}
+		EntityMapping ret = new EntityMapping();
+		ret.mClassMapping = c;
+		return ret;
+	}
+
+	private static void writeProperty(DataOutputStream out, Property property) throws IOException {
+		out.writeUTF(property.mName);
+		writeNullable(out, property.mColumn);
+		out.writeUTF(property.mType);
+		out.writeBoolean(property.mNotNull);
+		out.writeBoolean(property.mUnique);
+		writeNullable(out, property.mRest);
+	}
+
+	private static void readProperty(DataInputStream in, Property property) throws IOException {
+		property.mName = in.readUTF();
+		property.mColumn = readNullable(in);
+		property.mType = in.readUTF();
+		property.mNotNull = in.readBoolean();
+		property.mUnique = in.readBoolean();
+		property.mRest = readNullable(in);
+	}
+
+	private static void writeRelationship(DataOutputStream out, String name, String field, String clazz, String column)
+			throws IOException {
+		out.writeUTF(name);
+		out.writeUTF(field);
+		out.writeUTF(clazz);
+		out.writeUTF(column);
+	}
+
+	private static void writeNullable(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null)
+			out.writeUTF(value);
+	}
+
+	private static String readNullable(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
 	}
 
 	private Property getProperty(EntityMapping mapping, Field field) {
@@ -375,6 +639,10 @@ public class XmlPersistencePolicy extends PersistencePolicy {
 			return mClassMapping.mLazy;
 		}
 
+		public boolean isCacheable() {
+			return mClassMapping.mCacheable;
+		}
+
 		public Cascade getCascade() {
 			String cascade = mClassMapping.mCascade;
 			if (cascade == null)
@@ -392,6 +660,10 @@ public class XmlPersistencePolicy extends PersistencePolicy {
 			return mClassMapping.mRest;
 		}
 
+		public String getBulkRest() {
+			return mClassMapping.mBulkRest;
+		}
+
 		public PrimaryKey getPrimaryKey() {
 			return mClassMapping.mPrimaryKey;
 		}
@@ -441,9 +713,15 @@ public class XmlPersistencePolicy extends PersistencePolicy {
 			@Attribute(name = "cascade", required = false)
 			private String mCascade;
 
+			@Attribute(name = "cacheable", required = false)
+			private boolean mCacheable;
+
 			@Attribute(name = "rest", required = false)
 			private String mRest;
 
+			@Attribute(name = "bulk-rest", required = false)
+			private String mBulkRest;
+
 			@Element(name = "primary-key")
 			private PrimaryKey mPrimaryKey;
 
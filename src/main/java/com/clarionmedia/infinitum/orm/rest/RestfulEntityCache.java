@@ -0,0 +1,402 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.rest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.clarionmedia.infinitum.logging.Logger;
+import com.clarionmedia.infinitum.logging.impl.SmartLogger;
+
+/**
+ * <p>
+ * Cache of responses retrieved from a RESTful web service, keyed by the URI
+ * they were retrieved from, which lets a {@code RestfulSession} make its
+ * requests conditional. Each entry holds the {@code ETag} and
+ * {@code Last-Modified} validators of the response, so the entity is only
+ * sent again if it has changed, and the body of the response, so a
+ * {@code 304 Not Modified} response can be answered without it. Unlike the
+ * {@code Session} cache, it is shared by every {@code RestfulSession} and is
+ * not cleared when one is closed.
+ * </p>
+ * <p>
+ * Decoded entities are not cached, since they would be shared by every caller
+ * and modifying one would modify the cached copy. Each {@code 304} response
+ * instead decodes a new entity from the cached body, which still saves
+ * transferring it.
+ * </p>
+ * <p>
+ * At most {@link #getCapacity()} entries are kept in memory in
+ * least-recently-used order. If a directory is set, each entry is also written
+ * to it, bounded by the same capacity, so requests stay conditional across
+ * process restarts.
+ * </p>
+ * <p>
+ * {@code RestfulEntityCache} is threadsafe. Files are read and written
+ * without holding its lock, so disk access by one thread does not block
+ * lookups by others.
+ * </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 10/17/26
+ * @since 1.1.0
+ */
+public class RestfulEntityCache {
+
+	/**
+	 * The default number of entries stored.
+	 */
+	public static final int DEFAULT_CAPACITY = 200;
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private final Logger mLogger;
+	private int mCapacity;
+	private File mDirectory;
+	private Map<String, Entry> mEntries;
+
+	/**
+	 * Constructs a new {@code RestfulEntityCache} with the default capacity,
+	 * which is held in memory only until a directory is set.
+	 */
+	public RestfulEntityCache() {
+		this(DEFAULT_CAPACITY, null);
+	}
+
+	/**
+	 * Constructs a new {@code RestfulEntityCache}.
+	 *
+	 * @param capacity
+	 *            the maximum number of entries stored
+	 * @param directory
+	 *            the directory responses are written to, or {@code null} to
+	 *            hold entries in memory only
+	 */
+	public RestfulEntityCache(int capacity, File directory) {
+		mLogger = new SmartLogger(getClass().getSimpleName());
+		mCapacity = capacity;
+		mDirectory = directory;
+	}
+
+	/**
+	 * Returns the cached entry for the given URI.
+	 *
+	 * @param uri
+	 *            the URI the entity was retrieved from
+	 * @return {@link Entry} or {@code null} if there is none
+	 */
+	public Entry get(String uri) {
+		File directory;
+		synchronized (this) {
+			Entry ret = getEntries().get(uri);
+			if (ret != null || mDirectory == null)
+				return ret;
+			directory = mDirectory;
+		}
+		Entry ret = read(directory, uri);
+		if (ret == null)
+			return null;
+		synchronized (this) {
+			// Another thread may have stored a newer response while the file was read
+			Entry current = getEntries().get(uri);
+			if (current != null)
+				return current;
+			getEntries().put(uri, ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * Stores the given response. Responses without an {@code ETag} or
+	 * {@code Last-Modified} validator cannot be revalidated, so they replace
+	 * any existing entry with nothing.
+	 *
+	 * @param uri
+	 *            the URI the entity was retrieved from
+	 * @param eTag
+	 *            the {@code ETag} of the response, or {@code null}
+	 * @param lastModified
+	 *            the {@code Last-Modified} date of the response, or
+	 *            {@code null}
+	 * @param body
+	 *            the body of the response, which is not copied and should
+	 *            not be modified afterwards
+	 */
+	public void put(String uri, String eTag, String lastModified, byte[] body) {
+		if (eTag == null && lastModified == null) {
+			evict(uri);
+			return;
+		}
+		Entry entry = new Entry(eTag, lastModified, body);
+		File directory;
+		synchronized (this) {
+			getEntries().put(uri, entry);
+			directory = mDirectory;
+		}
+		if (directory != null)
+			write(directory, uri, entry);
+	}
+
+	/**
+	 * Removes the entry for the given URI.
+	 *
+	 * @param uri
+	 *            the URI the entity was retrieved from
+	 */
+	public void evict(String uri) {
+		File directory;
+		synchronized (this) {
+			getEntries().remove(uri);
+			directory = mDirectory;
+		}
+		if (directory != null)
+			getFile(directory, uri).delete();
+	}
+
+	/**
+	 * Removes every entry.
+	 */
+	public void clear() {
+		File directory;
+		synchronized (this) {
+			getEntries().clear();
+			directory = mDirectory;
+		}
+		if (directory == null)
+			return;
+		File[] files = directory.listFiles();
+		if (files == null)
+			return;
+		for (File file : files)
+			file.delete();
+	}
+
+	/**
+	 * Returns the maximum number of entries stored.
+	 *
+	 * @return capacity
+	 */
+	public synchronized int getCapacity() {
+		return mCapacity;
+	}
+
+	/**
+	 * Sets the maximum number of entries stored. Entries stored in memory are
+	 * discarded.
+	 *
+	 * @param capacity
+	 *            the capacity
+	 */
+	public synchronized void setCapacity(int capacity) {
+		mCapacity = capacity;
+		mEntries = null;
+	}
+
+	/**
+	 * Returns the directory responses are written to.
+	 *
+	 * @return directory or {@code null} if entries are held in memory only
+	 */
+	public synchronized File getDirectory() {
+		return mDirectory;
+	}
+
+	/**
+	 * Sets the directory responses are written to.
+	 *
+	 * @param directory
+	 *            the directory, or {@code null} to hold entries in memory only
+	 */
+	public synchronized void setDirectory(File directory) {
+		mDirectory = directory;
+	}
+
+	// Created lazily since the capacity is set after construction when this is a bean
+	private Map<String, Entry> getEntries() {
+		if (mEntries == null) {
+			mEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+					return size() > mCapacity;
+				}
+			};
+		}
+		return mEntries;
+	}
+
+	private static File getFile(File directory, String uri) {
+		return new File(directory, Integer.toHexString(uri.hashCode()));
+	}
+
+	private Entry read(File directory, String uri) {
+		File file = getFile(directory, uri);
+		if (!file.exists())
+			return null;
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			// Different URIs can share a file name, so the URI is stored to tell them apart
+			if (!uri.equals(in.readUTF()))
+				return null;
+			String eTag = in.readBoolean() ? in.readUTF() : null;
+			String lastModified = in.readBoolean() ? in.readUTF() : null;
+			byte[] body = new byte[in.readInt()];
+			in.readFully(body);
+			return new Entry(eTag, lastModified, body);
+		} catch (IOException e) {
+			mLogger.error("Unable to read cached response for " + uri, e);
+			file.delete();
+			return null;
+		} finally {
+			close(in);
+		}
+	}
+
+	private void write(File directory, String uri, Entry entry) {
+		if (!directory.exists() && !directory.mkdirs() && !directory.exists()) {
+			mLogger.error("Unable to create cache directory " + directory);
+			return;
+		}
+		File file = getFile(directory, uri);
+		boolean added = !file.exists();
+		File temp = null;
+		DataOutputStream out = null;
+		boolean written = false;
+		try {
+			// Written to a temporary file and renamed, so concurrent writes of a URI never interleave
+			temp = File.createTempFile(file.getName(), TEMP_SUFFIX, directory);
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			out.writeUTF(uri);
+			writeNullable(out, entry.mETag);
+			writeNullable(out, entry.mLastModified);
+			out.writeInt(entry.mBody.length);
+			out.write(entry.mBody);
+			out.flush();
+			written = true;
+		} catch (IOException e) {
+			mLogger.error("Unable to write cached response for " + uri, e);
+		} finally {
+			close(out);
+		}
+		if (written && !temp.renameTo(file)) {
+			// Renaming does not replace an existing file everywhere
+			file.delete();
+			written = temp.renameTo(file);
+		}
+		if (!written) {
+			if (temp != null)
+				temp.delete();
+		} else if (added) {
+			trim(directory);
+		}
+	}
+
+	// Deletes the least recently written files beyond the capacity
+	private void trim(File directory) {
+		int capacity;
+		synchronized (this) {
+			capacity = mCapacity;
+		}
+		File[] files = directory.listFiles();
+		if (files == null || files.length <= capacity)
+			return;
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File lhs, File rhs) {
+				long diff = lhs.lastModified() - rhs.lastModified();
+				return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+			}
+		});
+		for (int i = 0; i < files.length - capacity; i++)
+			files[i].delete();
+	}
+
+	private static void writeNullable(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null)
+			out.writeUTF(value);
+	}
+
+	private static void close(Closeable closeable) {
+		if (closeable == null)
+			return;
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			// Nothing left to do with it
+		}
+	}
+
+	/**
+	 * A cached response.
+	 */
+	public static final class Entry {
+
+		private final String mETag;
+		private final String mLastModified;
+		private final byte[] mBody;
+
+		private Entry(String eTag, String lastModified, byte[] body) {
+			mETag = eTag;
+			mLastModified = lastModified;
+			mBody = body;
+		}
+
+		/**
+		 * Returns the {@code ETag} of the response.
+		 *
+		 * @return {@code ETag} or {@code null} if the response had none
+		 */
+		public String getETag() {
+			return mETag;
+		}
+
+		/**
+		 * Returns the {@code Last-Modified} date of the response.
+		 *
+		 * @return {@code Last-Modified} date or {@code null} if the response
+		 *         had none
+		 */
+		public String getLastModified() {
+			return mLastModified;
+		}
+
+		/**
+		 * Returns the body of the response, which should not be modified.
+		 *
+		 * @return response body
+		 */
+		public byte[] getBody() {
+			return mBody;
+		}
+
+	}
+
+}
@@ -17,6 +17,7 @@
 package com.clarionmedia.infinitum.orm.rest;
 
 import java.lang.reflect.Field;
+import java.util.Collection;
 
 import com.clarionmedia.infinitum.orm.ObjectMapper;
 import com.clarionmedia.infinitum.orm.exception.InvalidMappingException;
@@ -38,6 +39,26 @@ public abstract class RestfulMapper extends ObjectMapper {
 	public abstract RestfulModelMap mapModel(Object model)
 			throws InvalidMappingException, ModelConfigurationException;
 
+	/**
+	 * Maps the given domain models to a single {@link RestfulModelMap} whose
+	 * message carries all of them, for web services which accept a collection
+	 * of resources in one request. Message types which cannot represent a
+	 * collection are not supported, which is the default.
+	 * 
+	 * @param models
+	 *            the models to map
+	 * @return {@code RestfulModelMap} or {@code null} if the models cannot be
+	 *         mapped together
+	 * @throws InvalidMappingException
+	 *             if a model contains a mapping which cannot be serialized
+	 * @throws ModelConfigurationException
+	 *             if a model is configured incorrectly
+	 */
+	public RestfulModelMap mapModels(Collection<?> models)
+			throws InvalidMappingException, ModelConfigurationException {
+		return null;
+	}
+
 	@Override
 	public boolean isTextColumn(Field f) {
 		throw new UnsupportedOperationException();
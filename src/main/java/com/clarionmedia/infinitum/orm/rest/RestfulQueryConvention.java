@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.rest;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.clarionmedia.infinitum.orm.criteria.Criteria;
+import com.clarionmedia.infinitum.orm.sql.SqlConstants;
+
+/**
+ * <p>
+ * Describes how a web service expects {@link Criteria} to be expressed in the
+ * query string of a request to an entity's REST endpoint. By default,
+ * comparisons are sent as {@code field=value}, {@code field[ne]=value},
+ * {@code field[gt]=value}, {@code field[lt]=value}, {@code field[gte]=value}
+ * and {@code field[lte]=value}, {@code in} conditions as
+ * {@code field[in]=a,b,c}, and {@code between} conditions as a {@code gte}
+ * and an {@code lte} comparison. Orderings are sent as
+ * {@code sort=field,-otherField}, where {@code -} marks a descending
+ * ordering, and limits and offsets as {@code limit=n} and {@code offset=n}.
+ * </p>
+ * <p>
+ * Each of these can be changed to match the web service, and
+ * {@link #formatValue(Object)} can be overridden to change how values are
+ * written.
+ * </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 10/17/26
+ * @since 1.1.0
+ */
+public class RestfulQueryConvention {
+
+	private Map<String, String> mParameterFormats;
+	private String mValueSeparator;
+	private String mSortParameter;
+	private String mDescendingPrefix;
+	private String mLimitParameter;
+	private String mOffsetParameter;
+
+	/**
+	 * Constructs a new {@code RestfulQueryConvention} with the default
+	 * conventions.
+	 */
+	public RestfulQueryConvention() {
+		mParameterFormats = new HashMap<String, String>();
+		mParameterFormats.put(SqlConstants.OP_EQUALS, "%s");
+		mParameterFormats.put(SqlConstants.OP_NOT_EQUALS, "%s[ne]");
+		mParameterFormats.put(SqlConstants.OP_GREATER_THAN, "%s[gt]");
+		mParameterFormats.put(SqlConstants.OP_LESS_THAN, "%s[lt]");
+		mParameterFormats.put(SqlConstants.OP_GREATER_THAN_EQUAL_TO, "%s[gte]");
+		mParameterFormats.put(SqlConstants.OP_LESS_THAN_EQUAL_TO, "%s[lte]");
+		mParameterFormats.put(SqlConstants.OP_IN, "%s[in]");
+		mValueSeparator = ",";
+		mSortParameter = "sort";
+		mDescendingPrefix = "-";
+		mLimitParameter = "limit";
+		mOffsetParameter = "offset";
+	}
+
+	/**
+	 * Returns the name of the query parameter which applies the given
+	 * operator to the given endpoint field.
+	 *
+	 * @param operator
+	 *            the operator, one of the {@code OP} constants in
+	 *            {@link SqlConstants}
+	 * @param field
+	 *            the endpoint field name
+	 * @return parameter name or {@code null} if the operator is not supported
+	 */
+	public String getParameterName(String operator, String field) {
+		String format = mParameterFormats.get(operator);
+		if (format == null)
+			return null;
+		return String.format(format, field);
+	}
+
+	/**
+	 * Sets the format of the name of the query parameter which applies the
+	 * given operator, where {@code %s} is replaced by the endpoint field name.
+	 * A {@code null} format marks the operator as not supported.
+	 *
+	 * @param operator
+	 *            the operator, one of the {@code OP} constants in
+	 *            {@link SqlConstants}
+	 * @param format
+	 *            the parameter name format
+	 * @return this {@code RestfulQueryConvention} to allow for method chaining
+	 */
+	public RestfulQueryConvention setParameterFormat(String operator, String format) {
+		if (format == null)
+			mParameterFormats.remove(operator);
+		else
+			mParameterFormats.put(operator, format);
+		return this;
+	}
+
+	/**
+	 * Writes the given value as it is sent in a query parameter. {@link Date
+	 * Dates} are written as milliseconds since the epoch, and other values
+	 * using their {@code toString}.
+	 *
+	 * @param value
+	 *            the value to write
+	 * @return query parameter value
+	 */
+	public String formatValue(Object value) {
+		if (value == null)
+			return "";
+		if (value instanceof Date)
+			return String.valueOf(((Date) value).getTime());
+		return value.toString();
+	}
+
+	/**
+	 * Returns the separator between values of a parameter which carries
+	 * several of them, such as {@code in} conditions and orderings.
+	 *
+	 * @return value separator
+	 */
+	public String getValueSeparator() {
+		return mValueSeparator;
+	}
+
+	/**
+	 * Sets the separator between values of a parameter which carries several
+	 * of them, such as {@code in} conditions and orderings.
+	 *
+	 * @param valueSeparator
+	 *            the value separator
+	 * @return this {@code RestfulQueryConvention} to allow for method chaining
+	 */
+	public RestfulQueryConvention setValueSeparator(String valueSeparator) {
+		mValueSeparator = valueSeparator;
+		return this;
+	}
+
+	/**
+	 * Returns the name of the query parameter which carries orderings.
+	 *
+	 * @return sort parameter name
+	 */
+	public String getSortParameter() {
+		return mSortParameter;
+	}
+
+	/**
+	 * Sets the name of the query parameter which carries orderings.
+	 *
+	 * @param sortParameter
+	 *            the sort parameter name
+	 * @return this {@code RestfulQueryConvention} to allow for method chaining
+	 */
+	public RestfulQueryConvention setSortParameter(String sortParameter) {
+		mSortParameter = sortParameter;
+		return this;
+	}
+
+	/**
+	 * Returns the prefix which marks an ordering as descending.
+	 *
+	 * @return descending prefix
+	 */
+	public String getDescendingPrefix() {
+		return mDescendingPrefix;
+	}
+
+	/**
+	 * Sets the prefix which marks an ordering as descending.
+	 *
+	 * @param descendingPrefix
+	 *            the descending prefix
+	 * @return this {@code RestfulQueryConvention} to allow for method chaining
+	 */
+	public RestfulQueryConvention setDescendingPrefix(String descendingPrefix) {
+		mDescendingPrefix = descendingPrefix;
+		return this;
+	}
+
+	/**
+	 * Returns the name of the query parameter which carries the limit.
+	 *
+	 * @return limit parameter name
+	 */
+	public String getLimitParameter() {
+		return mLimitParameter;
+	}
+
+	/**
+	 * Sets the name of the query parameter which carries the limit.
+	 *
+	 * @param limitParameter
+	 *            the limit parameter name
+	 * @return this {@code RestfulQueryConvention} to allow for method chaining
+	 */
+	public RestfulQueryConvention setLimitParameter(String limitParameter) {
+		mLimitParameter = limitParameter;
+		return this;
+	}
+
+	/**
+	 * Returns the name of the query parameter which carries the offset.
+	 *
+	 * @return offset parameter name
+	 */
+	public String getOffsetParameter() {
+		return mOffsetParameter;
+	}
+
+	/**
+	 * Sets the name of the query parameter which carries the offset.
+	 *
+	 * @param offsetParameter
+	 *            the offset parameter name
+	 * @return this {@code RestfulQueryConvention} to allow for method chaining
+	 */
+	public RestfulQueryConvention setOffsetParameter(String offsetParameter) {
+		mOffsetParameter = offsetParameter;
+		return this;
+	}
+
+}
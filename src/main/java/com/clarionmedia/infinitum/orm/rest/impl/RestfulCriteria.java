@@ -0,0 +1,358 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.rest.impl;
+
+import android.database.Cursor;
+import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
+import com.clarionmedia.infinitum.orm.criteria.AssociationCriteria;
+import com.clarionmedia.infinitum.orm.criteria.Criteria;
+import com.clarionmedia.infinitum.orm.criteria.CriteriaIterator;
+import com.clarionmedia.infinitum.orm.criteria.Order;
+import com.clarionmedia.infinitum.orm.criteria.Order.Ordering;
+import com.clarionmedia.infinitum.orm.criteria.criterion.BetweenExpression;
+import com.clarionmedia.infinitum.orm.criteria.criterion.BinaryExpression;
+import com.clarionmedia.infinitum.orm.criteria.criterion.Criterion;
+import com.clarionmedia.infinitum.orm.criteria.criterion.InExpression;
+import com.clarionmedia.infinitum.orm.exception.InvalidCriteriaException;
+import com.clarionmedia.infinitum.orm.internal.OrmPreconditions;
+import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
+import com.clarionmedia.infinitum.orm.rest.RestfulMapper;
+import com.clarionmedia.infinitum.orm.rest.RestfulQueryConvention;
+import com.clarionmedia.infinitum.orm.sql.SqlConstants;
+
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Field;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * <p> Implementation of {@link Criteria} for RESTful web services. The {@code Criteria} is translated into the query
+ * string of a GET request to the entity's REST endpoint, following the session's {@link RestfulQueryConvention}, and
+ * the web service is expected to respond with an array of the matching entities, which is deserialized in a single
+ * pass. Only {@code eq}, {@code ne}, {@code gt}, {@code lt}, {@code gte}, {@code lte}, {@code in} and {@code between}
+ * conditions, orderings, limits and offsets can be translated. Case-insensitive conditions, association {@code
+ * Criteria}, fetches, keyset pagination, cursors and query caching are not supported. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 10/17/26
+ * @since 1.1.0
+ */
+public class RestfulCriteria<T> implements Criteria<T> {
+
+    private static final String ENCODING = "UTF-8";
+
+    protected Class<T> mEntityClass;
+    protected RestfulSession mSession;
+    protected PersistencePolicy mPersistencePolicy;
+    protected List<Criterion> mCriterion;
+    protected int mLimit;
+    protected int mOffset;
+    private List<Order> mOrderings;
+
+    /**
+     * Constructs a new {@code RestfulCriteria}.
+     *
+     * @param session     the {@link RestfulSession} this {@code RestfulCriteria} is scoped to
+     * @param entityClass the {@code Class} to create {@code RestfulCriteria} for
+     * @throws InfinitumRuntimeException if {@code entityClass} is transient
+     */
+    public RestfulCriteria(RestfulSession session, Class<T> entityClass) throws InfinitumRuntimeException {
+        OrmPreconditions.checkPersistenceForLoading(entityClass, session.mPersistencePolicy);
+        mSession = session;
+        mEntityClass = entityClass;
+        mPersistencePolicy = session.mPersistencePolicy;
+        mCriterion = new ArrayList<Criterion>();
+        mOrderings = new ArrayList<Order>(5);
+    }
+
+    /**
+     * Returns the URI of the request this {@code RestfulCriteria} is translated into.
+     *
+     * @return request URI
+     * @throws InvalidCriteriaException if the {@code RestfulCriteria} cannot be expressed in a query string
+     */
+    @Override
+    public String getRepresentation() throws InvalidCriteriaException {
+        RestfulQueryConvention convention = mSession.getQueryConvention();
+        StringBuilder query = new StringBuilder();
+        for (Criterion criterion : mCriterion)
+            appendCriterion(query, convention, criterion);
+        if (mOrderings.size() > 0) {
+            StringBuilder sort = new StringBuilder();
+            for (Order order : mOrderings) {
+                if (sort.length() > 0)
+                    sort.append(convention.getValueSeparator());
+                if (order.getOrdering() == Ordering.DESC)
+                    sort.append(convention.getDescendingPrefix());
+                sort.append(mPersistencePolicy.getEndpointFieldName(getField(order.getProperty())));
+            }
+            appendParameter(query, convention.getSortParameter(), sort.toString());
+        }
+        if (mLimit > 0)
+            appendParameter(query, convention.getLimitParameter(), String.valueOf(mLimit));
+        if (mOffset > 0)
+            appendParameter(query, convention.getOffsetParameter(), String.valueOf(mOffset));
+        String uri = mSession.mHost + mPersistencePolicy.getRestEndpoint(mEntityClass);
+        return query.length() == 0 ? uri : uri + '?' + query;
+    }
+
+    @Override
+    public Class<T> getEntityClass() {
+        return mEntityClass;
+    }
+
+    @Override
+    public List<Criterion> getCriterion() {
+        return mCriterion;
+    }
+
+    @Override
+    public int getLimit() {
+        return mLimit;
+    }
+
+    @Override
+    public int getOffset() {
+        return mOffset;
+    }
+
+    @Override
+    public RestfulMapper getObjectMapper() {
+        return mSession.mMapper;
+    }
+
+    @Override
+    public Criteria<T> add(Criterion criterion) {
+        mCriterion.add(criterion);
+        return this;
+    }
+
+    @Override
+    public Criteria<T> limit(int limit) {
+        mLimit = limit;
+        return this;
+    }
+
+    @Override
+    public Criteria<T> offset(int offset) {
+        mOffset = offset;
+        return this;
+    }
+
+    @Override
+    public Criteria<T> seekAfter(Object... orderValues) {
+        throw new UnsupportedOperationException("RestfulCriteria does not support keyset pagination!");
+    }
+
+    @Override
+    public Criteria<T> after(T lastEntity) {
+        throw new UnsupportedOperationException("RestfulCriteria does not support keyset pagination!");
+    }
+
+    @Override
+    public Criteria<T> resumeFrom(String continuationToken) {
+        throw new UnsupportedOperationException("RestfulCriteria does not support keyset pagination!");
+    }
+
+    @Override
+    public String getContinuationToken(T lastEntity) {
+        throw new UnsupportedOperationException("RestfulCriteria does not support keyset pagination!");
+    }
+
+    @Override
+    public Object[] getSeekValues() {
+        return null;
+    }
+
+    @Override
+    public List<T> list() {
+        OrmPreconditions.checkForOpenSession(mSession.isOpen());
+        return mSession.loadEntities(mEntityClass, getRepresentation());
+    }
+
+    @Override
+    public CriteriaIterator<T> iterate() {
+        return iterate(true);
+    }
+
+    @Override
+    public CriteriaIterator<T> iterate(boolean cacheResults) {
+        // The whole response is read at once, so there is nothing to gain from iterating lazily
+        final Iterator<T> results = list().iterator();
+        return new CriteriaIterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return results.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return results.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public T unique() throws InfinitumRuntimeException {
+        List<T> results = list();
+        if (results.size() > 1)
+            throw new InfinitumRuntimeException(String.format("Criteria query for '%s' specified unique result but " +
+                    "there were %d results.", mEntityClass.getName(), results.size()));
+        return results.size() == 0 ? null : results.get(0);
+    }
+
+    /**
+     * Returns the number of entities the web service responds with. Since there is no common convention for counting
+     * resources, the entities are retrieved and counted.
+     *
+     * @return number of results
+     */
+    @Override
+    public long count() {
+        return list().size();
+    }
+
+    @Override
+    public Cursor cursor() {
+        throw new UnsupportedOperationException("RestfulCriteria does not support cursors!");
+    }
+
+    @Override
+    public RestfulSession getSession() {
+        return mSession;
+    }
+
+    @Override
+    public Criteria<T> orderBy(Order order) {
+        mOrderings.add(order);
+        return this;
+    }
+
+    @Override
+    public List<Order> getOrderings() {
+        return mOrderings;
+    }
+
+    @Override
+    public AssociationCriteria<?> createCriteria(String association) {
+        throw new UnsupportedOperationException("RestfulCriteria does not support association criteria!");
+    }
+
+    @Override
+    public List<AssociationCriteria<?>> getAssociationCriteria() {
+        return new ArrayList<AssociationCriteria<?>>(0);
+    }
+
+    @Override
+    public Criteria<T> fetch(String association) {
+        throw new UnsupportedOperationException("RestfulCriteria does not support fetches!");
+    }
+
+    @Override
+    public List<Field> getFetches() {
+        return new ArrayList<Field>(0);
+    }
+
+    @Override
+    public Criteria<T> cacheable() {
+        throw new UnsupportedOperationException("RestfulCriteria does not support query caching!");
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return false;
+    }
+
+    private void appendCriterion(StringBuilder query, RestfulQueryConvention convention, Criterion criterion)
+            throws InvalidCriteriaException {
+        Field f = getField(criterion.getFieldName());
+        String field = mPersistencePolicy.getEndpointFieldName(f);
+        if (criterion instanceof BinaryExpression) {
+            BinaryExpression expression = (BinaryExpression) criterion;
+            // Query strings have no case-insensitive comparison, and dropping it would return the wrong entities
+            if (expression.isIgnoreCase())
+                throw new InvalidCriteriaException(String.format("Case-insensitive criterion on '%s' for type '%s' " +
+                        "cannot be expressed in a query string.", criterion.getFieldName(), mEntityClass.getName()));
+            appendParameter(query, getParameterName(convention, expression.getOperator(), field),
+                    convention.formatValue(toEndpointValue(f, expression.getValue())));
+        } else if (criterion instanceof InExpression) {
+            StringBuilder values = new StringBuilder();
+            for (Object value : ((InExpression) criterion).getValues()) {
+                if (values.length() > 0)
+                    values.append(convention.getValueSeparator());
+                values.append(convention.formatValue(toEndpointValue(f, value)));
+            }
+            appendParameter(query, getParameterName(convention, SqlConstants.OP_IN, field), values.toString());
+        } else if (criterion instanceof BetweenExpression) {
+            // Both bounds are inclusive
+            BetweenExpression expression = (BetweenExpression) criterion;
+            appendParameter(query, getParameterName(convention, SqlConstants.OP_GREATER_THAN_EQUAL_TO, field),
+                    convention.formatValue(toEndpointValue(f, expression.getLow())));
+            appendParameter(query, getParameterName(convention, SqlConstants.OP_LESS_THAN_EQUAL_TO, field),
+                    convention.formatValue(toEndpointValue(f, expression.getHigh())));
+        } else {
+            throw new InvalidCriteriaException(String.format("Criterion '%s' for type '%s' cannot be expressed in a " +
+                    "query string.", criterion.getClass().getSimpleName(), mEntityClass.getName()));
+        }
+    }
+
+    private String getParameterName(RestfulQueryConvention convention, String operator, String field)
+            throws InvalidCriteriaException {
+        String ret = convention.getParameterName(operator, field);
+        if (ret == null)
+            throw new InvalidCriteriaException(String.format("Operator '%s' for type '%s' cannot be expressed in a " +
+                    "query string.", operator, mEntityClass.getName()));
+        return ret;
+    }
+
+    // Related entities are identified by their primary key
+    private Object toEndpointValue(Field f, Object value) {
+        if (value != null && mPersistencePolicy.isToOneRelationship(f))
+            return mPersistencePolicy.getPrimaryKey(value);
+        return value;
+    }
+
+    private Field getField(String name) throws InvalidCriteriaException {
+        Field ret = mPersistencePolicy.findPersistentField(mEntityClass, name);
+        if (ret == null)
+            throw new InvalidCriteriaException(String.format("Invalid Criteria for type '%s'.",
+                    mEntityClass.getName()));
+        return ret;
+    }
+
+    private static void appendParameter(StringBuilder query, String name, String value) {
+        if (query.length() > 0)
+            query.append('&');
+        try {
+            query.append(URLEncoder.encode(name, ENCODING)).append('=').append(URLEncoder.encode(value, ENCODING));
+        } catch (UnsupportedEncodingException e) {
+            throw new InfinitumRuntimeException("Unable to encode query string.", e);
+        }
+    }
+
+}
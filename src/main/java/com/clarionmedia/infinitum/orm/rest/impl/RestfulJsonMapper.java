@@ -16,6 +16,9 @@
 
 package com.clarionmedia.infinitum.orm.rest.impl;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -51,18 +54,64 @@ public class RestfulJsonMapper extends RestfulMapper {
 	}
 
 	@Override
-	public RestfulStringModelMap mapModel(Object model) throws InvalidMappingException, ModelConfigurationException {
+	public RestfulStreamingModelMap mapModel(final Object model) throws InvalidMappingException,
+			ModelConfigurationException {
 		// We do not map transient classes!
 		if (!mPersistencePolicy.isPersistent(model.getClass()))
 			return null;
-		RestfulStringModelMap modelMap = new RestfulStringModelMap(model);
-		String json;
-		if (mTypeAdapters.containsKey(model.getClass()))
-			json = mTypeAdapters.get(model.getClass()).serializeObjectToJson(model);
-		else
-			json = mGson.toJson(model);
-		modelMap.setMessage(json);
-		return modelMap;
+		// The model is serialized straight to the request as it is sent
+		return new RestfulStreamingModelMap(model) {
+			@Override
+			protected void writeMessage(Writer writer) throws IOException {
+				writeModel(model, writer);
+			}
+		};
+	}
+
+	@Override
+	public RestfulStreamingModelMap mapModels(final Collection<?> models) throws InvalidMappingException,
+			ModelConfigurationException {
+		for (Object model : models) {
+			if (!mPersistencePolicy.isPersistent(model.getClass()))
+				return null;
+		}
+		return new RestfulStreamingModelMap(models) {
+			@Override
+			protected void writeMessage(Writer writer) throws IOException {
+				writer.write('[');
+				boolean first = true;
+				for (Object model : models) {
+					if (!first)
+						writer.write(',');
+					writeModel(model, writer);
+					first = false;
+				}
+				writer.write(']');
+			}
+		};
+	}
+
+	/**
+	 * Returns the {@link Gson} instance entities are serialized with. It is
+	 * shared with {@link RestfulJsonSession} for deserialization, so the
+	 * {@code TypeAdapters} Gson builds reflectively for each type are only
+	 * built once.
+	 * 
+	 * @return {@code Gson}
+	 */
+	public Gson getGson() {
+		return mGson;
+	}
+
+	/**
+	 * Sets the {@link Gson} instance entities are serialized and deserialized
+	 * with, which allows it to be configured, e.g. with a {@code GsonBuilder}.
+	 * 
+	 * @param gson
+	 *            the {@code Gson} to use
+	 */
+	public void setGson(Gson gson) {
+		mGson = gson;
 	}
 
 	@Override
@@ -81,4 +130,11 @@ public class RestfulJsonMapper extends RestfulMapper {
 		throw new UnsupportedOperationException();
 	}
 
+	private void writeModel(Object model, Writer writer) throws IOException {
+		if (mTypeAdapters.containsKey(model.getClass()))
+			writer.write(mTypeAdapters.get(model.getClass()).serializeObjectToJson(model));
+		else
+			mGson.toJson(model, writer);
+	}
+
 }
@@ -16,8 +16,13 @@
 
 package com.clarionmedia.infinitum.orm.rest.impl;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.http.HttpStatus;
@@ -30,12 +35,20 @@ import com.clarionmedia.infinitum.orm.rest.JsonDeserializer;
 import com.clarionmedia.infinitum.web.rest.impl.RestResponse;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
 
 /**
  * <p>
  * Concrete implementation of {@link RestfulSession} for web services which send
  * responses back as JSON.
  * </p>
+ * <p>
+ * Responses are decoded with a {@link JsonReader} as they are read, using the
+ * {@link Gson} instance of the session's {@link RestfulJsonMapper}, and arrays
+ * are decoded one element at a time, so the body is never held as a
+ * {@code String}.
+ * </p>
  * 
  * @author Tyler Treat
  * @version 1.0 03/21/12
@@ -44,6 +57,7 @@ import com.google.gson.JsonSyntaxException;
 public class RestfulJsonSession extends RestfulSession {
 
 	protected Map<Class<?>, JsonDeserializer<?>> mJsonDeserializers;
+	private Gson mGson;
 
 	/**
 	 * Creates a new {@code RestfulJsonSession}.
@@ -52,34 +66,67 @@ public class RestfulJsonSession extends RestfulSession {
 		mJsonDeserializers = new HashMap<Class<?>, JsonDeserializer<?>>();
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public <T> T loadEntity(Class<T> type, Serializable id) throws InfinitumRuntimeException, IllegalArgumentException {
 		OrmPreconditions.checkForOpenSession(mIsOpen);
 		mLogger.debug("Sending GET request to retrieve entity");
 		String uri = mHost + mPersistencePolicy.getRestEndpoint(type) + "/" + id;
+		T ret = requestEntity(type, uri, "application/json");
+		if (ret != null) {
+			int objHash = mPersistencePolicy.computeModelHash(ret);
+			cache(objHash, ret);
+		}
+		return ret;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	protected <T> T deserializeEntity(Class<T> type, InputStream response) throws IOException {
+		// Attempt to use a registered deserializer
+		if (mJsonDeserializers.containsKey(type))
+			return (T) mJsonDeserializers.get(type).deserializeObject(readString(response));
+		// Otherwise fallback to Gson
+		JsonReader reader = new JsonReader(new InputStreamReader(response, ENCODING));
+		try {
+			return getGson().<T> fromJson(reader, type);
+		} finally {
+			reader.close();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	protected <T> List<T> loadEntities(Class<T> type, String uri) {
+		OrmPreconditions.checkForOpenSession(mIsOpen);
+		mLogger.debug("Sending GET request to retrieve entities");
 		Map<String, String> headers = new HashMap<String, String>();
 		headers.put("Accept", "application/json");
+		RestResponse response = getRestClient().executeGet(uri, headers);
+		if (response == null || response.getStatusCode() != HttpStatus.SC_OK)
+			return new ArrayList<T>(0);
+		InputStream jsonResponse = getResponseStream(response);
+		List<T> ret;
 		try {
-			RestResponse response = mRestClient.executeGet(uri, headers);
-			if (response.getStatusCode() == HttpStatus.SC_OK) {
-				String jsonResponse = response.getResponseDataAsString();
-				T ret;
-				// Attempt to use a registered deserializer
-				if (mJsonDeserializers.containsKey(type))
-					ret = (T) mJsonDeserializers.get(type).deserializeObject(jsonResponse);
-				// Otherwise fallback to Gson
-				else
-					ret = new Gson().fromJson(jsonResponse, type);
-				int objHash = mPersistencePolicy.computeModelHash(ret);
-				cache(objHash, ret);
-				return ret;
-			}
+			// Attempt to use a registered deserializer
+			if (mJsonDeserializers.containsKey(type))
+				ret = (List<T>) mJsonDeserializers.get(type).deserializeObjects(readString(jsonResponse));
+			// Otherwise read the array element by element with Gson
+			else
+				ret = readArray(type, jsonResponse);
 		} catch (JsonSyntaxException e) {
 			mLogger.error("Unable to deserialize web service response", e);
-			return null;
+			return new ArrayList<T>(0);
+		} catch (IOException e) {
+			mLogger.error("Unable to deserialize web service response", e);
+			return new ArrayList<T>(0);
+		} catch (IllegalStateException e) {
+			// Thrown when the response is not an array
+			mLogger.error("Unable to deserialize web service response", e);
+			return new ArrayList<T>(0);
 		}
-		return null;
+		for (T entity : ret)
+			cache(mPersistencePolicy.computeModelHash(entity), entity);
+		return ret;
 	}
 
 	@Override
@@ -89,4 +136,34 @@ public class RestfulJsonSession extends RestfulSession {
 		return this;
 	}
 
+	/**
+	 * Returns the {@link Gson} instance responses are deserialized with, which
+	 * is shared with the session's {@link RestfulJsonMapper}.
+	 * 
+	 * @return {@code Gson}
+	 */
+	protected Gson getGson() {
+		if (mMapper instanceof RestfulJsonMapper)
+			return ((RestfulJsonMapper) mMapper).getGson();
+		if (mGson == null)
+			mGson = new Gson();
+		return mGson;
+	}
+
+	private <T> List<T> readArray(Class<T> type, InputStream json) throws IOException {
+		// Look the adapter up once rather than for every element
+		TypeAdapter<T> adapter = getGson().getAdapter(type);
+		JsonReader reader = new JsonReader(new InputStreamReader(json, ENCODING));
+		try {
+			List<T> ret = new ArrayList<T>();
+			reader.beginArray();
+			while (reader.hasNext())
+				ret.add(adapter.read(reader));
+			reader.endArray();
+			return ret;
+		} finally {
+			reader.close();
+		}
+	}
+
 }
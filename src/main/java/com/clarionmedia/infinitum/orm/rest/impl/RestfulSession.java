@@ -16,6 +16,7 @@
 
 package com.clarionmedia.infinitum.orm.rest.impl;
 
+import android.content.Context;
 import android.database.SQLException;
 import com.clarionmedia.infinitum.context.ContextFactory;
 import com.clarionmedia.infinitum.context.InfinitumContext;
@@ -33,27 +34,42 @@ import com.clarionmedia.infinitum.orm.exception.SQLGrammarException;
 import com.clarionmedia.infinitum.orm.internal.OrmPreconditions;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
 import com.clarionmedia.infinitum.orm.persistence.TypeAdapter;
+import com.clarionmedia.infinitum.orm.rest.RestfulEntityCache;
 import com.clarionmedia.infinitum.orm.rest.RestfulMapper;
 import com.clarionmedia.infinitum.orm.rest.RestfulModelMap;
+import com.clarionmedia.infinitum.orm.rest.RestfulQueryConvention;
 import com.clarionmedia.infinitum.web.context.InfinitumWebContext;
 import com.clarionmedia.infinitum.web.rest.RestfulClient;
 import com.clarionmedia.infinitum.web.rest.impl.CachingEnabledRestfulClient;
 import com.clarionmedia.infinitum.web.rest.impl.RestResponse;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpStatus;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * <p> {@link Session} implementation for communicating with a RESTful web service using domain objects. Infinitum
  * provides two concrete implementations called {@link RestfulJsonSession}, which is used for web services that respond
  * with JSON, and {@link RestfulXmlSession}, which is used for web services that respond with XML. These can be extended
- * or re-implemented for specific business needs. </p>
+ * or re-implemented for specific business needs. </p> <p> {@link #saveAll(Collection)}, {@link
+ * #saveOrUpdateAll(Collection)} and {@link #deleteAll(Collection)} keep up to {@link #getBatchConcurrency()} requests
+ * in flight at once, and entities whose {@link Class} has a bulk endpoint are saved to it in groups rather than one at
+ * a time. See {@link #executeBatch(BatchOperation, Collection)}. </p> <p> Batch requests are sent from a pool of
+ * threads owned by the {@code RestfulSession}, which is shut down when it is closed, or replaced when the concurrency
+ * changes, once the batches in flight on it finish. Since a {@link RestfulClient} is not guaranteed to be threadsafe,
+ * each of those threads sends its requests with its own client, created by {@link #createRestClient()}. The {@link
+ * RestfulMapper} is shared by them, so mappers must be threadsafe once their type adapters are registered, which the
+ * framework's mappers are. </p>
  *
  * @author Tyler Treat
  * @version 1.1.0 04/25/13
@@ -61,6 +77,33 @@ import java.util.Map;
  */
 public abstract class RestfulSession implements Session {
 
+    /**
+     * The default number of requests a batch operation keeps in flight.
+     */
+    public static final int DEFAULT_BATCH_CONCURRENCY = 4;
+
+    /**
+     * The maximum number of entities sent to a bulk endpoint in a single request.
+     */
+    public static final int MAX_BULK_SIZE = 100;
+
+    /**
+     * The name of the directory in the application's cache directory which {@link RestfulEntityCache} writes to.
+     */
+    public static final String ENTITY_CACHE_DIRECTORY = "infinitum-rest";
+
+    /**
+     * The character encoding web service responses are read with.
+     */
+    protected static final String ENCODING = "UTF-8";
+
+    /**
+     * The operations which can be applied to a batch of entities.
+     */
+    public static enum BatchOperation {
+        SAVE, SAVE_OR_UPDATE, DELETE
+    }
+
     @Autowired
     protected PersistencePolicy mPersistencePolicy;
 
@@ -70,6 +113,9 @@ public abstract class RestfulSession implements Session {
     @Autowired
     protected InfinitumWebContext mWebContext;
 
+    @Autowired
+    protected RestfulEntityCache mEntityCache;
+
     protected RestfulContext mRestContext;
     protected boolean mIsOpen;
     protected String mHost;
@@ -78,12 +124,19 @@ public abstract class RestfulSession implements Session {
     protected RestfulClient mRestClient;
     protected LruCache<Integer, Object> mSessionCache;
     protected int mCacheSize;
+    protected int mBatchConcurrency;
+    protected RestfulQueryConvention mQueryConvention;
+    protected boolean mIsRequestCompressionEnabled;
+    private BatchPool mBatchPool;
+    private final ThreadLocal<RestfulClient> mWorkerClients = new ThreadLocal<RestfulClient>();
 
     /**
      * Creates a new {@code RestfulSession} with the given {@link InfinitumContext} and cache size.
      */
     public RestfulSession() {
         mCacheSize = DEFAULT_CACHE_SIZE;
+        mBatchConcurrency = DEFAULT_BATCH_CONCURRENCY;
+        mQueryConvention = new RestfulQueryConvention();
         mSessionCache = new LruCache<Integer, Object>(mCacheSize);
         mLogger = new SmartLogger(getClass().getSimpleName());
         mRestClient = new CachingEnabledRestfulClient(ContextFactory.getInstance().getAndroidContext());
@@ -99,11 +152,34 @@ public abstract class RestfulSession implements Session {
      */
     protected abstract <T> T loadEntity(Class<T> type, Serializable id);
 
+    /**
+     * Deserializes an instance of the given persistent model {@link Class} from the given web service response, which
+     * should be decoded as it is read rather than buffered first.
+     *
+     * @param type     the {@code Class} of the persistent instance
+     * @param response the response body
+     * @return the persistent instance
+     * @throws Exception if the response cannot be deserialized
+     */
+    protected abstract <T> T deserializeEntity(Class<T> type, InputStream response) throws Exception;
+
+    /**
+     * Returns the instances of the given persistent model {@link Class} the web service responds with to a GET request
+     * to the given URI, which is expected to be an array of entities. {@link RestfulCriteria} uses this to retrieve its
+     * results in a single request.
+     *
+     * @param type the {@code Class} of the persistent instances to load
+     * @param uri  the URI to request
+     * @return the persistent instances
+     */
+    protected <T> List<T> loadEntities(Class<T> type, String uri) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support criteria operations!");
+    }
+
     @Override
     public Session open() throws SQLException {
         mRestContext = mInfinitumContext.getRestContext();
-        mRestClient.setAuthStrategy(mWebContext.getAuthStrategy());
-        mRestClient.setHttpParams(getHttpParams());
+        configureRestClient(mRestClient);
         switch (mRestContext.getMessageType()) {
             case XML:
                 mMapper = mInfinitumContext.getBean("_" + RestfulXmlMapper.class.getSimpleName(),
@@ -120,6 +196,9 @@ public abstract class RestfulSession implements Session {
         mHost = mRestContext.getRestHost();
         if (!mHost.endsWith("/"))
             mHost += '/';
+        Context androidContext = mInfinitumContext.getAndroidContext();
+        if (mEntityCache != null && mEntityCache.getDirectory() == null && androidContext != null)
+            mEntityCache.setDirectory(new File(androidContext.getCacheDir(), ENTITY_CACHE_DIRECTORY));
         mIsOpen = true;
         mLogger.debug("Session opened");
         return this;
@@ -127,6 +206,7 @@ public abstract class RestfulSession implements Session {
 
     @Override
     public Session close() {
+        shutdownBatchExecutor();
         recycleCache();
         mIsOpen = false;
         mLogger.debug("Session closed");
@@ -221,13 +301,9 @@ public abstract class RestfulSession implements Session {
         OrmPreconditions.checkPersistenceForModify(model, mPersistencePolicy);
         mLogger.debug("Sending POST request to save entity");
         String uri = mHost + mPersistencePolicy.getRestEndpoint(model.getClass());
-        Map<String, String> headers = new HashMap<String, String>();
+        Map<String, String> headers = getContentHeaders();
         RestfulModelMap modelMap = mMapper.mapModel(model);
-        if (mRestContext.getMessageType() == MessageType.JSON)
-            headers.put("Content-Type", "application/json");
-        else if (mRestContext.getMessageType() == MessageType.XML)
-            headers.put("Content-Type", "application/xml");
-        RestResponse response = mRestClient.executePost(uri, modelMap.toHttpEntity(), headers);
+        RestResponse response = getRestClient().executePost(uri, toHttpEntity(modelMap), headers);
         if (response == null)
             return -1;
         return response.getStatusCode() < 400 ? 0 : -1;
@@ -241,7 +317,8 @@ public abstract class RestfulSession implements Session {
         Serializable pk = mPersistencePolicy.getPrimaryKey(model);
         String uri = mHost + mPersistencePolicy.getRestEndpoint(model.getClass()) + "/" + pk.toString();
         Map<String, String> headers = new HashMap<String, String>();
-        RestResponse response = mRestClient.executeDelete(uri, headers);
+        evictEntity(model);
+        RestResponse response = getRestClient().executeDelete(uri, headers);
         if (response == null)
             return false;
         switch (response.getStatusCode()) {
@@ -260,13 +337,10 @@ public abstract class RestfulSession implements Session {
         OrmPreconditions.checkPersistenceForModify(model, mPersistencePolicy);
         mLogger.debug("Sending PUT request to update entity");
         String uri = mHost + mPersistencePolicy.getRestEndpoint(model.getClass());
-        Map<String, String> headers = new HashMap<String, String>();
+        Map<String, String> headers = getContentHeaders();
         RestfulModelMap modelMap = mMapper.mapModel(model);
-        if (mRestContext.getMessageType() == MessageType.JSON)
-            headers.put("Content-Type", "application/json");
-        else if (mRestContext.getMessageType() == MessageType.XML)
-            headers.put("Content-Type", "application/xml");
-        RestResponse response = mRestClient.executePut(uri, modelMap.toHttpEntity(), headers);
+        evictEntity(model);
+        RestResponse response = getRestClient().executePut(uri, toHttpEntity(modelMap), headers);
         switch (response.getStatusCode()) {
             case HttpStatus.SC_OK:
             case HttpStatus.SC_NO_CONTENT:
@@ -289,13 +363,10 @@ public abstract class RestfulSession implements Session {
         OrmPreconditions.checkPersistenceForModify(model, mPersistencePolicy);
         mLogger.debug("Sending PUT request to save or update entity");
         String uri = mHost + mPersistencePolicy.getRestEndpoint(model.getClass());
-        Map<String, String> headers = new HashMap<String, String>();
+        Map<String, String> headers = getContentHeaders();
         RestfulModelMap modelMap = mMapper.mapModel(model);
-        if (mRestContext.getMessageType() == MessageType.JSON)
-            headers.put("Content-Type", "application/json");
-        else if (mRestContext.getMessageType() == MessageType.XML)
-            headers.put("Content-Type", "application/xml");
-        RestResponse response = mRestClient.executePut(uri, modelMap.toHttpEntity(), headers);
+        evictEntity(model);
+        RestResponse response = getRestClient().executePut(uri, toHttpEntity(modelMap), headers);
         switch (response.getStatusCode()) {
             case HttpStatus.SC_CREATED:
                 return 1;
@@ -309,10 +380,9 @@ public abstract class RestfulSession implements Session {
 
     @Override
     public int saveOrUpdateAll(Collection<? extends Object> models) throws InfinitumRuntimeException {
-        OrmPreconditions.checkForOpenSession(mIsOpen);
         int count = 0;
-        for (Object model : models) {
-            if (saveOrUpdate(model) >= 0)
+        for (long result : executeBatch(BatchOperation.SAVE_OR_UPDATE, models)) {
+            if (result >= 0)
                 count++;
         }
         return count;
@@ -320,10 +390,9 @@ public abstract class RestfulSession implements Session {
 
     @Override
     public int saveAll(Collection<? extends Object> models) throws InfinitumRuntimeException {
-        OrmPreconditions.checkForOpenSession(mIsOpen);
         int count = 0;
-        for (Object model : models) {
-            if (save(model) == 0)
+        for (long result : executeBatch(BatchOperation.SAVE, models)) {
+            if (result == 0)
                 count++;
         }
         return count;
@@ -331,15 +400,107 @@ public abstract class RestfulSession implements Session {
 
     @Override
     public int deleteAll(Collection<? extends Object> models) throws InfinitumRuntimeException {
-        OrmPreconditions.checkForOpenSession(mIsOpen);
         int count = 0;
-        for (Object model : models) {
-            if (delete(model))
+        for (long result : executeBatch(BatchOperation.DELETE, models)) {
+            if (result == 0)
                 count++;
         }
         return count;
     }
 
+    /**
+     * Applies the given {@link BatchOperation} to the given entities, keeping up to {@link #getBatchConcurrency()}
+     * requests in flight at once, and returns the result for each entity in the order the {@link Collection} iterates
+     * them. For {@link BatchOperation#SAVE} and {@link BatchOperation#SAVE_OR_UPDATE}, the result is the value {@link
+     * #save(Object)} and {@link #saveOrUpdate(Object)} return. For {@link BatchOperation#DELETE}, it is 0 if the entity
+     * was deleted or -1 if not. Entities whose {@link Class} has a bulk endpoint are saved to it in requests of up to
+     * {@link #MAX_BULK_SIZE} entities, which share the result of their request.
+     *
+     * @param operation the {@code BatchOperation} to apply
+     * @param models    the entities to apply it to
+     * @return the result for each entity
+     * @throws InfinitumRuntimeException if an entity is transient or the batch is interrupted
+     */
+    public long[] executeBatch(BatchOperation operation, Collection<? extends Object> models)
+            throws InfinitumRuntimeException {
+        OrmPreconditions.checkForOpenSession(mIsOpen);
+        List<Object> entities = new ArrayList<Object>(models);
+        long[] results = new long[entities.size()];
+        List<BatchRequest> requests = getBatchRequests(operation, entities, results);
+        if (mBatchConcurrency <= 1 || requests.size() <= 1) {
+            for (BatchRequest request : requests)
+                request.call();
+            return results;
+        }
+        mLogger.debug("Sending " + requests.size() + " batch requests, " + mBatchConcurrency + " at a time");
+        BatchPool pool = acquireBatchPool();
+        try {
+            // Each request writes the results of its own entities, which are visible once its Future is done
+            for (Future<Void> future : pool.mExecutor.invokeAll(requests)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException)
+                        throw (RuntimeException) e.getCause();
+                    throw new InfinitumRuntimeException("Batch request failed", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InfinitumRuntimeException("Batch operation interrupted", e);
+        } finally {
+            releaseBatchPool(pool);
+        }
+        return results;
+    }
+
+    /**
+     * Sets the number of requests {@link #executeBatch(BatchOperation, Collection)} keeps in flight at once. A value
+     * of 1 sends every request from the calling thread, one at a time.
+     *
+     * @param batchConcurrency the number of concurrent requests
+     * @return this {@code RestfulSession} to allow for method chaining
+     */
+    public RestfulSession setBatchConcurrency(int batchConcurrency) {
+        synchronized (this) {
+            if (batchConcurrency != mBatchConcurrency)
+                // Recreated with the new number of threads when it is next needed
+                shutdownBatchExecutor();
+            mBatchConcurrency = batchConcurrency;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the number of requests {@link #executeBatch(BatchOperation, Collection)} keeps in flight at once.
+     *
+     * @return number of concurrent requests
+     */
+    public int getBatchConcurrency() {
+        return mBatchConcurrency;
+    }
+
+    /**
+     * Sets whether JSON and XML request bodies are gzip-compressed as they are written. This is disabled by default
+     * since the web service must accept a {@code Content-Encoding} of {@code gzip}.
+     *
+     * @param enabled {@code true} to compress request bodies, {@code false} if not
+     * @return this {@code RestfulSession} to allow for method chaining
+     */
+    public RestfulSession setRequestCompressionEnabled(boolean enabled) {
+        mIsRequestCompressionEnabled = enabled;
+        return this;
+    }
+
+    /**
+     * Indicates if JSON and XML request bodies are gzip-compressed as they are written.
+     *
+     * @return {@code true} if request bodies are compressed, {@code false} if not
+     */
+    public boolean isRequestCompressionEnabled() {
+        return mIsRequestCompressionEnabled;
+    }
+
     @Override
     public Session execute(String sql) throws SQLGrammarException {
         throw new UnsupportedOperationException("RestfulSession does not support SQL operations!");
@@ -347,7 +508,28 @@ public abstract class RestfulSession implements Session {
 
     @Override
     public <T> Criteria<T> createCriteria(Class<T> entityClass) {
-        throw new UnsupportedOperationException("RestfulSession does not support criteria operations!");
+        return new RestfulCriteria<T>(this, entityClass);
+    }
+
+    /**
+     * Returns the {@link RestfulQueryConvention} {@link RestfulCriteria} are translated with.
+     *
+     * @return {@code RestfulQueryConvention}
+     */
+    public RestfulQueryConvention getQueryConvention() {
+        return mQueryConvention;
+    }
+
+    /**
+     * Sets the {@link RestfulQueryConvention} {@link RestfulCriteria} are translated with, which describes how the web
+     * service expects conditions, orderings, limits and offsets in a query string.
+     *
+     * @param queryConvention the {@code RestfulQueryConvention} to use
+     * @return this {@code RestfulSession} to allow for method chaining
+     */
+    public RestfulSession setQueryConvention(RestfulQueryConvention queryConvention) {
+        mQueryConvention = queryConvention;
+        return this;
     }
 
     @Override
@@ -361,6 +543,176 @@ public abstract class RestfulSession implements Session {
         return mMapper.getRegisteredTypeAdapters();
     }
 
+    /**
+     * Retrieves the entity at the given URI. If {@link RestfulEntityCache} holds a previous response for the URI, the
+     * request is made conditional on its {@code ETag} and {@code Last-Modified} validators, and a {@code 304 Not
+     * Modified} response is answered by deserializing a new entity from the cached body, so callers never share an
+     * instance.
+     *
+     * @param type      the {@link Class} of the entity
+     * @param uri       the URI of the entity
+     * @param mediaType the media type to accept
+     * @return the entity or {@code null} if it could not be retrieved
+     */
+    protected <T> T requestEntity(Class<T> type, String uri, String mediaType) {
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Accept", mediaType);
+        RestfulEntityCache.Entry cached = mEntityCache == null ? null : mEntityCache.get(uri);
+        if (cached != null) {
+            if (cached.getETag() != null)
+                headers.put("If-None-Match", cached.getETag());
+            if (cached.getLastModified() != null)
+                headers.put("If-Modified-Since", cached.getLastModified());
+        }
+        try {
+            RestResponse response = getRestClient().executeGet(uri, headers);
+            if (response == null)
+                return null;
+            if (response.getStatusCode() == HttpStatus.SC_NOT_MODIFIED && cached != null)
+                return deserializeEntity(type, new ByteArrayInputStream(cached.getBody()));
+            if (response.getStatusCode() != HttpStatus.SC_OK)
+                return null;
+            byte[] body = response.getResponseData();
+            if (body == null)
+                return null;
+            T ret = deserializeEntity(type, new ByteArrayInputStream(body));
+            if (ret != null && mEntityCache != null)
+                mEntityCache.put(uri, getHeader(response, "ETag"), getHeader(response, "Last-Modified"), body);
+            return ret;
+        } catch (Exception e) {
+            mLogger.error("Unable to read web service response", e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns a stream over the body of the given web service response. {@link RestfulClient} hands responses over
+     * once they have been received, so the stream reads the received bytes in place rather than copying them into a
+     * {@code String}.
+     *
+     * @param response the web service response
+     * @return response body
+     */
+    protected InputStream getResponseStream(RestResponse response) {
+        byte[] body = response.getResponseData();
+        return new ByteArrayInputStream(body == null ? new byte[0] : body);
+    }
+
+    /**
+     * Reads the given stream into a {@code String}, for registered deserializers which only accept whole messages.
+     *
+     * @param in the stream to read
+     * @return the contents of the stream
+     * @throws IOException if the stream cannot be read
+     */
+    protected static String readString(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1)
+            out.write(buffer, 0, read);
+        return out.toString(ENCODING);
+    }
+
+    /**
+     * Makes an HTTP request to the web service to save the given entities in a single POST to the bulk endpoint of
+     * their {@link Class}. If the message type cannot represent a collection, the entities are saved one at a time.
+     *
+     * @param c      the {@code Class} of the entities
+     * @param models the entities to save
+     * @return 0 if the entities were saved or -1 if not
+     */
+    protected long saveBulk(Class<?> c, List<Object> models) {
+        RestfulModelMap modelMap = mMapper.mapModels(models);
+        if (modelMap == null) {
+            long ret = 0;
+            for (Object model : models) {
+                if (save(model) != 0)
+                    ret = -1;
+            }
+            return ret;
+        }
+        mLogger.debug("Sending POST request to save " + models.size() + " entities");
+        String uri = mHost + mPersistencePolicy.getRestBulkEndpoint(c);
+        RestResponse response = getRestClient().executePost(uri, toHttpEntity(modelMap), getContentHeaders());
+        if (response == null)
+            return -1;
+        return response.getStatusCode() < 400 ? 0 : -1;
+    }
+
+    /**
+     * Returns the headers describing the content of requests carrying a message of the configured type.
+     *
+     * @return request headers
+     */
+    protected Map<String, String> getContentHeaders() {
+        Map<String, String> headers = new HashMap<String, String>();
+        if (mRestContext.getMessageType() == MessageType.JSON)
+            headers.put("Content-Type", "application/json");
+        else if (mRestContext.getMessageType() == MessageType.XML)
+            headers.put("Content-Type", "application/xml");
+        if (mIsRequestCompressionEnabled && headers.containsKey("Content-Type"))
+            headers.put("Content-Encoding", "gzip");
+        return headers;
+    }
+
+    /**
+     * Returns the {@link HttpEntity} carrying the given {@link RestfulModelMap} in a request. JSON and XML messages are
+     * written to the request as it is sent, compressed if {@link #isRequestCompressionEnabled()}.
+     *
+     * @param modelMap the {@code RestfulModelMap} to send
+     * @return {@code HttpEntity}
+     */
+    protected HttpEntity toHttpEntity(RestfulModelMap modelMap) {
+        if (modelMap instanceof RestfulStreamingModelMap)
+            ((RestfulStreamingModelMap) modelMap).setCompressed(mIsRequestCompressionEnabled);
+        return modelMap.toHttpEntity();
+    }
+
+    // The cached response for the entity is stale once it is written
+    private void evictEntity(Object model) {
+        if (mEntityCache == null)
+            return;
+        Serializable pk = mPersistencePolicy.getPrimaryKey(model);
+        if (pk != null)
+            mEntityCache.evict(mHost + mPersistencePolicy.getRestEndpoint(model.getClass()) + "/" + pk);
+    }
+
+    // Header names are case-insensitive
+    private static String getHeader(RestResponse response, String name) {
+        Map<String, String> headers = response.getHeaders();
+        if (headers == null)
+            return null;
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()))
+                return header.getValue();
+        }
+        return null;
+    }
+
+    // Splits the batch into requests, grouping saved entities which have a bulk endpoint by Class
+    private List<BatchRequest> getBatchRequests(BatchOperation operation, List<Object> entities, long[] results) {
+        List<BatchRequest> ret = new ArrayList<BatchRequest>();
+        Map<Class<?>, BatchRequest> bulk = new HashMap<Class<?>, BatchRequest>();
+        for (int i = 0; i < entities.size(); i++) {
+            Object model = entities.get(i);
+            OrmPreconditions.checkPersistenceForModify(model, mPersistencePolicy);
+            Class<?> c = model.getClass();
+            if (operation != BatchOperation.SAVE || mPersistencePolicy.getRestBulkEndpoint(c) == null) {
+                ret.add(new BatchRequest(operation, c, false, results).add(model, i));
+                continue;
+            }
+            BatchRequest request = bulk.get(c);
+            if (request == null || request.mModels.size() == MAX_BULK_SIZE) {
+                request = new BatchRequest(operation, c, true, results);
+                bulk.put(c, request);
+                ret.add(request);
+            }
+            request.add(model, i);
+        }
+        return ret;
+    }
+
     /**
      * Returns a {@link HttpParams} configured using the {@link InfinitumContext}.
      *
@@ -374,4 +726,126 @@ public abstract class RestfulSession implements Session {
         return httpParams;
     }
 
+    /**
+     * Creates the {@link RestfulClient} each batch thread sends its requests with. Subclasses which use a different
+     * client than the default should override this.
+     *
+     * @return new {@code RestfulClient}
+     */
+    protected RestfulClient createRestClient() {
+        return new CachingEnabledRestfulClient(ContextFactory.getInstance().getAndroidContext());
+    }
+
+    /**
+     * Returns the {@link RestfulClient} requests made by the calling thread are sent with, which is its own client if
+     * it is a batch thread.
+     *
+     * @return {@code RestfulClient}
+     */
+    protected RestfulClient getRestClient() {
+        RestfulClient client = mWorkerClients.get();
+        return client == null ? mRestClient : client;
+    }
+
+    private RestfulClient configureRestClient(RestfulClient client) {
+        client.setAuthStrategy(mWebContext.getAuthStrategy());
+        client.setHttpParams(getHttpParams());
+        return client;
+    }
+
+    // Pools in use by a batch are only shut down once it releases them, so a retired pool never rejects a batch
+    private synchronized BatchPool acquireBatchPool() {
+        if (mBatchPool == null) {
+            mBatchPool = new BatchPool(Executors.newFixedThreadPool(mBatchConcurrency, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            mWorkerClients.set(configureRestClient(createRestClient()));
+                            runnable.run();
+                        }
+                    }, "RestfulSession batch");
+                }
+            }));
+        }
+        mBatchPool.mUsers++;
+        return mBatchPool;
+    }
+
+    private synchronized void releaseBatchPool(BatchPool pool) {
+        if (--pool.mUsers == 0 && pool != mBatchPool)
+            pool.mExecutor.shutdown();
+    }
+
+    // Retires the current pool, which is shut down once the batches using it are done
+    private synchronized void shutdownBatchExecutor() {
+        if (mBatchPool == null)
+            return;
+        if (mBatchPool.mUsers == 0)
+            mBatchPool.mExecutor.shutdown();
+        mBatchPool = null;
+    }
+
+    private static final class BatchPool {
+
+        private final ExecutorService mExecutor;
+        private int mUsers;
+
+        BatchPool(ExecutorService executor) {
+            mExecutor = executor;
+        }
+
+    }
+
+    // A single request of a batch operation, carrying one entity or a group of entities for a bulk endpoint
+    private class BatchRequest implements Callable<Void> {
+
+        private final BatchOperation mOperation;
+        private final Class<?> mType;
+        private final boolean mIsBulk;
+        private final long[] mResults;
+        private final List<Object> mModels;
+        private final List<Integer> mIndexes;
+
+        BatchRequest(BatchOperation operation, Class<?> type, boolean bulk, long[] results) {
+            mOperation = operation;
+            mType = type;
+            mIsBulk = bulk;
+            mResults = results;
+            mModels = new ArrayList<Object>();
+            mIndexes = new ArrayList<Integer>();
+        }
+
+        BatchRequest add(Object model, int index) {
+            mModels.add(model);
+            mIndexes.add(index);
+            return this;
+        }
+
+        @Override
+        public Void call() {
+            long result;
+            if (mIsBulk) {
+                result = saveBulk(mType, mModels);
+            } else {
+                Object model = mModels.get(0);
+                switch (mOperation) {
+                    case SAVE:
+                        result = save(model);
+                        break;
+                    case SAVE_OR_UPDATE:
+                        result = saveOrUpdate(model);
+                        break;
+                    default:
+                        result = delete(model) ? 0 : -1;
+                }
+            }
+            for (int index : mIndexes)
+                mResults[index] = result;
+            return null;
+        }
+
+    }
+
 }
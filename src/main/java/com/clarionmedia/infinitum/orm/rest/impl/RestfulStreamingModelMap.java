@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.rest.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.AbstractHttpEntity;
+
+import com.clarionmedia.infinitum.orm.rest.RestfulModelMap;
+
+/**
+ * <p>
+ * Implementation of {@link RestfulModelMap} for JSON and XML message types
+ * which writes its message directly to the request as it is sent, rather than
+ * holding it in memory as a {@link String} first. Since the length of the
+ * message is not known up front, it is sent with chunked transfer encoding.
+ * The message can optionally be gzip-compressed as it is written, for web
+ * services which accept compressed request bodies.
+ * </p>
+ * <p>
+ * The message is written each time the request is sent, so the model should
+ * not be modified until the request completes.
+ * </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 10/17/26
+ * @since 1.1.0
+ */
+public abstract class RestfulStreamingModelMap extends RestfulModelMap {
+
+	/**
+	 * The character encoding messages are written with.
+	 */
+	public static final String ENCODING = "UTF-8";
+
+	private boolean mIsCompressed;
+
+	/**
+	 * Creates a new {@code RestfulStreamingModelMap} for the given
+	 * {@link Object}.
+	 *
+	 * @param model
+	 *            the {@code Object} to map
+	 */
+	public RestfulStreamingModelMap(Object model) {
+		super(model);
+	}
+
+	/**
+	 * Writes the model map message to the given {@link Writer}.
+	 *
+	 * @param writer
+	 *            the {@code Writer} to write to
+	 * @throws Exception
+	 *             if the model cannot be serialized
+	 */
+	protected abstract void writeMessage(Writer writer) throws Exception;
+
+	@Override
+	public HttpEntity toHttpEntity() {
+		return new StreamingEntity();
+	}
+
+	/**
+	 * Returns the model map message as a {@link String}, which requires it to
+	 * be written in full.
+	 *
+	 * @return model map message
+	 * @throws IOException
+	 *             if the model cannot be serialized
+	 */
+	public String getMessage() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		write(out, false);
+		return out.toString(ENCODING);
+	}
+
+	/**
+	 * Indicates if the message is gzip-compressed as it is written.
+	 *
+	 * @return {@code true} if the message is compressed, {@code false} if not
+	 */
+	public boolean isCompressed() {
+		return mIsCompressed;
+	}
+
+	/**
+	 * Sets whether the message is gzip-compressed as it is written. The web
+	 * service must accept a {@code Content-Encoding} of {@code gzip}.
+	 *
+	 * @param compressed
+	 *            {@code true} to compress the message, {@code false} if not
+	 */
+	public void setCompressed(boolean compressed) {
+		mIsCompressed = compressed;
+	}
+
+	private void write(OutputStream out, boolean compress) throws IOException {
+		GZIPOutputStream gzip = compress ? new GZIPOutputStream(out) : null;
+		Writer writer = new OutputStreamWriter(gzip == null ? out : gzip, ENCODING);
+		try {
+			writeMessage(writer);
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			IOException ex = new IOException("Unable to serialize " + getModel().getClass().getName());
+			ex.initCause(e);
+			throw ex;
+		}
+		writer.flush();
+		// Writes the gzip trailer without closing the underlying stream, which belongs to the caller
+		if (gzip != null)
+			gzip.finish();
+	}
+
+	/**
+	 * {@link HttpEntity} which writes the message to the request output stream
+	 * when the request is sent.
+	 */
+	private class StreamingEntity extends AbstractHttpEntity {
+
+		private final boolean mCompress;
+
+		public StreamingEntity() {
+			mCompress = mIsCompressed;
+			setChunked(true);
+			if (mCompress)
+				setContentEncoding("gzip");
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return true;
+		}
+
+		@Override
+		public long getContentLength() {
+			return -1;
+		}
+
+		@Override
+		public InputStream getContent() throws IOException {
+			// Only needed by callers which read the entity rather than send it
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			writeTo(out);
+			return new ByteArrayInputStream(out.toByteArray());
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			write(out, mCompress);
+		}
+
+		@Override
+		public boolean isStreaming() {
+			return false;
+		}
+
+	}
+
+}
@@ -16,16 +16,17 @@
 
 package com.clarionmedia.infinitum.orm.rest.impl;
 
-import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.simpleframework.xml.Serializer;
-import org.simpleframework.xml.core.Persister;
 
 import com.clarionmedia.infinitum.orm.ObjectMapper;
 import com.clarionmedia.infinitum.orm.exception.InvalidMappingException;
 import com.clarionmedia.infinitum.orm.exception.ModelConfigurationException;
+import com.clarionmedia.infinitum.orm.internal.XmlSerializationEngine;
 import com.clarionmedia.infinitum.orm.persistence.TypeAdapter;
 import com.clarionmedia.infinitum.orm.rest.RestfulMapper;
 import com.clarionmedia.infinitum.orm.rest.RestfulPairsTypeAdapter;
@@ -51,29 +52,40 @@ public class RestfulXmlMapper extends RestfulMapper {
 	 */
 	public RestfulXmlMapper() {
 		mTypeAdapters = new HashMap<Class<?>, RestfulXmlTypeAdapter<?>>();
-		mSerializer = new Persister();
+		mSerializer = XmlSerializationEngine.getSerializer();
 	}
 
 	@Override
-	public RestfulStringModelMap mapModel(Object model) throws InvalidMappingException, ModelConfigurationException {
+	public RestfulStreamingModelMap mapModel(final Object model) throws InvalidMappingException,
+			ModelConfigurationException {
 		// We do not map transient classes!
 		if (!mPersistencePolicy.isPersistent(model.getClass()))
 			return null;
-		RestfulStringModelMap modelMap = new RestfulStringModelMap(model);
-		String xml;
-		if (mTypeAdapters.containsKey(model.getClass()))
-			xml = mTypeAdapters.get(model.getClass()).serializeObjectToXml(model);
-		else {
-			StringWriter writer = new StringWriter();
-			try {
-				mSerializer.write(model, writer);
-				xml = writer.toString();
-			} catch (Exception e) {
-				return null;
+		// The model is serialized straight to the request as it is sent
+		return new RestfulStreamingModelMap(model) {
+			@Override
+			protected void writeMessage(Writer writer) throws Exception {
+				writeModel(model, writer);
 			}
+		};
+	}
+
+	@Override
+	public RestfulStreamingModelMap mapModels(final Collection<?> models) throws InvalidMappingException,
+			ModelConfigurationException {
+		for (Object model : models) {
+			if (!mPersistencePolicy.isPersistent(model.getClass()))
+				return null;
 		}
-		modelMap.setMessage(xml);
-		return modelMap;
+		return new RestfulStreamingModelMap(models) {
+			@Override
+			protected void writeMessage(Writer writer) throws Exception {
+				writer.write("<list>");
+				for (Object model : models)
+					writeModel(model, writer);
+				writer.write("</list>");
+			}
+		};
 	}
 
 	@Override
@@ -92,4 +104,11 @@ public class RestfulXmlMapper extends RestfulMapper {
 		throw new UnsupportedOperationException();
 	}
 
+	private void writeModel(Object model, Writer writer) throws Exception {
+		if (mTypeAdapters.containsKey(model.getClass()))
+			writer.write(mTypeAdapters.get(model.getClass()).serializeObjectToXml(model));
+		else
+			mSerializer.write(model, writer);
+	}
+
 }
@@ -16,16 +16,19 @@
 
 package com.clarionmedia.infinitum.orm.rest.impl;
 
+import java.io.InputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.http.HttpStatus;
-import org.simpleframework.xml.core.Persister;
 
 import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
 import com.clarionmedia.infinitum.orm.Session;
 import com.clarionmedia.infinitum.orm.internal.OrmPreconditions;
+import com.clarionmedia.infinitum.orm.internal.XmlSerializationEngine;
 import com.clarionmedia.infinitum.orm.rest.Deserializer;
 import com.clarionmedia.infinitum.orm.rest.XmlDeserializer;
 import com.clarionmedia.infinitum.web.rest.impl.RestResponse;
@@ -51,37 +54,58 @@ public class RestfulXmlSession extends RestfulSession {
 		mXmlDeserializers = new HashMap<Class<?>, XmlDeserializer<?>>();
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public <T> T loadEntity(Class<T> type, Serializable id) throws InfinitumRuntimeException, IllegalArgumentException {
 		OrmPreconditions.checkForOpenSession(mIsOpen);
 		OrmPreconditions.checkPersistenceForLoading(type, mPersistencePolicy);
 		mLogger.debug("Sending GET request to retrieve entity");
 		String uri = mHost + mPersistencePolicy.getRestEndpoint(type) + "/" + id;
+		T ret = requestEntity(type, uri, "application/xml");
+		if (ret != null) {
+		    int objHash = mPersistencePolicy.computeModelHash(ret);
+		    cache(objHash, ret);
+		}
+		return ret;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	protected <T> T deserializeEntity(Class<T> type, InputStream response) throws Exception {
+		// Attempt to use a registered deserializer
+		if (mXmlDeserializers.containsKey(type))
+			return (T) mXmlDeserializers.get(type).deserializeObject(readString(response));
+		// Otherwise fallback to Simple
+		return XmlSerializationEngine.read(type, response);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	protected <T> List<T> loadEntities(Class<T> type, String uri) {
+		OrmPreconditions.checkForOpenSession(mIsOpen);
+		mLogger.debug("Sending GET request to retrieve entities");
 		Map<String, String> headers = new HashMap<String, String>();
 		headers.put("Accept", "application/xml");
+		RestResponse response = getRestClient().executeGet(uri, headers);
+		if (response == null || response.getStatusCode() != HttpStatus.SC_OK)
+			return new ArrayList<T>(0);
+		InputStream xmlResponse = getResponseStream(response);
+		List<T> ret;
 		try {
-			RestResponse response = mRestClient.executeGet(uri, headers);
-			if (response.getStatusCode() == HttpStatus.SC_OK) {
-				String xmlResponse = response.getResponseDataAsString();
-				T ret = null;
-				// Attempt to use a registered deserializer
-				if (mXmlDeserializers.containsKey(type))
-					ret = (T) mXmlDeserializers.get(type).deserializeObject(xmlResponse);
-				// Otherwise fallback to Simple
-				else
-					ret = new Persister().read(type, xmlResponse);
-				if (ret != null) {
-				    int objHash = mPersistencePolicy.computeModelHash(ret);
-				    cache(objHash, ret);
-				}
-				return ret;
-			}
+			// Attempt to use a registered deserializer
+			if (mXmlDeserializers.containsKey(type))
+				ret = (List<T>) mXmlDeserializers.get(type).deserializeObjects(readString(xmlResponse));
+			// Otherwise read each child of the root element with Simple
+			else
+				ret = XmlSerializationEngine.readList(type, xmlResponse);
 		} catch (Exception e) {
 			mLogger.error("Unable to read web service response", e);
-			return null;
+			return new ArrayList<T>(0);
+		}
+		for (T entity : ret) {
+			if (entity != null)
+				cache(mPersistencePolicy.computeModelHash(entity), entity);
 		}
-		return null;
+		return ret;
 	}
 
 	@Override
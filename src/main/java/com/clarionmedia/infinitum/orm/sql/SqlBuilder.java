@@ -17,6 +17,7 @@
 package com.clarionmedia.infinitum.orm.sql;
 
 import java.io.Serializable;
+import java.lang.reflect.Field;
 import java.util.List;
 
 import com.clarionmedia.infinitum.context.exception.InfinitumConfigurationException;
@@ -80,6 +81,21 @@ public interface SqlBuilder {
 	 */
 	String createQuery(Criteria<?> criteria);
 
+	/**
+	 * Generates a SQL query {@link String} from the given {@link Criteria}
+	 * which uses {@code ?} placeholders rather than inlined values, so that
+	 * queries of the same shape produce the same SQL and can reuse prepared
+	 * statements.
+	 *
+	 * @param criteria
+	 *            the {@code Criteria} to build the SQL query from
+	 * @param args
+	 *            the {@link List} the bound values are added to, in
+	 *            placeholder order
+	 * @return SQL query
+	 */
+	String createQuery(Criteria<?> criteria, List<Object> args);
+
 	/**
 	 * Generates a SQL query {@link String} from the given {@link Criteria} for
 	 * counting records.
@@ -90,6 +106,20 @@ public interface SqlBuilder {
 	 */
 	String createCountQuery(Criteria<?> criteria);
 
+	/**
+	 * Generates a SQL query {@link String} from the given {@link Criteria} for
+	 * counting records which uses {@code ?} placeholders rather than inlined
+	 * values.
+	 *
+	 * @param criteria
+	 *            the {@code Criteria} to build the SQL query from
+	 * @param args
+	 *            the {@link List} the bound values are added to, in
+	 *            placeholder order
+	 * @return SQL query
+	 */
+	String createCountQuery(Criteria<?> criteria, List<Object> args);
+
 	/**
 	 * Generates a SQL query {@link String} from the given
 	 * {@link ManyToManyRelationship} which retrieves rows of the given
@@ -122,6 +152,29 @@ public interface SqlBuilder {
 			Serializable id, Class<?> direction)
 			throws InfinitumRuntimeException;
 
+	/**
+	 * Generates a SQL query {@link String} from the given
+	 * {@link ManyToManyRelationship} which retrieves rows of the given
+	 * direction type which are associated with any of a batch of IDs. The IDs
+	 * are bound to {@code ?} placeholders, and each row includes the ID it is
+	 * associated with in the {@link SqlConstants#BATCH_KEY_ALIAS} column.
+	 *
+	 * @param rel
+	 *            the {@link ManyToManyRelationship} containing the association
+	 *            being queried
+	 * @param idCount
+	 *            the number of IDs in the batch
+	 * @param direction
+	 *            the direction the relationship is being queried in, returning
+	 *            records of this {@link Class}
+	 * @return SQL query
+	 * @throws InfinitumRuntimeException
+	 *             if the direction {@code Class} is not a part of the given
+	 *             {@code ManyToManyRelationship}
+	 */
+	String createManyToManyBatchJoinQuery(ManyToManyRelationship rel,
+			int idCount, Class<?> direction) throws InfinitumRuntimeException;
+
 	/**
 	 * Generates a SQL {@link String} consisting of the query for deleting stale
 	 * many-to-many relationships.
@@ -200,4 +253,18 @@ public interface SqlBuilder {
 	 */
 	String createUpdateQuery(Object model, Object related, String column);
 
+	/**
+	 * Generates a parameterized SQL insert statement for the given model
+	 * {@link Class}. The statement contains one {@code ?} placeholder per
+	 * column, in the same order as the given {@link Field} list, so that it
+	 * can be compiled once and bound positionally for each row inserted.
+	 * 
+	 * @param c
+	 *            the model {@code Class} to insert into
+	 * @param columns
+	 *            the persistent {@code Fields} to insert, in binding order
+	 * @return SQL insert statement
+	 */
+	String createInsertStatement(Class<?> c, List<Field> columns);
+
 }
@@ -67,5 +67,9 @@ public class SqlConstants {
     public static final String ALIASED_SELECT_ALL_FROM = "SELECT %s.* FROM ";
     public static final String DELETE_FROM = "DELETE FROM ";
     public static final String DELETE_FROM_WHERE = "DELETE FROM %s WHERE ";
+    public static final String INSERT_INTO = "INSERT INTO ";
+    public static final String VALUES = "VALUES";
+    public static final String DEFAULT_VALUES = "DEFAULT VALUES";
+    public static final String BATCH_KEY_ALIAS = "infinitum_batch_key";
 
 }
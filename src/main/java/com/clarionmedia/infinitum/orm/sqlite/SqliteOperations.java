@@ -17,11 +17,13 @@
 package com.clarionmedia.infinitum.orm.sqlite;
 
 import java.lang.reflect.Field;
+import java.util.Collection;
 import java.util.Map;
 
 import android.database.Cursor;
 import android.database.SQLException;
 
+import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
 import com.clarionmedia.infinitum.orm.DatastoreOperations;
 import com.clarionmedia.infinitum.orm.exception.SQLGrammarException;
 import com.clarionmedia.infinitum.orm.persistence.TypeAdapter;
@@ -117,6 +119,35 @@ public interface SqliteOperations extends DatastoreOperations {
 	 */
 	Cursor executeForResult(String sql) throws SQLGrammarException;
 
+	/**
+	 * Executes the given SQL query on the database for a result, binding the
+	 * given arguments to its {@code ?} placeholders.
+	 * 
+	 * @param sql
+	 *            the SQL query to execute
+	 * @param args
+	 *            the values to bind, in placeholder order, or {@code null}
+	 * @return {@link Cursor} containing the results of the query
+	 * @throws SQLGrammarException
+	 *             if the SQL was formatted incorrectly
+	 */
+	Cursor executeForResult(String sql, String[] args) throws SQLGrammarException;
+
+	/**
+	 * Persists the given collection of models using a single precompiled
+	 * insert statement per model {@link Class}, bound positionally for each
+	 * row, and wraps the entire batch in one database transaction. Cascading
+	 * and relationships are handled the same way as for a single save.
+	 * 
+	 * @param models
+	 *            the models to persist
+	 * @return the row ID of each model in iteration order, or -1 for any model
+	 *         which could not be saved
+	 * @throws InfinitumRuntimeException
+	 *             if one or more of the models is marked transient
+	 */
+	long[] saveAll(Collection<?> models) throws InfinitumRuntimeException;
+
 	/**
 	 * Registers the given {@link TypeAdapter} for the specified {@link Class}
 	 * with this {@code SqliteMapper} instance. The {@code TypeAdapter} allows a
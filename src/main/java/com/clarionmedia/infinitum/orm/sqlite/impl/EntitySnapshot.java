@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+/**
+ * <p> The state of an entity as it was last read from or written to the database, used to detect which of its columns
+ * and relationships have changed since. For each relationship, the snapshot holds the value of the relationship field
+ * and, for collections which have been loaded, the entities the collection contained. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 10/17/26
+ * @since 1.1.0
+ */
+public class EntitySnapshot {
+
+    private final Object mEntity;
+    private final Object[] mValues;
+    private final Object[] mRelated;
+    private final Object[][] mMembers;
+
+    /**
+     * Constructs a new {@code EntitySnapshot}.
+     *
+     * @param entity  the entity instance the snapshot was taken of
+     * @param values  the column values in {@link SqliteRowReader} order
+     * @param related the value of each relationship field
+     * @param members the entities contained in each loaded collection relationship, or {@code null} for
+     *                relationships which are not loaded collections
+     */
+    public EntitySnapshot(Object entity, Object[] values, Object[] related, Object[][] members) {
+        mEntity = entity;
+        mValues = values;
+        mRelated = related;
+        mMembers = members;
+    }
+
+    /**
+     * Returns the entity instance the snapshot was taken of.
+     *
+     * @return entity
+     */
+    public Object getEntity() {
+        return mEntity;
+    }
+
+    /**
+     * Returns the column values of the entity in {@link SqliteRowReader} order.
+     *
+     * @return column values
+     */
+    public Object[] getValues() {
+        return mValues;
+    }
+
+    /**
+     * Returns the value of the relationship field at the given index.
+     *
+     * @param relationship the index of the relationship
+     * @return field value
+     */
+    public Object getRelated(int relationship) {
+        return mRelated[relationship];
+    }
+
+    /**
+     * Returns the entities contained in the collection relationship at the given index.
+     *
+     * @param relationship the index of the relationship
+     * @return collection members or {@code null} if the relationship is not a loaded collection
+     */
+    public Object[] getMembers(int relationship) {
+        return mMembers[relationship];
+    }
+
+}
@@ -20,7 +20,10 @@ import android.database.Cursor;
 import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.criteria.AssociationCriteria;
+import com.clarionmedia.infinitum.orm.criteria.Criteria;
+import com.clarionmedia.infinitum.orm.criteria.CriteriaIterator;
 import com.clarionmedia.infinitum.orm.criteria.criterion.Criterion;
+import com.clarionmedia.infinitum.orm.exception.InvalidCriteriaException;
 import com.clarionmedia.infinitum.orm.relationship.ModelRelationship;
 import com.clarionmedia.infinitum.orm.sql.SqlBuilder;
 
@@ -81,26 +84,33 @@ public class SqliteAssociationCriteria extends SqliteCriteria<Object> implements
     @Override
     public List<Object> list() {
         SqliteCriteria<?> criteria = getRootCriteria();
+        if (criteria.isCacheable())
+            return new ArrayList<Object>(criteria.list());
 
-        Cursor result = criteria.mSession.executeForResult(criteria.getRepresentation());
-        List<Object> ret = new ArrayList<Object>(result.getCount());
+        Cursor result = criteria.executeQuery();
         if (result.getCount() == 0) {
             result.close();
-            return ret;
+            return new ArrayList<Object>(0);
         }
         try {
-            while (result.moveToNext()) {
-                Object entity = criteria.mModelFactory.createFromCursor(result, criteria.mEntityClass);
-                ret.add(entity);
-                // Cache results
-                criteria.mSession.cache(criteria.mPersistencePolicy.computeModelHash(entity), entity);
-            }
+            // Hydrate the whole result set at once so relationships are fetched in batches
+            List<Object> ret = new ArrayList<Object>(criteria.mModelFactory.createAllFromCursor(result,
+                    criteria.mEntityClass, criteria.getFetches()));
+            // Cache results
+            for (Object entity : ret)
+                criteria.mSession.cache(entity);
             return ret;
         } finally {
             result.close();
         }
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public CriteriaIterator<Object> iterate(boolean cacheResults) {
+        return (CriteriaIterator<Object>) getRootCriteria().iterate(cacheResults);
+    }
+
     @Override
     public <E> E unique(Class<E> type) {
         return (E) unique();
@@ -109,8 +119,10 @@ public class SqliteAssociationCriteria extends SqliteCriteria<Object> implements
     @Override
     public Object unique() throws InfinitumRuntimeException {
         SqliteCriteria<?> criteria = getRootCriteria();
+        if (criteria.isCacheable())
+            return criteria.unique();
 
-        Cursor result = criteria.mSession.executeForResult(criteria.getRepresentation());
+        Cursor result = criteria.executeQuery();
         if (result.getCount() > 1) {
             throw new InfinitumRuntimeException(String.format("Criteria query for '%s' specified unique result but " +
                     "there were %d results.",
@@ -121,9 +133,10 @@ public class SqliteAssociationCriteria extends SqliteCriteria<Object> implements
         }
         result.moveToFirst();
         try {
-            Object ret = criteria.mModelFactory.createFromCursor(result, criteria.mEntityClass);
+            Object ret = criteria.mModelFactory.createFromCursor(result, criteria.mEntityClass, criteria.getFetches(),
+                    true);
             // Cache result
-            criteria.mSession.cache(criteria.mPersistencePolicy.computeModelHash(ret), ret);
+            criteria.mSession.cache(ret);
             return ret;
         } finally {
             result.close();
@@ -148,11 +161,29 @@ public class SqliteAssociationCriteria extends SqliteCriteria<Object> implements
         return this;
     }
 
+    @Override
+    public Criteria<Object> cacheable() {
+        // Results are always those of the root Criteria
+        getRootCriteria().cacheable();
+        return this;
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return getRootCriteria().isCacheable();
+    }
+
+    @Override
+    public Criteria<Object> fetch(String association) throws InvalidCriteriaException {
+        // Association Criteria only contribute a sub-query, so there is nothing to join to
+        throw new InvalidCriteriaException("Associations can only be fetched from the root Criteria.");
+    }
+
     @Override
     public long count() {
         SqliteCriteria<?> criteria = getRootCriteria();
 
-        Cursor result = criteria.mSession.executeForResult(criteria.mSqlBuilder.createCountQuery(criteria));
+        Cursor result = criteria.executeCountQuery();
         result.moveToFirst();
         long ret = result.getLong(0);
         result.close();
@@ -162,7 +193,7 @@ public class SqliteAssociationCriteria extends SqliteCriteria<Object> implements
     @Override
     public Cursor cursor() {
         SqliteCriteria<?> criteria = getRootCriteria();
-        return criteria.mSession.executeForResult(criteria.getRepresentation());
+        return criteria.executeQuery();
     }
 
     private SqliteCriteria<?> getRootCriteria() {
@@ -20,6 +20,7 @@ import android.database.sqlite.SQLiteDatabase;
 import com.clarionmedia.infinitum.context.exception.InfinitumConfigurationException;
 import com.clarionmedia.infinitum.di.annotation.Autowired;
 import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
+import com.clarionmedia.infinitum.internal.caching.LruCache;
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.criteria.AssociationCriteria;
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
@@ -27,6 +28,9 @@ import com.clarionmedia.infinitum.orm.criteria.Order;
 import com.clarionmedia.infinitum.orm.criteria.criterion.Criterion;
 import com.clarionmedia.infinitum.orm.exception.InvalidCriteriaException;
 import com.clarionmedia.infinitum.orm.exception.ModelConfigurationException;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata.ColumnMetadata;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata.RelationshipMetadata;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
 import com.clarionmedia.infinitum.orm.persistence.TypeResolutionPolicy.SqliteDataType;
 import com.clarionmedia.infinitum.orm.relationship.*;
@@ -36,7 +40,9 @@ import com.clarionmedia.infinitum.reflection.ClassReflector;
 
 import java.io.Serializable;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p> Implementation of {@link SqlBuilder} for interacting with a SQLite database. </p>
@@ -50,6 +56,8 @@ public class SqliteBuilder implements SqlBuilder {
     // TODO: this class currently doesn't handle reserved keywords.
     // See: http://www.sqlite.org/lang_keywords.html
 
+    private static final int QUERY_CACHE_SIZE = 64;
+
     @Autowired
     private SqliteMapper mMapper;
 
@@ -62,6 +70,11 @@ public class SqliteBuilder implements SqlBuilder {
     @Autowired
     private InfinitumOrmContext mContext;
 
+    // Only queries with bound values are cached, since their SQL does not depend on the Criterion values
+    private final LruCache<String, String> mQueryCache = new LruCache<String, String>(QUERY_CACHE_SIZE);
+    private final AtomicLong mQueryCacheHits = new AtomicLong();
+    private final AtomicLong mQueryCacheMisses = new AtomicLong();
+
     @Override
     public int createTables(SqliteDbHelper dbHelper) throws ModelConfigurationException,
             InfinitumConfigurationException {
@@ -110,11 +123,72 @@ public class SqliteBuilder implements SqlBuilder {
 
     @Override
     public String createQuery(Criteria<?> criteria) {
-        return createQuery(criteria, SqlConstants.SELECT_ALL_FROM);
+        return appendFetchJoins(criteria, createQuery(criteria, SqlConstants.SELECT_ALL_FROM, null));
+    }
+
+    @Override
+    public String createQuery(Criteria<?> criteria, List<Object> args) {
+        StringBuilder key = new StringBuilder(SqlConstants.SELECT_ALL_FROM);
+        appendQueryShape(key, criteria);
+        String sql = getCachedQuery(key.toString());
+        if (sql != null) {
+            collectQueryArgs(criteria, args);
+            return sql;
+        }
+        sql = appendFetchJoins(criteria, createQuery(criteria, SqlConstants.SELECT_ALL_FROM, args));
+        cacheQuery(key.toString(), sql);
+        return sql;
     }
 
     @Override
     public String createCountQuery(Criteria<?> criteria) {
+        return buildCountQuery(criteria, null);
+    }
+
+    @Override
+    public String createCountQuery(Criteria<?> criteria, List<Object> args) {
+        StringBuilder key = new StringBuilder(SqlConstants.SELECT_COUNT_FROM);
+        appendQueryShape(key, criteria);
+        String sql = getCachedQuery(key.toString());
+        if (sql != null) {
+            for (Criterion criterion : criteria.getCriterion())
+                criterion.collectArgs(criteria, args);
+            return sql;
+        }
+        sql = buildCountQuery(criteria, args);
+        cacheQuery(key.toString(), sql);
+        return sql;
+    }
+
+    /**
+     * Returns the number of queries served from the generated SQL cache.
+     *
+     * @return query cache hits
+     */
+    public long getQueryCacheHitCount() {
+        return mQueryCacheHits.get();
+    }
+
+    /**
+     * Returns the number of queries which had to be generated because they were not in the generated SQL cache.
+     *
+     * @return query cache misses
+     */
+    public long getQueryCacheMissCount() {
+        return mQueryCacheMisses.get();
+    }
+
+    /**
+     * Clears the generated SQL cache. This should be called if anything the generated SQL depends on, such as
+     * registered type adapters, changes.
+     */
+    public void clearQueryCache() {
+        synchronized (mQueryCache) {
+            mQueryCache.clear();
+        }
+    }
+
+    private String buildCountQuery(Criteria<?> criteria, List<Object> args) {
         Class<?> c = criteria.getEntityClass();
         StringBuilder query = new StringBuilder(SqlConstants.SELECT_COUNT_FROM).append(mPersistencePolicy
                 .getModelTableName(c));
@@ -122,7 +196,7 @@ public class SqliteBuilder implements SqlBuilder {
         for (Criterion criterion : criteria.getCriterion()) {
             query.append(prefix);
             prefix = ' ' + SqlConstants.AND + ' ';
-            query.append(criterion.toSql(criteria));
+            query.append(toSql(criterion, criteria, args));
         }
         int limit = criteria.getLimit();
         if (limit > 0)
@@ -138,12 +212,40 @@ public class SqliteBuilder implements SqlBuilder {
     @Override
     public String createManyToManyJoinQuery(ManyToManyRelationship rel, Serializable id, Class<?> direction)
             throws InfinitumRuntimeException {
+        StringBuilder query = new StringBuilder(String.format(SqlConstants.ALIASED_SELECT_ALL_FROM, 'x'));
+        appendManyToManyJoin(query, rel, direction);
+        query.append(" = ");
+        switch (mMapper.getSqliteDataType(id)) {
+            case TEXT:
+                query.append("'").append(id).append("'");
+                break;
+            default:
+                query.append(id);
+        }
+        return query.toString();
+    }
+
+    @Override
+    public String createManyToManyBatchJoinQuery(ManyToManyRelationship rel, int idCount, Class<?> direction)
+            throws InfinitumRuntimeException {
+        Field keyField = direction == rel.getFirstType() ? rel.getSecondField() : rel.getFirstField();
+        StringBuilder query = new StringBuilder("SELECT x.*, y.").append(mPersistencePolicy.getFieldColumnName
+                (keyField)).append(" AS ").append(SqlConstants.BATCH_KEY_ALIAS).append(" FROM ");
+        appendManyToManyJoin(query, rel, direction);
+        query.append(' ').append(SqlConstants.IN).append(" (");
+        for (int i = 0; i < idCount; i++)
+            query.append(i == 0 ? "?" : ", ?");
+        return query.append(')').toString();
+    }
+
+    // Appends the tables and join conditions of a many-to-many query, up to the associated key column
+    private void appendManyToManyJoin(StringBuilder query, ManyToManyRelationship rel, Class<?> direction)
+            throws InfinitumRuntimeException {
         if (!rel.contains(direction))
             throw new InfinitumRuntimeException(String.format("'%s' is not a valid direction for relationship " +
                     "'%s'<=>'%s'.",
                     direction.getName(), rel.getFirstType().getName(), rel.getSecondType().getName()));
-        StringBuilder query = new StringBuilder(String.format(SqlConstants.ALIASED_SELECT_ALL_FROM, 'x')).append(
-                mPersistencePolicy.getModelTableName(rel.getFirstType())).append(' ');
+        query.append(mPersistencePolicy.getModelTableName(rel.getFirstType())).append(' ');
         if (direction == rel.getFirstType())
             query.append("x, ");
         else
@@ -165,7 +267,7 @@ public class SqliteBuilder implements SqlBuilder {
                     .append("y.")
                     .append(mPersistencePolicy.getFieldColumnName(rel.getSecondField())).append(' ').append
                     (SqlConstants.AND).append(" y.")
-                    .append(mPersistencePolicy.getFieldColumnName(rel.getSecondField())).append(" = ");
+                    .append(mPersistencePolicy.getFieldColumnName(rel.getSecondField()));
         } else {
             query.append(mPersistencePolicy.getModelTableName(rel.getSecondType())).append('_')
                     .append(mPersistencePolicy.getFieldColumnName(rel.getSecondField())).append("_2").append(" = ")
@@ -177,16 +279,8 @@ public class SqliteBuilder implements SqlBuilder {
                     .append("y.")
                     .append(mPersistencePolicy.getFieldColumnName(rel.getFirstField())).append(' ').append
                     (SqlConstants.AND).append(" y.")
-                    .append(mPersistencePolicy.getFieldColumnName(rel.getFirstField())).append(" = ");
+                    .append(mPersistencePolicy.getFieldColumnName(rel.getFirstField()));
         }
-        switch (mMapper.getSqliteDataType(id)) {
-            case TEXT:
-                query.append("'").append(id).append("'");
-                break;
-            default:
-                query.append(id);
-        }
-        return query.toString();
     }
 
     @Override
@@ -350,6 +444,23 @@ public class SqliteBuilder implements SqlBuilder {
         return update.toString();
     }
 
+    @Override
+    public String createInsertStatement(Class<?> c, List<Field> columns) {
+        StringBuilder insert = new StringBuilder(SqlConstants.INSERT_INTO).append(
+                mPersistencePolicy.getModelTableName(c)).append(" ");
+        if (columns.size() == 0)
+            return insert.append(SqlConstants.DEFAULT_VALUES).toString();
+        StringBuilder params = new StringBuilder();
+        String prefix = "(";
+        for (Field column : columns) {
+            insert.append(prefix).append(mPersistencePolicy.getFieldColumnName(column));
+            params.append(prefix).append("?");
+            prefix = ", ";
+        }
+        insert.append(") ").append(SqlConstants.VALUES).append(" ").append(params).append(")");
+        return insert.toString();
+    }
+
     /**
      * Returns a SQL fragment which is a query discriminator for the given {@link AssociationCriteria}. This is used to
      * query on entity associations.
@@ -359,6 +470,20 @@ public class SqliteBuilder implements SqlBuilder {
      * @return SQL fragment
      */
     public String getAssociationCriteriaDiscriminator(Class<?> parentType, AssociationCriteria<?> criteria) {
+        return getAssociationCriteriaDiscriminator(parentType, criteria, null);
+    }
+
+    /**
+     * Returns a SQL fragment which is a query discriminator for the given {@link AssociationCriteria}, using {@code ?}
+     * placeholders for the values of its {@link Criterion}.
+     *
+     * @param parentType the parent {@link Criteria} of the given {@code AssociationCriteria}
+     * @param criteria   the {@code AssociationCriteria} to generate the query discriminator for
+     * @param args       the {@link List} to add bound values to, in placeholder order, or {@code null} to inline them
+     * @return SQL fragment
+     */
+    public String getAssociationCriteriaDiscriminator(Class<?> parentType, AssociationCriteria<?> criteria,
+                                                      List<Object> args) {
         ModelRelationship relationship = criteria.getRelationship();
         StringBuilder sb = new StringBuilder();
 
@@ -372,20 +497,20 @@ public class SqliteBuilder implements SqlBuilder {
             case OneToOne:
                 OneToOneRelationship oto = (OneToOneRelationship) relationship;
                 if (oto.getOwner() == criteria.getEntityClass()) {
-                    appendDiscriminatorForFKRelationshipSlave(sb, oto, parentType, criteria);
+                    appendDiscriminatorForFKRelationshipSlave(sb, oto, parentType, criteria, args);
                 } else {
-                    appendDiscriminatorForFKRelationshipMaster(sb, relationshipField, pkCol, criteria);
+                    appendDiscriminatorForFKRelationshipMaster(sb, relationshipField, pkCol, criteria, args);
                 }
                 break;
             case ManyToOne:
-                appendDiscriminatorForFKRelationshipMaster(sb, relationshipField, pkCol, criteria);
+                appendDiscriminatorForFKRelationshipMaster(sb, relationshipField, pkCol, criteria, args);
                 break;
             case OneToMany:
                 OneToManyRelationship otm = (OneToManyRelationship) relationship;
                 if (otm.getOwner() == criteria.getEntityClass()) {
-                    appendDiscriminatorForFKRelationshipSlave(sb, otm, parentType, criteria);
+                    appendDiscriminatorForFKRelationshipSlave(sb, otm, parentType, criteria, args);
                 } else {
-                    appendDiscriminatorForFKRelationshipMaster(sb, relationshipField, pkCol, criteria);
+                    appendDiscriminatorForFKRelationshipMaster(sb, relationshipField, pkCol, criteria, args);
                 }
                 break;
             case ManyToMany:
@@ -407,7 +532,7 @@ public class SqliteBuilder implements SqlBuilder {
                 sb.append(parentPkCol).append(" ").append(SqlConstants.IN).append(" (SELECT ").append(mtmParent)
                         .append(" FROM ").append(mtm.getTableName()).append(" ").append(SqlConstants.WHERE).append(" " +
                         "").append(mtmChild).append(" ").append(SqlConstants.IN).append(" (");
-                subQuery = createQuery(criteria, "SELECT " + pkCol + " FROM ");
+                subQuery = createQuery(criteria, "SELECT " + pkCol + " FROM ", args);
                 sb.append(subQuery).append("))");
                 break;
         }
@@ -416,24 +541,26 @@ public class SqliteBuilder implements SqlBuilder {
     }
 
     private void appendDiscriminatorForFKRelationshipSlave(StringBuilder sb, ForeignKeyRelationship fkRelationship,
-                                                           Class<?> parentType, AssociationCriteria<?> criteria) {
+                                                           Class<?> parentType, AssociationCriteria<?> criteria,
+                                                           List<Object> args) {
         String fkColumn = fkRelationship.getColumn();
         Field nonOwnerPkField = mPersistencePolicy.getPrimaryKeyField(parentType);
         String nonOwnerPkCol = mPersistencePolicy.getFieldColumnName(nonOwnerPkField);
         sb.append(nonOwnerPkCol).append(" ").append(SqlConstants.IN).append(" (");
-        String subQuery = createQuery(criteria, "SELECT " + fkColumn + " FROM ");
+        String subQuery = createQuery(criteria, "SELECT " + fkColumn + " FROM ", args);
         sb.append(subQuery).append(")");
     }
 
     private void appendDiscriminatorForFKRelationshipMaster(StringBuilder sb, Field relationshipField, String pkCol,
-                                                            AssociationCriteria<?> criteria) {
+                                                            AssociationCriteria<?> criteria, List<Object> args) {
         String fkColumn = mPersistencePolicy.getFieldColumnName(relationshipField);
         sb.append(fkColumn).append(" ").append(SqlConstants.IN).append(" (");
-        String subQuery = createQuery(criteria, "SELECT " + pkCol + " FROM ");
+        String subQuery = createQuery(criteria, "SELECT " + pkCol + " FROM ", args);
         sb.append(subQuery).append(")");
     }
 
-    private String createQuery(Criteria<?> criteria, String selectStatement) {
+    // Values are inlined into the SQL if args is null, otherwise they are bound in placeholder order
+    private String createQuery(Criteria<?> criteria, String selectStatement, List<Object> args) {
         Class<?> c = criteria.getEntityClass();
         StringBuilder query = new StringBuilder(selectStatement).append(mPersistencePolicy
                 .getModelTableName(c));
@@ -443,35 +570,26 @@ public class SqliteBuilder implements SqlBuilder {
         for (Criterion criterion : criteria.getCriterion()) {
             query.append(prefix);
             prefix = ' ' + SqlConstants.AND + ' ';
-            query.append(criterion.toSql(criteria));
+            query.append(toSql(criterion, criteria, args));
         }
 
         // Append association Criteria expressions
         for (AssociationCriteria<?> associationCriteria : criteria.getAssociationCriteria()) {
             query.append(prefix);
             prefix = ' ' + SqlConstants.AND + ' ';
-            query.append(getAssociationCriteriaDiscriminator(c, associationCriteria));
+            query.append(getAssociationCriteriaDiscriminator(c, associationCriteria, args));
         }
 
-        // Append order by expressions
-        if (criteria.getOrderings().size() > 0) {
-            query.append(' ').append(SqlConstants.ORDER_BY).append(' ');
-            String separator = "";
-            for (Order ordering : criteria.getOrderings()) {
-                query.append(separator);
-                separator = ", ";
-                Field field = mPersistencePolicy.findPersistentField(c, ordering.getProperty());
-                if (field == null)
-                    throw new InvalidCriteriaException(String.format("Invalid Criteria for type '%s'.", c.getName()));
-                String column = mPersistencePolicy.getFieldColumnName(field);
-                query.append(column).append(' ');
-                if (ordering.isIgnoreCase()) {
-                    query.append(SqlConstants.COLLATE_NOCASE).append(' ');
-                }
-                query.append(ordering.getOrdering().name());
-            }
+        // Append keyset pagination expression
+        Object[] seekValues = criteria.getSeekValues();
+        if (seekValues != null) {
+            query.append(prefix);
+            appendSeekExpression(query, c, criteria.getOrderings(), seekValues, args);
         }
 
+        // Append order by expressions
+        appendOrderBy(query, c, criteria.getOrderings(), "");
+
         // Append limit and offset expressions
         int limit = criteria.getLimit();
         if (limit > 0)
@@ -484,6 +602,228 @@ public class SqliteBuilder implements SqlBuilder {
         return query.toString();
     }
 
+    private void appendOrderBy(StringBuilder query, Class<?> c, List<Order> orderings, String qualifier) {
+        if (orderings.size() == 0)
+            return;
+        query.append(' ').append(SqlConstants.ORDER_BY).append(' ');
+        String separator = "";
+        for (Order ordering : orderings) {
+            query.append(separator);
+            separator = ", ";
+            Field field = mPersistencePolicy.findPersistentField(c, ordering.getProperty());
+            if (field == null)
+                throw new InvalidCriteriaException(String.format("Invalid Criteria for type '%s'.", c.getName()));
+            String column = mPersistencePolicy.getFieldColumnName(field);
+            query.append(qualifier).append(column).append(' ');
+            if (ordering.isIgnoreCase()) {
+                query.append(SqlConstants.COLLATE_NOCASE).append(' ');
+            }
+            query.append(ordering.getOrdering().name());
+        }
+    }
+
+    /**
+     * Wraps the given query in one which {@code LEFT JOIN}s each association fetched by the {@link Criteria}. The
+     * original query becomes a sub-query aliased {@code root}, so its unqualified column references stay unambiguous,
+     * and the columns of each joined entity are aliased with the prefix given by {@link #getFetchColumnPrefix(int)}.
+     */
+    private String appendFetchJoins(Criteria<?> criteria, String query) {
+        List<Field> fetches = criteria.getFetches();
+        if (fetches.size() == 0)
+            return query;
+        Class<?> c = criteria.getEntityClass();
+        StringBuilder select = new StringBuilder("SELECT root.*");
+        StringBuilder joins = new StringBuilder();
+        for (int i = 0; i < fetches.size(); i++) {
+            ModelRelationship relationship = mPersistencePolicy.getRelationship(fetches.get(i));
+            Class<?> related = relationship.getFirstType() == c ? relationship.getSecondType() : relationship
+                    .getFirstType();
+            EntityMetadata metadata = mPersistencePolicy.getEntityMetadata(related);
+            String alias = "f" + i;
+            String prefix = getFetchColumnPrefix(i);
+            for (ColumnMetadata column : metadata.getColumns())
+                select.append(", ").append(alias).append('.').append(column.getColumnName()).append(" AS ")
+                        .append(prefix).append(column.getColumnName());
+            for (String fkColumn : getForeignKeyColumns(metadata))
+                select.append(", ").append(alias).append('.').append(fkColumn).append(" AS ").append(prefix)
+                        .append(fkColumn);
+            String relatedPk = mPersistencePolicy.getFieldColumnName(metadata.getPrimaryKeyField());
+            joins.append(" LEFT JOIN ").append(metadata.getTableName()).append(' ').append(alias).append(" ON ");
+            switch (relationship.getRelationType()) {
+                case ManyToOne:
+                    joins.append(alias).append('.').append(relatedPk).append(" = root.")
+                            .append(((ManyToOneRelationship) relationship).getColumn());
+                    break;
+                case OneToOne:
+                    OneToOneRelationship oto = (OneToOneRelationship) relationship;
+                    if (oto.getOwner() == c) {
+                        joins.append(alias).append('.').append(relatedPk).append(" = root.").append(oto.getColumn());
+                    } else {
+                        String pkCol = mPersistencePolicy.getFieldColumnName(mPersistencePolicy.getPrimaryKeyField(c));
+                        joins.append(alias).append('.').append(oto.getColumn()).append(" = root.").append(pkCol);
+                    }
+                    break;
+                default:
+                    throw new InvalidCriteriaException(String.format("Only to-one associations can be fetched for " +
+                            "type '%s'.", c.getName()));
+            }
+        }
+        StringBuilder sql = select.append(" FROM (").append(query).append(") root").append(joins);
+        // Joins do not guarantee the sub-query's order is preserved
+        appendOrderBy(sql, c, criteria.getOrderings(), "root.");
+        return sql.toString();
+    }
+
+    // Columns of the entity's table which hold the foreign keys of its to-one relationships
+    private List<String> getForeignKeyColumns(EntityMetadata metadata) {
+        List<String> ret = new ArrayList<String>();
+        for (RelationshipMetadata relationship : metadata.getRelationships()) {
+            ModelRelationship rel = relationship.getRelationship();
+            if (rel instanceof ManyToOneRelationship || (rel instanceof OneToOneRelationship &&
+                    ((OneToOneRelationship) rel).getOwner() == metadata.getEntityClass()))
+                ret.add(((ForeignKeyRelationship) rel).getColumn());
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the prefix of the result column aliases under which the entity joined by the fetch at the given index
+     * is selected.
+     *
+     * @param index the index of the fetched association within {@link Criteria#getFetches()}
+     * @return column alias prefix
+     */
+    static String getFetchColumnPrefix(int index) {
+        return "f" + index + "__";
+    }
+
+    /**
+     * Appends the keyset predicate selecting rows ordered after the given seek values. The row-value comparison {@code
+     * (a, b) > (x, y)} is expanded to {@code (a > x) OR (a = x AND b > y)}, since older SQLite versions do not support
+     * row values and each ordering may have its own direction.
+     */
+    private void appendSeekExpression(StringBuilder query, Class<?> c, List<Order> orderings, Object[] seekValues,
+                                      List<Object> args) {
+        if (orderings.size() == 0 || orderings.size() != seekValues.length)
+            throw new InvalidCriteriaException(String.format("Keyset pagination for type '%s' requires one value " +
+                    "per ordering.", c.getName()));
+        String[] columns = new String[seekValues.length];
+        String[] values = new String[seekValues.length];
+        for (int i = 0; i < seekValues.length; i++) {
+            Order ordering = orderings.get(i);
+            Field field = mPersistencePolicy.findPersistentField(c, ordering.getProperty());
+            if (field == null)
+                throw new InvalidCriteriaException(String.format("Invalid Criteria for type '%s'.", c.getName()));
+            columns[i] = mPersistencePolicy.getFieldColumnName(field);
+            if (ordering.isIgnoreCase())
+                columns[i] += ' ' + SqlConstants.COLLATE_NOCASE;
+            values[i] = toSqlLiteral(seekValues[i], c);
+            if (args != null)
+                values[i] = "?";
+        }
+        query.append('(');
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0)
+                query.append(' ').append(SqlConstants.OR).append(' ');
+            query.append('(');
+            for (int j = 0; j < i; j++) {
+                query.append(columns[j]).append(" = ").append(values[j]).append(' ').append(SqlConstants.AND)
+                        .append(' ');
+                if (args != null)
+                    args.add(seekValues[j]);
+            }
+            if (args != null)
+                args.add(seekValues[i]);
+            query.append(columns[i]).append(orderings.get(i).getOrdering() == Order.Ordering.DESC ? " < " : " > ")
+                    .append(values[i]).append(')');
+        }
+        query.append(')');
+    }
+
+    private String getCachedQuery(String key) {
+        String sql;
+        synchronized (mQueryCache) {
+            sql = mQueryCache.get(key);
+        }
+        if (sql == null)
+            mQueryCacheMisses.incrementAndGet();
+        else
+            mQueryCacheHits.incrementAndGet();
+        return sql;
+    }
+
+    private void cacheQuery(String key, String sql) {
+        synchronized (mQueryCache) {
+            mQueryCache.put(key, sql);
+        }
+    }
+
+    /**
+     * Appends a structural fingerprint of the given {@link Criteria} to the key. The fingerprint covers everything
+     * the generated SQL depends on, i.e. entity type, {@link Criterion} shapes, association shapes, orderings, seek
+     * arity, limit and offset, but not the bound values.
+     */
+    private void appendQueryShape(StringBuilder key, Criteria<?> criteria) {
+        key.append(criteria.getEntityClass().getName()).append('[');
+        for (Criterion criterion : criteria.getCriterion()) {
+            criterion.appendShape(criteria, key);
+            key.append(';');
+        }
+        for (AssociationCriteria<?> associationCriteria : criteria.getAssociationCriteria()) {
+            key.append(associationCriteria.getRelationshipField()).append('=');
+            appendQueryShape(key, associationCriteria);
+        }
+        for (Order ordering : criteria.getOrderings()) {
+            key.append(ordering.getProperty()).append(' ').append(ordering.getOrdering().name());
+            if (ordering.isIgnoreCase())
+                key.append(" nocase");
+            key.append(',');
+        }
+        Object[] seekValues = criteria.getSeekValues();
+        if (seekValues != null)
+            key.append("seek ").append(seekValues.length);
+        for (Field fetch : criteria.getFetches())
+            key.append(" fetch ").append(fetch);
+        key.append(" limit ").append(criteria.getLimit()).append(" offset ").append(criteria.getOffset()).append(']');
+    }
+
+    // Adds bound values in the same order createQuery would
+    private void collectQueryArgs(Criteria<?> criteria, List<Object> args) {
+        for (Criterion criterion : criteria.getCriterion())
+            criterion.collectArgs(criteria, args);
+        for (AssociationCriteria<?> associationCriteria : criteria.getAssociationCriteria())
+            collectQueryArgs(associationCriteria, args);
+        Object[] seekValues = criteria.getSeekValues();
+        if (seekValues == null)
+            return;
+        Class<?> c = criteria.getEntityClass();
+        for (int i = 0; i < seekValues.length; i++) {
+            // Rejects values which cannot be paginated on, as generating the SQL would
+            toSqlLiteral(seekValues[i], c);
+            for (int j = 0; j < i; j++)
+                args.add(seekValues[j]);
+            args.add(seekValues[i]);
+        }
+    }
+
+    private String toSql(Criterion criterion, Criteria<?> criteria, List<Object> args) {
+        return args == null ? criterion.toSql(criteria) : criterion.toSql(criteria, args);
+    }
+
+    private String toSqlLiteral(Object value, Class<?> c) {
+        if (value == null)
+            throw new InvalidCriteriaException(String.format("Cannot paginate on null values for type '%s'.",
+                    c.getName()));
+        if (value instanceof Boolean)
+            return (Boolean) value ? "1" : "0";
+        if (value instanceof Number)
+            return value.toString();
+        if (value instanceof byte[])
+            throw new InvalidCriteriaException(String.format("Cannot paginate on a BLOB column for type '%s'.",
+                    c.getName()));
+        return "'" + value.toString().replace("'", "''") + "'";
+    }
+
     private String createManyToManyTableString(ManyToManyRelationship rel) throws ModelConfigurationException {
         if (!mPersistencePolicy.isPersistent(rel.getFirstType()) || !mPersistencePolicy.isPersistent(rel
                 .getSecondType()))
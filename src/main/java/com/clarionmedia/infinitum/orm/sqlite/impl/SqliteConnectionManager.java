@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import com.clarionmedia.infinitum.logging.Logger;
+import com.clarionmedia.infinitum.logging.impl.SmartLogger;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p> Manages the connections to the application's SQLite database: a single writable connection obtained from the
+ * {@link SqliteDbHelper}, and a pool of read-only connections. When write-ahead logging is enabled, readers do not
+ * block on the writer and see the last committed state while a write transaction is in progress, so reads from other
+ * threads can run in parallel with long-running writes. </p> <p> Write-ahead logging requires Android 3.0 (API level
+ * 11). On earlier versions, or if it could not be enabled, no read-only connections are opened and every read uses the
+ * writable connection as before. A thread with an open transaction on the writable connection also reads through it,
+ * so it sees its own uncommitted writes. </p> <p> {@code SqliteConnectionManager} is threadsafe. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 10/17/26
+ * @since 1.1.0
+ */
+public class SqliteConnectionManager {
+
+    /**
+     * The default number of read-only connections.
+     */
+    public static final int DEFAULT_READER_POOL_SIZE = 2;
+
+    // Build.VERSION_CODES.HONEYCOMB, which is not available in the SDK this is compiled against
+    private static final int WRITE_AHEAD_LOGGING_SDK = 11;
+
+    private final SqliteDbHelper mDbHelper;
+    private final boolean mIsWriteAheadLoggingRequested;
+    private final int mReaderPoolSize;
+    private final AtomicInteger mNextReader;
+    private final Logger mLogger;
+    private volatile SQLiteDatabase mWriter;
+    private volatile SQLiteDatabase[] mReaders;
+
+    /**
+     * Constructs a new {@code SqliteConnectionManager}.
+     *
+     * @param dbHelper          the {@link SqliteDbHelper} providing the writable connection
+     * @param writeAheadLogging indicates if write-ahead logging should be enabled where supported
+     * @param readerPoolSize    the number of read-only connections to open when write-ahead logging is enabled
+     */
+    public SqliteConnectionManager(SqliteDbHelper dbHelper, boolean writeAheadLogging, int readerPoolSize) {
+        mDbHelper = dbHelper;
+        mIsWriteAheadLoggingRequested = writeAheadLogging;
+        mReaderPoolSize = readerPoolSize;
+        mNextReader = new AtomicInteger();
+        mLogger = new SmartLogger(getClass().getSimpleName());
+        mReaders = new SQLiteDatabase[0];
+    }
+
+    /**
+     * Opens the writable connection, enables write-ahead logging if requested and supported, and opens the pool of
+     * read-only connections.
+     *
+     * @return the writable {@link SQLiteDatabase}
+     * @throws SQLException if the database cannot be opened for writing
+     */
+    public synchronized SQLiteDatabase open() throws SQLException {
+        if (mWriter != null)
+            return mWriter;
+        SQLiteDatabase writer = mDbHelper.getWritableDatabase();
+        mWriter = writer;
+        if (mReaderPoolSize <= 0 || !mIsWriteAheadLoggingRequested || !enableWriteAheadLogging(writer))
+            return writer;
+        SQLiteDatabase[] readers = new SQLiteDatabase[mReaderPoolSize];
+        try {
+            for (int i = 0; i < readers.length; i++) {
+                readers[i] = openReader(writer.getPath());
+            }
+        } catch (SQLException e) {
+            // Reads fall back to the writer rather than failing
+            mLogger.error("Could not open read-only connections", e);
+            close(readers);
+            return writer;
+        }
+        mReaders = readers;
+        mLogger.debug("Opened " + readers.length + " read-only connections");
+        return writer;
+    }
+
+    /**
+     * Closes the read-only connections and the writable connection.
+     */
+    public synchronized void close() {
+        SQLiteDatabase[] readers = mReaders;
+        mReaders = new SQLiteDatabase[0];
+        close(readers);
+        mWriter = null;
+        mDbHelper.close();
+    }
+
+    /**
+     * Returns the writable connection.
+     *
+     * @return writable {@link SQLiteDatabase} or {@code null} if the {@code SqliteConnectionManager} is not open
+     */
+    public SQLiteDatabase getWriter() {
+        return mWriter;
+    }
+
+    /**
+     * Returns the connection the calling thread should read through. This is a read-only connection, chosen in turn
+     * from the pool, unless there is none or the calling thread has a transaction open on the writable connection.
+     *
+     * @return {@link SQLiteDatabase} to read through
+     */
+    public SQLiteDatabase getReader() {
+        SQLiteDatabase[] readers = mReaders;
+        SQLiteDatabase writer = mWriter;
+        // inTransaction only reports transactions held by the calling thread
+        if (readers.length == 0 || writer == null || writer.inTransaction())
+            return writer;
+        int next = mNextReader.getAndIncrement() & Integer.MAX_VALUE;
+        return readers[next % readers.length];
+    }
+
+    /**
+     * Indicates if reads are being served by the pool of read-only connections, which requires write-ahead logging.
+     *
+     * @return {@code true} if read-only connections are open, {@code false} if reads use the writable connection
+     */
+    public boolean isPooled() {
+        return mReaders.length > 0;
+    }
+
+    /**
+     * Enables write-ahead logging on the given writable connection. This is done reflectively, since {@code
+     * SQLiteDatabase.enableWriteAheadLogging} was only added in API level 11.
+     *
+     * @param db the writable {@link SQLiteDatabase}
+     * @return {@code true} if write-ahead logging was enabled, {@code false} if not
+     */
+    protected boolean enableWriteAheadLogging(SQLiteDatabase db) {
+        if (Build.VERSION.SDK_INT < WRITE_AHEAD_LOGGING_SDK)
+            return false;
+        try {
+            Method enable = SQLiteDatabase.class.getMethod("enableWriteAheadLogging");
+            boolean enabled = (Boolean) enable.invoke(db);
+            mLogger.debug(enabled ? "Write-ahead logging enabled" : "Write-ahead logging could not be enabled");
+            return enabled;
+        } catch (Exception e) {
+            mLogger.error("Could not enable write-ahead logging", e);
+            return false;
+        }
+    }
+
+    /**
+     * Opens a read-only connection to the database at the given path.
+     *
+     * @param path the path of the database file
+     * @return read-only {@link SQLiteDatabase}
+     * @throws SQLException if the database cannot be opened
+     */
+    protected SQLiteDatabase openReader(String path) throws SQLException {
+        return SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY
+                | SQLiteDatabase.NO_LOCALIZED_COLLATORS);
+    }
+
+    private static void close(SQLiteDatabase[] connections) {
+        for (SQLiteDatabase connection : connections) {
+            if (connection != null)
+                connection.close();
+        }
+    }
+
+}
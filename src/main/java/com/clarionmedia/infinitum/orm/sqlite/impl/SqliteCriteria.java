@@ -17,24 +17,35 @@
 package com.clarionmedia.infinitum.orm.sqlite.impl;
 
 import android.database.Cursor;
+import com.clarionmedia.infinitum.di.AbstractProxy;
 import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
 import com.clarionmedia.infinitum.orm.Session;
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext.SessionType;
 import com.clarionmedia.infinitum.orm.criteria.AssociationCriteria;
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
+import com.clarionmedia.infinitum.orm.criteria.CriteriaIterator;
 import com.clarionmedia.infinitum.orm.criteria.Order;
 import com.clarionmedia.infinitum.orm.criteria.criterion.Criterion;
+import com.clarionmedia.infinitum.orm.exception.InvalidCriteriaException;
 import com.clarionmedia.infinitum.orm.internal.OrmPreconditions;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
+import com.clarionmedia.infinitum.orm.persistence.QueryCache;
 import com.clarionmedia.infinitum.orm.relationship.ModelRelationship;
 import com.clarionmedia.infinitum.orm.sql.SqlBuilder;
 import com.clarionmedia.infinitum.reflection.ClassReflector;
 import com.clarionmedia.infinitum.reflection.impl.JavaClassReflector;
 
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * <p> Implementation of {@link Criteria} for SQLite queries. </p>
@@ -45,6 +56,13 @@ import java.util.List;
  */
 public class SqliteCriteria<T> implements Criteria<T> {
 
+    private static final char TOKEN_SEPARATOR = ',';
+    private static final char TOKEN_NULL = 'n';
+    private static final char TOKEN_LONG = 'l';
+    private static final char TOKEN_DOUBLE = 'd';
+    private static final char TOKEN_STRING = 's';
+    private static final String TOKEN_ENCODING = "UTF-8";
+
     private InfinitumOrmContext mOrmContext;
     protected Class<T> mEntityClass;
     protected SqliteSession mSession;
@@ -56,7 +74,11 @@ public class SqliteCriteria<T> implements Criteria<T> {
     protected PersistencePolicy mPersistencePolicy;
     private List<Order> mOrderings;
     private List<AssociationCriteria<?>> mAssociationCriteria;
+    private List<Field> mFetches;
     protected SqliteCriteria<?> mParent;
+    private Object[] mSeekValues;
+    private Object[] mSeekColumnValues;
+    private boolean mIsCacheable;
 
     /**
      * Constructs a new {@code SqliteCriteria}.
@@ -80,6 +102,7 @@ public class SqliteCriteria<T> implements Criteria<T> {
         mPersistencePolicy = context.getPersistencePolicy();
         mOrderings = new ArrayList<Order>(5);
         mAssociationCriteria = new ArrayList<AssociationCriteria<?>>(3);
+        mFetches = new ArrayList<Field>(3);
         mParent = parent;
     }
 
@@ -126,30 +149,80 @@ public class SqliteCriteria<T> implements Criteria<T> {
         return this;
     }
 
+    @Override
+    public Criteria<T> seekAfter(Object... orderValues) {
+        mSeekValues = orderValues;
+        mSeekColumnValues = null;
+        return this;
+    }
+
+    @Override
+    public Criteria<T> after(T lastEntity) {
+        return seekAfter(getOrderValues(lastEntity));
+    }
+
+    @Override
+    public Criteria<T> resumeFrom(String continuationToken) throws InvalidCriteriaException {
+        mSeekColumnValues = decodeToken(continuationToken);
+        mSeekValues = null;
+        return this;
+    }
+
+    @Override
+    public String getContinuationToken(T lastEntity) {
+        return encodeToken(toColumnValues(getOrderValues(lastEntity)));
+    }
+
+    @Override
+    public Object[] getSeekValues() {
+        if (mSeekColumnValues != null)
+            return mSeekColumnValues;
+        if (mSeekValues == null)
+            return null;
+        return toColumnValues(mSeekValues);
+    }
+
     @Override
     public List<T> list() {
-        Cursor result = mSession.executeForResult(getRepresentation());
-        List<T> ret = new ArrayList<T>(result.getCount());
+        if (mIsCacheable)
+            return listCacheable();
+        Cursor result = executeQuery();
         if (result.getCount() == 0) {
             result.close();
-            return ret;
+            return new ArrayList<T>(0);
         }
         try {
-            while (result.moveToNext()) {
-                T entity = mModelFactory.createFromCursor(result, mEntityClass);
-                ret.add(entity);
-                // Cache results
-                mSession.cache(mPersistencePolicy.computeModelHash(entity), entity);
-            }
+            // Hydrate the whole result set at once so relationships are fetched in batches
+            List<T> ret = mModelFactory.createAllFromCursor(result, mEntityClass, mFetches);
+            // Cache results
+            for (T entity : ret)
+                mSession.cache(entity);
             return ret;
         } finally {
             result.close();
         }
     }
 
+    @Override
+    public CriteriaIterator<T> iterate() {
+        return iterate(true);
+    }
+
+    @Override
+    public CriteriaIterator<T> iterate(boolean cacheResults) {
+        return new SqliteCriteriaIterator<T>(cursor(), mEntityClass, mFetches, mModelFactory, cacheResults);
+    }
+
     @Override
     public T unique() throws InfinitumRuntimeException {
-        Cursor result = mSession.executeForResult(getRepresentation());
+        if (mIsCacheable) {
+            List<T> results = listCacheable();
+            if (results.size() > 1)
+                throw new InfinitumRuntimeException(String.format("Criteria query for '%s' specified unique result " +
+                        "but there were %d results.", mEntityClass.getName(), results.size()));
+            return results.size() == 0 ? null : results.get(0);
+        }
+        Cursor result = executeQuery();
         if (result.getCount() > 1) {
             throw new InfinitumRuntimeException(String.format("Criteria query for '%s' specified unique result but " +
                     "there were %d results.",
@@ -160,9 +233,9 @@ public class SqliteCriteria<T> implements Criteria<T> {
         }
         result.moveToFirst();
         try {
-            T ret = mModelFactory.createFromCursor(result, mEntityClass);
+            T ret = mModelFactory.createFromCursor(result, mEntityClass, mFetches, true);
             // Cache result
-            mSession.cache(mPersistencePolicy.computeModelHash(ret), ret);
+            mSession.cache(ret);
             return ret;
         } finally {
             result.close();
@@ -176,7 +249,7 @@ public class SqliteCriteria<T> implements Criteria<T> {
 
     @Override
     public long count() {
-        Cursor result = mSession.executeForResult(mSqlBuilder.createCountQuery(this));
+        Cursor result = executeCountQuery();
         result.moveToFirst();
         long ret = result.getLong(0);
         result.close();
@@ -185,7 +258,7 @@ public class SqliteCriteria<T> implements Criteria<T> {
 
     @Override
     public Cursor cursor() {
-        return mSession.executeForResult(getRepresentation());
+        return executeQuery();
     }
 
     @Override
@@ -216,6 +289,226 @@ public class SqliteCriteria<T> implements Criteria<T> {
         return mAssociationCriteria;
     }
 
+    @Override
+    public Criteria<T> fetch(String association) throws InvalidCriteriaException {
+        ClassReflector classReflector = new JavaClassReflector();
+        Field associationField = classReflector.getField(mEntityClass, association);
+        if (associationField == null || !mPersistencePolicy.isToOneRelationship(associationField))
+            throw new InvalidCriteriaException("No to-one relationship field '" + association + "' in type " +
+                    mEntityClass.getName());
+        if (!mFetches.contains(associationField))
+            mFetches.add(associationField);
+        return this;
+    }
+
+    @Override
+    public List<Field> getFetches() {
+        return mFetches;
+    }
+
+    @Override
+    public Criteria<T> cacheable() {
+        mIsCacheable = true;
+        return this;
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return mIsCacheable;
+    }
+
+    /**
+     * Executes the query represented by this {@code SqliteCriteria}, binding its values rather than inlining them into
+     * the SQL.
+     *
+     * @return {@link Cursor} containing the results of the query
+     */
+    Cursor executeQuery() {
+        List<Object> args = new ArrayList<Object>();
+        String sql = mSqlBuilder.createQuery(this, args);
+        return mSession.executeForResult(sql, toSelectionArgs(args));
+    }
+
+    /**
+     * Executes the count query represented by this {@code SqliteCriteria}, binding its values rather than inlining
+     * them into the SQL.
+     *
+     * @return {@link Cursor} containing the count
+     */
+    Cursor executeCountQuery() {
+        List<Object> args = new ArrayList<Object>();
+        String sql = mSqlBuilder.createCountQuery(this, args);
+        return mSession.executeForResult(sql, toSelectionArgs(args));
+    }
+
+    private List<T> listCacheable() {
+        List<Object> args = new ArrayList<Object>();
+        String sql = mSqlBuilder.createQuery(this, args);
+        String[] selectionArgs = toSelectionArgs(args);
+        // NUL cannot appear in the SQL, so it unambiguously separates the arguments
+        StringBuilder key = new StringBuilder(sql);
+        for (String arg : selectionArgs)
+            key.append('\0').append(arg);
+        QueryCache queryCache = mSession.getQueryCache();
+        List<Serializable> primaryKeys = queryCache.get(key.toString());
+        if (primaryKeys != null) {
+            List<T> ret = mModelFactory.loadAll(mEntityClass, primaryKeys);
+            for (T entity : ret)
+                mSession.cache(entity);
+            return ret;
+        }
+        // Taken before querying so that a write made while the query runs keeps its result out of the cache
+        long timestamp = queryCache.getTimestamp();
+        Cursor result = mSession.executeForResult(sql, selectionArgs);
+        List<T> ret;
+        try {
+            ret = mModelFactory.createAllFromCursor(result, mEntityClass, mFetches);
+        } finally {
+            result.close();
+        }
+        primaryKeys = new ArrayList<Serializable>(ret.size());
+        for (T entity : ret) {
+            mSession.cache(entity);
+            primaryKeys.add(mPersistencePolicy.getPrimaryKey(entity));
+        }
+        queryCache.put(key.toString(), getQueriedTypes(), primaryKeys, timestamp);
+        return ret;
+    }
+
+    // The entity types whose tables the query reads, including those of association Criteria and fetches
+    private Set<Class<?>> getQueriedTypes() {
+        Set<Class<?>> ret = new HashSet<Class<?>>();
+        addQueriedTypes(this, ret);
+        for (Field fetch : mFetches) {
+            ModelRelationship rel = mPersistencePolicy.getRelationship(fetch);
+            ret.add(rel.getFirstType());
+            ret.add(rel.getSecondType());
+        }
+        return ret;
+    }
+
+    private static void addQueriedTypes(Criteria<?> criteria, Set<Class<?>> types) {
+        types.add(criteria.getEntityClass());
+        for (AssociationCriteria<?> association : criteria.getAssociationCriteria()) {
+            // Many-to-many link rows are only written when an entity of either type is
+            ModelRelationship rel = association.getRelationship();
+            types.add(rel.getFirstType());
+            types.add(rel.getSecondType());
+            addQueriedTypes(association, types);
+        }
+    }
+
+    // SQLiteDatabase only binds query arguments as strings, column affinity takes care of numeric comparisons
+    private static String[] toSelectionArgs(List<Object> args) {
+        String[] ret = new String[args.size()];
+        for (int i = 0; i < ret.length; i++) {
+            Object arg = args.get(i);
+            if (arg instanceof Boolean)
+                ret[i] = (Boolean) arg ? "1" : "0";
+            else if (arg instanceof Date)
+                ret[i] = String.valueOf(((Date) arg).getTime());
+            else
+                ret[i] = String.valueOf(arg);
+        }
+        return ret;
+    }
+
+    private Object[] getOrderValues(T entity) {
+        Object target = AbstractProxy.getTarget(entity);
+        ClassReflector classReflector = new JavaClassReflector();
+        Object[] ret = new Object[mOrderings.size()];
+        for (int i = 0; i < ret.length; i++)
+            ret[i] = classReflector.getFieldValue(target, getOrderingField(mOrderings.get(i)));
+        return ret;
+    }
+
+    // Seek values are compared against columns, so map them the same way they are persisted
+    private Object[] toColumnValues(Object[] orderValues) {
+        if (orderValues.length != mOrderings.size())
+            throw new InvalidCriteriaException(String.format("Keyset pagination for type '%s' requires one value " +
+                    "per ordering.", mEntityClass.getName()));
+        SqliteMapper mapper = getObjectMapper();
+        Object[] ret = new Object[orderValues.length];
+        for (int i = 0; i < ret.length; i++)
+            ret[i] = mapper.toColumnValue(getOrderingField(mOrderings.get(i)), orderValues[i]);
+        return ret;
+    }
+
+    private Field getOrderingField(Order order) {
+        Field field = mPersistencePolicy.findPersistentField(mEntityClass, order.getProperty());
+        if (field == null)
+            throw new InvalidCriteriaException(String.format("Invalid Criteria for type '%s'.",
+                    mEntityClass.getName()));
+        return field;
+    }
+
+    private static String encodeToken(Object[] columnValues) {
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < columnValues.length; i++) {
+            if (i > 0)
+                token.append(TOKEN_SEPARATOR);
+            Object value = columnValues[i];
+            if (value == null)
+                token.append(TOKEN_NULL);
+            else if (value instanceof Double || value instanceof Float)
+                token.append(TOKEN_DOUBLE).append(((Number) value).doubleValue());
+            else if (value instanceof Number)
+                token.append(TOKEN_LONG).append(((Number) value).longValue());
+            else if (value instanceof Boolean)
+                token.append(TOKEN_LONG).append((Boolean) value ? 1 : 0);
+            else if (value instanceof byte[])
+                throw new InvalidCriteriaException("Cannot paginate on a BLOB column.");
+            else
+                token.append(TOKEN_STRING).append(urlEncode(value.toString()));
+        }
+        return token.toString();
+    }
+
+    private static Object[] decodeToken(String token) throws InvalidCriteriaException {
+        if (token == null || token.length() == 0)
+            throw new InvalidCriteriaException("Invalid continuation token '" + token + "'.");
+        String[] parts = token.split(String.valueOf(TOKEN_SEPARATOR), -1);
+        Object[] ret = new Object[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                String part = parts[i];
+                if (part.length() == 0)
+                    throw new InvalidCriteriaException("Invalid continuation token '" + token + "'.");
+                String value = part.substring(1);
+                switch (part.charAt(0)) {
+                    case TOKEN_NULL:
+                        ret[i] = null;
+                        break;
+                    case TOKEN_LONG:
+                        ret[i] = Long.parseLong(value);
+                        break;
+                    case TOKEN_DOUBLE:
+                        ret[i] = Double.parseDouble(value);
+                        break;
+                    case TOKEN_STRING:
+                        ret[i] = URLDecoder.decode(value, TOKEN_ENCODING);
+                        break;
+                    default:
+                        throw new InvalidCriteriaException("Invalid continuation token '" + token + "'.");
+                }
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new InfinitumRuntimeException("Unable to decode continuation token.", e);
+        } catch (IllegalArgumentException e) {
+            // Thrown for malformed numbers and escape sequences
+            throw new InvalidCriteriaException("Invalid continuation token '" + token + "'.");
+        }
+        return ret;
+    }
+
+    private static String urlEncode(String value) {
+        try {
+            return URLEncoder.encode(value, TOKEN_ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new InfinitumRuntimeException("Unable to encode continuation token.", e);
+        }
+    }
+
     private AssociationCriteria<?> getAssociationCriteria(String association) {
         ClassReflector classReflector = new JavaClassReflector();
         Field associationField = classReflector.getField(mEntityClass, association);
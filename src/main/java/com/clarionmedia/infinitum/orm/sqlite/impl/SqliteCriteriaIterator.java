@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import android.database.Cursor;
+import com.clarionmedia.infinitum.orm.criteria.CriteriaIterator;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * <p> Implementation of {@link CriteriaIterator} backed by a SQLite {@link Cursor}. Each call to {@link #next()}
+ * advances the {@code Cursor} by one row and hydrates a single entity from it, so only the current row is held in
+ * memory. The {@code Cursor} is closed automatically once it is exhausted. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 10/17/26
+ * @since 1.1.0
+ */
+public class SqliteCriteriaIterator<T> implements CriteriaIterator<T> {
+
+    private final Cursor mCursor;
+    private final Class<T> mEntityClass;
+    private final List<Field> mFetches;
+    private final SqliteModelFactory mModelFactory;
+    private final boolean mCacheResults;
+    private boolean mHasPending;
+    private boolean mClosed;
+
+    /**
+     * Constructs a new {@code SqliteCriteriaIterator}.
+     *
+     * @param cursor       the query {@link Cursor} to iterate over
+     * @param entityClass  the {@code Class} of the entities to hydrate
+     * @param fetches      the association {@link Field Fields} joined into the query
+     * @param modelFactory the {@link SqliteModelFactory} used to hydrate entities
+     * @param cacheResults {@code true} if hydrated entities should be stored in the {@code Session} cache
+     */
+    public SqliteCriteriaIterator(Cursor cursor, Class<T> entityClass, List<Field> fetches,
+                                  SqliteModelFactory modelFactory, boolean cacheResults) {
+        mCursor = cursor;
+        mEntityClass = entityClass;
+        mFetches = fetches;
+        mModelFactory = modelFactory;
+        mCacheResults = cacheResults;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (mHasPending)
+            return true;
+        if (mClosed)
+            return false;
+        if (mCursor.moveToNext()) {
+            mHasPending = true;
+            return true;
+        }
+        close();
+        return false;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        mHasPending = false;
+        return mModelFactory.createFromCursor(mCursor, mEntityClass, mFetches, mCacheResults);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("CriteriaIterator does not support removal.");
+    }
+
+    @Override
+    public void close() {
+        if (mClosed)
+            return;
+        mClosed = true;
+        mHasPending = false;
+        mCursor.close();
+    }
+
+}
@@ -19,9 +19,11 @@ package com.clarionmedia.infinitum.orm.sqlite.impl;
 import java.lang.reflect.Field;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import android.content.ContentValues;
+import android.database.sqlite.SQLiteStatement;
 
 import com.clarionmedia.infinitum.di.AbstractProxy;
 import com.clarionmedia.infinitum.internal.Primitives;
@@ -29,6 +31,9 @@ import com.clarionmedia.infinitum.orm.ObjectMapper;
 import com.clarionmedia.infinitum.orm.exception.InvalidMappingException;
 import com.clarionmedia.infinitum.orm.exception.ModelConfigurationException;
 import com.clarionmedia.infinitum.orm.internal.bind.SqliteTypeAdapters;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata.ColumnMetadata;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata.RelationshipMetadata;
 import com.clarionmedia.infinitum.orm.persistence.TypeAdapter;
 import com.clarionmedia.infinitum.orm.persistence.TypeResolutionPolicy.SqliteDataType;
 import com.clarionmedia.infinitum.orm.sqlite.SqliteTypeAdapter;
@@ -70,24 +75,145 @@ public class SqliteMapper extends ObjectMapper {
 		// We do not map transient classes!
 		if (!mPersistencePolicy.isPersistent(model.getClass()))
 			return null;
+		EntityMetadata metadata = mPersistencePolicy.getEntityMetadata(model.getClass());
 		SqliteModelMap ret = new SqliteModelMap(model);
 		ContentValues values = new ContentValues();
-		for (Field field : mPersistencePolicy.getPersistentFields(model.getClass())) {
+		for (ColumnMetadata column : metadata.getColumns()) {
 			// Don't map primary keys if they are autoincrementing
-			if (mPersistencePolicy.isFieldPrimaryKey(field) && mPersistencePolicy.isPrimaryKeyAutoIncrement(field))
+			if (column.isAutoIncrement())
 				continue;
-			// Map relationships
-			if (mPersistencePolicy.isRelationship(field)) {
-				mapRelationship(ret, model, field);
-				continue;
-			}
 			// Map Field values
-			mapField(values, model, field);
+			mapField(values, model, column.getField(), column.getColumnName());
+		}
+		// Map relationships
+		for (RelationshipMetadata relationship : metadata.getRelationships())
+			mapRelationship(ret, model, relationship.getField(), relationship.getRelationship());
+		ret.setContentValues(values);
+		return ret;
+	}
+
+	/**
+	 * Maps the given model like {@link #mapModel(Object)}, but only includes
+	 * the columns and relationships flagged as changed. This is used to update
+	 * an entity which has been dirty checked.
+	 * 
+	 * @param model
+	 *            the model to map
+	 * @param columns
+	 *            indicates, for each column of the model's
+	 *            {@link EntityMetadata}, if it should be mapped
+	 * @param relationships
+	 *            indicates, for each relationship of the model's
+	 *            {@code EntityMetadata}, if it should be mapped, or
+	 *            {@code null} to map none
+	 * @return {@code SqliteModelMap} containing the changed state
+	 * @throws InvalidMappingException
+	 *             if a column type cannot be mapped
+	 * @throws ModelConfigurationException
+	 *             if a relationship is misconfigured
+	 */
+	public SqliteModelMap mapModel(Object model, boolean[] columns, boolean[] relationships)
+			throws InvalidMappingException, ModelConfigurationException {
+		EntityMetadata metadata = mPersistencePolicy.getEntityMetadata(model.getClass());
+		SqliteModelMap ret = new SqliteModelMap(model);
+		ContentValues values = new ContentValues();
+		List<ColumnMetadata> columnMetadata = metadata.getColumns();
+		for (int i = 0; i < columnMetadata.size(); i++) {
+			ColumnMetadata column = columnMetadata.get(i);
+			if (columns[i] && !column.isAutoIncrement())
+				mapField(values, model, column.getField(), column.getColumnName());
+		}
+		if (relationships != null) {
+			List<RelationshipMetadata> relationshipMetadata = metadata.getRelationships();
+			for (int i = 0; i < relationshipMetadata.size(); i++) {
+				RelationshipMetadata relationship = relationshipMetadata.get(i);
+				if (relationships[i])
+					mapRelationship(ret, model, relationship.getField(), relationship.getRelationship());
+			}
 		}
 		ret.setContentValues(values);
 		return ret;
 	}
 
+	/**
+	 * Maps only the relationships of the given model, leaving the
+	 * {@link ContentValues} of the returned {@link SqliteModelMap} empty. This
+	 * is used when the column values have already been written by other means,
+	 * such as a precompiled insert statement.
+	 * 
+	 * @param model
+	 *            the model to map relationships for
+	 * @return {@code SqliteModelMap} containing the model's relationships
+	 * @throws ModelConfigurationException
+	 *             if a relationship is misconfigured
+	 */
+	public SqliteModelMap mapRelationships(Object model) throws ModelConfigurationException {
+		SqliteModelMap ret = new SqliteModelMap(model);
+		EntityMetadata metadata = mPersistencePolicy.getEntityMetadata(model.getClass());
+		for (RelationshipMetadata relationship : metadata.getRelationships())
+			mapRelationship(ret, model, relationship.getField(), relationship.getRelationship());
+		ret.setContentValues(new ContentValues());
+		return ret;
+	}
+
+	/**
+	 * Binds the value of the given {@link Field} to the given position of a
+	 * compiled {@link SQLiteStatement}. Built-in types are bound directly,
+	 * while registered custom {@link SqliteTypeAdapter} instances are given
+	 * the chance to map the value first.
+	 * 
+	 * @param statement
+	 *            the {@code SQLiteStatement} to bind to
+	 * @param index
+	 *            the 1-based position of the parameter to bind
+	 * @param model
+	 *            the model containing the value to bind
+	 * @param field
+	 *            the {@code Field} whose value is being bound
+	 * @throws InvalidMappingException
+	 *             if the {@code Field} type cannot be mapped to a column
+	 */
+	public void bindField(SQLiteStatement statement, int index, Object model, Field field)
+			throws InvalidMappingException {
+		if (AbstractProxy.isAopProxy(model)) {
+			model = AbstractProxy.getProxy(model).getTarget();
+		}
+		Object val = mClassReflector.getFieldValue(model, field);
+		bindValue(statement, index, toColumnValue(field, val));
+	}
+
+	/**
+	 * Converts the given value of a {@link Field} to the value that would be
+	 * stored in its column, e.g. a {@link Date} becomes its time in
+	 * milliseconds. Built-in types are converted directly, while registered
+	 * custom {@link SqliteTypeAdapter} instances are given the chance to map
+	 * the value.
+	 * 
+	 * @param field
+	 *            the {@code Field} the value belongs to
+	 * @param value
+	 *            the value to convert
+	 * @return column value, or {@code null} if {@code value} is {@code null}
+	 * @throws InvalidMappingException
+	 *             if the {@code Field} type cannot be mapped to a column
+	 */
+	public Object toColumnValue(Field field, Object value) throws InvalidMappingException {
+		if (value == null)
+			return null;
+		SqliteTypeAdapter<?> adapter = resolveType(field.getType());
+		if (adapter == SqliteTypeAdapters.CHARACTER)
+			return value.toString();
+		if (adapter == SqliteTypeAdapters.DATE)
+			return ((Date) value).getTime();
+		if (isBuiltInAdapter(adapter))
+			return value;
+		// Let the custom adapter map the value, then use what it produced
+		String colName = mPersistencePolicy.getFieldColumnName(field);
+		ContentValues values = new ContentValues(1);
+		adapter.mapObjectToColumn(value, colName, values);
+		return values.get(colName);
+	}
+
 	/**
 	 * Retrieves a {@link SqliteTypeAdapter} for the given {@link Class}.
 	 * 
@@ -157,13 +283,37 @@ public class SqliteMapper extends ObjectMapper {
 		return ret;
 	}
 
+	// Bind a mapped column value the same way SQLiteDatabase binds ContentValues
+	private void bindValue(SQLiteStatement statement, int index, Object value) {
+		if (value == null)
+			statement.bindNull(index);
+		else if (value instanceof Double || value instanceof Float)
+			statement.bindDouble(index, ((Number) value).doubleValue());
+		else if (value instanceof Number)
+			statement.bindLong(index, ((Number) value).longValue());
+		else if (value instanceof Boolean)
+			statement.bindLong(index, (Boolean) value ? 1 : 0);
+		else if (value instanceof byte[])
+			statement.bindBlob(index, (byte[]) value);
+		else
+			statement.bindString(index, value.toString());
+	}
+
+	private boolean isBuiltInAdapter(SqliteTypeAdapter<?> adapter) {
+		return adapter == SqliteTypeAdapters.STRING || adapter == SqliteTypeAdapters.INTEGER
+				|| adapter == SqliteTypeAdapters.LONG || adapter == SqliteTypeAdapters.FLOAT
+				|| adapter == SqliteTypeAdapters.DOUBLE || adapter == SqliteTypeAdapters.SHORT
+				|| adapter == SqliteTypeAdapters.BOOLEAN || adapter == SqliteTypeAdapters.BYTE
+				|| adapter == SqliteTypeAdapters.BYTE_ARRAY;
+	}
+
 	// Map Field value to ContentValues
-	private void mapField(ContentValues values, Object model, Field field) throws InvalidMappingException {
+	private void mapField(ContentValues values, Object model, Field field, String colName)
+			throws InvalidMappingException {
 		if (AbstractProxy.isAopProxy(model)) {
 			model = AbstractProxy.getProxy(model).getTarget();
 		}
 		Object val = mClassReflector.getFieldValue(model, field);
-		String colName = mPersistencePolicy.getFieldColumnName(field);
 		resolveType(field.getType()).mapObjectToColumn(val, colName, values);
 	}
 
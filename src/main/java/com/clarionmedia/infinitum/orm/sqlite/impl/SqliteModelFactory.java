@@ -17,20 +17,34 @@
 package com.clarionmedia.infinitum.orm.sqlite.impl;
 
 import android.database.Cursor;
+import com.clarionmedia.infinitum.di.AbstractProxy;
 import com.clarionmedia.infinitum.di.annotation.Autowired;
 import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
 import com.clarionmedia.infinitum.orm.LazyLoadDexMakerProxy;
 import com.clarionmedia.infinitum.orm.ModelFactory;
 import com.clarionmedia.infinitum.orm.ResultSet;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata.RelationshipMetadata;
+import com.clarionmedia.infinitum.orm.persistence.IdentityMap;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
+import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy.Cascade;
+import com.clarionmedia.infinitum.orm.persistence.SecondLevelCache;
 import com.clarionmedia.infinitum.orm.relationship.*;
-import com.clarionmedia.infinitum.orm.sqlite.SqliteTypeAdapter;
+import com.clarionmedia.infinitum.orm.sql.SqlConstants;
 import com.clarionmedia.infinitum.reflection.ClassReflector;
 
 import java.io.Serializable;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p> This is an implementation of {@link ModelFactory} for processing {@link SqliteResult} queries. </p>
@@ -41,6 +55,11 @@ import java.util.List;
  */
 public class SqliteModelFactory implements ModelFactory {
 
+    // Keeps batched IN lists below SQLite's default limit of 999 bound variables
+    private static final int BATCH_SIZE = 500;
+
+    private static final List<Field> NO_FETCHES = Collections.emptyList();
+
     @Autowired
     private SqliteBuilder mSqlBuilder;
 
@@ -56,11 +75,18 @@ public class SqliteModelFactory implements ModelFactory {
     @Autowired
     private ClassReflector mClassReflector;
 
+    @Autowired
+    private SecondLevelCache mSecondLevelCache;
+
+    private Map<Class<?>, SqliteRowReader> mRowReaders = new ConcurrentHashMap<Class<?>, SqliteRowReader>();
+
+    private IdentityMap mSnapshots;
+
     @Override
     public <T> T createFromResult(ResultSet result, Class<T> modelClass) {
         if (!(result instanceof SqliteResult))
             throw new IllegalArgumentException("SqliteModelFactory can only process SqliteResults.");
-        return createFromCursorRec(((SqliteResult) result).getCursor(), modelClass);
+        return createFromCursorRec(((SqliteResult) result).getCursor(), modelClass, true, NO_FETCHES);
     }
 
     /**
@@ -74,71 +100,554 @@ public class SqliteModelFactory implements ModelFactory {
      * @throws InfinitumRuntimeException   if the model could not be instantiated
      */
     public <T> T createFromCursor(Cursor cursor, Class<T> modelClass) throws InfinitumRuntimeException {
-        return createFromCursorRec(cursor, modelClass);
+        return createFromCursorRec(cursor, modelClass, true, NO_FETCHES);
+    }
+
+    /**
+     * Constructs a domain model instance and populates its {@link Field}'s from the given {@link Cursor}, optionally
+     * bypassing the {@link SqliteSession} cache. When {@code useCache} is {@code false}, the model is neither looked
+     * up in nor added to the cache, nor is it added to the {@link SecondLevelCache} or snapshotted, though its related
+     * entities still are.
+     *
+     * @param cursor     the {@code Cursor} containing the row to convert to an {@code Object}
+     * @param modelClass the {@code Class} of the {@code Object} being instantiated
+     * @param useCache   {@code true} if the {@code Session} cache should be used, {@code false} if not
+     * @return a populated instance of the specified {@code Class}
+     * @throws InfinitumRuntimeException if the model could not be instantiated
+     */
+    public <T> T createFromCursor(Cursor cursor, Class<T> modelClass, boolean useCache)
+            throws InfinitumRuntimeException {
+        return createFromCursorRec(cursor, modelClass, useCache, NO_FETCHES);
+    }
+
+    /**
+     * Constructs a domain model instance and populates its {@link Field}'s from the given {@link Cursor}, along with
+     * the associated entities joined into the same row by {@link com.clarionmedia.infinitum.orm.criteria
+     * .Criteria#fetch(String)}. Fetched associations are not queried separately.
+     *
+     * @param cursor     the {@code Cursor} containing the row to convert to an {@code Object}
+     * @param modelClass the {@code Class} of the {@code Object} being instantiated
+     * @param fetches    the association {@code Fields} joined into the row, in join order
+     * @param useCache   {@code true} if the {@code Session} cache should be used, {@code false} if not
+     * @return a populated instance of the specified {@code Class}
+     * @throws InfinitumRuntimeException if the model could not be instantiated
+     */
+    public <T> T createFromCursor(Cursor cursor, Class<T> modelClass, List<Field> fetches, boolean useCache)
+            throws InfinitumRuntimeException {
+        return createFromCursorRec(cursor, modelClass, useCache, fetches);
+    }
+
+    /**
+     * Constructs domain model instances from every remaining row of the given {@link Cursor}. Unlike calling {@link
+     * #createFromCursor(Cursor, Class)} for each row, the eagerly loaded relationships of the entire result set are
+     * fetched in batches, issuing one {@code IN} query per relationship rather than one query per row and
+     * relationship.
+     *
+     * @param cursor     the {@code Cursor} containing the rows to convert to {@code Objects}
+     * @param modelClass the {@code Class} of the {@code Objects} being instantiated
+     * @return {@link List} of populated instances of the specified {@code Class}, in row order
+     * @throws InfinitumRuntimeException if a model could not be instantiated
+     */
+    public <T> List<T> createAllFromCursor(Cursor cursor, Class<T> modelClass) throws InfinitumRuntimeException {
+        return createAllFromCursor(cursor, modelClass, NO_FETCHES);
+    }
+
+    /**
+     * Constructs domain model instances from every remaining row of the given {@link Cursor}, along with the
+     * associated entities joined into each row by {@link com.clarionmedia.infinitum.orm.criteria.Criteria#fetch
+     * (String)}. The remaining eagerly loaded relationships are fetched in batches.
+     *
+     * @param cursor     the {@code Cursor} containing the rows to convert to {@code Objects}
+     * @param modelClass the {@code Class} of the {@code Objects} being instantiated
+     * @param fetches    the association {@link Field Fields} joined into each row, in join order
+     * @return {@link List} of populated instances of the specified {@code Class}, in row order
+     * @throws InfinitumRuntimeException if a model could not be instantiated
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> createAllFromCursor(Cursor cursor, Class<T> modelClass, List<Field> fetches)
+            throws InfinitumRuntimeException {
+        List<Object> ret = new ArrayList<Object>(cursor.getCount());
+        createAllFromCursorRec(cursor, modelClass, fetches, null, ret, null);
+        return (List<T>) ret;
     }
 
     @SuppressWarnings("unchecked")
-    private <T> T createFromCursorRec(Cursor cursor, Class<T> modelClass) throws InfinitumRuntimeException {
+    private <T> T createFromCursorRec(Cursor cursor, Class<T> modelClass, boolean useCache, List<Field> fetches)
+            throws InfinitumRuntimeException {
+        SqliteRowReader reader = getRowReader(modelClass);
+        if (useCache) {
+            Object cached = searchCache(cursor, reader, "");
+            if (cached != null)
+                return (T) cached;
+        }
         T ret;
-        SqliteResult result = new SqliteResult(cursor);
         ret = (T) mClassReflector.getClassInstance(modelClass);
-        List<Field> fields = mPersistencePolicy.getPersistentFields(modelClass);
-        for (Field field : fields) {
-            field.setAccessible(true);
-            if (!mPersistencePolicy.isRelationship(field)) {
-                SqliteTypeAdapter<?> resolver = mMapper.resolveType(field.getType());
-                int index = result.getColumnIndex(mPersistencePolicy.getFieldColumnName(field));
-                try {
-                    resolver.mapToObject(result, index, field, ret);
-                } catch (IllegalArgumentException e) {
-                    throw new InfinitumRuntimeException("Could not map '" + field.getType().getName() + "'");
-                } catch (IllegalAccessException e) {
-                    throw new InfinitumRuntimeException("Could not map '" + field.getType().getName() + "'");
+        reader.read(cursor, ret);
+        if (useCache) {
+            Object cached = cache(reader, ret);
+            if (cached != ret)
+                return (T) cached;
+        }
+        String[] foreignKeys = readForeignKeys(cursor, reader.getRelationships(), "");
+        if (useCache)
+            cacheState(reader, ret, foreignKeys);
+        for (int i = 0; i < fetches.size(); i++)
+            readFetchedEntity(cursor, modelClass, ret, fetches.get(i), i, null, null);
+        loadRelationships(ret, foreignKeys, reader, fetches);
+        if (useCache)
+            snapshot(reader, ret);
+        return ret;
+    }
+
+    /**
+     * Reads every remaining row of the {@code Cursor} before loading relationships, so that the relationships of all
+     * newly read entities can be fetched together. If {@code keyColumn} is given, its value for each row is added to
+     * {@code keys}, which is used to stitch related entities back to their owners.
+     */
+    private void createAllFromCursorRec(Cursor cursor, Class<?> modelClass, List<Field> fetches, String keyColumn,
+                                        List<Object> models, List<String> keys) throws InfinitumRuntimeException {
+        SqliteRowReader reader = getRowReader(modelClass);
+        List<RelationshipMetadata> relationships = reader.getRelationships();
+        boolean batch = !reader.isLazy() && relationships.size() > 0;
+        List<Object> pending = new ArrayList<Object>();
+        List<String[]> pendingForeignKeys = new ArrayList<String[]>();
+        List<List<Object>> pendingFetched = new ArrayList<List<Object>>(fetches.size());
+        List<List<String[]>> pendingFetchedForeignKeys = new ArrayList<List<String[]>>(fetches.size());
+        for (int i = 0; i < fetches.size(); i++) {
+            pendingFetched.add(new ArrayList<Object>());
+            pendingFetchedForeignKeys.add(new ArrayList<String[]>());
+        }
+        List<Object> hydrated = new ArrayList<Object>();
+        int keyIndex = keyColumn == null ? -1 : cursor.getColumnIndex(keyColumn);
+        while (cursor.moveToNext()) {
+            if (keys != null)
+                keys.add(cursor.getString(keyIndex));
+            Object cached = searchCache(cursor, reader, "");
+            if (cached != null) {
+                models.add(cached);
+                continue;
+            }
+            Object model = mClassReflector.getClassInstance(modelClass);
+            reader.read(cursor, model);
+            cached = cache(reader, model);
+            if (cached != model) {
+                models.add(cached);
+                continue;
+            }
+            models.add(model);
+            hydrated.add(model);
+            // Foreign keys have to be read while the cursor is at the row
+            String[] foreignKeys = readForeignKeys(cursor, relationships, "");
+            cacheState(reader, model, foreignKeys);
+            for (int i = 0; i < fetches.size(); i++)
+                readFetchedEntity(cursor, modelClass, model, fetches.get(i), i, pendingFetched.get(i),
+                        pendingFetchedForeignKeys.get(i));
+            if (batch) {
+                pending.add(model);
+                pendingForeignKeys.add(foreignKeys);
+            } else {
+                loadRelationships(model, foreignKeys, reader, fetches);
+            }
+        }
+        if (pending.size() > 0)
+            loadRelationships(pending, pendingForeignKeys, modelClass, relationships, fetches);
+        for (int i = 0; i < fetches.size(); i++) {
+            if (pendingFetched.get(i).size() == 0)
+                continue;
+            Class<?> fetchedClass = getRelatedType(modelClass, fetches.get(i));
+            loadRelationships(pendingFetched.get(i), pendingFetchedForeignKeys.get(i), fetchedClass,
+                    getRowReader(fetchedClass).getRelationships(), NO_FETCHES);
+            for (Object fetched : pendingFetched.get(i))
+                snapshot(getRowReader(fetchedClass), fetched);
+        }
+        // Relationships are only complete once every batch has been loaded
+        for (Object model : hydrated)
+            snapshot(reader, model);
+    }
+
+    /**
+     * Reads the entity joined into the current row by the fetch at the given index and sets it on the model. If
+     * {@code pending} is given, loading the joined entity's own eager relationships is deferred so that they can be
+     * batched.
+     */
+    private void readFetchedEntity(Cursor cursor, Class<?> modelClass, Object model, Field field, int index,
+                                   List<Object> pending, List<String[]> pendingForeignKeys)
+            throws InfinitumRuntimeException {
+        Class<?> relatedClass = getRelatedType(modelClass, field);
+        String prefix = SqliteBuilder.getFetchColumnPrefix(index);
+        int pkIndex = cursor.getColumnIndex(prefix + getPrimaryKeyColumn(relatedClass));
+        // The LEFT JOIN found no associated entity
+        if (pkIndex < 0 || cursor.isNull(pkIndex))
+            return;
+        SqliteRowReader reader = getRowReader(relatedClass);
+        Object related = searchCache(cursor, reader, prefix);
+        if (related == null) {
+            Object fetched = mClassReflector.getClassInstance(relatedClass);
+            reader.read(cursor, fetched, prefix);
+            related = cache(reader, fetched);
+            if (related == fetched) {
+                String[] foreignKeys = readForeignKeys(cursor, reader.getRelationships(), prefix);
+                cacheState(reader, fetched, foreignKeys);
+                if (pending != null && !reader.isLazy() && reader.getRelationships().size() > 0) {
+                    pending.add(fetched);
+                    pendingForeignKeys.add(foreignKeys);
+                } else {
+                    loadRelationships(fetched, foreignKeys, reader, NO_FETCHES);
+                    snapshot(reader, fetched);
                 }
             }
         }
-        int objHash = mPersistencePolicy.computeModelHash(ret);
-        if (mSession.checkCache(objHash))
-            return (T) mSession.searchCache(objHash);
-        mSession.cache(objHash, ret);
-        loadRelationships(ret, cursor);
+        mClassReflector.setFieldValue(model, field, related);
+    }
+
+    /**
+     * Looks up the entity at the current row of the {@link Cursor} in the {@code Session} cache. Integral primary keys
+     * are read straight from the row, so a cache hit avoids hydrating the entity at all. Other keys can only be
+     * compared once the entity has been hydrated, so {@code null} is returned for them.
+     */
+    private Object searchCache(Cursor cursor, SqliteRowReader reader, String columnPrefix) {
+        if (!reader.isIntegralPrimaryKey())
+            return null;
+        int index = reader.getPrimaryKeyIndex(cursor, columnPrefix);
+        if (index < 0 || cursor.isNull(index))
+            return null;
+        return mSession.searchCache(reader.getType(), cursor.getLong(index));
+    }
+
+    // Caches the newly hydrated model, returning the instance already cached under its identity if there is one
+    private Object cache(SqliteRowReader reader, Object model) {
+        Serializable pk = reader.getPrimaryKey(model);
+        if (pk == null)
+            return model;
+        if (!reader.isIntegralPrimaryKey()) {
+            Object cached = mSession.searchCache(reader.getType(), pk);
+            if (cached != null)
+                return cached;
+        }
+        mSession.cache(reader.getType(), pk, model);
+        return model;
+    }
+
+    /**
+     * Retrieves the entity with the given primary key from the {@link SecondLevelCache}, avoiding a database query.
+     * The entity is hydrated from its cached state, added to the {@link SqliteSession} cache and has its relationships
+     * loaded as if it had been read from a row. If the {@code Session} cache already holds the entity, that instance is
+     * returned instead.
+     *
+     * @param modelClass the {@code Class} of the entity to retrieve
+     * @param id         the primary key of the entity
+     * @return the entity or {@code null} if its {@code Class} is not cacheable or it is not in the cache
+     * @throws InfinitumRuntimeException if the model could not be instantiated
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T searchSecondLevelCache(Class<T> modelClass, Serializable id) throws InfinitumRuntimeException {
+        SqliteRowReader reader = getRowReader(modelClass);
+        if (!reader.isCacheable() || id == null)
+            return null;
+        Object cached = mSession.searchCache(modelClass, id);
+        if (cached != null)
+            return (T) cached;
+        CachedState state = (CachedState) mSecondLevelCache.get(modelClass, id);
+        if (state == null)
+            return null;
+        T ret = mClassReflector.getClassInstance(modelClass);
+        reader.setValues(ret, state.mValues);
+        mSession.cache(modelClass, id, ret);
+        loadRelationships(ret, state.mForeignKeys, reader, NO_FETCHES);
+        snapshot(reader, ret);
+        return ret;
+    }
+
+    /**
+     * Retrieves the entities of the given {@link Class} with the given primary keys. Entities in the {@link
+     * SqliteSession} cache or the {@link SecondLevelCache} are served from there, and the rest are loaded in batches,
+     * issuing one {@code IN} query per batch rather than one query per entity. Entities which no longer exist are
+     * omitted.
+     *
+     * @param modelClass the {@code Class} of the entities to retrieve
+     * @param ids        the primary keys of the entities
+     * @return {@link List} of entities in the order of their primary keys
+     * @throws InfinitumRuntimeException if a model could not be instantiated
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> loadAll(Class<T> modelClass, List<? extends Serializable> ids)
+            throws InfinitumRuntimeException {
+        Map<String, Object> cached = new HashMap<String, Object>();
+        List<String> misses = new ArrayList<String>();
+        for (Serializable id : ids) {
+            Object entity = mSession.searchCache(modelClass, id);
+            if (entity == null)
+                misses.add(String.valueOf(id));
+            else
+                cached.put(String.valueOf(id), entity);
+        }
+        Map<String, List<Object>> loaded = batchLoad(modelClass, getPrimaryKeyColumn(modelClass), misses);
+        List<T> ret = new ArrayList<T>(ids.size());
+        for (Serializable id : ids) {
+            String key = String.valueOf(id);
+            Object entity = cached.get(key);
+            if (entity == null) {
+                List<Object> group = loaded.get(key);
+                if (group == null)
+                    continue;
+                entity = group.get(0);
+            }
+            ret.add((T) entity);
+        }
         return ret;
     }
 
-    private <T> void loadRelationships(T model, Cursor cursor) throws InfinitumRuntimeException {
-        for (Field f : mPersistencePolicy.getPersistentFields(model.getClass())) {
-            f.setAccessible(true);
-            if (!mPersistencePolicy.isRelationship(f))
+    // Looks up an entity by a key read from a foreign key or result column, which is always a string
+    private Object searchSecondLevelCacheForKey(Class<?> modelClass, String key) throws InfinitumRuntimeException {
+        if (key == null)
+            return null;
+        SqliteRowReader reader = getRowReader(modelClass);
+        if (!reader.isCacheable())
+            return null;
+        Serializable id = key;
+        if (reader.isIntegralPrimaryKey()) {
+            try {
+                id = Long.parseLong(key);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return searchSecondLevelCache(modelClass, id);
+    }
+
+    // Stores the column values and foreign keys of a model just read from a row, if its class is cacheable
+    private void cacheState(SqliteRowReader reader, Object model, String[] foreignKeys) {
+        if (!reader.isCacheable())
+            return;
+        Serializable pk = reader.getPrimaryKey(model);
+        if (pk != null)
+            mSecondLevelCache.put(reader.getType(), pk, new CachedState(reader.getValues(model), foreignKeys));
+    }
+
+    /**
+     * Records the current state of the given entity, which must match its database row, so that a later update only
+     * writes what has changed since. This is done automatically for every entity this {@code SqliteModelFactory}
+     * hydrates, and must be done again after the entity is written.
+     *
+     * @param model the entity to snapshot
+     * @throws InfinitumRuntimeException if the entity's state could not be read
+     */
+    public void snapshot(Object model) throws InfinitumRuntimeException {
+        model = AbstractProxy.getTarget(model);
+        snapshot(getRowReader(model.getClass()), model);
+    }
+
+    /**
+     * Returns the last recorded state of the given entity.
+     *
+     * @param model the entity to retrieve the snapshot of
+     * @return {@link EntitySnapshot} or {@code null} if none has been recorded for this instance
+     */
+    public EntitySnapshot getSnapshot(Object model) {
+        model = AbstractProxy.getTarget(model);
+        Serializable pk = mPersistencePolicy.getPrimaryKey(model);
+        if (pk == null)
+            return null;
+        EntitySnapshot snapshot = (EntitySnapshot) getSnapshots().get(model.getClass(), pk);
+        // Another instance with the same identity may have been loaded since
+        return snapshot == null || snapshot.getEntity() != model ? null : snapshot;
+    }
+
+    /**
+     * Discards the recorded state of the given entity, e.g. because it has been deleted.
+     *
+     * @param model the entity to discard the snapshot of
+     */
+    public void evictSnapshot(Object model) {
+        model = AbstractProxy.getTarget(model);
+        getSnapshots().remove(model.getClass(), mPersistencePolicy.getPrimaryKey(model));
+    }
+
+    /**
+     * Discards every recorded entity state. This must be called when rows may have been written without going through
+     * the ORM, or when writes are rolled back.
+     */
+    public void clearSnapshots() {
+        getSnapshots().clear();
+    }
+
+    /**
+     * Determines which columns of the given entity have changed since the given snapshot was taken.
+     *
+     * @param model    the entity to check
+     * @param snapshot the {@link EntitySnapshot} of the entity
+     * @return array indicating, for each column of the entity's {@link EntityMetadata}, if its value has changed
+     * @throws InfinitumRuntimeException if the entity's state could not be read
+     */
+    public boolean[] getDirtyColumns(Object model, EntitySnapshot snapshot) throws InfinitumRuntimeException {
+        model = AbstractProxy.getTarget(model);
+        return getRowReader(model.getClass()).getDirtyColumns(model, snapshot.getValues());
+    }
+
+    /**
+     * Determines which relationships of the given entity have changed since the given snapshot was taken. A
+     * relationship has changed if its field was reassigned or its collection's members were added or removed, and,
+     * if the entity cascades all changes, if any related entity itself has changed. Lazily loaded relationships which
+     * have not been loaded are unchanged.
+     *
+     * @param model    the entity to check
+     * @param snapshot the {@link EntitySnapshot} of the entity
+     * @return array indicating, for each relationship of the entity's {@link EntityMetadata}, if it has changed
+     * @throws InfinitumRuntimeException if the entity's state could not be read
+     */
+    public boolean[] getDirtyRelationships(Object model, EntitySnapshot snapshot) throws InfinitumRuntimeException {
+        model = AbstractProxy.getTarget(model);
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        visited.add(model);
+        return getDirtyRelationships(model, snapshot, visited);
+    }
+
+    private boolean[] getDirtyRelationships(Object model, EntitySnapshot snapshot, Set<Object> visited) {
+        List<RelationshipMetadata> relationships = getRowReader(model.getClass()).getRelationships();
+        boolean cascade = mPersistencePolicy.getCascadeMode(model.getClass()) == Cascade.ALL;
+        boolean[] ret = new boolean[relationships.size()];
+        for (int i = 0; i < ret.length; i++) {
+            Object related = mClassReflector.getFieldValue(model, relationships.get(i).getField());
+            ret[i] = isRelationshipDirty(related, snapshot, i, cascade, visited);
+        }
+        return ret;
+    }
+
+    private boolean isRelationshipDirty(Object related, EntitySnapshot snapshot, int index, boolean cascade,
+                                        Set<Object> visited) {
+        if (related != snapshot.getRelated(index))
+            return true;
+        if (related == null || isUnloadedProxy(related))
+            return false;
+        related = AbstractProxy.getTarget(related);
+        if (!(related instanceof Collection))
+            return cascade && !isClean(related, visited);
+        Object[] members = snapshot.getMembers(index);
+        // A lazy collection loaded after the snapshot was taken may have been modified
+        if (members == null)
+            return true;
+        Collection<?> collection = (Collection<?>) related;
+        if (collection.size() != members.length)
+            return true;
+        Set<Object> snapshotMembers = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        snapshotMembers.addAll(Arrays.asList(members));
+        for (Object member : collection) {
+            if (!snapshotMembers.contains(member))
+                return true;
+            if (cascade && member != null && !isClean(member, visited))
+                return true;
+        }
+        return false;
+    }
+
+    // Indicates if the entity and everything it cascades to is unchanged since its snapshot
+    private boolean isClean(Object model, Set<Object> visited) {
+        if (isUnloadedProxy(model))
+            return true;
+        model = AbstractProxy.getTarget(model);
+        if (!visited.add(model))
+            return true;
+        EntitySnapshot snapshot = getSnapshot(model);
+        if (snapshot == null)
+            return false;
+        for (boolean dirty : getDirtyColumns(model, snapshot)) {
+            if (dirty)
+                return false;
+        }
+        for (boolean dirty : getDirtyRelationships(model, snapshot, visited)) {
+            if (dirty)
+                return false;
+        }
+        return true;
+    }
+
+    private void snapshot(SqliteRowReader reader, Object model) {
+        Serializable pk = reader.getPrimaryKey(model);
+        if (pk == null)
+            return;
+        List<RelationshipMetadata> relationships = reader.getRelationships();
+        Object[] related = new Object[relationships.size()];
+        Object[][] members = new Object[related.length][];
+        for (int i = 0; i < related.length; i++) {
+            related[i] = mClassReflector.getFieldValue(model, relationships.get(i).getField());
+            if (related[i] instanceof Collection && !isUnloadedProxy(related[i]))
+                members[i] = ((Collection<?>) AbstractProxy.getTarget(related[i])).toArray();
+        }
+        getSnapshots().put(reader.getType(), pk, new EntitySnapshot(model, reader.getValues(model), related,
+                members));
+    }
+
+    private static boolean isUnloadedProxy(Object object) {
+        if (!AbstractProxy.isAopProxy(object))
+            return false;
+        AbstractProxy proxy = AbstractProxy.getProxy(object);
+        return proxy instanceof LazyLoadDexMakerProxy && !((LazyLoadDexMakerProxy) proxy).isLoaded();
+    }
+
+    // Created on first use, since the Session is injected after construction
+    private synchronized IdentityMap getSnapshots() {
+        if (mSnapshots == null)
+            mSnapshots = new IdentityMap(mSession.getCacheSize());
+        return mSnapshots;
+    }
+
+    private Class<?> getRelatedType(Class<?> modelClass, Field field) {
+        ModelRelationship rel = mPersistencePolicy.getRelationship(field);
+        return rel.getFirstType() == modelClass ? rel.getSecondType() : rel.getFirstType();
+    }
+
+    /**
+     * Discards the cached {@link SqliteRowReader} instances so that they are rebuilt on next use. This must be called
+     * when the type adapters registered with the {@link SqliteMapper} change.
+     */
+    public void recycleRowReaders() {
+        mRowReaders.clear();
+    }
+
+    private SqliteRowReader getRowReader(Class<?> modelClass) {
+        SqliteRowReader reader = mRowReaders.get(modelClass);
+        if (reader == null) {
+            reader = new SqliteRowReader(mPersistencePolicy.getEntityMetadata(modelClass), mMapper);
+            mRowReaders.put(modelClass, reader);
+        }
+        return reader;
+    }
+
+    private <T> void loadRelationships(T model, String[] foreignKeys, SqliteRowReader reader, List<Field> fetches)
+            throws InfinitumRuntimeException {
+        boolean lazy = reader.isLazy();
+        List<RelationshipMetadata> relationships = reader.getRelationships();
+        for (int i = 0; i < relationships.size(); i++) {
+            RelationshipMetadata relationship = relationships.get(i);
+            Field f = relationship.getField();
+            // Fetched associations were already read from the row
+            if (fetches.contains(f))
                 continue;
-            ModelRelationship rel = mPersistencePolicy.getRelationship(f);
-            Serializable fk = null;
+            ModelRelationship rel = relationship.getRelationship();
+            Serializable fk = foreignKeys[i];
             switch (rel.getRelationType()) {
                 case ManyToMany:
-                    if (mPersistencePolicy.isLazy(model.getClass()))
+                    if (lazy)
                         lazilyLoadManyToMany((ManyToManyRelationship) rel, f, model);
                     else
                         loadManyToMany((ManyToManyRelationship) rel, f, model);
                     break;
                 case ManyToOne:
                     ManyToOneRelationship mto = (ManyToOneRelationship) rel;
-                    fk = cursor.getString(cursor.getColumnIndex(mto.getColumn()));
-                    if (mPersistencePolicy.isLazy(model.getClass()))
+                    if (lazy)
                         lazilyLoadManyToOne(mto, f, model, fk);
                     else
                         loadManyToOne(mto, f, model, fk);
                     break;
                 case OneToMany:
-                    if (mPersistencePolicy.isLazy(model.getClass()))
+                    if (lazy)
                         lazilyLoadOneToMany((OneToManyRelationship) rel, f, model);
                     else
                         loadOneToMany((OneToManyRelationship) rel, f, model);
                     break;
                 case OneToOne:
                     OneToOneRelationship oto = (OneToOneRelationship) rel;
-                    int col = cursor.getColumnIndex(oto.getColumn());
-                    if (col > -1)
-                        fk = cursor.getString(col);
-                    if (mPersistencePolicy.isLazy(model.getClass()))
+                    if (lazy)
                         lazilyLoadOneToOne(oto, f, model, fk);
                     else
                         loadOneToOne(oto, f, model, fk);
@@ -147,7 +656,161 @@ public class SqliteModelFactory implements ModelFactory {
         }
     }
 
+    private String[] readForeignKeys(Cursor cursor, List<RelationshipMetadata> relationships, String columnPrefix) {
+        String[] ret = new String[relationships.size()];
+        for (int i = 0; i < ret.length; i++) {
+            ModelRelationship rel = relationships.get(i).getRelationship();
+            if (rel instanceof ManyToOneRelationship || rel instanceof OneToOneRelationship) {
+                int col = cursor.getColumnIndex(columnPrefix + ((ForeignKeyRelationship) rel).getColumn());
+                if (col > -1)
+                    ret[i] = cursor.getString(col);
+            }
+        }
+        return ret;
+    }
+
+    private void loadRelationships(List<Object> models, List<String[]> foreignKeys, Class<?> modelClass,
+                                   List<RelationshipMetadata> relationships, List<Field> fetches)
+            throws InfinitumRuntimeException {
+        List<String> primaryKeys = new ArrayList<String>(models.size());
+        for (Object model : models)
+            primaryKeys.add(String.valueOf(mPersistencePolicy.getPrimaryKey(model)));
+        for (int i = 0; i < relationships.size(); i++) {
+            Field f = relationships.get(i).getField();
+            if (fetches.contains(f))
+                continue;
+            ModelRelationship rel = relationships.get(i).getRelationship();
+            List<String> fks = new ArrayList<String>(models.size());
+            for (String[] rowForeignKeys : foreignKeys)
+                fks.add(rowForeignKeys[i]);
+            Map<String, List<Object>> related;
+            switch (rel.getRelationType()) {
+                case ManyToMany:
+                    ManyToManyRelationship mtm = (ManyToManyRelationship) rel;
+                    Class<?> mtmDirection = modelClass == mtm.getFirstType() ? mtm.getSecondType() : mtm
+                            .getFirstType();
+                    related = batchLoadManyToMany(mtm, mtmDirection, primaryKeys);
+                    setRelatedCollections(models, f, primaryKeys, related);
+                    break;
+                case ManyToOne:
+                    Class<?> direction = modelClass == rel.getFirstType() ? rel.getSecondType() : rel.getFirstType();
+                    related = batchLoad(direction, getPrimaryKeyColumn(direction), fks);
+                    setRelatedEntities(models, f, fks, related);
+                    break;
+                case OneToMany:
+                    OneToManyRelationship otm = (OneToManyRelationship) rel;
+                    related = batchLoad(otm.getManyType(), otm.getColumn(), primaryKeys);
+                    setRelatedCollections(models, f, primaryKeys, related);
+                    break;
+                case OneToOne:
+                    OneToOneRelationship oto = (OneToOneRelationship) rel;
+                    if (oto.getOwner() == modelClass) {
+                        related = batchLoad(oto.getSecondType(), getPrimaryKeyColumn(oto.getSecondType()), fks);
+                        setRelatedEntities(models, f, fks, related);
+                    } else {
+                        related = batchLoad(oto.getSecondType(), oto.getColumn(), primaryKeys);
+                        setRelatedEntities(models, f, primaryKeys, related);
+                    }
+                    break;
+            }
+        }
+    }
+
+    private Map<String, List<Object>> batchLoad(Class<?> relatedClass, String keyColumn, List<String> keys)
+            throws InfinitumRuntimeException {
+        Map<String, List<Object>> ret = new HashMap<String, List<Object>>();
+        List<String> distinctKeys = getDistinctKeys(keys);
+        if (keyColumn.equals(getPrimaryKeyColumn(relatedClass)) && getRowReader(relatedClass).isCacheable()) {
+            // Only query for the entities missing from the second-level cache
+            List<String> misses = new ArrayList<String>(distinctKeys.size());
+            for (String key : distinctKeys) {
+                Object cached = searchSecondLevelCacheForKey(relatedClass, key);
+                if (cached == null)
+                    misses.add(key);
+                else
+                    ret.put(key, new ArrayList<Object>(Collections.singletonList(cached)));
+            }
+            distinctKeys = misses;
+        }
+        for (int start = 0; start < distinctKeys.size(); start += BATCH_SIZE) {
+            List<String> batch = distinctKeys.subList(start, Math.min(start + BATCH_SIZE, distinctKeys.size()));
+            StringBuilder sql = new StringBuilder("SELECT * FROM ").append(mPersistencePolicy.getModelTableName
+                    (relatedClass)).append(" WHERE ").append(keyColumn).append(" IN (");
+            for (int i = 0; i < batch.size(); i++)
+                sql.append(i == 0 ? "?" : ", ?");
+            sql.append(')');
+            loadBatch(sql.toString(), batch, relatedClass, keyColumn, ret);
+        }
+        return ret;
+    }
+
+    private Map<String, List<Object>> batchLoadManyToMany(ManyToManyRelationship rel, Class<?> direction,
+                                                          List<String> keys) throws InfinitumRuntimeException {
+        Map<String, List<Object>> ret = new HashMap<String, List<Object>>();
+        List<String> distinctKeys = getDistinctKeys(keys);
+        for (int start = 0; start < distinctKeys.size(); start += BATCH_SIZE) {
+            List<String> batch = distinctKeys.subList(start, Math.min(start + BATCH_SIZE, distinctKeys.size()));
+            String sql = mSqlBuilder.createManyToManyBatchJoinQuery(rel, batch.size(), direction);
+            loadBatch(sql, batch, direction, SqlConstants.BATCH_KEY_ALIAS, ret);
+        }
+        return ret;
+    }
+
+    private void loadBatch(String sql, List<String> batch, Class<?> relatedClass, String keyColumn,
+                           Map<String, List<Object>> related) throws InfinitumRuntimeException {
+        List<Object> entities = new ArrayList<Object>();
+        List<String> entityKeys = new ArrayList<String>();
+        Cursor result = mSession.executeForResult(sql, batch.toArray(new String[batch.size()]));
+        try {
+            createAllFromCursorRec(result, relatedClass, NO_FETCHES, keyColumn, entities, entityKeys);
+        } finally {
+            result.close();
+        }
+        for (int i = 0; i < entities.size(); i++) {
+            List<Object> group = related.get(entityKeys.get(i));
+            if (group == null) {
+                group = new ArrayList<Object>();
+                related.put(entityKeys.get(i), group);
+            }
+            group.add(entities.get(i));
+        }
+    }
+
+    private void setRelatedEntities(List<Object> models, Field field, List<String> keys,
+                                    Map<String, List<Object>> related) {
+        for (int i = 0; i < models.size(); i++) {
+            List<Object> group = related.get(keys.get(i));
+            if (group != null)
+                mClassReflector.setFieldValue(models.get(i), field, group.get(0));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void setRelatedCollections(List<Object> models, Field field, List<String> keys,
+                                       Map<String, List<Object>> related) {
+        for (int i = 0; i < models.size(); i++) {
+            Collection<Object> collection = (Collection<Object>) mClassReflector.getFieldValue(models.get(i), field);
+            List<Object> group = related.get(keys.get(i));
+            if (group != null)
+                collection.addAll(group);
+            mClassReflector.setFieldValue(models.get(i), field, collection);
+        }
+    }
+
+    private List<String> getDistinctKeys(List<String> keys) {
+        Set<String> distinct = new LinkedHashSet<String>(keys);
+        distinct.remove(null);
+        return new ArrayList<String>(distinct);
+    }
+
+    private String getPrimaryKeyColumn(Class<?> c) {
+        return mPersistencePolicy.getFieldColumnName(mPersistencePolicy.getPrimaryKeyField(c));
+    }
+
     private <T> void lazilyLoadOneToOne(final OneToOneRelationship rel, Field field, T model, Serializable foreignKey) {
+        if (rel.getOwner() == model.getClass() && setFromSecondLevelCache(model, field, rel.getSecondType(),
+                foreignKey))
+            return;
         final String sql = getOneToOneEntityQuery(model, rel.getSecondType(), field, rel, foreignKey);
         Object related;
         related = new LazyLoadDexMakerProxy(mSession.getContext(), rel.getSecondType()) {
@@ -170,6 +833,9 @@ public class SqliteModelFactory implements ModelFactory {
     }
 
     private <T> void loadOneToOne(OneToOneRelationship rel, Field field, T model, Serializable foreignKey) {
+        if (rel.getOwner() == model.getClass() && setFromSecondLevelCache(model, field, rel.getSecondType(),
+                foreignKey))
+            return;
         String sql = getOneToOneEntityQuery(model, rel.getSecondType(), field, rel, foreignKey);
         Cursor result = mSession.executeForResult(sql);
         try {
@@ -240,6 +906,9 @@ public class SqliteModelFactory implements ModelFactory {
 
     private <T> void lazilyLoadManyToOne(ManyToOneRelationship rel, Field field, T model, Serializable foreignKey) {
         final Class<?> direction = model.getClass() == rel.getFirstType() ? rel.getSecondType() : rel.getFirstType();
+        // Nothing is gained by deferring the load of an entity which is already in memory
+        if (setFromSecondLevelCache(model, field, direction, foreignKey))
+            return;
         final String sql = getEntityQuery(direction, field, foreignKey);
         Object related;
         related = new LazyLoadDexMakerProxy(mSession.getContext(), rel.getSecondType()) {
@@ -263,6 +932,8 @@ public class SqliteModelFactory implements ModelFactory {
 
     private <T> void loadManyToOne(ManyToOneRelationship rel, Field field, T model, Serializable foreignKey) {
         Class<?> direction = model.getClass() == rel.getFirstType() ? rel.getSecondType() : rel.getFirstType();
+        if (setFromSecondLevelCache(model, field, direction, foreignKey))
+            return;
         String sql = getEntityQuery(direction, field, foreignKey);
         Cursor result = mSession.executeForResult(sql);
         try {
@@ -317,6 +988,14 @@ public class SqliteModelFactory implements ModelFactory {
         mClassReflector.setFieldValue(model, f, related);
     }
 
+    private boolean setFromSecondLevelCache(Object model, Field field, Class<?> relatedClass, Serializable foreignKey) {
+        Object related = searchSecondLevelCacheForKey(relatedClass, foreignKey == null ? null : foreignKey.toString());
+        if (related == null)
+            return false;
+        mClassReflector.setFieldValue(model, field, related);
+        return true;
+    }
+
     private String getEntityQuery(Class<?> clazz, Field field, Serializable foreignKey) {
         StringBuilder sql = new StringBuilder("SELECT * FROM ").append(mPersistencePolicy.getModelTableName(clazz))
                 .append(" WHERE ")
@@ -355,4 +1034,20 @@ public class SqliteModelFactory implements ModelFactory {
         return sql.append(" LIMIT 1").toString();
     }
 
+    /**
+     * The persistent state of an entity held in the {@link SecondLevelCache}: its column values in {@link
+     * SqliteRowReader} order and the foreign keys of its relationships.
+     */
+    private static class CachedState {
+
+        private final Object[] mValues;
+        private final String[] mForeignKeys;
+
+        public CachedState(Object[] values, String[] foreignKeys) {
+            mValues = values;
+            mForeignKeys = foreignKeys;
+        }
+
+    }
+
 }
@@ -0,0 +1,393 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import android.database.Cursor;
+import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
+import com.clarionmedia.infinitum.internal.Primitives;
+import com.clarionmedia.infinitum.orm.internal.bind.SqliteTypeAdapters;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata.ColumnMetadata;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata.RelationshipMetadata;
+import com.clarionmedia.infinitum.orm.sqlite.SqliteTypeAdapter;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * <p> Populates instances of a single domain model {@link Class} from the rows of a {@link Cursor}. A {@code
+ * SqliteRowReader} is built once per model {@code Class} from its {@link EntityMetadata}, resolving each persistent
+ * {@link Field}, its column name and its {@link SqliteTypeAdapter} up front so that hydrating a row does no policy or
+ * type lookups. Column indexes are cached per cursor shape, and primitive fields mapped by the built-in adapters are
+ * written with the primitive {@code Field} setters, avoiding boxing. Fields using custom {@code SqliteTypeAdapters}
+ * fall back to the reflective {@link SqliteTypeAdapter#mapToObject} path. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 10/17/26
+ * @since 1.1.0
+ */
+public class SqliteRowReader {
+
+    private static final int KIND_ADAPTER = 0;
+    private static final int KIND_INT = 1;
+    private static final int KIND_LONG = 2;
+    private static final int KIND_SHORT = 3;
+    private static final int KIND_FLOAT = 4;
+    private static final int KIND_DOUBLE = 5;
+    private static final int KIND_BOOLEAN = 6;
+    private static final int KIND_STRING = 7;
+    private static final int KIND_BYTE_ARRAY = 8;
+    private static final int KIND_DATE = 9;
+
+    private final Class<?> mType;
+    private final Field[] mFields;
+    private final String[] mColumns;
+    private final int[] mKinds;
+    private final SqliteTypeAdapter<?>[] mAdapters;
+    private final List<RelationshipMetadata> mRelationships;
+    private final boolean mIsLazy;
+    private final boolean mIsCacheable;
+    private final int mPrimaryKey;
+    private final boolean mIsIntegralPrimaryKey;
+    private volatile Shape mShape;
+
+    /**
+     * Constructs a new {@code SqliteRowReader} for the domain model described by the given {@link EntityMetadata}.
+     *
+     * @param metadata the {@code EntityMetadata} describing the model rows will be read into
+     * @param mapper   the {@link SqliteMapper} used to resolve type adapters
+     */
+    public SqliteRowReader(EntityMetadata metadata, SqliteMapper mapper) {
+        mType = metadata.getEntityClass();
+        List<ColumnMetadata> columns = metadata.getColumns();
+        int size = columns.size();
+        mFields = new Field[size];
+        mColumns = new String[size];
+        mKinds = new int[size];
+        mAdapters = new SqliteTypeAdapter<?>[size];
+        int primaryKey = -1;
+        for (int i = 0; i < size; i++) {
+            ColumnMetadata column = columns.get(i);
+            if (column.isPrimaryKey())
+                primaryKey = i;
+            mFields[i] = column.getField();
+            mColumns[i] = column.getColumnName();
+            mAdapters[i] = mapper.resolveType(mFields[i].getType());
+            mKinds[i] = resolveKind(mFields[i], mAdapters[i]);
+        }
+        mRelationships = metadata.getRelationships();
+        mIsLazy = metadata.isLazy();
+        mIsCacheable = metadata.isCacheable();
+        mPrimaryKey = primaryKey;
+        mIsIntegralPrimaryKey = primaryKey > -1 && isIntegral(mFields[primaryKey].getType());
+    }
+
+    /**
+     * Populates the given model instance from the row the given {@link Cursor} is currently positioned at.
+     *
+     * @param cursor the {@code Cursor} positioned at the row to read
+     * @param model  the model instance to populate
+     * @throws InfinitumRuntimeException if a {@link Field} could not be mapped
+     */
+    public void read(Cursor cursor, Object model) throws InfinitumRuntimeException {
+        read(cursor, model, "");
+    }
+
+    /**
+     * Populates the given model instance from the row the given {@link Cursor} is currently positioned at, reading
+     * each column from the result column of the same name with the given prefix. This is used to read entities which
+     * are joined into another entity's query under aliased columns.
+     *
+     * @param cursor       the {@code Cursor} positioned at the row to read
+     * @param model        the model instance to populate
+     * @param columnPrefix the prefix of the result column names
+     * @throws InfinitumRuntimeException if a {@link Field} could not be mapped
+     */
+    public void read(Cursor cursor, Object model, String columnPrefix) throws InfinitumRuntimeException {
+        int[] indexes = getColumnIndexes(cursor, columnPrefix);
+        SqliteResult result = null;
+        for (int i = 0; i < mFields.length; i++) {
+            Field field = mFields[i];
+            int index = indexes[i];
+            try {
+                switch (index < 0 ? KIND_ADAPTER : mKinds[i]) {
+                    case KIND_INT:
+                        field.setInt(model, cursor.getInt(index));
+                        break;
+                    case KIND_LONG:
+                        field.setLong(model, cursor.getLong(index));
+                        break;
+                    case KIND_SHORT:
+                        field.setShort(model, cursor.getShort(index));
+                        break;
+                    case KIND_FLOAT:
+                        field.setFloat(model, cursor.getFloat(index));
+                        break;
+                    case KIND_DOUBLE:
+                        field.setDouble(model, cursor.getDouble(index));
+                        break;
+                    case KIND_BOOLEAN:
+                        field.setBoolean(model, cursor.getInt(index) == 1);
+                        break;
+                    case KIND_STRING:
+                        field.set(model, cursor.getString(index));
+                        break;
+                    case KIND_BYTE_ARRAY:
+                        field.set(model, cursor.getBlob(index));
+                        break;
+                    case KIND_DATE:
+                        field.set(model, new Date(cursor.getLong(index)));
+                        break;
+                    default:
+                        if (result == null)
+                            result = new SqliteResult(cursor);
+                        mAdapters[i].mapToObject(result, index, field, model);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new InfinitumRuntimeException("Could not map '" + field.getType().getName() + "'");
+            } catch (IllegalAccessException e) {
+                throw new InfinitumRuntimeException("Could not map '" + field.getType().getName() + "'");
+            }
+        }
+    }
+
+    /**
+     * Returns the domain model {@link Class} this {@code SqliteRowReader} reads.
+     *
+     * @return model {@code Class}
+     */
+    public Class<?> getType() {
+        return mType;
+    }
+
+    /**
+     * Returns the relationships of the model, which are not read from the row.
+     *
+     * @return {@link List} of {@link RelationshipMetadata}
+     */
+    public List<RelationshipMetadata> getRelationships() {
+        return mRelationships;
+    }
+
+    /**
+     * Indicates if the model's relationships are lazily loaded.
+     *
+     * @return {@code true} if lazy, {@code false} if eager
+     */
+    public boolean isLazy() {
+        return mIsLazy;
+    }
+
+    /**
+     * Indicates if the model is stored in the {@link com.clarionmedia.infinitum.orm.persistence.SecondLevelCache}.
+     *
+     * @return {@code true} if cacheable, {@code false} if not
+     */
+    public boolean isCacheable() {
+        return mIsCacheable;
+    }
+
+    /**
+     * Returns the values of the persistent columns of the given model instance, in the order they are read. Mutable
+     * {@link Date} and {@code byte[]} values are copied, so the returned state is not affected by later changes to the
+     * model.
+     *
+     * @param model the model to read the column values of
+     * @return column values
+     * @throws InfinitumRuntimeException if a {@link Field} could not be read
+     */
+    public Object[] getValues(Object model) throws InfinitumRuntimeException {
+        Object[] values = new Object[mFields.length];
+        for (int i = 0; i < mFields.length; i++) {
+            try {
+                values[i] = copy(mFields[i].get(model));
+            } catch (IllegalAccessException e) {
+                throw new InfinitumRuntimeException("Could not read '" + mFields[i].getName() + "'");
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Populates the given model instance from column values previously returned by {@link #getValues(Object)}.
+     *
+     * @param model  the model instance to populate
+     * @param values the column values to set
+     * @throws InfinitumRuntimeException if a {@link Field} could not be set
+     */
+    public void setValues(Object model, Object[] values) throws InfinitumRuntimeException {
+        for (int i = 0; i < mFields.length; i++) {
+            Field field = mFields[i];
+            // Leave primitives at their defaults rather than failing on a null column
+            if (values[i] == null && field.getType().isPrimitive())
+                continue;
+            try {
+                field.set(model, copy(values[i]));
+            } catch (IllegalArgumentException e) {
+                throw new InfinitumRuntimeException("Could not map '" + field.getType().getName() + "'");
+            } catch (IllegalAccessException e) {
+                throw new InfinitumRuntimeException("Could not map '" + field.getType().getName() + "'");
+            }
+        }
+    }
+
+    /**
+     * Compares the column values of the given model instance against values previously returned by {@link
+     * #getValues(Object)}. Values whose type is not known to be immutable, such as those mapped by custom {@link
+     * SqliteTypeAdapter SqliteTypeAdapters}, could have been modified in place and are always reported as changed.
+     *
+     * @param model    the model to check
+     * @param snapshot the column values to compare against
+     * @return array indicating, for each column, if its value has changed
+     * @throws InfinitumRuntimeException if a {@link Field} could not be read
+     */
+    public boolean[] getDirtyColumns(Object model, Object[] snapshot) throws InfinitumRuntimeException {
+        boolean[] ret = new boolean[mFields.length];
+        for (int i = 0; i < mFields.length; i++) {
+            Object value;
+            try {
+                value = mFields[i].get(model);
+            } catch (IllegalAccessException e) {
+                throw new InfinitumRuntimeException("Could not read '" + mFields[i].getName() + "'");
+            }
+            ret[i] = !isUnchanged(value, snapshot[i]);
+        }
+        return ret;
+    }
+
+    /**
+     * Indicates if the model's primary key is an integral type, meaning it can be read from a row with {@link
+     * Cursor#getLong(int)}.
+     *
+     * @return {@code true} if the primary key is integral, {@code false} if not
+     */
+    public boolean isIntegralPrimaryKey() {
+        return mIsIntegralPrimaryKey;
+    }
+
+    /**
+     * Returns the index of the primary key column within the given {@link Cursor}.
+     *
+     * @param cursor       the {@code Cursor} to find the column in
+     * @param columnPrefix the prefix of the result column names
+     * @return column index or -1 if the column does not exist
+     */
+    public int getPrimaryKeyIndex(Cursor cursor, String columnPrefix) {
+        return mPrimaryKey < 0 ? -1 : getColumnIndexes(cursor, columnPrefix)[mPrimaryKey];
+    }
+
+    /**
+     * Returns the primary key of the given model instance.
+     *
+     * @param model the model to retrieve the primary key for
+     * @return primary key value
+     * @throws InfinitumRuntimeException if the primary key could not be read
+     */
+    public Serializable getPrimaryKey(Object model) throws InfinitumRuntimeException {
+        if (mPrimaryKey < 0)
+            return null;
+        try {
+            return (Serializable) mFields[mPrimaryKey].get(model);
+        } catch (IllegalAccessException e) {
+            throw new InfinitumRuntimeException("Could not read primary key of '" + mType.getName() + "'");
+        }
+    }
+
+    private int[] getColumnIndexes(Cursor cursor, String columnPrefix) {
+        String[] names = cursor.getColumnNames();
+        Shape shape = mShape;
+        if (shape != null && shape.mPrefix.equals(columnPrefix) && (shape.mNames == names ||
+                Arrays.equals(shape.mNames, names)))
+            return shape.mIndexes;
+        int[] indexes = new int[mColumns.length];
+        for (int i = 0; i < mColumns.length; i++)
+            indexes[i] = cursor.getColumnIndex(columnPrefix + mColumns[i]);
+        mShape = new Shape(names, columnPrefix, indexes);
+        return indexes;
+    }
+
+    private static boolean isUnchanged(Object value, Object snapshot) {
+        if (value == null || snapshot == null)
+            return value == snapshot;
+        if (value instanceof byte[])
+            return snapshot instanceof byte[] && Arrays.equals((byte[]) value, (byte[]) snapshot);
+        Class<?> type = value.getClass();
+        if (type == String.class || type == Date.class || Primitives.unwrap(type).isPrimitive())
+            return value.equals(snapshot);
+        return false;
+    }
+
+    private static Object copy(Object value) {
+        if (value instanceof Date)
+            return new Date(((Date) value).getTime());
+        if (value instanceof byte[])
+            return ((byte[]) value).clone();
+        return value;
+    }
+
+    private static boolean isIntegral(Class<?> type) {
+        return type == long.class || type == Long.class || type == int.class || type == Integer.class || type ==
+                short.class || type == Short.class || type == byte.class || type == Byte.class;
+    }
+
+    private static int resolveKind(Field field, SqliteTypeAdapter<?> adapter) {
+        Class<?> type = field.getType();
+        // Reference types are set directly, primitives only when the field itself is primitive
+        if (adapter == SqliteTypeAdapters.STRING)
+            return KIND_STRING;
+        if (adapter == SqliteTypeAdapters.BYTE_ARRAY)
+            return KIND_BYTE_ARRAY;
+        if (adapter == SqliteTypeAdapters.DATE)
+            return KIND_DATE;
+        if (!type.isPrimitive())
+            return KIND_ADAPTER;
+        if (adapter == SqliteTypeAdapters.INTEGER)
+            return KIND_INT;
+        if (adapter == SqliteTypeAdapters.LONG)
+            return KIND_LONG;
+        if (adapter == SqliteTypeAdapters.SHORT)
+            return KIND_SHORT;
+        if (adapter == SqliteTypeAdapters.FLOAT)
+            return KIND_FLOAT;
+        if (adapter == SqliteTypeAdapters.DOUBLE)
+            return KIND_DOUBLE;
+        if (adapter == SqliteTypeAdapters.BOOLEAN)
+            return KIND_BOOLEAN;
+        return KIND_ADAPTER;
+    }
+
+    /**
+     * The column layout of a {@link Cursor} and the index of each model column within it.
+     */
+    private static class Shape {
+
+        private final String[] mNames;
+        private final String mPrefix;
+        private final int[] mIndexes;
+
+        public Shape(String[] names, String prefix, int[] indexes) {
+            mNames = names;
+            mPrefix = prefix;
+            mIndexes = indexes;
+        }
+
+    }
+
+}
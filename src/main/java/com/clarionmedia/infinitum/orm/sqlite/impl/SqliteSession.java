@@ -20,22 +20,27 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.SQLException;
 import com.clarionmedia.infinitum.context.InfinitumContext;
+import com.clarionmedia.infinitum.di.AbstractProxy;
 import com.clarionmedia.infinitum.di.annotation.Autowired;
 import com.clarionmedia.infinitum.event.annotation.Event;
 import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
-import com.clarionmedia.infinitum.internal.caching.LruCache;
 import com.clarionmedia.infinitum.logging.Logger;
 import com.clarionmedia.infinitum.logging.impl.SmartLogger;
 import com.clarionmedia.infinitum.orm.Session;
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
 import com.clarionmedia.infinitum.orm.exception.SQLGrammarException;
+import com.clarionmedia.infinitum.orm.internal.OrmPreconditions;
+import com.clarionmedia.infinitum.orm.persistence.IdentityMap;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
+import com.clarionmedia.infinitum.orm.persistence.QueryCache;
+import com.clarionmedia.infinitum.orm.persistence.SecondLevelCache;
 import com.clarionmedia.infinitum.orm.persistence.TypeAdapter;
 import com.clarionmedia.infinitum.orm.rest.Deserializer;
 import com.clarionmedia.infinitum.orm.sqlite.SqliteTypeAdapter;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -44,7 +49,22 @@ import java.util.Map;
  * {@code Session} while the other thread subsequently does the same, the latter thread will not be affected by the
  * prior closing of the {@code Session}. This is because {@code SqliteSession} tracks how many times {@link #open()} has
  * been called and decrements this counter when {@link #close()} is called, actually closing the {@code Session} only
- * when the count reaches zero. </p>
+ * when the count reaches zero. </p> <p> The {@code Session} cache is an {@link IdentityMap} keyed by entity {@link
+ * Class} and primary key. The cache size is the capacity of each entity {@code Class}, which can be overridden per
+ * {@code Class} using {@link #setCacheSize(Class, int)}, and the least recently used entities of a {@code Class} are
+ * evicted once it is reached. </p> <p> In write-behind mode, enabled with {@link #setWriteBehind(boolean)}, saves,
+ * updates and deletes are queued in a {@link UnitOfWork} instead of being written immediately, and are written in a
+ * single transaction when {@link #flush()} or {@link #commit()} is called, or when the {@code Session} is closed. Queued
+ * writes are not visible to queries until they are flushed and are discarded by {@link #rollback()}. Like transactions,
+ * the queue belongs to the calling thread: {@link #flush()}, {@link #commit()} and {@link #rollback()} only affect the
+ * writes queued by that thread, and {@link #close()} only flushes the writes of the thread which closes the {@code
+ * Session} last, so other threads must flush their writes before then. Since nothing has
+ * been written when a write is queued, {@link #save(Object)} and {@link #saveOrUpdate(Object)} return {@link
+ * #WRITE_QUEUED}, {@link #update(Object)} and {@link #delete(Object)} return {@code false}, and the bulk operations
+ * return 0. The same results are carried by the {@code entitySaved}, {@code entityUpdated}, {@code entityDeleted} and
+ * {@code entitySavedOrUpdated} events, which are published when the write is queued, before its row is written, so
+ * subscribers can tell queued writes apart from written ones. {@link #flush()} returns the number of writes which
+ * succeeded. </p>
  *
  * @author Tyler Treat
  * @version 1.1.0 04/25/13
@@ -52,6 +72,12 @@ import java.util.Map;
  */
 public class SqliteSession implements Session {
 
+    /**
+     * Returned by {@link #save(Object)} and {@link #saveOrUpdate(Object)} in write-behind mode, where the write is
+     * queued rather than written, so there is no row ID to return yet.
+     */
+    public static final long WRITE_QUEUED = -2;
+
     @Autowired
     private SqliteTemplate mSqlite;
 
@@ -61,7 +87,9 @@ public class SqliteSession implements Session {
     @Autowired
     private PersistencePolicy mPolicy;
 
-    private Map<Integer, Object> mSessionCache;
+    private IdentityMap mSessionCache;
+    private final ThreadLocal<UnitOfWork> mUnitsOfWork = new ThreadLocal<UnitOfWork>();
+    private boolean mIsWriteBehind;
     private Logger mLogger;
     private int mCacheSize;
     private int mSessionCount;
@@ -76,13 +104,14 @@ public class SqliteSession implements Session {
     /**
      * Constructs a new {@code SqliteSession} with the given cache size.
      *
-     * @param cacheSize the maximum number of {@code Objects} the {@code Session} cache can store
+     * @param cacheSize the maximum number of {@code Objects} of each {@link Class} the {@code Session} cache can
+     *                  store
      */
     public SqliteSession(int cacheSize) {
         mSessionCount = 0;
         mCacheSize = cacheSize;
         mLogger = new SmartLogger(getClass().getSimpleName());
-        mSessionCache = new LruCache<Integer, Object>(mCacheSize);
+        mSessionCache = new IdentityMap(mCacheSize);
     }
 
     @Override
@@ -103,6 +132,7 @@ public class SqliteSession implements Session {
         mSessionCount--;
         if (mSessionCount == 0) {
             // No more open references to this Session, so actually close it
+            flush();
             mSqlite.close();
             recycleCache();
         }
@@ -124,6 +154,7 @@ public class SqliteSession implements Session {
     @Override
     public Session setCacheSize(int cacheSize) {
         mCacheSize = cacheSize;
+        mSessionCache.setDefaultCapacity(cacheSize);
         return this;
     }
 
@@ -132,6 +163,99 @@ public class SqliteSession implements Session {
         return mCacheSize;
     }
 
+    /**
+     * Sets the {@code Session} cache capacity for the given entity {@link Class}, overriding {@link
+     * #setCacheSize(int)} for it. Cached entities of the {@code Class} exceeding the capacity are evicted.
+     *
+     * @param c         the entity {@code Class}
+     * @param cacheSize the maximum number of entities of the {@code Class} the cache can store
+     * @return {@code Session} to allow chaining
+     */
+    public Session setCacheSize(Class<?> c, int cacheSize) {
+        mSessionCache.setCapacity(c, cacheSize);
+        return this;
+    }
+
+    /**
+     * Returns the {@code Session} cache capacity for the given entity {@link Class}.
+     *
+     * @param c the entity {@code Class}
+     * @return the maximum number of entities of the {@code Class} the cache can store
+     */
+    public int getCacheSize(Class<?> c) {
+        return mSessionCache.getCapacity(c);
+    }
+
+    /**
+     * Returns the process-wide {@link SecondLevelCache}, which is shared by every {@code Session} and can be used to
+     * inspect its hit ratio or to evict entities modified outside of the ORM.
+     *
+     * @return {@code SecondLevelCache}
+     */
+    public SecondLevelCache getSecondLevelCache() {
+        return mSqlite.getSecondLevelCache();
+    }
+
+    /**
+     * Returns the process-wide {@link QueryCache} used by {@link Criteria#cacheable() cacheable} {@code Criteria}.
+     *
+     * @return {@code QueryCache}
+     */
+    public QueryCache getQueryCache() {
+        return mSqlite.getQueryCache();
+    }
+
+    /**
+     * Enables or disables write-behind mode. Any queued writes are flushed when it is disabled.
+     *
+     * @param writeBehind {@code true} to queue writes until they are flushed, {@code false} to write immediately
+     * @return {@code Session} to allow chaining
+     */
+    public Session setWriteBehind(boolean writeBehind) {
+        if (!writeBehind)
+            flush();
+        mIsWriteBehind = writeBehind;
+        return this;
+    }
+
+    /**
+     * Indicates if write-behind mode is enabled.
+     *
+     * @return {@code true} if writes are queued until they are flushed, {@code false} if they are written immediately
+     */
+    public boolean isWriteBehind() {
+        return mIsWriteBehind;
+    }
+
+    /**
+     * Writes every save, update and delete queued by the calling thread in a single transaction, ordered so that rows are written after the
+     * rows they hold foreign keys to. Written entities are cached and deleted entities are evicted. Writes which fail,
+     * such as updates of entities that no longer exist, are dropped.
+     *
+     * @return number of queued writes which succeeded
+     * @throws InfinitumRuntimeException if an entity could not be written, in which case nothing is written and the
+     *                                   queue is retained
+     */
+    public int flush() throws InfinitumRuntimeException {
+        UnitOfWork unitOfWork = mUnitsOfWork.get();
+        if (unitOfWork == null || unitOfWork.isEmpty())
+            return 0;
+        List<UnitOfWork.Operation> operations = unitOfWork.getOperations();
+        boolean[] results = mSqlite.flush(operations);
+        unitOfWork.clear();
+        int count = 0;
+        for (int i = 0; i < results.length; i++) {
+            if (!results[i])
+                continue;
+            count++;
+            if (operations.get(i).getType() == UnitOfWork.OperationType.DELETE)
+                evict(operations.get(i).getEntity());
+            else
+                cache(operations.get(i).getEntity());
+        }
+        return count;
+    }
+
     @Override
     public <T> Criteria<T> createCriteria(Class<T> entityClass) {
         return mSqlite.createCriteria(entityClass);
@@ -140,11 +264,14 @@ public class SqliteSession implements Session {
     @Override
     @Event("entitySaved")
     public long save(Object model) throws InfinitumRuntimeException {
+        if (mIsWriteBehind) {
+            enqueue(UnitOfWork.OperationType.SAVE, model);
+            return WRITE_QUEUED;
+        }
         long id = mSqlite.save(model);
         if (id != -1) {
             // Add to session cache
-            int hash = mPolicy.computeModelHash(model);
-            mSessionCache.put(hash, model);
+            cache(model);
         }
         return id;
     }
@@ -152,11 +279,14 @@ public class SqliteSession implements Session {
     @Override
     @Event("entityUpdated")
     public boolean update(Object model) throws InfinitumRuntimeException {
+        if (mIsWriteBehind) {
+            enqueue(UnitOfWork.OperationType.UPDATE, model);
+            return false;
+        }
         boolean success = mSqlite.update(model);
         if (success) {
             // Update session cache
-            int hash = mPolicy.computeModelHash(model);
-            mSessionCache.put(hash, model);
+            cache(model);
         }
         return success;
     }
@@ -164,11 +294,14 @@ public class SqliteSession implements Session {
     @Override
     @Event("entityDeleted")
     public boolean delete(Object model) throws InfinitumRuntimeException {
+        if (mIsWriteBehind) {
+            enqueue(UnitOfWork.OperationType.DELETE, model);
+            return false;
+        }
         boolean success = mSqlite.delete(model);
         if (success) {
             // Remove from session cache
-            int hash = mPolicy.computeModelHash(model);
-            mSessionCache.remove(hash);
+            evict(model);
         }
         return success;
     }
@@ -176,11 +309,14 @@ public class SqliteSession implements Session {
     @Override
     @Event("entitySavedOrUpdated")
     public long saveOrUpdate(Object model) throws InfinitumRuntimeException {
+        if (mIsWriteBehind) {
+            enqueue(UnitOfWork.OperationType.SAVE_OR_UPDATE, model);
+            return WRITE_QUEUED;
+        }
         long id = mSqlite.saveOrUpdate(model);
         if (id >= 0) {
             // Update session cache
-            int hash = mPolicy.computeModelHash(model);
-            mSessionCache.put(hash, model);
+            cache(model);
         }
         return id;
     }
@@ -197,10 +333,20 @@ public class SqliteSession implements Session {
 
     @Override
     public int saveAll(Collection<?> models) throws InfinitumRuntimeException {
+        if (mIsWriteBehind) {
+            for (Object model : models)
+                enqueue(UnitOfWork.OperationType.SAVE, model);
+            return 0;
+        }
+        long[] ids = mSqlite.saveAll(models);
         int count = 0;
+        int i = 0;
         for (Object model : models) {
-            if (save(model) != -1)
+            if (ids[i++] != -1) {
+                // Add to session cache
+                cache(model);
                 count++;
+            }
         }
         return count;
     }
@@ -218,9 +364,9 @@ public class SqliteSession implements Session {
     @SuppressWarnings("unchecked")
     @Override
     public <T> T load(Class<T> c, Serializable id) throws InfinitumRuntimeException, IllegalArgumentException {
-        int hash = mPolicy.computeModelHash(c, id);
-        if (checkCache(hash))
-            return (T) mSessionCache.get(hash);
+        Object cached = mSessionCache.get(c, id);
+        if (cached != null)
+            return (T) cached;
         return mSqlite.load(c, id);
     }
 
@@ -250,12 +396,16 @@ public class SqliteSession implements Session {
 
     @Override
     public Session commit() {
+        flush();
         mSqlite.commit();
         return this;
     }
 
     @Override
     public Session rollback() {
+        UnitOfWork unitOfWork = mUnitsOfWork.get();
+        if (unitOfWork != null)
+            unitOfWork.clear();
         mSqlite.rollback();
         return this;
     }
@@ -282,22 +432,129 @@ public class SqliteSession implements Session {
         return this;
     }
 
+    /**
+     * Caches the given model under its {@link Class} and primary key. The hash code is not used, since the {@code
+     * Session} cache is keyed by identity rather than by hash.
+     *
+     * @param hash  unused
+     * @param model the {@link Object} to cache
+     * @return {@code true} if the model was cached, {@code false} if it has no primary key
+     */
     @Override
     public boolean cache(int hash, Object model) {
-        if (mSessionCache.size() >= mCacheSize)
-            return false;
-        mSessionCache.put(hash, model);
-        return true;
+        return cache(model);
     }
 
+    /**
+     * Indicates if the session cache contains a model with the given hash code. This requires hashing every cached
+     * model, so {@link #checkCache(Class, Serializable)} should be preferred.
+     *
+     * @param hash the hash code to check for
+     * @return {@code true} if the cache contains the hash code, {@code false} if not
+     */
     @Override
     public boolean checkCache(int hash) {
-        return mSessionCache.containsKey(hash);
+        return searchCache(hash) != null;
     }
 
+    /**
+     * Returns the model with the given hash code from the session cache. This requires hashing every cached model, so
+     * {@link #searchCache(Class, Serializable)} should be preferred.
+     *
+     * @param hash the hash code of the model to retrieve
+     * @return the model {@link Object} identified by the given hash code or {@code null} if no such entity exists in
+     *         the cache
+     */
     @Override
     public Object searchCache(int hash) {
-        return mSessionCache.get(hash);
+        for (Object model : mSessionCache.values()) {
+            if (mPolicy.computeModelHash(model) == hash)
+                return model;
+        }
+        return null;
+    }
+
+    /**
+     * Caches the given model under its {@link Class} and primary key, evicting the least recently used model of the
+     * {@code Class} if its capacity is reached.
+     *
+     * @param model the {@link Object} to cache
+     * @return {@code true} if the model was cached, {@code false} if it has no primary key
+     */
+    public boolean cache(Object model) {
+        Serializable pk = mPolicy.getPrimaryKey(model);
+        if (pk == null)
+            return false;
+        mSessionCache.put(getEntityClass(model), pk, model);
+        return true;
+    }
+
+    /**
+     * Caches the given model under the given {@link Class} and primary key, evicting the least recently used model of
+     * the {@code Class} if its capacity is reached.
+     *
+     * @param c     the model {@code Class}
+     * @param pk    the model's primary key
+     * @param model the {@link Object} to cache
+     */
+    public void cache(Class<?> c, Serializable pk, Object model) {
+        mSessionCache.put(c, pk, model);
+    }
+
+    /**
+     * Caches the given model under the given {@link Class} and integral primary key, evicting the least recently used
+     * model of the {@code Class} if its capacity is reached.
+     *
+     * @param c     the model {@code Class}
+     * @param pk    the model's primary key
+     * @param model the {@link Object} to cache
+     */
+    public void cache(Class<?> c, long pk, Object model) {
+        mSessionCache.put(c, pk, model);
+    }
+
+    /**
+     * Indicates if the session cache contains the model with the given {@link Class} and primary key.
+     *
+     * @param c  the model {@code Class}
+     * @param pk the model's primary key
+     * @return {@code true} if the model is cached, {@code false} if not
+     */
+    public boolean checkCache(Class<?> c, Serializable pk) {
+        return mSessionCache.contains(c, pk);
+    }
+
+    /**
+     * Returns the model with the given {@link Class} and primary key from the session cache.
+     *
+     * @param c  the model {@code Class}
+     * @param pk the model's primary key
+     * @return the cached model or {@code null} if it is not cached
+     */
+    public Object searchCache(Class<?> c, Serializable pk) {
+        return mSessionCache.get(c, pk);
+    }
+
+    /**
+     * Returns the model with the given {@link Class} and integral primary key from the session cache.
+     *
+     * @param c  the model {@code Class}
+     * @param pk the model's primary key
+     * @return the cached model or {@code null} if it is not cached
+     */
+    public Object searchCache(Class<?> c, long pk) {
+        return mSessionCache.get(c, pk);
+    }
+
+    /**
+     * Removes the given model from the session cache.
+     *
+     * @param model the model to remove
+     * @return {@code true} if the model was cached, {@code false} if not
+     */
+    public boolean evict(Object model) {
+        Serializable pk = mPolicy.getPrimaryKey(model);
+        return pk != null && mSessionCache.remove(getEntityClass(model), pk) != null;
     }
 
     /**
@@ -311,6 +568,19 @@ public class SqliteSession implements Session {
         return mSqlite.executeForResult(sql);
     }
 
+    /**
+     * Executes the given SQL query on the database for a result, binding the given arguments to its {@code ?}
+     * placeholders.
+     *
+     * @param sql  the SQL query to execute
+     * @param args the values to bind, in placeholder order
+     * @return {@link Cursor} containing the results of the query
+     * @throws SQLGrammarException if the SQL was formatted incorrectly
+     */
+    public Cursor executeForResult(String sql, String[] args) throws SQLGrammarException {
+        return mSqlite.executeForResult(sql, args);
+    }
+
     /**
      * Executes the given count query and returns the number of rows resulting from it.
      *
@@ -350,4 +620,22 @@ public class SqliteSession implements Session {
         return mSqlite.getSqliteMapper();
     }
 
+    private void enqueue(UnitOfWork.OperationType type, Object model) {
+        OrmPreconditions.checkForTransaction(mSqlite.isAutocommit(), mSqlite.isTransactionOpen());
+        OrmPreconditions.checkPersistenceForModify(AbstractProxy.getTarget(model), mPolicy);
+        UnitOfWork unitOfWork = mUnitsOfWork.get();
+        // Created on first use, since the PersistencePolicy is injected after construction
+        if (unitOfWork == null) {
+            unitOfWork = new UnitOfWork(mPolicy);
+            mUnitsOfWork.set(unitOfWork);
+        }
+        unitOfWork.register(type, model);
+    }
+
+    private Class<?> getEntityClass(Object model) {
+        if (AbstractProxy.isAopProxy(model))
+            return AbstractProxy.getProxy(model).getTarget().getClass();
+        return model.getClass();
+    }
+
 }
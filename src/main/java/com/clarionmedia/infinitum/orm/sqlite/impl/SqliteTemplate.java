@@ -21,6 +21,7 @@ import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
 import com.clarionmedia.infinitum.di.AbstractProxy;
 import com.clarionmedia.infinitum.di.annotation.Autowired;
 import com.clarionmedia.infinitum.di.annotation.PostConstruct;
@@ -34,8 +35,12 @@ import com.clarionmedia.infinitum.orm.criteria.Criteria;
 import com.clarionmedia.infinitum.orm.exception.ModelConfigurationException;
 import com.clarionmedia.infinitum.orm.exception.SQLGrammarException;
 import com.clarionmedia.infinitum.orm.internal.OrmPreconditions;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata.ColumnMetadata;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy.Cascade;
+import com.clarionmedia.infinitum.orm.persistence.QueryCache;
+import com.clarionmedia.infinitum.orm.persistence.SecondLevelCache;
 import com.clarionmedia.infinitum.orm.persistence.TypeResolutionPolicy;
 import com.clarionmedia.infinitum.orm.relationship.ManyToManyRelationship;
 import com.clarionmedia.infinitum.orm.relationship.ManyToOneRelationship;
@@ -86,17 +91,31 @@ public class SqliteTemplate implements SqliteOperations {
     @Autowired
     protected ClassReflector mClassReflector;
 
+    @Autowired
+    protected SecondLevelCache mSecondLevelCache;
+
+    @Autowired
+    protected QueryCache mQueryCache;
+
     protected SqliteDbHelper mDbHelper;
+    protected SqliteConnectionManager mConnections;
     protected boolean mIsAutocommit;
+    protected boolean mIsWriteAheadLogging;
+    protected int mReaderPoolSize;
     protected boolean mIsOpen;
-    protected Stack<Boolean> mTransactionStack;
     protected SQLiteDatabase mSqliteDb;
     protected Logger mLogger;
+    protected Map<Class<?>, PreparedInsert> mInsertStatements = new HashMap<Class<?>, PreparedInsert>();
+    protected ThreadLocal<TransactionState> mTransactions = new ThreadLocal<TransactionState>() {
+        @Override
+        protected TransactionState initialValue() {
+            return new TransactionState();
+        }
+    };
 
     @PostConstruct
     private void init() {
         mLogger = new SmartLogger(getClass().getSimpleName());
-        mTransactionStack = new Stack<Boolean>();
         mDbHelper = SqliteDbHelper.getInstance(mInfinitumContext, mSqlBuilder);
     }
 
@@ -109,7 +128,9 @@ public class SqliteTemplate implements SqliteOperations {
     public synchronized void open() throws SQLException {
         if (mIsOpen)
             return;
-        mSqliteDb = mDbHelper.getWritableDatabase();
+        if (mConnections == null)
+            mConnections = new SqliteConnectionManager(mDbHelper, mIsWriteAheadLogging, mReaderPoolSize);
+        mSqliteDb = mConnections.open();
         mIsOpen = true;
     }
 
@@ -117,7 +138,8 @@ public class SqliteTemplate implements SqliteOperations {
     public synchronized void close() {
         if (!mIsOpen)
             return;
-        mDbHelper.close();
+        closeInsertStatements();
+        mConnections.close();
         mIsOpen = false;
     }
 
@@ -126,55 +148,103 @@ public class SqliteTemplate implements SqliteOperations {
         return mIsOpen;
     }
 
+    /**
+     * Begins a transaction on the calling thread. Transactions are tracked per thread, so threads do not affect each
+     * other's nesting. The outermost transaction of a thread is a database transaction, which holds the write lock until
+     * it ends, while nested transactions are savepoints within it that can be committed or rolled back independently.
+     */
     @Override
     public void beginTransaction() {
-        if (mIsAutocommit)
+        if (isAutocommit())
             return;
-        mSqliteDb.beginTransaction();
-        mTransactionStack.push(true);
+        begin();
         mLogger.debug("Transaction started");
     }
 
     @Override
     public void commit() {
-        if (!isTransactionOpen())
+        TransactionState transaction = mTransactions.get();
+        if (transaction.mDepth == 0)
+            return;
+        transaction.mDepth--;
+        // Keys assigned within a released savepoint are rolled back with the enclosing transaction
+        transaction.mKeyMarks.remove(transaction.mKeyMarks.size() - 1);
+        if (transaction.mDepth > 0) {
+            mSqliteDb.execSQL("RELEASE " + getSavepoint(transaction.mDepth));
+            mLogger.debug("Savepoint released");
             return;
+        }
         mSqliteDb.setTransactionSuccessful();
         mSqliteDb.endTransaction();
-        mTransactionStack.pop();
+        // Readers on other connections may have cached the pre-commit state since the writes were evicted
+        invalidateModified(transaction);
+        clearModified(transaction);
+        transaction.mAssignedKeys.clear();
         mLogger.debug("Transaction committed");
     }
 
     @Override
     public void rollback() {
-        if (!isTransactionOpen())
+        TransactionState transaction = mTransactions.get();
+        if (transaction.mDepth == 0)
             return;
-        mSqliteDb.endTransaction();
-        mTransactionStack.pop();
-        mLogger.debug("Transaction rolled back");
+        transaction.mDepth--;
+        // Entities saved in the rolled back transaction must not keep the IDs of rows which no longer exist
+        restorePrimaryKeys(transaction, transaction.mKeyMarks.remove(transaction.mKeyMarks.size() - 1));
+        if (transaction.mDepth > 0) {
+            String savepoint = getSavepoint(transaction.mDepth);
+            // The leading semicolon keeps API levels 16 to 27 from mistaking this for a full rollback
+            mSqliteDb.execSQL(";ROLLBACK TO " + savepoint);
+            mSqliteDb.execSQL("RELEASE " + savepoint);
+        } else {
+            mSqliteDb.endTransaction();
+        }
+        // Entities read back while the transaction was open may have been cached with uncommitted state
+        for (Class<?> c : transaction.mModifiedTypes) {
+            mSecondLevelCache.evict(c);
+            mQueryCache.invalidate(c);
+        }
+        // Snapshots taken of rolled back writes no longer match the database
+        if (!transaction.mModifiedTypes.isEmpty())
+            mModelFactory.clearSnapshots();
+        // Types modified outside of the rolled back savepoint may still be rolled back by the enclosing transaction
+        if (transaction.mDepth == 0)
+            clearModified(transaction);
+        mLogger.debug(transaction.mDepth > 0 ? "Rolled back to savepoint" : "Transaction rolled back");
     }
 
     @Override
     public boolean isTransactionOpen() {
-        return mTransactionStack.size() > 0;
+        return mTransactions.get().mDepth > 0;
     }
 
+    /**
+     * Enables or disables autocommit for the calling thread, overriding the configured default for it.
+     *
+     * @param autocommit {@code true} to enable autocommit, {@code false} to disable it
+     */
     @Override
     public void setAutocommit(boolean autocommit) {
-        mIsAutocommit = autocommit;
+        mTransactions.get().mAutocommit = autocommit;
     }
 
     @Override
     public boolean isAutocommit() {
-        return mIsAutocommit;
+        Boolean autocommit = mTransactions.get().mAutocommit;
+        return autocommit == null ? mIsAutocommit : autocommit;
     }
 
     @Override
     public long save(Object model) throws InfinitumRuntimeException {
-        OrmPreconditions.checkForTransaction(mIsAutocommit, isTransactionOpen());
+        OrmPreconditions.checkForTransaction(isAutocommit(), isTransactionOpen());
         OrmPreconditions.checkPersistenceForModify(model, mPersistencePolicy);
         Map<Integer, Object> objectMap = new HashMap<Integer, Object>();
-        long result = saveRec(model, objectMap);
+        long result;
+        try {
+            result = saveRec(model, objectMap);
+        } finally {
+            finishWrite();
+        }
         if (result > 0)
             mLogger.debug(model.getClass().getSimpleName() + " model saved");
         else
@@ -182,12 +252,49 @@ public class SqliteTemplate implements SqliteOperations {
         return result;
     }
 
+    @Override
+    public long[] saveAll(Collection<?> models) throws InfinitumRuntimeException {
+        OrmPreconditions.checkForTransaction(isAutocommit(), isTransactionOpen());
+        long[] results = new long[models.size()];
+        Map<Integer, Object> objectMap = new HashMap<Integer, Object>();
+        int saved = 0;
+        boolean succeeded = false;
+        // Nests inside any open transaction as a savepoint, otherwise commits the batch as a whole. The transaction is
+        // begun before taking the statement monitor so a thread never waits for the write lock while holding it.
+        begin();
+        try {
+            synchronized (mInsertStatements) {
+                int i = 0;
+                for (Object model : models) {
+                    OrmPreconditions.checkPersistenceForModify(model, mPersistencePolicy);
+                    results[i] = batchSaveRec(model, objectMap);
+                    if (results[i++] > 0)
+                        saved++;
+                }
+            }
+            succeeded = true;
+        } finally {
+            // A failed batch only rolls back to its own savepoint, leaving the enclosing transaction usable
+            if (succeeded)
+                commit();
+            else
+                rollback();
+        }
+        mLogger.debug(saved + " of " + models.size() + " models saved in batch");
+        return results;
+    }
+
     @Override
     public boolean update(Object model) throws InfinitumRuntimeException {
-        OrmPreconditions.checkForTransaction(mIsAutocommit, isTransactionOpen());
+        OrmPreconditions.checkForTransaction(isAutocommit(), isTransactionOpen());
         OrmPreconditions.checkPersistenceForModify(model, mPersistencePolicy);
         Map<Integer, Object> objectMap = new HashMap<Integer, Object>();
-        boolean result = updateRec(model, objectMap);
+        boolean result;
+        try {
+            result = updateRec(model, objectMap);
+        } finally {
+            finishWrite();
+        }
         if (result)
             mLogger.debug(model.getClass().getSimpleName() + " model updated");
         else
@@ -198,26 +305,80 @@ public class SqliteTemplate implements SqliteOperations {
     @Override
     public boolean delete(Object model) throws InfinitumRuntimeException {
         model = AbstractProxy.getTarget(model);
-        OrmPreconditions.checkForTransaction(mIsAutocommit, isTransactionOpen());
+        OrmPreconditions.checkForTransaction(isAutocommit(), isTransactionOpen());
         OrmPreconditions.checkPersistenceForModify(model, mPersistencePolicy);
-        String tableName = mPersistencePolicy.getModelTableName(model.getClass());
-        String whereClause = mSqliteUtil.getWhereClause(model, mMapper);
-        int result = mSqliteDb.delete(tableName, whereClause, null);
-        if (result == 1) {
-            deleteRelationships(model);
+        boolean result;
+        try {
+            result = deleteRec(model);
+        } finally {
+            finishWrite();
+        }
+        if (result)
             mLogger.debug(model.getClass().getSimpleName() + " model deleted");
-        } else {
+        else
             mLogger.debug(model.getClass().getSimpleName() + " model was not deleted");
+        return result;
+    }
+
+    /**
+     * Writes the given queued operations in order within a single transaction, which is nested inside any open
+     * transaction. Saves use the same precompiled insert statements as {@link #saveAll(Collection)}, and each entity is
+     * written at most once even if it is also reached by cascading from another operation.
+     *
+     * @param operations the {@link UnitOfWork.Operation Operations} to write
+     * @return array indicating, for each operation, if it succeeded
+     * @throws InfinitumRuntimeException if an entity could not be written
+     */
+    public boolean[] flush(List<UnitOfWork.Operation> operations) throws InfinitumRuntimeException {
+        boolean[] results = new boolean[operations.size()];
+        Map<Integer, Object> objectMap = new HashMap<Integer, Object>();
+        int written = 0;
+        boolean succeeded = false;
+        begin();
+        try {
+            synchronized (mInsertStatements) {
+                for (int i = 0; i < results.length; i++) {
+                    Object model = operations.get(i).getEntity();
+                    switch (operations.get(i).getType()) {
+                        case SAVE:
+                            results[i] = batchSaveRec(model, objectMap) > 0;
+                            break;
+                        case UPDATE:
+                            results[i] = updateRec(model, objectMap);
+                            break;
+                        case SAVE_OR_UPDATE:
+                            results[i] = saveOrUpdateRec(model, objectMap) >= 0;
+                            break;
+                        case DELETE:
+                            results[i] = deleteRec(model);
+                            break;
+                    }
+                    if (results[i])
+                        written++;
+                }
+            }
+            succeeded = true;
+        } finally {
+            if (succeeded)
+                commit();
+            else
+                rollback();
         }
-        return result == 1;
+        mLogger.debug(written + " of " + results.length + " queued operations flushed");
+        return results;
     }
 
     @Override
     public long saveOrUpdate(Object model) throws InfinitumRuntimeException {
-        OrmPreconditions.checkForTransaction(mIsAutocommit, isTransactionOpen());
+        OrmPreconditions.checkForTransaction(isAutocommit(), isTransactionOpen());
         OrmPreconditions.checkPersistenceForModify(model, mPersistencePolicy);
         Map<Integer, Object> objectMap = new HashMap<Integer, Object>();
-        long result = saveOrUpdateRec(model, objectMap);
+        long result;
+        try {
+            result = saveOrUpdateRec(model, objectMap);
+        } finally {
+            finishWrite();
+        }
         if (result == 0)
             mLogger.debug(model.getClass().getSimpleName() + " model updated");
         else if (result > 0)
@@ -234,7 +395,12 @@ public class SqliteTemplate implements SqliteOperations {
             throw new IllegalArgumentException(String.format("Invalid primary key value of type '%s' for '%s'.",
                     id.getClass()
                             .getSimpleName(), clazz.getName()));
-        Cursor cursor = mSqliteDb.query(mPersistencePolicy.getModelTableName(clazz), null,
+        T cached = mModelFactory.searchSecondLevelCache(clazz, id);
+        if (cached != null) {
+            mLogger.debug(clazz.getSimpleName() + " model loaded from second-level cache");
+            return cached;
+        }
+        Cursor cursor = mConnections.getReader().query(mPersistencePolicy.getModelTableName(clazz), null,
                 mSqliteUtil.getWhereClause(clazz, id, mMapper),
                 null, null, null, null, "1");
         if (cursor.getCount() == 0) {
@@ -257,8 +423,12 @@ public class SqliteTemplate implements SqliteOperations {
 
     @Override
     public void execute(String sql) throws SQLGrammarException {
-        OrmPreconditions.checkForTransaction(mIsAutocommit, isTransactionOpen());
+        OrmPreconditions.checkForTransaction(isAutocommit(), isTransactionOpen());
         mLogger.debug("Executing SQL: " + sql);
+        // Arbitrary SQL may modify any table, so nothing cached can be trusted afterwards
+        mSecondLevelCache.clear();
+        mQueryCache.clear();
+        mModelFactory.clearSnapshots();
         try {
             mSqliteDb.execSQL(sql);
         } catch (SQLiteException e) {
@@ -269,9 +439,14 @@ public class SqliteTemplate implements SqliteOperations {
 
     @Override
     public Cursor executeForResult(String sql) throws SQLGrammarException {
+        return executeForResult(sql, null);
+    }
+
+    @Override
+    public Cursor executeForResult(String sql, String[] args) throws SQLGrammarException {
         mLogger.debug("Executing SQL: " + sql);
         try {
-            return mSqliteDb.rawQuery(sql, null);
+            return mConnections.getReader().rawQuery(sql, args);
         } catch (SQLiteException e) {
             throw new SQLGrammarException(String.format("There was a problem with the SQL formatting. Could not " +
                     "execute query: %s", sql));
@@ -281,6 +456,10 @@ public class SqliteTemplate implements SqliteOperations {
     @Override
     public <T> void registerTypeAdapter(Class<T> type, SqliteTypeAdapter<T> adapter) {
         mMapper.registerTypeAdapter(type, adapter);
+        // Row readers hold on to the adapters they resolved, and generated SQL depends on their column types
+        mModelFactory.recycleRowReaders();
+        if (mSqlBuilder instanceof SqliteBuilder)
+            ((SqliteBuilder) mSqlBuilder).clearQueryCache();
     }
 
     @Override
@@ -297,6 +476,24 @@ public class SqliteTemplate implements SqliteOperations {
         return mMapper;
     }
 
+    /**
+     * Returns the process-wide {@link SecondLevelCache} used by this {@code SqliteTemplate}.
+     *
+     * @return {@code SecondLevelCache}
+     */
+    public SecondLevelCache getSecondLevelCache() {
+        return mSecondLevelCache;
+    }
+
+    /**
+     * Returns the process-wide {@link QueryCache} invalidated by this {@code SqliteTemplate}.
+     *
+     * @return {@code QueryCache}
+     */
+    public QueryCache getQueryCache() {
+        return mQueryCache;
+    }
+
     private long saveOrUpdateRec(Object model, Map<Integer, Object> objectMap) {
         // First try to update the entity, then try to save it if needed
         return updateRec(model, objectMap) ? 0 : saveRec(model, objectMap);
@@ -319,17 +516,93 @@ public class SqliteTemplate implements SqliteOperations {
         }
         // Persist succeeded
         setPrimaryKey(model, rowId);
+        evict(model);
         objHash = mPersistencePolicy.computeModelHash(model);
         objectMap.put(objHash, model);
         processRelationships(map, objectMap, model, mPersistencePolicy.getCascadeMode(model.getClass()));
+        mModelFactory.snapshot(model);
+        return rowId;
+    }
+
+    private long batchSaveRec(Object model, Map<Integer, Object> objectMap) {
+        model = AbstractProxy.getTarget(model);
+        // Check if the entity has already been persisted
+        int objHash = mPersistencePolicy.computeModelHash(model);
+        if (objectMap.containsKey(objHash) && !mPersistencePolicy.isPKNullOrZero(model))
+            return 0;
+        // Persist it using the precompiled statement for its class
+        PreparedInsert insert = getPreparedInsert(model.getClass());
+        long rowId;
+        try {
+            rowId = insert.execute(model);
+        } catch (SQLException e) {
+            // Mirror SQLiteDatabase.insert, which reports failures as -1
+            mLogger.error("Error inserting " + model.getClass().getSimpleName() + " model", e);
+            rowId = -1;
+        }
+        if (rowId <= 0) {
+            // Persist failed
+            return rowId;
+        }
+        // Persist succeeded
+        setPrimaryKey(model, rowId);
+        evict(model);
+        objHash = mPersistencePolicy.computeModelHash(model);
+        objectMap.put(objHash, model);
+        Cascade cascade = mPersistencePolicy.getCascadeMode(model.getClass());
+        if (cascade != Cascade.NONE && insert.hasRelationships())
+            processRelationships(mMapper.mapRelationships(model), objectMap, model, cascade);
+        mModelFactory.snapshot(model);
         return rowId;
     }
 
+    private boolean deleteRec(Object model) {
+        model = AbstractProxy.getTarget(model);
+        String tableName = mPersistencePolicy.getModelTableName(model.getClass());
+        String whereClause = mSqliteUtil.getWhereClause(model, mMapper);
+        int result = mSqliteDb.delete(tableName, whereClause, null);
+        if (result != 1)
+            return false;
+        evict(model);
+        mModelFactory.evictSnapshot(model);
+        deleteRelationships(model);
+        return true;
+    }
+
+    private PreparedInsert getPreparedInsert(Class<?> c) {
+        PreparedInsert insert = mInsertStatements.get(c);
+        if (insert != null)
+            return insert;
+        // Columns are bound in the same order mapModel would put them
+        EntityMetadata metadata = mPersistencePolicy.getEntityMetadata(c);
+        List<Field> columns = new ArrayList<Field>();
+        for (ColumnMetadata column : metadata.getColumns()) {
+            if (!column.isAutoIncrement())
+                columns.add(column.getField());
+        }
+        String sql = mSqlBuilder.createInsertStatement(c, columns);
+        mLogger.debug("Compiling SQL: " + sql);
+        insert = new PreparedInsert(mSqliteDb.compileStatement(sql), columns, metadata.hasRelationships());
+        mInsertStatements.put(c, insert);
+        return insert;
+    }
+
+    private void closeInsertStatements() {
+        synchronized (mInsertStatements) {
+            for (PreparedInsert insert : mInsertStatements.values())
+                insert.close();
+            mInsertStatements.clear();
+        }
+    }
+
     private boolean updateRec(Object model, Map<Integer, Object> objectMap) {
         model = AbstractProxy.getTarget(model);
         int objHash = mPersistencePolicy.computeModelHash(model);
         if (objectMap.containsKey(objHash) && !mPersistencePolicy.isPKNullOrZero(model))
             return true;
+        EntitySnapshot snapshot = mModelFactory.getSnapshot(model);
+        if (snapshot != null)
+            return updateDirtyRec(model, snapshot, objectMap);
         SqliteModelMap map = mMapper.mapModel(model);
         ContentValues values = map.getContentValues();
         String tableName = mPersistencePolicy.getModelTableName(model.getClass());
@@ -340,11 +613,52 @@ public class SqliteTemplate implements SqliteOperations {
         if (ret <= 0) {
             return false;
         }
+        evict(model);
         objectMap.put(objHash, model);
         processRelationships(map, objectMap, model, mPersistencePolicy.getCascadeMode(model.getClass()));
+        mModelFactory.snapshot(model);
+        return true;
+    }
+
+    // Updates an entity loaded by this template, writing only the columns and relationships changed since its snapshot
+    private boolean updateDirtyRec(Object model, EntitySnapshot snapshot, Map<Integer, Object> objectMap) {
+        Cascade cascade = mPersistencePolicy.getCascadeMode(model.getClass());
+        boolean[] columns = mModelFactory.getDirtyColumns(model, snapshot);
+        boolean[] relationships = cascade == Cascade.NONE ? null : mModelFactory.getDirtyRelationships(model,
+                snapshot);
+        if (!isDirty(columns) && !isDirty(relationships)) {
+            // The row already holds this state, so there is nothing to write
+            objectMap.put(mPersistencePolicy.computeModelHash(model), model);
+            return true;
+        }
+        SqliteModelMap map = mMapper.mapModel(model, columns, relationships);
+        ContentValues values = map.getContentValues();
+        if (values.size() > 0) {
+            String tableName = mPersistencePolicy.getModelTableName(model.getClass());
+            String whereClause = mSqliteUtil.getWhereClause(model, mMapper);
+            if (mSqliteDb.update(tableName, values, whereClause, null) <= 0) {
+                // The row no longer exists, so the snapshot is stale
+                mModelFactory.evictSnapshot(model);
+                return false;
+            }
+            evict(model);
+        }
+        objectMap.put(mPersistencePolicy.computeModelHash(model), model);
+        processRelationships(map, objectMap, model, cascade);
+        mModelFactory.snapshot(model);
         return true;
     }
 
+    private static boolean isDirty(boolean[] flags) {
+        if (flags == null)
+            return false;
+        for (boolean flag : flags) {
+            if (flag)
+                return true;
+        }
+        return false;
+    }
+
     private void processRelationships(SqliteModelMap map, Map<Integer, Object> objectMap, Object model,
                                       Cascade cascade) {
         if (cascade == Cascade.NONE)
@@ -448,6 +762,8 @@ public class SqliteTemplate implements SqliteOperations {
             String updateQuery = mSqlBuilder.createUpdateForeignKeyQuery(relationshipPair.getFirst(), model,
                     relatedKeys);
             mSqliteDb.execSQL(updateQuery);
+            // The update may reassign rows of the many side that were never loaded
+            evict(relationshipPair.getFirst().getManyType());
         }
     }
 
@@ -532,15 +848,94 @@ public class SqliteTemplate implements SqliteOperations {
         // TODO Update non M:M relationships?
     }
 
+    // Writes in a transaction are evicted immediately and again once it ends, other writes once they finish
+    private void evict(Object model) {
+        TransactionState transaction = mTransactions.get();
+        if (transaction.mDepth > 0) {
+            mSecondLevelCache.evict(model.getClass(), mPersistencePolicy.getPrimaryKey(model));
+            mQueryCache.invalidate(model.getClass());
+        }
+        transaction.mModifiedEntities.add(model);
+        transaction.mModifiedTypes.add(model.getClass());
+    }
+
+    private void evict(Class<?> c) {
+        TransactionState transaction = mTransactions.get();
+        if (transaction.mDepth > 0) {
+            mSecondLevelCache.evict(c);
+            mQueryCache.invalidate(c);
+        }
+        transaction.mEvictedTypes.add(c);
+        transaction.mModifiedTypes.add(c);
+    }
+
+    /**
+     * Evicts the entities written by an operation which ran outside of a transaction once it has finished, so readers
+     * on other connections cannot cache the state the database held before it.
+     */
+    private void finishWrite() {
+        TransactionState transaction = mTransactions.get();
+        if (transaction.mDepth > 0)
+            return;
+        invalidateModified(transaction);
+        clearModified(transaction);
+    }
+
+    private void invalidateModified(TransactionState transaction) {
+        for (Object model : transaction.mModifiedEntities)
+            mSecondLevelCache.evict(model.getClass(), mPersistencePolicy.getPrimaryKey(model));
+        for (Class<?> c : transaction.mEvictedTypes)
+            mSecondLevelCache.evict(c);
+        for (Class<?> c : transaction.mModifiedTypes)
+            mQueryCache.invalidate(c);
+    }
+
+    private static void clearModified(TransactionState transaction) {
+        transaction.mModifiedEntities.clear();
+        transaction.mEvictedTypes.clear();
+        transaction.mModifiedTypes.clear();
+    }
+
+    /**
+     * Begins a database transaction on the calling thread, or a savepoint if one is already open, regardless of
+     * autocommit.
+     */
+    private void begin() {
+        TransactionState transaction = mTransactions.get();
+        if (transaction.mDepth == 0)
+            mSqliteDb.beginTransaction();
+        else
+            mSqliteDb.execSQL("SAVEPOINT " + getSavepoint(transaction.mDepth));
+        transaction.mKeyMarks.add(transaction.mAssignedKeys.size());
+        transaction.mDepth++;
+    }
+
+    private static String getSavepoint(int depth) {
+        return "infinitum_savepoint_" + depth;
+    }
+
     private void setPrimaryKey(Object model, long rowId) {
         Field pkField = mPersistencePolicy.getPrimaryKeyField(model.getClass());
         Class<?> pkType = Primitives.unwrap(pkField.getType());
         // The row ID is not a PK if the PK type is not int or long
         if (pkType != int.class && pkType != long.class)
             return;
+        TransactionState transaction = mTransactions.get();
+        if (transaction.mDepth > 0)
+            transaction.mAssignedKeys.add(new AssignedKey(model, pkField, mClassReflector.getFieldValue(model,
+                    pkField)));
         mClassReflector.setFieldValue(model, pkField, rowId);
     }
 
+    private void restorePrimaryKeys(TransactionState transaction, int mark) {
+        List<AssignedKey> keys = transaction.mAssignedKeys;
+        // Restored newest first, in case an entity was assigned a key more than once
+        for (int i = keys.size() - 1; i >= mark; i--) {
+            AssignedKey key = keys.remove(i);
+            mClassReflector.setFieldValue(key.mModel, key.mField, key.mPrevious);
+        }
+    }
+
     private void putRelationalKey(ContentValues relationshipData, String column, Field field, Serializable value) {
         switch (mMapper.getSqliteDataType(field)) {
             case INTEGER:
@@ -574,4 +969,79 @@ public class SqliteTemplate implements SqliteOperations {
         }
     }
 
+    /**
+     * A compiled insert {@link SQLiteStatement} for a single model {@link Class} along with the {@link Field} instances
+     * bound to its parameters, in order.
+     */
+    protected class PreparedInsert {
+
+        private SQLiteStatement mStatement;
+        private List<Field> mColumns;
+        private boolean mHasRelationships;
+
+        public PreparedInsert(SQLiteStatement statement, List<Field> columns, boolean hasRelationships) {
+            mStatement = statement;
+            mColumns = columns;
+            mHasRelationships = hasRelationships;
+        }
+
+        /**
+         * Binds the given model's column values to the statement and executes it.
+         *
+         * @param model the model to insert
+         * @return the row ID of the inserted row, or -1 if it was not inserted
+         * @throws SQLException if the insert failed
+         */
+        public long execute(Object model) throws SQLException {
+            mStatement.clearBindings();
+            for (int i = 0; i < mColumns.size(); i++)
+                mMapper.bindField(mStatement, i + 1, model, mColumns.get(i));
+            return mStatement.executeInsert();
+        }
+
+        public boolean hasRelationships() {
+            return mHasRelationships;
+        }
+
+        public void close() {
+            mStatement.close();
+        }
+
+    }
+
+    /**
+     * The transaction state of a single thread: its transaction nesting depth, the entities and entity
+     * {@link Class Classes} it modified which have yet to be evicted for the last time, the primary keys it assigned
+     * which would be restored by a rollback, and its autocommit setting if it overrides the configured default.
+     */
+    protected static class TransactionState {
+
+        private int mDepth;
+        private Boolean mAutocommit;
+        private List<Object> mModifiedEntities = new ArrayList<Object>();
+        private Set<Class<?>> mEvictedTypes = new HashSet<Class<?>>();
+        private Set<Class<?>> mModifiedTypes = new HashSet<Class<?>>();
+        private List<AssignedKey> mAssignedKeys = new ArrayList<AssignedKey>();
+        // The size of mAssignedKeys when each open transaction level began
+        private List<Integer> mKeyMarks = new ArrayList<Integer>();
+
+    }
+
+    /**
+     * A primary key assigned to an entity while a transaction was open, along with the value it replaced.
+     */
+    protected static class AssignedKey {
+
+        private final Object mModel;
+        private final Field mField;
+        private final Object mPrevious;
+
+        public AssignedKey(Object model, Field field, Object previous) {
+            mModel = model;
+            mField = field;
+            mPrevious = previous;
+        }
+
+    }
+
 }
@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import com.clarionmedia.infinitum.di.AbstractProxy;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata.RelationshipMetadata;
+import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
+import com.clarionmedia.infinitum.orm.relationship.ManyToOneRelationship;
+import com.clarionmedia.infinitum.orm.relationship.ModelRelationship;
+import com.clarionmedia.infinitum.orm.relationship.OneToManyRelationship;
+import com.clarionmedia.infinitum.orm.relationship.OneToOneRelationship;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * <p> Queue of pending writes used by {@link SqliteSession} in write-behind mode. At most one operation is queued per
+ * row, identified by entity {@link Class} and primary key, or per entity instance if it does not have a primary key
+ * yet. Repeated writes of the same row are collapsed into the single operation which leaves the database in the same
+ * state, even if they were made through different instances, e.g. a save followed by any number of updates is a single
+ * insert of the latest state, and a save followed by a delete is dropped altogether. Since each row has a single
+ * operation, reordering the queue never reorders the writes of a row relative to each other. </p> <p>
+ * {@link #getOperations()} orders the queue so that it can be written without violating foreign keys. Operations on the
+ * same {@code Class} keep the order they were first queued in, so deleting a row and inserting another with the same
+ * unique value works. Across {@code Classes}, saves and updates of an entity {@code Class} wait for those of the {@code
+ * Classes} it holds foreign keys to, and deletes of those {@code Classes} wait for its deletes. Otherwise operations
+ * are written in queue order. </p> <p> {@code UnitOfWork} is threadsafe. </p>
+ *
+ * @author Tyler Treat
+ * @version 1.1.0 10/17/26
+ * @since 1.1.0
+ */
+public class UnitOfWork {
+
+    /**
+     * The kinds of operation which can be queued.
+     */
+    public static enum OperationType {
+        SAVE, UPDATE, SAVE_OR_UPDATE, DELETE
+    }
+
+    private final PersistencePolicy mPolicy;
+    private final Map<Object, Operation> mOperations;
+    private final Map<RowKey, Operation> mRowOperations;
+    private int mSequence;
+
+    /**
+     * Constructs a new {@code UnitOfWork}.
+     *
+     * @param policy the {@link PersistencePolicy} used to determine foreign key dependencies between entities
+     */
+    public UnitOfWork(PersistencePolicy policy) {
+        mPolicy = policy;
+        mOperations = new IdentityHashMap<Object, Operation>();
+        mRowOperations = new HashMap<RowKey, Operation>();
+    }
+
+    /**
+     * Queues the given operation on the given entity, collapsing it with any operation already queued for the same
+     * row.
+     *
+     * @param type  the {@link OperationType}
+     * @param model the entity to write
+     */
+    public synchronized void register(OperationType type, Object model) {
+        model = AbstractProxy.getTarget(model);
+        RowKey row = getRowKey(model);
+        Operation pending = row == null ? mOperations.get(model) : mRowOperations.get(row);
+        if (pending == null) {
+            Operation operation = new Operation(type, model, mSequence++);
+            if (row == null)
+                mOperations.put(model, operation);
+            else
+                mRowOperations.put(row, operation);
+            return;
+        }
+        // The row is written from the instance it was last written through
+        pending.mEntity = model;
+        switch (pending.mType) {
+            case SAVE:
+                // The insert writes the latest state, unless the entity never needs to exist
+                if (type == OperationType.DELETE) {
+                    if (row == null)
+                        mOperations.remove(model);
+                    else
+                        mRowOperations.remove(row);
+                }
+                break;
+            case UPDATE:
+            case SAVE_OR_UPDATE:
+                if (type == OperationType.DELETE)
+                    pending.mType = OperationType.DELETE;
+                else if (type != OperationType.UPDATE)
+                    pending.mType = OperationType.SAVE_OR_UPDATE;
+                break;
+            case DELETE:
+                // Saving a deleted entity again keeps its row, whereas updating it has no effect
+                if (type == OperationType.SAVE || type == OperationType.SAVE_OR_UPDATE)
+                    pending.mType = OperationType.SAVE_OR_UPDATE;
+                break;
+        }
+    }
+
+    /**
+     * Returns the queued operations in the order they are to be written.
+     *
+     * @return {@link List} of {@link Operation Operations}
+     */
+    public synchronized List<Operation> getOperations() {
+        List<Operation> queued = new ArrayList<Operation>(mOperations.values());
+        queued.addAll(mRowOperations.values());
+        Collections.sort(queued, new Comparator<Operation>() {
+            @Override
+            public int compare(Operation lhs, Operation rhs) {
+                return lhs.mSequence - rhs.mSequence;
+            }
+        });
+        // The operations of each Class in queue order, and how many of its writes and deletes are left
+        Map<Class<?>, LinkedList<Operation>> queues = new LinkedHashMap<Class<?>, LinkedList<Operation>>();
+        Map<Class<?>, int[]> remaining = new HashMap<Class<?>, int[]>();
+        for (Operation operation : queued) {
+            Class<?> c = operation.mEntity.getClass();
+            LinkedList<Operation> queue = queues.get(c);
+            if (queue == null) {
+                queue = new LinkedList<Operation>();
+                queues.put(c, queue);
+                remaining.put(c, new int[2]);
+            }
+            queue.add(operation);
+            remaining.get(c)[phase(operation.mType)]++;
+        }
+        Map<Class<?>, Set<Class<?>>> dependencies = getDependencies(queues.keySet());
+        List<Operation> ret = new ArrayList<Operation>(queued.size());
+        while (ret.size() < queued.size()) {
+            Operation first = null;
+            Operation next = null;
+            for (LinkedList<Operation> queue : queues.values()) {
+                if (queue.isEmpty())
+                    continue;
+                Operation head = queue.getFirst();
+                if (first == null || head.mSequence < first.mSequence)
+                    first = head;
+                if ((next == null || head.mSequence < next.mSequence) && isReady(head, dependencies, remaining))
+                    next = head;
+            }
+            // Cyclic dependencies cannot be ordered, so the cycle is broken by the earliest queued operation
+            if (next == null)
+                next = first;
+            Class<?> c = next.mEntity.getClass();
+            queues.get(c).removeFirst();
+            remaining.get(c)[phase(next.mType)]--;
+            ret.add(next);
+        }
+        return ret;
+    }
+
+    /**
+     * Indicates if any operations are queued.
+     *
+     * @return {@code true} if nothing is queued, {@code false} if not
+     */
+    public synchronized boolean isEmpty() {
+        return mOperations.isEmpty() && mRowOperations.isEmpty();
+    }
+
+    /**
+     * Returns the number of queued operations.
+     *
+     * @return number of operations
+     */
+    public synchronized int size() {
+        return mOperations.size() + mRowOperations.size();
+    }
+
+    /**
+     * Discards every queued operation.
+     */
+    public synchronized void clear() {
+        mOperations.clear();
+        mRowOperations.clear();
+        mSequence = 0;
+    }
+
+    // Entities without a primary key are new rows, which are only identified by their instance
+    private RowKey getRowKey(Object model) {
+        if (mPolicy.isPKNullOrZero(model))
+            return null;
+        Serializable pk = mPolicy.getPrimaryKey(model);
+        return pk == null ? null : new RowKey(model.getClass(), pk);
+    }
+
+    // Deletes are counted apart from saves and updates
+    private static int phase(OperationType type) {
+        return type == OperationType.DELETE ? 1 : 0;
+    }
+
+    // A save or update waits for the writes of the Classes it references, a delete for the deletes of those
+    // referencing it
+    private static boolean isReady(Operation operation, Map<Class<?>, Set<Class<?>>> dependencies,
+                                   Map<Class<?>, int[]> remaining) {
+        Class<?> c = operation.mEntity.getClass();
+        if (operation.mType == OperationType.DELETE) {
+            for (Map.Entry<Class<?>, Set<Class<?>>> dependent : dependencies.entrySet()) {
+                int[] left = remaining.get(dependent.getKey());
+                if (left != null && left[1] > 0 && dependent.getValue().contains(c))
+                    return false;
+            }
+            return true;
+        }
+        Set<Class<?>> set = dependencies.get(c);
+        if (set == null)
+            return true;
+        for (Class<?> dependency : set) {
+            int[] left = remaining.get(dependency);
+            if (left != null && left[0] > 0)
+                return false;
+        }
+        return true;
+    }
+
+    // Maps each queued Class to the Classes whose tables hold rows it has foreign keys to
+    private Map<Class<?>, Set<Class<?>>> getDependencies(Set<Class<?>> classes) {
+        Map<Class<?>, Set<Class<?>>> ret = new HashMap<Class<?>, Set<Class<?>>>();
+        for (Class<?> c : classes) {
+            for (RelationshipMetadata metadata : mPolicy.getEntityMetadata(c).getRelationships()) {
+                ModelRelationship relationship = metadata.getRelationship();
+                Class<?> other = relationship.getFirstType() == c ? relationship.getSecondType() : relationship
+                        .getFirstType();
+                if (relationship instanceof ManyToOneRelationship)
+                    addDependency(ret, c, other);
+                else if (relationship instanceof OneToOneRelationship
+                        && ((OneToOneRelationship) relationship).getOwner() == c)
+                    addDependency(ret, c, other);
+                else if (relationship instanceof OneToManyRelationship)
+                    // The foreign key is held by the many side
+                    addDependency(ret, relationship.getSecondType(), relationship.getFirstType());
+            }
+        }
+        return ret;
+    }
+
+    private static void addDependency(Map<Class<?>, Set<Class<?>>> dependencies, Class<?> c, Class<?> dependency) {
+        if (c == dependency)
+            return;
+        Set<Class<?>> set = dependencies.get(c);
+        if (set == null) {
+            set = new HashSet<Class<?>>();
+            dependencies.put(c, set);
+        }
+        set.add(dependency);
+    }
+
+    /**
+     * A queued write of a single entity.
+     */
+    public static final class Operation {
+
+        private OperationType mType;
+        private Object mEntity;
+        private final int mSequence;
+
+        private Operation(OperationType type, Object entity, int sequence) {
+            mType = type;
+            mEntity = entity;
+            mSequence = sequence;
+        }
+
+        /**
+         * Returns the kind of operation.
+         *
+         * @return {@link OperationType}
+         */
+        public OperationType getType() {
+            return mType;
+        }
+
+        /**
+         * Returns the entity to write.
+         *
+         * @return entity
+         */
+        public Object getEntity() {
+            return mEntity;
+        }
+
+    }
+
+    private static final class RowKey {
+
+        private final Class<?> mClass;
+        private final Serializable mPk;
+
+        private RowKey(Class<?> c, Serializable pk) {
+            mClass = c;
+            mPk = pk;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof RowKey))
+                return false;
+            RowKey key = (RowKey) other;
+            return mClass == key.mClass && mPk.equals(key.mPk);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mClass.hashCode() + mPk.hashCode();
+        }
+
+    }
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class AsyncSessionTest {
+
+    private static final long TIMEOUT = 5;
+
+    @Mock
+    private Session mockSession;
+
+    private AsyncSession asyncSession;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        asyncSession = new AsyncSession(mockSession);
+    }
+
+    @After
+    public void tearDown() {
+        asyncSession.shutdown();
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        // Setup
+        Object model = new Object();
+        when(mockSession.load(Object.class, 42L)).thenReturn(model);
+
+        // Run
+        Object actual = asyncSession.load(Object.class, 42L).get(TIMEOUT, TimeUnit.SECONDS);
+
+        // Verify
+        verify(mockSession).load(Object.class, 42L);
+        verify(mockSession, never()).beginTransaction();
+        assertSame("Loaded entity should be returned", model, actual);
+    }
+
+    @Test
+    public void testSave_queuedWritesCoalesced() throws Exception {
+        // Setup
+        Object foo = new Object();
+        Object bar = new Object();
+        when(mockSession.save(foo)).thenReturn(1L);
+        when(mockSession.save(bar)).thenReturn(2L);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Future<Boolean> blocking = asyncSession.write(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                started.countDown();
+                return release.await(TIMEOUT, TimeUnit.SECONDS);
+            }
+        }, null);
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+
+        // Run
+        Future<Long> fooResult = asyncSession.save(foo);
+        Future<Long> barResult = asyncSession.save(bar);
+        release.countDown();
+
+        // Verify
+        assertTrue("Blocking write should complete", blocking.get(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals("Save result should be returned", 1L, (long) fooResult.get(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals("Save result should be returned", 2L, (long) barResult.get(TIMEOUT, TimeUnit.SECONDS));
+        // One transaction for the blocking write, and one for both saves, each write in its own nested transaction
+        verify(mockSession, times(5)).beginTransaction();
+        verify(mockSession, times(5)).commit();
+        verify(mockSession, never()).rollback();
+        InOrder inOrder = inOrder(mockSession);
+        inOrder.verify(mockSession).save(foo);
+        inOrder.verify(mockSession).save(bar);
+    }
+
+    @Test
+    public void testSave_failureRollsBackOnlyFailedWrite() throws Exception {
+        // Setup
+        Object foo = new Object();
+        Object bar = new Object();
+        when(mockSession.save(foo)).thenThrow(new InfinitumRuntimeException("Save failed"));
+        when(mockSession.save(bar)).thenReturn(2L);
+
+        // Run
+        Future<Long> fooResult = asyncSession.save(foo);
+        Future<Long> barResult = asyncSession.save(bar);
+
+        // Verify
+        assertEquals("Save result should be returned", 2L, (long) barResult.get(TIMEOUT, TimeUnit.SECONDS));
+        try {
+            fooResult.get(TIMEOUT, TimeUnit.SECONDS);
+            fail("Failed save should complete exceptionally");
+        } catch (ExecutionException e) {
+            assertTrue("Cause should be the save failure", e.getCause() instanceof InfinitumRuntimeException);
+        }
+        verify(mockSession, atLeastOnce()).setAutocommit(false);
+        verify(mockSession).rollback();
+    }
+
+    @Test
+    public void testSave_commitFailureFailsAllWrites() throws Exception {
+        // Setup
+        Object foo = new Object();
+        when(mockSession.save(foo)).thenReturn(1L);
+        // The nested commit of the save succeeds, the outermost commit fails
+        doNothing().doThrow(new InfinitumRuntimeException("Commit failed")).when(mockSession).commit();
+
+        // Run
+        Future<Long> fooResult = asyncSession.save(foo);
+
+        // Verify
+        try {
+            fooResult.get(TIMEOUT, TimeUnit.SECONDS);
+            fail("Write should not succeed if the transaction was not committed");
+        } catch (ExecutionException e) {
+            assertEquals("Cause should be the commit failure", "Commit failed", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testSave_failureRollsBackOnlyFailedWrite_database() throws Exception {
+        // Setup
+        final SQLiteDatabase db = SQLiteDatabase.openDatabase("path", null, 0);
+        db.execSQL("CREATE TABLE foo (name VARCHAR(32))");
+        final int[] depth = new int[1];
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                if (depth[0] == 0)
+                    db.beginTransaction();
+                else
+                    db.execSQL("SAVEPOINT sp" + depth[0]);
+                depth[0]++;
+                return null;
+            }
+        }).when(mockSession).beginTransaction();
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                depth[0]--;
+                if (depth[0] == 0) {
+                    db.setTransactionSuccessful();
+                    db.endTransaction();
+                }
+                return null;
+            }
+        }).when(mockSession).commit();
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                depth[0]--;
+                if (depth[0] == 0)
+                    db.endTransaction();
+                else
+                    db.execSQL("ROLLBACK TO SAVEPOINT sp" + depth[0]);
+                return null;
+            }
+        }).when(mockSession).rollback();
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                String name = (String) invocation.getArguments()[0];
+                ContentValues values = new ContentValues();
+                values.put("name", name);
+                long id = db.insert("foo", null, values);
+                // Fails after writing its row, which must be rolled back
+                if ("bar".equals(name))
+                    throw new InfinitumRuntimeException("Save failed");
+                return id;
+            }
+        }).when(mockSession).save(any());
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        asyncSession.write(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                started.countDown();
+                return release.await(TIMEOUT, TimeUnit.SECONDS);
+            }
+        }, null);
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+
+        // Run
+        Future<Long> fooResult = asyncSession.save("foo");
+        Future<Long> barResult = asyncSession.save("bar");
+        Future<Long> bazResult = asyncSession.save("baz");
+        release.countDown();
+
+        // Verify
+        assertTrue("Save result should be returned", fooResult.get(TIMEOUT, TimeUnit.SECONDS) > 0);
+        assertTrue("Save result should be returned", bazResult.get(TIMEOUT, TimeUnit.SECONDS) > 0);
+        try {
+            barResult.get(TIMEOUT, TimeUnit.SECONDS);
+            fail("Failed save should complete exceptionally");
+        } catch (ExecutionException e) {
+            assertTrue("Cause should be the save failure", e.getCause() instanceof InfinitumRuntimeException);
+        }
+        assertEquals("Transaction should be closed", 0, depth[0]);
+        Cursor cursor = db.rawQuery("SELECT name FROM foo ORDER BY name", null);
+        try {
+            assertEquals("Only the rows of successful saves should be committed", 2, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals("Row of successful save should be committed", "baz", cursor.getString(0));
+            cursor.moveToNext();
+            assertEquals("Row of successful save should be committed", "foo", cursor.getString(0));
+        } finally {
+            cursor.close();
+            db.close();
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.internal;
+
+import org.simpleframework.xml.Attribute;
+import org.simpleframework.xml.Element;
+import org.simpleframework.xml.Root;
+import org.simpleframework.xml.core.Persister;
+
+import java.io.ByteArrayInputStream;
+import java.util.Scanner;
+
+/**
+ * Compares reading entities with a {@link Persister} constructed per read from a {@code String}, as the framework
+ * used to, against reading them with {@link XmlSerializationEngine} from an {@code InputStream}. Both the first read,
+ * which builds the schema of the entity class, and the steady-state throughput are reported. It is not run as part of
+ * the test suite; run its {@code main} method with the test classpath, optionally passing the number of reads.
+ */
+public class XmlSerializationEngineBenchmark {
+
+    private static final String XML = "<foo id=\"42\" name=\"Jane Doe\"><description>Lorem ipsum dolor sit amet" +
+            "</description><email>jane@example.com</email></foo>";
+
+    public static void main(String[] args) throws Exception {
+        int reads = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        final byte[] xml = XML.getBytes("UTF-8");
+
+        // Run the shared engine first so its schema is not already cached
+        long start = System.nanoTime();
+        XmlSerializationEngine.read(FooModel.class, new ByteArrayInputStream(xml));
+        long sharedFirst = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < reads; i++)
+            XmlSerializationEngine.read(FooModel.class, new ByteArrayInputStream(xml));
+        long sharedSteady = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        readPerCall(xml);
+        long perCallFirst = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < reads; i++)
+            readPerCall(xml);
+        long perCallSteady = System.nanoTime() - start;
+
+        report("Persister per read", perCallFirst, perCallSteady, reads);
+        report("XmlSerializationEngine", sharedFirst, sharedSteady, reads);
+    }
+
+    private static FooModel readPerCall(byte[] xml) throws Exception {
+        String s = new Scanner(new ByteArrayInputStream(xml), "UTF-8").useDelimiter("\\A").next();
+        return new Persister().read(FooModel.class, s);
+    }
+
+    private static void report(String name, long first, long steady, int reads) {
+        System.out.println(String.format("%-24s first read: %8.3f ms, steady state: %10.0f reads/s", name,
+                first / 1e6, reads / (steady / 1e9)));
+    }
+
+    @Root(name = "foo")
+    private static class FooModel {
+
+        @Attribute(name = "id")
+        private long mId;
+
+        @Attribute(name = "name")
+        private String mName;
+
+        @Element(name = "description")
+        private String mDescription;
+
+        @Element(name = "email")
+        private String mEmail;
+
+    }
+
+}
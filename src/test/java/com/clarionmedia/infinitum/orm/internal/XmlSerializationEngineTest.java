@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.internal;
+
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.simpleframework.xml.Attribute;
+import org.simpleframework.xml.Root;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class XmlSerializationEngineTest {
+
+    @Test
+    public void testGetSerializer() {
+        // Run
+        Object first = XmlSerializationEngine.getSerializer();
+        Object second = XmlSerializationEngine.getSerializer();
+
+        // Verify
+        assertNotNull("Serializer should not be null", first);
+        assertSame("Serializer should be shared", first, second);
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        // Setup
+        InputStream in = new ByteArrayInputStream("<foo name=\"bar\"/>".getBytes("UTF-8"));
+
+        // Run
+        FooModel actual = XmlSerializationEngine.read(FooModel.class, in);
+
+        // Verify
+        assertEquals("Entity should be read from the stream", "bar", actual.mName);
+    }
+
+    @Test
+    public void testReadList() throws Exception {
+        // Setup
+        InputStream in = new ByteArrayInputStream("<list><foo name=\"bar\"/><foo name=\"baz\"/></list>"
+                .getBytes("UTF-8"));
+
+        // Run
+        List<FooModel> actual = XmlSerializationEngine.readList(FooModel.class, in);
+
+        // Verify
+        assertEquals("Each child of the root element should be read", 2, actual.size());
+        assertEquals("Entities should be read in order", "bar", actual.get(0).mName);
+        assertEquals("Entities should be read in order", "baz", actual.get(1).mName);
+    }
+
+    @Root(name = "foo")
+    private static class FooModel {
+
+        @Attribute(name = "name")
+        private String mName;
+
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.persistence;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares looking up and storing entities by integral primary key in {@link IdentityMap}, which keeps such keys as
+ * primitive {@code long} values, against an access-ordered {@link LinkedHashMap} keyed by boxed {@code Long}, as a
+ * region would be without that path. Keys outside the small {@code Long} cache are used, as they are for most tables.
+ * Throughput and the bytes allocated per operation, as reported by the HotSpot thread MXBean, are printed. It is not run as part of the test suite; run its
+ * {@code main} method with the test classpath, optionally passing the number of operations.
+ */
+public class IdentityMapBenchmark {
+
+    private static final int CAPACITY = 10000;
+    private static final long FIRST_KEY = 1000000;
+
+    public static void main(String[] args) {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 20000000;
+        for (int run = 0; run < 3; run++) {
+            final IdentityMap identityMap = new IdentityMap(CAPACITY);
+            final BoxedIdentityMap boxed = new BoxedIdentityMap();
+            measure("LinkedHashMap<Long>", operations, new Operation() {
+                @Override
+                public Object run(long key, Object entity) {
+                    Object ret = boxed.get(IdentityMapBenchmark.class, key);
+                    if (ret == null)
+                        boxed.put(IdentityMapBenchmark.class, key, entity);
+                    return ret;
+                }
+            });
+            measure("IdentityMap", operations, new Operation() {
+                @Override
+                public Object run(long key, Object entity) {
+                    Object ret = identityMap.get(IdentityMapBenchmark.class, key);
+                    if (ret == null)
+                        identityMap.put(IdentityMapBenchmark.class, key, entity);
+                    return ret;
+                }
+            });
+        }
+    }
+
+    private static void measure(String name, int operations, Operation operation) {
+        Object entity = new Object();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        int hits = 0;
+        for (int i = 0; i < operations; i++) {
+            // Mostly hits on a working set within the capacity, with every sixteenth key new so entities are evicted
+            long key = i % 16 == 0 ? FIRST_KEY + CAPACITY + i : FIRST_KEY + (i * 7919L) % (CAPACITY / 2);
+            if (operation.run(key, entity) != null)
+                hits++;
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+        System.out.println(String.format("%-20s %12.0f ops/s, %6.1f bytes/op, %d hits", name,
+                operations / (elapsed / 1e9), allocated / (double) operations, hits));
+    }
+
+    // Same locking and per-class lookup as IdentityMap, so only the region differs
+    private static class BoxedIdentityMap {
+
+        private final Map<Class<?>, Map<Long, Object>> mRegions = new HashMap<Class<?>, Map<Long, Object>>();
+
+        synchronized Object get(Class<?> c, long pk) {
+            Map<Long, Object> region = mRegions.get(c);
+            return region == null ? null : region.get(pk);
+        }
+
+        synchronized void put(Class<?> c, long pk, Object entity) {
+            Map<Long, Object> region = mRegions.get(c);
+            if (region == null) {
+                region = new LinkedHashMap<Long, Object>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Long, Object> eldest) {
+                        return size() > CAPACITY;
+                    }
+                };
+                mRegions.put(c, region);
+            }
+            region.put(pk, entity);
+        }
+
+    }
+
+    private interface Operation {
+        Object run(long key, Object entity);
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.persistence;
+
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class IdentityMapTest {
+
+    private static final int CAPACITY = 3;
+
+    private IdentityMap identityMap;
+
+    @Before
+    public void setup() {
+        identityMap = new IdentityMap(CAPACITY);
+    }
+
+    @Test
+    public void testGet_integralKeys() {
+        // Setup
+        Object foo = new Object();
+        identityMap.put(FooModel.class, 42L, foo);
+
+        // Run
+        Object byLong = identityMap.get(FooModel.class, 42L);
+        Object byInteger = identityMap.get(FooModel.class, Integer.valueOf(42));
+        Object byBoxedLong = identityMap.get(FooModel.class, Long.valueOf(42));
+
+        // Verify
+        assertSame("Entity should be found by primitive key", foo, byLong);
+        assertSame("Entity should be found by Integer key", foo, byInteger);
+        assertSame("Entity should be found by Long key", foo, byBoxedLong);
+    }
+
+    @Test
+    public void testGet_keyedByClass() {
+        // Setup
+        Object foo = new Object();
+        Object bar = new Object();
+        identityMap.put(FooModel.class, 1L, foo);
+        identityMap.put(BarModel.class, 1L, bar);
+
+        // Run
+        Object actualFoo = identityMap.get(FooModel.class, 1L);
+        Object actualBar = identityMap.get(BarModel.class, 1L);
+
+        // Verify
+        assertSame("Foo entity should be returned", foo, actualFoo);
+        assertSame("Bar entity should be returned", bar, actualBar);
+        assertEquals("Both entities should be cached", 2, identityMap.size());
+    }
+
+    @Test
+    public void testGet_collidingHashCodes() {
+        // Setup
+        Object first = new Object();
+        Object second = new Object();
+        // "Aa" and "BB" have the same hash code
+        identityMap.put(FooModel.class, "Aa", first);
+        identityMap.put(FooModel.class, "BB", second);
+
+        // Run
+        Object actualFirst = identityMap.get(FooModel.class, "Aa");
+        Object actualSecond = identityMap.get(FooModel.class, "BB");
+
+        // Verify
+        assertSame("First entity should be returned", first, actualFirst);
+        assertSame("Second entity should be returned", second, actualSecond);
+    }
+
+    @Test
+    public void testPut_evictsLeastRecentlyUsed() {
+        // Setup
+        identityMap.put(FooModel.class, 1L, new Object());
+        identityMap.put(FooModel.class, 2L, new Object());
+        identityMap.put(FooModel.class, 3L, new Object());
+        identityMap.get(FooModel.class, 1L);
+
+        // Run
+        identityMap.put(FooModel.class, 4L, new Object());
+
+        // Verify
+        assertEquals("Capacity should not be exceeded", CAPACITY, identityMap.size(FooModel.class));
+        assertNotNull("Recently used entity should be retained", identityMap.get(FooModel.class, 1L));
+        assertNull("Least recently used entity should be evicted", identityMap.get(FooModel.class, 2L));
+        assertNotNull("New entity should be cached", identityMap.get(FooModel.class, 4L));
+    }
+
+    @Test
+    public void testPut_perClassCapacity() {
+        // Setup
+        identityMap.setCapacity(BarModel.class, 1);
+        for (long i = 0; i < CAPACITY; i++)
+            identityMap.put(FooModel.class, i, new Object());
+
+        // Run
+        identityMap.put(BarModel.class, 1L, new Object());
+        identityMap.put(BarModel.class, 2L, new Object());
+
+        // Verify
+        assertEquals("Foo entities should not be evicted by Bar entities", CAPACITY,
+                identityMap.size(FooModel.class));
+        assertEquals("Bar capacity should not be exceeded", 1, identityMap.size(BarModel.class));
+        assertNotNull("Newest Bar entity should be cached", identityMap.get(BarModel.class, 2L));
+    }
+
+    @Test
+    public void testSetCapacity_trims() {
+        // Setup
+        for (long i = 0; i < CAPACITY; i++)
+            identityMap.put(FooModel.class, i, new Object());
+
+        // Run
+        identityMap.setCapacity(FooModel.class, 1);
+
+        // Verify
+        assertEquals("Entities over the new capacity should be evicted", 1, identityMap.size(FooModel.class));
+        assertNotNull("Most recently used entity should be retained", identityMap.get(FooModel.class,
+                CAPACITY - 1));
+    }
+
+    @Test
+    public void testPut_resize() {
+        // Setup
+        identityMap.setDefaultCapacity(1000);
+
+        // Run
+        for (long i = 0; i < 1000; i++)
+            identityMap.put(FooModel.class, i, Long.valueOf(i));
+
+        // Verify
+        assertEquals("Every entity should be cached", 1000, identityMap.size());
+        for (long i = 0; i < 1000; i++)
+            assertEquals("Entity should be found after resizing", Long.valueOf(i), identityMap.get(FooModel.class, i));
+    }
+
+    @Test
+    public void testRemove() {
+        // Setup
+        Object foo = new Object();
+        identityMap.put(FooModel.class, 1L, foo);
+
+        // Run
+        Object removed = identityMap.remove(FooModel.class, Long.valueOf(1));
+
+        // Verify
+        assertSame("Removed entity should be returned", foo, removed);
+        assertFalse("Entity should no longer be cached", identityMap.contains(FooModel.class, 1L));
+        assertEquals("Cache should be empty", 0, identityMap.size());
+    }
+
+    @Test
+    public void testRemove_keepsProbedEntriesReachable() {
+        // Setup
+        identityMap.setDefaultCapacity(100);
+        for (long i = 0; i < 100; i++)
+            identityMap.put(FooModel.class, i, Long.valueOf(i));
+
+        // Run
+        for (long i = 0; i < 100; i += 2)
+            identityMap.remove(FooModel.class, i);
+
+        // Verify
+        assertEquals("Only removed entities should be gone", 50, identityMap.size(FooModel.class));
+        for (long i = 0; i < 100; i++) {
+            Object expected = i % 2 == 0 ? null : Long.valueOf(i);
+            assertEquals("Remaining entities should still be found", expected, identityMap.get(FooModel.class, i));
+        }
+    }
+
+    @Test
+    public void testValues_objectAndIntegralKeys() {
+        // Setup
+        Object foo = new Object();
+        Object bar = new Object();
+        identityMap.put(FooModel.class, 1L, foo);
+        identityMap.put(BarModel.class, "bar", bar);
+
+        // Run
+        List<Object> actual = identityMap.values();
+
+        // Verify
+        assertEquals("Entities of both key kinds should be returned", 2, actual.size());
+        assertTrue("Entity with integral key should be returned", actual.contains(foo));
+        assertTrue("Entity with object key should be returned", actual.contains(bar));
+    }
+
+    private static class FooModel {
+    }
+
+    private static class BarModel {
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.persistence;
+
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class QueryCacheTest {
+
+    private static final String FOO_QUERY = "SELECT * FROM foo";
+    private static final String FOO_BAR_QUERY = "SELECT * FROM foo WHERE bar IN (SELECT id FROM bar)";
+
+    private QueryCache queryCache;
+    private List<Serializable> primaryKeys;
+
+    @Before
+    public void setup() {
+        queryCache = new QueryCache(2);
+        primaryKeys = Arrays.<Serializable>asList(1L, 2L, 3L);
+    }
+
+    @Test
+    public void testGet() {
+        // Setup
+        queryCache.put(FOO_QUERY, types(FooModel.class), primaryKeys, queryCache.getTimestamp());
+
+        // Run
+        List<Serializable> actual = queryCache.get(FOO_QUERY);
+
+        // Verify
+        assertEquals("Cached primary keys should be returned", primaryKeys, actual);
+        assertNull("Uncached query should not be returned", queryCache.get(FOO_BAR_QUERY));
+    }
+
+    @Test
+    public void testInvalidate() {
+        // Setup
+        queryCache.put(FOO_QUERY, types(FooModel.class), primaryKeys, queryCache.getTimestamp());
+        queryCache.put(FOO_BAR_QUERY, types(FooModel.class, BarModel.class), primaryKeys, queryCache.getTimestamp());
+
+        // Run
+        queryCache.invalidate(BarModel.class);
+
+        // Verify
+        assertNotNull("Independent result should be retained", queryCache.get(FOO_QUERY));
+        assertNull("Dependent result should be discarded", queryCache.get(FOO_BAR_QUERY));
+    }
+
+    @Test
+    public void testPut_staleTimestamp() {
+        // Setup
+        long timestamp = queryCache.getTimestamp();
+        queryCache.invalidate(FooModel.class);
+
+        // Run
+        boolean stored = queryCache.put(FOO_QUERY, types(FooModel.class), primaryKeys, timestamp);
+
+        // Verify
+        assertFalse("Result read before an invalidation should not be stored", stored);
+        assertNull("Stale result should not be returned", queryCache.get(FOO_QUERY));
+    }
+
+    @Test
+    public void testPut_capacity() {
+        // Setup
+        queryCache.put("a", types(FooModel.class), primaryKeys, queryCache.getTimestamp());
+        queryCache.put("b", types(FooModel.class), primaryKeys, queryCache.getTimestamp());
+        queryCache.get("a");
+
+        // Run
+        queryCache.put("c", types(FooModel.class), primaryKeys, queryCache.getTimestamp());
+
+        // Verify
+        assertEquals("Capacity should not be exceeded", 2, queryCache.size());
+        assertNull("Least recently used result should be evicted", queryCache.get("b"));
+        assertNotNull("Recently used result should be retained", queryCache.get("a"));
+    }
+
+    private static Set<Class<?>> types(Class<?>... types) {
+        return new HashSet<Class<?>>(Arrays.asList(types));
+    }
+
+    private static class FooModel {
+    }
+
+    private static class BarModel {
+    }
+
+}
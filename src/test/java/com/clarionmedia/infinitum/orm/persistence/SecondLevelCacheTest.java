@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.persistence;
+
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class SecondLevelCacheTest {
+
+    private static final int CAPACITY = 2;
+
+    private SecondLevelCache secondLevelCache;
+
+    @Before
+    public void setup() {
+        secondLevelCache = new SecondLevelCache(CAPACITY, 0);
+    }
+
+    @Test
+    public void testGet_statistics() {
+        // Setup
+        Object state = new Object();
+        secondLevelCache.put(FooModel.class, 1L, state);
+
+        // Run
+        Object hit = secondLevelCache.get(FooModel.class, 1L);
+        Object miss = secondLevelCache.get(FooModel.class, 2L);
+
+        // Verify
+        assertSame("Cached state should be returned", state, hit);
+        assertNull("Missing state should not be returned", miss);
+        assertEquals("Hit count should be 1", 1, secondLevelCache.getHitCount());
+        assertEquals("Miss count should be 1", 1, secondLevelCache.getMissCount());
+        assertEquals("Hit ratio should be 0.5", 0.5, secondLevelCache.getHitRatio(), 0);
+    }
+
+    @Test
+    public void testGet_expired() throws InterruptedException {
+        // Setup
+        secondLevelCache.setTimeToLive(1);
+        secondLevelCache.put(FooModel.class, 1L, new Object());
+        Thread.sleep(10);
+
+        // Run
+        Object actual = secondLevelCache.get(FooModel.class, 1L);
+
+        // Verify
+        assertNull("Expired state should not be returned", actual);
+        assertEquals("Expired state should be removed", 0, secondLevelCache.size());
+        assertEquals("Expired lookup should count as a miss", 1, secondLevelCache.getMissCount());
+    }
+
+    @Test
+    public void testPut_capacity() {
+        // Setup
+        for (long i = 0; i <= CAPACITY; i++)
+            secondLevelCache.put(FooModel.class, i, new Object());
+
+        // Run
+        Object evicted = secondLevelCache.get(FooModel.class, 0L);
+
+        // Verify
+        assertNull("Least recently used state should be evicted", evicted);
+        assertEquals("Capacity should not be exceeded", CAPACITY, secondLevelCache.size());
+    }
+
+    @Test
+    public void testEvict_class() {
+        // Setup
+        secondLevelCache.put(FooModel.class, 1L, new Object());
+        secondLevelCache.put(FooModel.class, 2L, new Object());
+        secondLevelCache.put(BarModel.class, 1L, new Object());
+
+        // Run
+        secondLevelCache.evict(FooModel.class);
+
+        // Verify
+        assertNull("Evicted state should not be returned", secondLevelCache.get(FooModel.class, 1L));
+        assertNotNull("Other classes should not be evicted", secondLevelCache.get(BarModel.class, 1L));
+        assertEquals("Only the other class should remain", 1, secondLevelCache.size());
+    }
+
+    private static class FooModel {
+    }
+
+    private static class BarModel {
+    }
+
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.persistence.impl;
+
+import com.clarionmedia.infinitum.orm.annotation.Column;
+import com.clarionmedia.infinitum.orm.annotation.ManyToMany;
+import com.clarionmedia.infinitum.orm.annotation.NotNull;
+import com.clarionmedia.infinitum.orm.annotation.PrimaryKey;
+import com.clarionmedia.infinitum.orm.annotation.Unique;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata;
+import com.clarionmedia.infinitum.orm.persistence.TypeResolutionPolicy;
+import com.clarionmedia.infinitum.orm.relationship.ManyToManyRelationship;
+import com.clarionmedia.infinitum.orm.relationship.ModelRelationship;
+import com.clarionmedia.infinitum.reflection.ClassReflector;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+public class AnnotationsPersistencePolicyTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 50;
+
+    @Mock
+    private TypeResolutionPolicy mockTypePolicy;
+
+    @Mock
+    private ClassReflector mockClassReflector;
+
+    @InjectMocks
+    private AnnotationsPersistencePolicy policy = new AnnotationsPersistencePolicy();
+
+    @Before
+    public void setup() {
+        newPolicy();
+    }
+
+    @Test
+    public void testGetEntityMetadata() throws Exception {
+        // Run
+        EntityMetadata actual = policy.getEntityMetadata(FooModel.class);
+
+        // Verify
+        assertEquals("Table name should be 'foomodel'", "foomodel", actual.getTableName());
+        assertEquals("Primary key should be mId", FooModel.class.getDeclaredField("mId"), actual.getPrimaryKeyField());
+        assertEquals("There should be 4 columns", 4, actual.getColumns().size());
+        assertFalse("There should be no relationships", actual.hasRelationships());
+        EntityMetadata.ColumnMetadata pk = actual.getColumns().get(0);
+        assertTrue("First column should be the primary key", pk.isPrimaryKey());
+        assertTrue("Primary key should be autoincrement", pk.isAutoIncrement());
+        assertEquals("Column name should come from @Column", "foo_name", actual.getColumns().get(1).getColumnName());
+        assertTrue("mCode should be unique", actual.getColumns().get(2).isUnique());
+        assertFalse("mDescription should not be nullable", actual.getColumns().get(3).isNullable());
+    }
+
+    @Test
+    public void testGetEntityMetadata_cached() {
+        // Run
+        EntityMetadata first = policy.getEntityMetadata(FooModel.class);
+        EntityMetadata second = policy.getEntityMetadata(FooModel.class);
+
+        // Verify
+        assertTrue("Metadata should be cached", first == second);
+    }
+
+    @Test
+    public void testGetRelationship_manyToManyCached() throws Exception {
+        // Setup
+        Field bazs = BarModel.class.getDeclaredField("mBazs");
+
+        // Run
+        ModelRelationship first = policy.getRelationship(bazs);
+        ModelRelationship second = policy.getRelationship(bazs);
+
+        // Verify
+        assertTrue("Relationship should be a many-to-many", first instanceof ManyToManyRelationship);
+        assertSame("Many-to-many relationship should be cached", first, second);
+        assertTrue("Field should be a many-to-many relationship", policy.isManyToManyRelationship(bazs));
+        assertFalse("Field should not be a to-one relationship", policy.isToOneRelationship(bazs));
+    }
+
+    @Test
+    public void testGetRelationship_notRelationship() throws Exception {
+        // Setup
+        Field name = FooModel.class.getDeclaredField("mName");
+
+        // Run
+        ModelRelationship actual = policy.getRelationship(name);
+
+        // Verify
+        assertNull("Plain column should have no relationship", actual);
+        assertFalse("Plain column should not be a relationship", policy.isRelationship(name));
+        assertFalse("Plain column should not be a many-to-many relationship",
+                policy.isManyToManyRelationship(name));
+    }
+
+    @Test
+    public void testGetManyToManyRelationships_afterGetRelationship() throws Exception {
+        // Setup
+        ModelRelationship bazs = policy.getRelationship(BarModel.class.getDeclaredField("mBazs"));
+
+        // Run
+        Set<ManyToManyRelationship> actual = policy.getManyToManyRelationships(BarModel.class);
+
+        // Verify
+        assertEquals("Every many-to-many relationship of the class should be returned", 2, actual.size());
+        assertTrue("Relationship cached by getRelationship should be returned", actual.contains(bazs));
+    }
+
+    @Test
+    public void testConcurrentCacheAccess() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            // Setup
+            final AnnotationsPersistencePolicy shared = newPolicy();
+            List<String> expected = describe(newPolicy(), FooModel.class);
+            final CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(new Callable<List<String>>() {
+                    @Override
+                    public List<String> call() throws Exception {
+                        start.await();
+                        return describe(shared, FooModel.class);
+                    }
+                }));
+            }
+
+            // Run
+            start.countDown();
+            executor.shutdown();
+
+            // Verify
+            assertTrue("Workers should finish", executor.awaitTermination(10, TimeUnit.SECONDS));
+            for (Future<List<String>> future : futures)
+                assertEquals("Every thread should see the same metadata", expected, future.get());
+        }
+    }
+
+    // Touches every cache the policy fills lazily and summarizes what it returned
+    private List<String> describe(AnnotationsPersistencePolicy target, Class<?> c) {
+        List<String> ret = new ArrayList<String>();
+        Field pk = target.getPrimaryKeyField(c);
+        for (Field f : target.getPersistentFields(c)) {
+            ret.add(f.getName() + ":" + target.getFieldColumnName(f) + ":" + (f.equals(pk) ? "pk" : "col") + ":"
+                    + target.isFieldNullable(f) + ":" + target.isFieldUnique(f));
+        }
+        ret.add(String.valueOf(target.getEntityMetadata(c).getColumns().size()));
+        return ret;
+    }
+
+    private AnnotationsPersistencePolicy newPolicy() {
+        policy = new AnnotationsPersistencePolicy();
+        MockitoAnnotations.initMocks(this);
+        stubMocks();
+        return policy;
+    }
+
+    private void stubMocks() {
+        when(mockTypePolicy.isDomainModel(FooModel.class)).thenReturn(true);
+        when(mockTypePolicy.isDomainProxy(FooModel.class)).thenReturn(false);
+        List<Field> fields = new ArrayList<Field>();
+        try {
+            fields.add(FooModel.class.getDeclaredField("mId"));
+            fields.add(FooModel.class.getDeclaredField("mName"));
+            fields.add(FooModel.class.getDeclaredField("mCode"));
+            fields.add(FooModel.class.getDeclaredField("mDescription"));
+        } catch (NoSuchFieldException e) {
+            throw new RuntimeException(e);
+        }
+        when(mockClassReflector.getAllFields(FooModel.class)).thenReturn(fields);
+        List<Field> barFields = new ArrayList<Field>();
+        try {
+            barFields.add(BarModel.class.getDeclaredField("mId"));
+            barFields.add(BarModel.class.getDeclaredField("mBazs"));
+            barFields.add(BarModel.class.getDeclaredField("mQuxs"));
+        } catch (NoSuchFieldException e) {
+            throw new RuntimeException(e);
+        }
+        when(mockClassReflector.getAllFields(BarModel.class)).thenReturn(barFields);
+    }
+
+    private static class FooModel {
+
+        @PrimaryKey
+        private Long mId;
+
+        @Column("foo_name")
+        private String mName;
+
+        @Unique
+        private int mCode;
+
+        @NotNull
+        private String mDescription;
+
+    }
+
+    private static class BarModel {
+
+        @PrimaryKey
+        private Long mId;
+
+        @ManyToMany(table = "bar_baz", keyField = "mId", foreignField = "mId", name = "bar_baz")
+        private List<FooModel> mBazs;
+
+        @ManyToMany(table = "bar_qux", keyField = "mId", foreignField = "mId", name = "bar_qux")
+        private List<FooModel> mQuxs;
+
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.persistence.impl;
+
+import android.content.Context;
+import android.content.res.Resources;
+import com.clarionmedia.infinitum.context.InfinitumContext;
+import com.clarionmedia.infinitum.orm.persistence.TypeResolutionPolicy;
+import com.clarionmedia.infinitum.reflection.ClassReflector;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class XmlPersistencePolicyTest {
+
+    private static final String PACKAGE_NAME = "com.example";
+    private static final String MAPPING = "<infinitum-mapping><class name=\"FooModel\" table=\"foo\" rest=\"foos\" " +
+            "cascade=\"keys\"><primary-key name=\"mId\" column=\"id\" type=\"long\" autoincrement=\"true\"/>" +
+            "<property name=\"mName\" type=\"text\" not-null=\"true\" rest=\"name\"/></class></infinitum-mapping>";
+
+    @Mock
+    private InfinitumContext mockInfinitumContext;
+
+    @Mock
+    private Context mockContext;
+
+    @Mock
+    private Resources mockResources;
+
+    @Mock
+    private TypeResolutionPolicy mockTypePolicy;
+
+    @Mock
+    private ClassReflector mockClassReflector;
+
+    @InjectMocks
+    private XmlPersistencePolicy policy = new XmlPersistencePolicy();
+
+    private File directory;
+
+    @Before
+    public void setup() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        when(mockInfinitumContext.getAndroidContext()).thenReturn(mockContext);
+        when(mockContext.getResources()).thenReturn(mockResources);
+        when(mockContext.getPackageName()).thenReturn(PACKAGE_NAME);
+        when(mockTypePolicy.isDomainModel(FooModel.class)).thenReturn(true);
+        directory = File.createTempFile("xml-persistence-policy", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files)
+                file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testGetRestEndpoint_index() throws IOException {
+        // Setup
+        registerIndex(writeMapFile("foomodel.xml"));
+
+        // Run
+        String endpoint = policy.getRestEndpoint(FooModel.class);
+        String table = policy.getModelTableName(FooModel.class);
+
+        // Verify
+        assertEquals("REST endpoint should be read from the index", "foos", endpoint);
+        assertEquals("Table should be read from the index", "foo", table);
+        verify(mockResources, never()).getIdentifier("foomodel", "raw", PACKAGE_NAME);
+        verify(mockResources, times(1)).openRawResource(1);
+    }
+
+    @Test
+    public void testIsPersistent_missingFromIndex() throws IOException {
+        // Setup
+        registerIndex(writeMapFile("barmodel.xml"));
+
+        // Run
+        boolean actual = policy.isPersistent(FooModel.class);
+
+        // Verify
+        assertFalse("Class without an indexed mapping or map file should be transient", actual);
+        verify(mockResources).getIdentifier("foomodel", "raw", PACKAGE_NAME);
+    }
+
+    @Test
+    public void testIsPersistent_noIndex() {
+        // Setup
+        when(mockResources.getIdentifier("foomodel", "raw", PACKAGE_NAME)).thenReturn(2);
+        when(mockResources.openRawResource(2)).thenReturn(new ByteArrayInputStream(MAPPING.getBytes()));
+
+        // Run
+        boolean actual = policy.isPersistent(FooModel.class);
+
+        // Verify
+        assertTrue("Map file should be parsed when there is no index", actual);
+        verify(mockResources).openRawResource(2);
+    }
+
+    private File writeMapFile(String name) throws IOException {
+        File ret = new File(directory, name);
+        OutputStream out = new FileOutputStream(ret);
+        try {
+            out.write(MAPPING.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return ret;
+    }
+
+    private void registerIndex(File mapFile) throws IOException {
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        XmlPersistencePolicy.compileIndex(new File[]{mapFile}, index);
+        when(mockResources.getIdentifier(XmlPersistencePolicy.INDEX_RESOURCE, "raw", PACKAGE_NAME)).thenReturn(1);
+        when(mockResources.openRawResource(1)).thenReturn(new ByteArrayInputStream(index.toByteArray()));
+    }
+
+    private static class FooModel {
+        private long mId;
+        private String mName;
+    }
+
+}
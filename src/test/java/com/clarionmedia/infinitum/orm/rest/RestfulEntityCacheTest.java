@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.rest;
+
+import com.clarionmedia.infinitum.orm.rest.RestfulEntityCache.Entry;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class RestfulEntityCacheTest {
+
+    private static final String FOO_URI = "http://localhost/foo/1";
+    private static final String BAR_URI = "http://localhost/foo/2";
+    private static final byte[] BODY = "{\"name\":\"foo\"}".getBytes();
+
+    private File directory;
+
+    @Before
+    public void setup() throws IOException {
+        directory = File.createTempFile("restful-entity-cache", "");
+        directory.delete();
+    }
+
+    @After
+    public void tearDown() {
+        new RestfulEntityCache(1, directory).clear();
+        directory.delete();
+    }
+
+    @Test
+    public void testGet_memory() {
+        // Setup
+        RestfulEntityCache cache = new RestfulEntityCache();
+        cache.put(FOO_URI, "\"v1\"", null, BODY);
+
+        // Run
+        Entry actual = cache.get(FOO_URI);
+
+        // Verify
+        assertNotNull("Entry should be cached", actual);
+        assertEquals("ETag should be cached", "\"v1\"", actual.getETag());
+        assertNull("Last-Modified should not be cached", actual.getLastModified());
+        assertSame("Body should be cached", BODY, actual.getBody());
+    }
+
+    @Test
+    public void testPut_noValidators() {
+        // Setup
+        RestfulEntityCache cache = new RestfulEntityCache();
+        cache.put(FOO_URI, "\"v1\"", null, BODY);
+
+        // Run
+        cache.put(FOO_URI, null, null, BODY);
+
+        // Verify
+        assertNull("Response which cannot be revalidated should not be cached", cache.get(FOO_URI));
+    }
+
+    @Test
+    public void testPut_evictsLeastRecentlyUsed() {
+        // Setup
+        RestfulEntityCache cache = new RestfulEntityCache(1, null);
+        cache.put(FOO_URI, "\"v1\"", null, BODY);
+
+        // Run
+        cache.put(BAR_URI, "\"v1\"", null, BODY);
+
+        // Verify
+        assertNull("Least recently used entry should be evicted", cache.get(FOO_URI));
+        assertNotNull("Most recently used entry should be cached", cache.get(BAR_URI));
+    }
+
+    @Test
+    public void testGet_disk() {
+        // Setup
+        String lastModified = "Sat, 17 Oct 2026 12:00:00 GMT";
+        new RestfulEntityCache(10, directory).put(FOO_URI, null, lastModified, BODY);
+
+        // Run
+        Entry actual = new RestfulEntityCache(10, directory).get(FOO_URI);
+
+        // Verify
+        assertNotNull("Entry should be read back from disk", actual);
+        assertNull("ETag should not be cached", actual.getETag());
+        assertEquals("Last-Modified should be read back", lastModified, actual.getLastModified());
+        assertArrayEquals("Body should be read back", BODY, actual.getBody());
+    }
+
+    @Test
+    public void testPut_replacesOnDisk() {
+        // Setup
+        RestfulEntityCache cache = new RestfulEntityCache(10, directory);
+        cache.put(FOO_URI, "\"v1\"", null, BODY);
+
+        // Run
+        cache.put(FOO_URI, "\"v2\"", null, BODY);
+
+        // Verify
+        Entry actual = new RestfulEntityCache(10, directory).get(FOO_URI);
+        assertEquals("Latest response should be read back from disk", "\"v2\"", actual.getETag());
+        assertEquals("Only one file should be written per URI", 1, directory.listFiles().length);
+    }
+
+    @Test
+    public void testEvict_disk() {
+        // Setup
+        RestfulEntityCache cache = new RestfulEntityCache(10, directory);
+        cache.put(FOO_URI, "\"v1\"", null, BODY);
+
+        // Run
+        cache.evict(FOO_URI);
+
+        // Verify
+        assertNull("Evicted entry should not be read back from disk", new RestfulEntityCache(10, directory)
+                .get(FOO_URI));
+    }
+
+}
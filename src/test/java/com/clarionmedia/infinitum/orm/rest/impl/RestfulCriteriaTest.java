@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.rest.impl;
+
+import com.clarionmedia.infinitum.orm.criteria.Order;
+import com.clarionmedia.infinitum.orm.criteria.criterion.Conditions;
+import com.clarionmedia.infinitum.orm.exception.InvalidCriteriaException;
+import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
+import com.clarionmedia.infinitum.orm.rest.RestfulQueryConvention;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class RestfulCriteriaTest {
+
+    private static final String HOST = "http://localhost/";
+
+    private RestfulSession mockRestfulSession;
+    private PersistencePolicy mockPersistencePolicy;
+    private RestfulCriteria<FooModel> restfulCriteria;
+
+    @Before
+    public void setup() throws NoSuchFieldException {
+        mockRestfulSession = mock(RestfulSession.class);
+        mockPersistencePolicy = mock(PersistencePolicy.class);
+        mockRestfulSession.mPersistencePolicy = mockPersistencePolicy;
+        mockRestfulSession.mHost = HOST;
+        when(mockRestfulSession.isOpen()).thenReturn(true);
+        when(mockRestfulSession.getQueryConvention()).thenReturn(new RestfulQueryConvention());
+        when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+        when(mockPersistencePolicy.getRestEndpoint(FooModel.class)).thenReturn("foos");
+        Field name = FooModel.class.getDeclaredField("mName");
+        Field age = FooModel.class.getDeclaredField("mAge");
+        when(mockPersistencePolicy.findPersistentField(FooModel.class, "mName")).thenReturn(name);
+        when(mockPersistencePolicy.findPersistentField(FooModel.class, "mAge")).thenReturn(age);
+        when(mockPersistencePolicy.getEndpointFieldName(name)).thenReturn("name");
+        when(mockPersistencePolicy.getEndpointFieldName(age)).thenReturn("age");
+        restfulCriteria = new RestfulCriteria<FooModel>(mockRestfulSession, FooModel.class);
+    }
+
+    @Test
+    public void testGetRepresentation_noCriteria() {
+        // Run
+        String actual = restfulCriteria.getRepresentation();
+
+        // Verify
+        assertEquals("URI should be the entity's endpoint", HOST + "foos", actual);
+    }
+
+    @Test
+    public void testGetRepresentation() {
+        // Setup
+        restfulCriteria.add(Conditions.eq("mName", "Jane Doe"))
+                .add(Conditions.gt("mAge", 18))
+                .add(Conditions.in("mAge", new Object[]{21, 42}))
+                .add(Conditions.between("mAge", 1, 99))
+                .orderBy(Order.desc("mAge"))
+                .orderBy(Order.asc("mName"))
+                .limit(10)
+                .offset(20);
+
+        // Run
+        String actual = restfulCriteria.getRepresentation();
+
+        // Verify
+        assertEquals("URI should carry the criteria in its query string", HOST + "foos?name=Jane+Doe&age%5Bgt%5D=18" +
+                "&age%5Bin%5D=21%2C42&age%5Bgte%5D=1&age%5Blte%5D=99&sort=-age%2Cname&limit=10&offset=20", actual);
+    }
+
+    @Test(expected = InvalidCriteriaException.class)
+    public void testGetRepresentation_unsupportedCriterion() {
+        // Setup
+        restfulCriteria.add(Conditions.like("mName", "Jane%"));
+
+        // Run
+        restfulCriteria.getRepresentation();
+    }
+
+    @Test(expected = InvalidCriteriaException.class)
+    public void testGetRepresentation_ignoreCase() {
+        // Setup
+        restfulCriteria.add(Conditions.eq("mName", "jane doe").ignoreCase());
+
+        // Run
+        restfulCriteria.getRepresentation();
+    }
+
+    @Test
+    public void testList() {
+        // Setup
+        List<FooModel> expected = new ArrayList<FooModel>();
+        expected.add(new FooModel());
+        expected.add(new FooModel());
+        restfulCriteria.add(Conditions.eq("mAge", 42));
+        when(mockRestfulSession.loadEntities(FooModel.class, HOST + "foos?age=42")).thenReturn(expected);
+
+        // Run
+        List<FooModel> actual = restfulCriteria.list();
+
+        // Verify
+        verify(mockRestfulSession).loadEntities(FooModel.class, HOST + "foos?age=42");
+        assertSame("Results should be returned from a single request", expected, actual);
+    }
+
+    private static class FooModel {
+        private String mName;
+        private int mAge;
+    }
+
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.rest.impl;
+
+import com.clarionmedia.infinitum.context.RestfulContext;
+import com.clarionmedia.infinitum.context.RestfulContext.MessageType;
+import com.clarionmedia.infinitum.orm.Session;
+import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
+import com.clarionmedia.infinitum.orm.rest.Deserializer;
+import com.clarionmedia.infinitum.orm.rest.RestfulEntityCache;
+import com.clarionmedia.infinitum.orm.rest.RestfulMapper;
+import com.clarionmedia.infinitum.orm.rest.RestfulModelMap;
+import com.clarionmedia.infinitum.web.context.InfinitumWebContext;
+import com.clarionmedia.infinitum.web.rest.RestfulClient;
+import com.clarionmedia.infinitum.web.rest.impl.RestResponse;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.apache.http.HttpEntity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class RestfulSessionTest {
+
+    private static final String HOST = "http://localhost/";
+    private static final String ENDPOINT = "foos";
+    private static final String BULK_ENDPOINT = "foos/bulk";
+    private static final String MEDIA_TYPE = "application/json";
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Sat, 17 Oct 2026 08:00:00 GMT";
+
+    @Mock
+    private RestfulClient mockRestClient;
+
+    @Mock
+    private PersistencePolicy mockPersistencePolicy;
+
+    @Mock
+    private RestfulMapper mockMapper;
+
+    @Mock
+    private RestfulContext mockRestContext;
+
+    @Mock
+    private InfinitumWebContext mockWebContext;
+
+    @Mock
+    private RestfulEntityCache mockEntityCache;
+
+    private TestRestfulSession restfulSession;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        restfulSession = new TestRestfulSession(mockRestClient);
+        restfulSession.mRestClient = mockRestClient;
+        restfulSession.mPersistencePolicy = mockPersistencePolicy;
+        restfulSession.mMapper = mockMapper;
+        restfulSession.mRestContext = mockRestContext;
+        restfulSession.mWebContext = mockWebContext;
+        restfulSession.mEntityCache = mockEntityCache;
+        restfulSession.mHost = HOST;
+        restfulSession.mIsOpen = true;
+        when(mockRestContext.getMessageType()).thenReturn(MessageType.JSON);
+        when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+        when(mockPersistencePolicy.getRestEndpoint(FooModel.class)).thenReturn(ENDPOINT);
+    }
+
+    @After
+    public void tearDown() {
+        restfulSession.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testExecuteBatch_resultsInOrder() {
+        // Setup
+        restfulSession.setBatchConcurrency(4);
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        List<FooModel> models = new ArrayList<FooModel>();
+        for (int i = 0; i < 10; i++) {
+            FooModel foo = new FooModel(i);
+            models.add(foo);
+            HttpEntity entity = mock(HttpEntity.class);
+            RestfulModelMap modelMap = mock(RestfulModelMap.class);
+            when(modelMap.toHttpEntity()).thenReturn(entity);
+            when(mockMapper.mapModel(foo)).thenReturn(modelMap);
+            // Odd entities are rejected by the web service
+            final RestResponse response = response(i % 2 == 0 ? 201 : 500);
+            when(mockRestClient.executePost(eq(HOST + ENDPOINT), eq(entity), any(Map.class))).thenAnswer(
+                    new Answer<RestResponse>() {
+                        @Override
+                        public RestResponse answer(InvocationOnMock invocation) {
+                            threads.add(Thread.currentThread());
+                            return response;
+                        }
+                    });
+        }
+
+        // Run
+        long[] actual = restfulSession.executeBatch(RestfulSession.BatchOperation.SAVE, models);
+
+        // Verify
+        assertEquals("There should be a result for each entity", 10, actual.length);
+        for (int i = 0; i < actual.length; i++)
+            assertEquals("Result should belong to the entity at its index", i % 2 == 0 ? 0 : -1, actual[i]);
+        assertEquals("Every entity should be sent", 10, threads.size());
+        assertFalse("Requests should be sent from the batch threads", threads.contains(Thread.currentThread()));
+        verify(mockRestClient, times(10)).executePost(eq(HOST + ENDPOINT), any(HttpEntity.class), any(Map.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testExecuteBatch_requestsInFlightConcurrently() throws InterruptedException {
+        // Setup
+        restfulSession.setBatchConcurrency(2);
+        final CountDownLatch inFlight = new CountDownLatch(2);
+        RestfulModelMap modelMap = mock(RestfulModelMap.class);
+        when(mockMapper.mapModel(any())).thenReturn(modelMap);
+        final RestResponse response = response(200);
+        when(mockRestClient.executeDelete(any(String.class), any(Map.class))).thenAnswer(new Answer<RestResponse>() {
+            @Override
+            public RestResponse answer(InvocationOnMock invocation) throws InterruptedException {
+                // Each request waits for the other, which only returns if both are sent at once
+                inFlight.countDown();
+                inFlight.await(5, TimeUnit.SECONDS);
+                return response;
+            }
+        });
+        List<FooModel> models = new ArrayList<FooModel>();
+        for (int i = 0; i < 2; i++) {
+            FooModel foo = new FooModel(i);
+            models.add(foo);
+            when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(Long.valueOf(i));
+        }
+
+        // Run
+        int actual = restfulSession.deleteAll(models);
+
+        // Verify
+        assertEquals("Both requests should have been in flight at once", 0, inFlight.getCount());
+        assertEquals("Both entities should be deleted", 2, actual);
+        verify(mockRestClient).executeDelete(eq(HOST + ENDPOINT + "/0"), any(Map.class));
+        verify(mockRestClient).executeDelete(eq(HOST + ENDPOINT + "/1"), any(Map.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testSaveAll_bulkEndpointChunked() {
+        // Setup
+        restfulSession.setBatchConcurrency(3);
+        final List<Integer> sizes = Collections.synchronizedList(new ArrayList<Integer>());
+        final RestfulModelMap modelMap = mock(RestfulModelMap.class);
+        HttpEntity entity = mock(HttpEntity.class);
+        when(modelMap.toHttpEntity()).thenReturn(entity);
+        when(mockPersistencePolicy.getRestBulkEndpoint(FooModel.class)).thenReturn(BULK_ENDPOINT);
+        when(mockMapper.mapModels(any(Collection.class))).thenAnswer(new Answer<RestfulModelMap>() {
+            @Override
+            public RestfulModelMap answer(InvocationOnMock invocation) {
+                sizes.add(((Collection<?>) invocation.getArguments()[0]).size());
+                return modelMap;
+            }
+        });
+        RestResponse response = response(201);
+        when(mockRestClient.executePost(eq(HOST + BULK_ENDPOINT), eq(entity), any(Map.class))).thenReturn(response);
+        int count = RestfulSession.MAX_BULK_SIZE * 2 + 50;
+        List<FooModel> models = new ArrayList<FooModel>();
+        for (int i = 0; i < count; i++)
+            models.add(new FooModel(i));
+
+        // Run
+        int actual = restfulSession.saveAll(models);
+
+        // Verify
+        assertEquals("Every entity should be saved", count, actual);
+        verify(mockRestClient, times(3)).executePost(eq(HOST + BULK_ENDPOINT), eq(entity), any(Map.class));
+        verify(mockRestClient, times(0)).executePost(eq(HOST + ENDPOINT), any(HttpEntity.class), any(Map.class));
+        Collections.sort(sizes);
+        assertEquals("Entities should be posted in groups of at most MAX_BULK_SIZE", 50, (int) sizes.get(0));
+        assertEquals("Entities should be posted in groups of at most MAX_BULK_SIZE", RestfulSession.MAX_BULK_SIZE,
+                (int) sizes.get(1));
+        assertEquals("Entities should be posted in groups of at most MAX_BULK_SIZE", RestfulSession.MAX_BULK_SIZE,
+                (int) sizes.get(2));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testSetBatchConcurrency_duringBatch() throws Exception {
+        // Setup
+        restfulSession.setBatchConcurrency(2);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch resized = new CountDownLatch(1);
+        RestfulModelMap modelMap = mock(RestfulModelMap.class);
+        when(mockMapper.mapModel(any())).thenReturn(modelMap);
+        final RestResponse response = response(201);
+        when(mockRestClient.executePost(any(String.class), any(HttpEntity.class), any(Map.class))).thenAnswer(
+                new Answer<RestResponse>() {
+                    @Override
+                    public RestResponse answer(InvocationOnMock invocation) throws InterruptedException {
+                        started.countDown();
+                        resized.await(5, TimeUnit.SECONDS);
+                        return response;
+                    }
+                });
+        final List<FooModel> models = new ArrayList<FooModel>();
+        for (int i = 0; i < 4; i++)
+            models.add(new FooModel(i));
+        final long[][] results = new long[1][];
+        Thread batch = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                results[0] = restfulSession.executeBatch(RestfulSession.BatchOperation.SAVE, models);
+            }
+        });
+
+        // Run
+        batch.start();
+        assertTrue("Batch should start", started.await(5, TimeUnit.SECONDS));
+        restfulSession.setBatchConcurrency(3);
+        long[] second = restfulSession.executeBatch(RestfulSession.BatchOperation.SAVE, models.subList(0, 2));
+        resized.countDown();
+        batch.join(5000);
+
+        // Verify
+        assertNotNull("Batch in flight should finish on its pool", results[0]);
+        for (long result : results[0])
+            assertEquals("Every entity of the batch in flight should be saved", 0, result);
+        assertEquals("Batch on the new pool should be saved", 2, second.length);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRequestEntity_conditionalHeaders() {
+        // Setup
+        RestfulEntityCache entityCache = new RestfulEntityCache();
+        restfulSession.mEntityCache = entityCache;
+        entityCache.put(HOST + ENDPOINT + "/7", ETAG, LAST_MODIFIED, "7".getBytes());
+        final List<Map<String, String>> headers = new ArrayList<Map<String, String>>();
+        final RestResponse response = response(304);
+        when(mockRestClient.executeGet(eq(HOST + ENDPOINT + "/7"), any(Map.class))).thenAnswer(
+                new Answer<RestResponse>() {
+                    @Override
+                    public RestResponse answer(InvocationOnMock invocation) {
+                        headers.add((Map<String, String>) invocation.getArguments()[1]);
+                        return response;
+                    }
+                });
+
+        // Run
+        restfulSession.requestEntity(FooModel.class, HOST + ENDPOINT + "/7", MEDIA_TYPE);
+
+        // Verify
+        assertEquals("Entity should be requested once", 1, headers.size());
+        assertEquals("Accept header should be sent", MEDIA_TYPE, headers.get(0).get("Accept"));
+        assertEquals("If-None-Match should carry the cached ETag", ETAG, headers.get(0).get("If-None-Match"));
+        assertEquals("If-Modified-Since should carry the cached Last-Modified", LAST_MODIFIED,
+                headers.get(0).get("If-Modified-Since"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRequestEntity_notModified() {
+        // Setup
+        RestfulEntityCache entityCache = new RestfulEntityCache();
+        restfulSession.mEntityCache = entityCache;
+        entityCache.put(HOST + ENDPOINT + "/7", ETAG, LAST_MODIFIED, "7".getBytes());
+        RestResponse response = response(304);
+        when(mockRestClient.executeGet(eq(HOST + ENDPOINT + "/7"), any(Map.class))).thenReturn(response);
+
+        // Run
+        FooModel actual = restfulSession.requestEntity(FooModel.class, HOST + ENDPOINT + "/7", MEDIA_TYPE);
+
+        // Verify
+        assertNotNull("Entity should be deserialized from the cached body", actual);
+        assertEquals("Entity should be deserialized from the cached body", 7, actual.mId);
+        verify(response, times(0)).getResponseData();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRequestEntity_okCached() {
+        // Setup
+        RestfulEntityCache entityCache = new RestfulEntityCache();
+        restfulSession.mEntityCache = entityCache;
+        final List<Map<String, String>> headers = new ArrayList<Map<String, String>>();
+        final RestResponse response = response(200);
+        when(response.getResponseData()).thenReturn("3".getBytes());
+        Map<String, String> responseHeaders = new HashMap<String, String>();
+        responseHeaders.put("ETag", ETAG);
+        responseHeaders.put("Last-Modified", LAST_MODIFIED);
+        when(response.getHeaders()).thenReturn(responseHeaders);
+        when(mockRestClient.executeGet(eq(HOST + ENDPOINT + "/3"), any(Map.class))).thenAnswer(
+                new Answer<RestResponse>() {
+                    @Override
+                    public RestResponse answer(InvocationOnMock invocation) {
+                        headers.add((Map<String, String>) invocation.getArguments()[1]);
+                        return response;
+                    }
+                });
+
+        // Run
+        FooModel actual = restfulSession.requestEntity(FooModel.class, HOST + ENDPOINT + "/3", MEDIA_TYPE);
+
+        // Verify
+        assertNotNull("Entity should be deserialized from the response", actual);
+        assertEquals("Entity should be deserialized from the response", 3, actual.mId);
+        assertFalse("If-None-Match should not be sent without a cached entry",
+                headers.get(0).containsKey("If-None-Match"));
+        assertFalse("If-Modified-Since should not be sent without a cached entry",
+                headers.get(0).containsKey("If-Modified-Since"));
+        RestfulEntityCache.Entry cached = entityCache.get(HOST + ENDPOINT + "/3");
+        assertNotNull("Response should be cached", cached);
+        assertEquals("Cached entry should carry the response ETag", ETAG, cached.getETag());
+        assertEquals("Cached entry should carry the response Last-Modified", LAST_MODIFIED, cached.getLastModified());
+        assertArrayEquals("Cached entry should carry the response body", "3".getBytes(), cached.getBody());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRequestEntity_errorNotCached() {
+        // Setup
+        RestResponse response = response(500);
+        when(mockRestClient.executeGet(eq(HOST + ENDPOINT + "/3"), any(Map.class))).thenReturn(response);
+
+        // Run
+        FooModel actual = restfulSession.requestEntity(FooModel.class, HOST + ENDPOINT + "/3", MEDIA_TYPE);
+
+        // Verify
+        assertNull("Entity should not be returned for an error response", actual);
+        verify(mockEntityCache, times(0)).put(any(String.class), any(String.class), any(String.class),
+                any(byte[].class));
+    }
+
+    private static RestResponse response(int status) {
+        RestResponse response = mock(RestResponse.class);
+        when(response.getStatusCode()).thenReturn(status);
+        return response;
+    }
+
+    private static class TestRestfulSession extends RestfulSession {
+
+        private final RestfulClient mClient;
+
+        TestRestfulSession(RestfulClient client) {
+            mClient = client;
+        }
+
+        @Override
+        protected RestfulClient createRestClient() {
+            return mClient;
+        }
+
+        @Override
+        protected <T> T loadEntity(Class<T> type, Serializable id) {
+            return requestEntity(type, mHost + ENDPOINT + "/" + id, MEDIA_TYPE);
+        }
+
+        @Override
+        public <T> Session registerDeserializer(Class<T> type, Deserializer<T> deserializer) {
+            return this;
+        }
+
+        @Override
+        protected <T> T deserializeEntity(Class<T> type, InputStream response) throws Exception {
+            return type.cast(new FooModel(Integer.parseInt(readString(response))));
+        }
+
+    }
+
+    private static class FooModel {
+
+        private int mId;
+
+        FooModel(int id) {
+            mId = id;
+        }
+
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.rest.impl;
+
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.apache.http.HttpEntity;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class RestfulStreamingModelMapTest {
+
+    private static final String MESSAGE = "{\"name\":\"J\u00f6rg\"}";
+
+    private RestfulStreamingModelMap modelMap;
+
+    @Before
+    public void setup() {
+        modelMap = new RestfulStreamingModelMap(new Object()) {
+            @Override
+            protected void writeMessage(Writer writer) throws IOException {
+                writer.write(MESSAGE);
+            }
+        };
+    }
+
+    @Test
+    public void testWriteTo() throws IOException {
+        // Setup
+        HttpEntity entity = modelMap.toHttpEntity();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Run
+        entity.writeTo(out);
+
+        // Verify
+        assertEquals("Message should be written to the stream", MESSAGE, out.toString("UTF-8"));
+        assertTrue("Entity should be chunked", entity.isChunked());
+        assertNull("Entity should not be compressed", entity.getContentEncoding());
+    }
+
+    @Test
+    public void testWriteTo_compressed() throws IOException {
+        // Setup
+        modelMap.setCompressed(true);
+        HttpEntity entity = modelMap.toHttpEntity();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Run
+        entity.writeTo(out);
+
+        // Verify
+        GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()));
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int read;
+        while ((read = in.read(buffer)) != -1)
+            decompressed.write(buffer, 0, read);
+        assertEquals("Message should be gzip-compressed", MESSAGE, decompressed.toString("UTF-8"));
+        assertEquals("Entity should declare its encoding", "gzip", entity.getContentEncoding().getValue());
+    }
+
+    @Test
+    public void testGetMessage() throws IOException {
+        // Setup
+        modelMap.setCompressed(true);
+
+        // Run
+        String actual = modelMap.getMessage();
+
+        // Verify
+        assertEquals("Message should be returned uncompressed", MESSAGE, actual);
+    }
+
+}
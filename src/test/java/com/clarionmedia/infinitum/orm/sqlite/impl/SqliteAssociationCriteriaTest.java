@@ -28,6 +28,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -36,6 +39,8 @@ import static org.mockito.Mockito.*;
 @RunWith(RobolectricTestRunner.class)
 public class SqliteAssociationCriteriaTest {
 
+    private static final List<Field> NO_FETCHES = Collections.emptyList();
+
     private SqlBuilder mockSqlBuilder;
     private SqliteSession mockSqliteSession;
     private InfinitumOrmContext mockInfinitumContext;
@@ -86,16 +91,17 @@ public class SqliteAssociationCriteriaTest {
     public void testList_noResults() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(parentCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createQuery(eq(parentCriteria), anyListOf(Object.class))).thenReturn(query);
+        when(mockSqliteSession.executeForResult(eq(query), any(String[].class))).thenReturn(mockCursor);
         when(mockCursor.getCount()).thenReturn(0);
 
         // Run
         List<Object> actual = sqliteAssociationCriteria.list();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
-        verify(mockCursor, times(2)).getCount();
+        verify(mockSqliteSession).executeForResult(eq(query), any(String[].class));
+        verify(mockCursor).getCount();
+        verify(mockSqliteModelFactory, never()).createAllFromCursor(mockCursor, entityClass, NO_FETCHES);
         verify(mockCursor).close();
         assertEquals("Returned list should be empty", 0, actual.size());
     }
@@ -104,23 +110,25 @@ public class SqliteAssociationCriteriaTest {
     public void testList_results() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(parentCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createQuery(eq(parentCriteria), anyListOf(Object.class))).thenReturn(query);
+        when(mockSqliteSession.executeForResult(eq(query), any(String[].class))).thenReturn(mockCursor);
         final int RESULT_COUNT = 3;
         when(mockCursor.getCount()).thenReturn(RESULT_COUNT);
-        when(mockCursor.moveToNext()).thenReturn(true).thenReturn(true).thenReturn(true).thenReturn(false);
-        when(mockSqliteModelFactory.createFromCursor(mockCursor, entityClass)).thenReturn(new Object());
+        List<Object> results = new ArrayList<Object>();
+        for (int i = 0; i < RESULT_COUNT; i++)
+            results.add(new Object());
+        when(mockSqliteModelFactory.createAllFromCursor(mockCursor, entityClass, NO_FETCHES)).thenReturn(results);
 
         // Run
         List<Object> actual = sqliteAssociationCriteria.list();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
-        verify(mockCursor, times(2)).getCount();
+        verify(mockSqliteSession).executeForResult(eq(query), any(String[].class));
+        verify(mockCursor).getCount();
         verify(mockCursor).close();
-        verify(mockCursor, times(4)).moveToNext();
-        verify(mockSqliteModelFactory, times(3)).createFromCursor(mockCursor, entityClass);
-        verify(mockSqliteSession, times(3)).cache(any(Integer.class), any(Object.class));
+        verify(mockSqliteModelFactory).createAllFromCursor(mockCursor, entityClass, NO_FETCHES);
+        verify(mockSqliteModelFactory, never()).createFromCursor(mockCursor, entityClass, NO_FETCHES, true);
+        verify(mockSqliteSession, times(3)).cache(any(Object.class));
         assertEquals("Returned list should be empty", RESULT_COUNT, actual.size());
     }
 
@@ -128,15 +136,15 @@ public class SqliteAssociationCriteriaTest {
     public void testUnique_noResult() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(parentCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createQuery(eq(parentCriteria), anyListOf(Object.class))).thenReturn(query);
+        when(mockSqliteSession.executeForResult(eq(query), any(String[].class))).thenReturn(mockCursor);
         when(mockCursor.getCount()).thenReturn(0);
 
         // Run
         Object actual = sqliteAssociationCriteria.unique();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
+        verify(mockSqliteSession).executeForResult(eq(query), any(String[].class));
         verify(mockCursor, times(2)).getCount();
         verify(mockCursor).close();
         assertNull("Returned result should be null", actual);
@@ -146,16 +154,16 @@ public class SqliteAssociationCriteriaTest {
     public void testUnique_result() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(parentCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createQuery(eq(parentCriteria), anyListOf(Object.class))).thenReturn(query);
+        when(mockSqliteSession.executeForResult(eq(query), any(String[].class))).thenReturn(mockCursor);
         when(mockCursor.getCount()).thenReturn(1);
-        when(mockSqliteModelFactory.createFromCursor(mockCursor, entityClass)).thenReturn(new Object());
+        when(mockSqliteModelFactory.createFromCursor(mockCursor, entityClass, NO_FETCHES, true)).thenReturn(new Object());
 
         // Run
         Object actual = sqliteAssociationCriteria.unique();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
+        verify(mockSqliteSession).executeForResult(eq(query), any(String[].class));
         verify(mockCursor, times(2)).getCount();
         verify(mockCursor).close();
         assertNotNull("Returned result should not be null", actual);
@@ -165,10 +173,10 @@ public class SqliteAssociationCriteriaTest {
     public void testUnique_noUnique() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(parentCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createQuery(eq(parentCriteria), anyListOf(Object.class))).thenReturn(query);
+        when(mockSqliteSession.executeForResult(eq(query), any(String[].class))).thenReturn(mockCursor);
         when(mockCursor.getCount()).thenReturn(3);
-        when(mockSqliteModelFactory.createFromCursor(mockCursor, entityClass)).thenReturn(new Object());
+        when(mockSqliteModelFactory.createFromCursor(mockCursor, entityClass, NO_FETCHES, true)).thenReturn(new Object());
 
         // Run
         sqliteAssociationCriteria.unique();
@@ -194,8 +202,8 @@ public class SqliteAssociationCriteriaTest {
     public void testCount() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createCountQuery(parentCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createCountQuery(eq(parentCriteria), anyListOf(Object.class))).thenReturn(query);
+        when(mockSqliteSession.executeForResult(eq(query), any(String[].class))).thenReturn(mockCursor);
         when(mockCursor.moveToFirst()).thenReturn(true);
         final long EXPECTED = 5;
         when(mockCursor.getLong(0)).thenReturn(EXPECTED);
@@ -204,8 +212,8 @@ public class SqliteAssociationCriteriaTest {
         long actual = sqliteAssociationCriteria.count();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
-        verify(mockSqlBuilder).createCountQuery(parentCriteria);
+        verify(mockSqliteSession).executeForResult(eq(query), any(String[].class));
+        verify(mockSqlBuilder).createCountQuery(eq(parentCriteria), anyListOf(Object.class));
         verify(mockCursor).moveToFirst();
         verify(mockCursor).getLong(0);
         verify(mockCursor).close();
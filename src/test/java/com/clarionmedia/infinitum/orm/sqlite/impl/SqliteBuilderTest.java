@@ -23,6 +23,10 @@ import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
 import com.clarionmedia.infinitum.orm.criteria.Order;
 import com.clarionmedia.infinitum.orm.criteria.criterion.Criterion;
+import com.clarionmedia.infinitum.orm.exception.InvalidCriteriaException;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata.ColumnMetadata;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata.RelationshipMetadata;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
 import com.clarionmedia.infinitum.orm.persistence.TypeResolutionPolicy.SqliteDataType;
 import com.clarionmedia.infinitum.orm.relationship.*;
@@ -419,6 +423,207 @@ public class SqliteBuilderTest {
         assertEquals("Returned SQL query should match expected value", expected, actual);
     }
 
+    @Test
+    public void testCreateQuery_seek_multipleOrderBy() {
+        // Setup
+        doReturn(Object.class).when(mockCriteria).getEntityClass();
+        List<Criterion> mockCriterionList = new ArrayList<Criterion>();
+        mockCriterionList.add(mockCriterionA);
+        when(mockCriteria.getCriterion()).thenReturn(mockCriterionList);
+        when(mockCriteria.getLimit()).thenReturn(10);
+        when(mockPersistencePolicy.getModelTableName(Object.class)).thenReturn(MODEL_TABLE_1);
+        List<Order> orderings = new ArrayList<Order>();
+        String property1 = "prop1";
+        String property2 = "prop2";
+        orderings.add(Order.desc(property1));
+        orderings.add(Order.asc(property2));
+        when(mockCriteria.getOrderings()).thenReturn(orderings);
+        when(mockCriteria.getSeekValues()).thenReturn(new Object[]{"it's", 42L});
+        Field field1 = ArrayList.class.getDeclaredFields()[0];
+        Field field2 = ArrayList.class.getDeclaredFields()[1];
+        doReturn(field1).when(mockPersistencePolicy).findPersistentField(Object.class, property1);
+        doReturn(field2).when(mockPersistencePolicy).findPersistentField(Object.class, property2);
+        String orderField1 = "foo";
+        String orderField2 = "bar";
+        when(mockPersistencePolicy.getFieldColumnName(field1)).thenReturn(orderField1);
+        when(mockPersistencePolicy.getFieldColumnName(field2)).thenReturn(orderField2);
+
+        // Run
+        String expected = "SELECT * FROM " + MODEL_TABLE_1 + " WHERE " + CRITERION_A_SQL + " AND ((" + orderField1
+                + " < 'it''s') OR (" + orderField1 + " = 'it''s' AND " + orderField2 + " > 42)) ORDER BY "
+                + orderField1 + " DESC, " + orderField2 + " ASC LIMIT 10";
+        String actual = sqliteBuilder.createQuery(mockCriteria);
+
+        // Verify
+        verify(mockCriteria).getSeekValues();
+        assertEquals("Returned SQL query should match expected value", expected, actual);
+    }
+
+    @Test
+    public void testCreateQuery_boundArgs_seek_multipleOrderBy() {
+        // Setup
+        doReturn(Object.class).when(mockCriteria).getEntityClass();
+        List<Criterion> mockCriterionList = new ArrayList<Criterion>();
+        mockCriterionList.add(mockCriterionA);
+        when(mockCriteria.getCriterion()).thenReturn(mockCriterionList);
+        when(mockPersistencePolicy.getModelTableName(Object.class)).thenReturn(MODEL_TABLE_1);
+        List<Order> orderings = new ArrayList<Order>();
+        String property1 = "prop1";
+        String property2 = "prop2";
+        orderings.add(Order.desc(property1));
+        orderings.add(Order.asc(property2));
+        when(mockCriteria.getOrderings()).thenReturn(orderings);
+        when(mockCriteria.getSeekValues()).thenReturn(new Object[]{"it's", 42L});
+        Field field1 = ArrayList.class.getDeclaredFields()[0];
+        Field field2 = ArrayList.class.getDeclaredFields()[1];
+        doReturn(field1).when(mockPersistencePolicy).findPersistentField(Object.class, property1);
+        doReturn(field2).when(mockPersistencePolicy).findPersistentField(Object.class, property2);
+        String orderField1 = "foo";
+        String orderField2 = "bar";
+        when(mockPersistencePolicy.getFieldColumnName(field1)).thenReturn(orderField1);
+        when(mockPersistencePolicy.getFieldColumnName(field2)).thenReturn(orderField2);
+        List<Object> args = new ArrayList<Object>();
+        String criterionSql = "baz = ?";
+        when(mockCriterionA.toSql(mockCriteria, args)).thenReturn(criterionSql);
+
+        // Run
+        String expected = "SELECT * FROM " + MODEL_TABLE_1 + " WHERE " + criterionSql + " AND ((" + orderField1
+                + " < ?) OR (" + orderField1 + " = ? AND " + orderField2 + " > ?)) ORDER BY " + orderField1
+                + " DESC, " + orderField2 + " ASC";
+        String actual = sqliteBuilder.createQuery(mockCriteria, args);
+
+        // Verify
+        verify(mockCriterionA).toSql(mockCriteria, args);
+        verify(mockCriterionA, never()).toSql(mockCriteria);
+        assertEquals("Returned SQL query should match expected value", expected, actual);
+        assertEquals("Seek values should be bound in placeholder order", Arrays.<Object>asList("it's", "it's", 42L),
+                args);
+    }
+
+    @Test
+    public void testCreateQuery_boundArgs_cacheHit() {
+        // Setup
+        doReturn(Object.class).when(mockCriteria).getEntityClass();
+        List<Criterion> mockCriterionList = new ArrayList<Criterion>();
+        mockCriterionList.add(mockCriterionA);
+        when(mockCriteria.getCriterion()).thenReturn(mockCriterionList);
+        when(mockPersistencePolicy.getModelTableName(Object.class)).thenReturn(MODEL_TABLE_1);
+        List<Object> firstArgs = new ArrayList<Object>();
+        List<Object> secondArgs = new ArrayList<Object>();
+        when(mockCriterionA.toSql(mockCriteria, firstArgs)).thenReturn(CRITERION_A_SQL);
+
+        // Run
+        String expected = "SELECT * FROM " + MODEL_TABLE_1 + " WHERE " + CRITERION_A_SQL;
+        String first = sqliteBuilder.createQuery(mockCriteria, firstArgs);
+        String second = sqliteBuilder.createQuery(mockCriteria, secondArgs);
+
+        // Verify
+        verify(mockCriterionA).toSql(mockCriteria, firstArgs);
+        verify(mockCriterionA).collectArgs(mockCriteria, secondArgs);
+        verify(mockPersistencePolicy).getModelTableName(Object.class);
+        assertEquals("Returned SQL query should match expected value", expected, first);
+        assertEquals("Cached SQL query should match expected value", expected, second);
+        assertEquals("There should be 1 cache miss", 1, sqliteBuilder.getQueryCacheMissCount());
+        assertEquals("There should be 1 cache hit", 1, sqliteBuilder.getQueryCacheHitCount());
+    }
+
+    @Test
+    public void testCreateQuery_boundArgs_cacheMiss_differentShape() {
+        // Setup
+        doReturn(Object.class).when(mockCriteria).getEntityClass();
+        when(mockCriteria.getCriterion()).thenReturn(new ArrayList<Criterion>());
+        when(mockPersistencePolicy.getModelTableName(Object.class)).thenReturn(MODEL_TABLE_1);
+        when(mockCriteria.getLimit()).thenReturn(10, 10, 20, 20);
+
+        // Run
+        String first = sqliteBuilder.createQuery(mockCriteria, new ArrayList<Object>());
+        String second = sqliteBuilder.createQuery(mockCriteria, new ArrayList<Object>());
+
+        // Verify
+        assertEquals("Returned SQL query should match expected value", "SELECT * FROM " + MODEL_TABLE_1 +
+                " LIMIT 10", first);
+        assertEquals("Returned SQL query should match expected value", "SELECT * FROM " + MODEL_TABLE_1 +
+                " LIMIT 20", second);
+        assertEquals("There should be 2 cache misses", 2, sqliteBuilder.getQueryCacheMissCount());
+        assertEquals("There should be no cache hits", 0, sqliteBuilder.getQueryCacheHitCount());
+    }
+
+    @Test
+    public void testCreateQuery_fetchManyToOne() {
+        // Setup
+        doReturn(Object.class).when(mockCriteria).getEntityClass();
+        List<Criterion> mockCriterionList = new ArrayList<Criterion>();
+        mockCriterionList.add(mockCriterionA);
+        when(mockCriteria.getCriterion()).thenReturn(mockCriterionList);
+        when(mockPersistencePolicy.getModelTableName(Object.class)).thenReturn(MODEL_TABLE_1);
+        Field fetchField = ArrayList.class.getDeclaredFields()[0];
+        Field pkField = ArrayList.class.getDeclaredFields()[1];
+        Field nameField = ArrayList.class.getDeclaredFields()[2];
+        when(mockCriteria.getFetches()).thenReturn(Arrays.asList(fetchField));
+        when(mockPersistencePolicy.getRelationship(fetchField)).thenReturn(mockMtoRelationship);
+        when(mockMtoRelationship.getRelationType()).thenReturn(ModelRelationship.RelationType.ManyToOne);
+        when(mockMtoRelationship.getColumn()).thenReturn("related_id");
+        doReturn(Object.class).when(mockMtoRelationship).getFirstType();
+        doReturn(Long.class).when(mockMtoRelationship).getSecondType();
+        List<ColumnMetadata> columns = new ArrayList<ColumnMetadata>();
+        columns.add(new ColumnMetadata(pkField, "id", true, true, false, false));
+        columns.add(new ColumnMetadata(nameField, "name", false, false, true, false));
+        EntityMetadata metadata = new EntityMetadata(Long.class, MODEL_TABLE_2, pkField, Arrays.asList(pkField,
+                nameField), columns, new ArrayList<RelationshipMetadata>(), PersistencePolicy.Cascade.ALL, false);
+        when(mockPersistencePolicy.getEntityMetadata(Long.class)).thenReturn(metadata);
+        when(mockPersistencePolicy.getFieldColumnName(pkField)).thenReturn("id");
+
+        // Run
+        String expected = "SELECT root.*, f0.id AS f0__id, f0.name AS f0__name FROM (SELECT * FROM " + MODEL_TABLE_1
+                + " WHERE " + CRITERION_A_SQL + ") root LEFT JOIN " + MODEL_TABLE_2 + " f0 ON f0.id = root" +
+                ".related_id";
+        String actual = sqliteBuilder.createQuery(mockCriteria);
+
+        // Verify
+        verify(mockPersistencePolicy).getEntityMetadata(Long.class);
+        assertEquals("Returned SQL query should match expected value", expected, actual);
+    }
+
+    @Test(expected = InvalidCriteriaException.class)
+    public void testCreateQuery_fetchOneToMany() {
+        // Setup
+        doReturn(Object.class).when(mockCriteria).getEntityClass();
+        when(mockPersistencePolicy.getModelTableName(Object.class)).thenReturn(MODEL_TABLE_1);
+        Field fetchField = ArrayList.class.getDeclaredFields()[0];
+        when(mockCriteria.getFetches()).thenReturn(Arrays.asList(fetchField));
+        when(mockPersistencePolicy.getRelationship(fetchField)).thenReturn(mockOtmRelationship);
+        when(mockOtmRelationship.getRelationType()).thenReturn(ModelRelationship.RelationType.OneToMany);
+        doReturn(Object.class).when(mockOtmRelationship).getFirstType();
+        doReturn(Long.class).when(mockOtmRelationship).getSecondType();
+        when(mockPersistencePolicy.getEntityMetadata(Long.class)).thenReturn(new EntityMetadata(Long.class,
+                MODEL_TABLE_2, null, new ArrayList<Field>(), new ArrayList<ColumnMetadata>(),
+                new ArrayList<RelationshipMetadata>(), PersistencePolicy.Cascade.ALL, false));
+
+        // Run
+        sqliteBuilder.createQuery(mockCriteria);
+
+        // Verify
+        assertTrue("Exception should have been thrown", false);
+    }
+
+    @Test(expected = InvalidCriteriaException.class)
+    public void testCreateQuery_seek_valueCountMismatch() {
+        // Setup
+        doReturn(Object.class).when(mockCriteria).getEntityClass();
+        when(mockCriteria.getCriterion()).thenReturn(new ArrayList<Criterion>());
+        when(mockPersistencePolicy.getModelTableName(Object.class)).thenReturn(MODEL_TABLE_1);
+        List<Order> orderings = new ArrayList<Order>();
+        orderings.add(Order.asc("prop1"));
+        when(mockCriteria.getOrderings()).thenReturn(orderings);
+        when(mockCriteria.getSeekValues()).thenReturn(new Object[]{1L, 2L});
+
+        // Run
+        sqliteBuilder.createQuery(mockCriteria);
+
+        // Verify
+        assertTrue("Exception should have been thrown", false);
+    }
+
     @Test
     public void testCreateQuery_multipleCriterion_noLimitOrOffset_noOrderBy() {
         // Setup
@@ -762,6 +967,33 @@ public class SqliteBuilderTest {
         assertEquals("Returned SQL query should match expected value", expected, actual);
     }
 
+    @Test
+    public void testCreateManyToManyBatchJoinQuery_firstType_success() {
+        // Setup
+        ManyToManyRelationship mockRelationship = mock(ManyToManyRelationship.class);
+        doReturn(Integer.class).when(mockRelationship).getFirstType();
+        doReturn(Long.class).when(mockRelationship).getSecondType();
+        Field field = ArrayList.class.getDeclaredFields()[0];
+        when(mockRelationship.getFirstField()).thenReturn(field);
+        when(mockRelationship.getSecondField()).thenReturn(field);
+        when(mockRelationship.contains(Integer.class)).thenReturn(true);
+        when(mockRelationship.getTableName()).thenReturn(MTM_TABLE);
+        final String COL_NAME = "col";
+        when(mockPersistencePolicy.getFieldColumnName(field)).thenReturn(COL_NAME);
+        when(mockPersistencePolicy.getModelTableName(Integer.class)).thenReturn(MODEL_TABLE_1);
+        when(mockPersistencePolicy.getModelTableName(Long.class)).thenReturn(MODEL_TABLE_2);
+
+        // Run
+        String expected = "SELECT x.*, y.col AS infinitum_batch_key FROM table1 x, table2 y, join_table z WHERE z" +
+                ".table1_col_1 = x.col AND z.table2_col_2 = y.col AND y.col IN (?, ?, ?)";
+        String actual = sqliteBuilder.createManyToManyBatchJoinQuery(mockRelationship, 3, Integer.class);
+
+        // Verify
+        verify(mockRelationship).contains(Integer.class);
+        verify(mockSqliteMapper, never()).getSqliteDataType(any(Object.class));
+        assertEquals("Returned SQL query should match expected value", expected, actual);
+    }
+
     @Test
     public void testCreateManyToManyJoinQuery_secondType_success() {
         // Setup
@@ -1175,6 +1407,40 @@ public class SqliteBuilderTest {
         assertEquals("Returned SQL query should match expected value", expected, actual);
     }
 
+    @Test
+    public void testCreateInsertStatement() {
+        // Setup
+        Field first = ArrayList.class.getDeclaredFields()[0];
+        Field second = ArrayList.class.getDeclaredFields()[1];
+        when(mockPersistencePolicy.getModelTableName(Object.class)).thenReturn(MODEL_TABLE_1);
+        when(mockPersistencePolicy.getFieldColumnName(first)).thenReturn("col_a");
+        when(mockPersistencePolicy.getFieldColumnName(second)).thenReturn("col_b");
+
+        // Run
+        String expected = "INSERT INTO " + MODEL_TABLE_1 + " (col_a, col_b) VALUES (?, ?)";
+        String actual = sqliteBuilder.createInsertStatement(Object.class, Arrays.asList(first, second));
+
+        // Verify
+        verify(mockPersistencePolicy).getModelTableName(Object.class);
+        verify(mockPersistencePolicy).getFieldColumnName(first);
+        verify(mockPersistencePolicy).getFieldColumnName(second);
+        assertEquals("Returned SQL statement should match expected value", expected, actual);
+    }
+
+    @Test
+    public void testCreateInsertStatement_noColumns() {
+        // Setup
+        when(mockPersistencePolicy.getModelTableName(Object.class)).thenReturn(MODEL_TABLE_1);
+
+        // Run
+        String expected = "INSERT INTO " + MODEL_TABLE_1 + " DEFAULT VALUES";
+        String actual = sqliteBuilder.createInsertStatement(Object.class, new ArrayList<Field>());
+
+        // Verify
+        verify(mockPersistencePolicy).getModelTableName(Object.class);
+        assertEquals("Returned SQL statement should match expected value", expected, actual);
+    }
+
     @Test
     public void testGetAssociationCriteriaDiscriminator_oneToOne_associatedOwner() throws NoSuchFieldException {
         // Setup
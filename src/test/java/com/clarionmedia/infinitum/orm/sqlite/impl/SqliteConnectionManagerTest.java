@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import android.database.sqlite.SQLiteDatabase;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+public class SqliteConnectionManagerTest {
+
+    @Mock
+    private SqliteDbHelper mockDbHelper;
+
+    @Mock
+    private SQLiteDatabase mockSqliteDb;
+
+    @Mock
+    private SQLiteDatabase mockReader1;
+
+    @Mock
+    private SQLiteDatabase mockReader2;
+
+    // The thread holding a transaction on the writer, which is all SQLiteDatabase.inTransaction reports on
+    private AtomicReference<Thread> transactionOwner;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        transactionOwner = new AtomicReference<Thread>();
+        when(mockDbHelper.getWritableDatabase()).thenReturn(mockSqliteDb);
+        when(mockSqliteDb.getPath()).thenReturn("/data/infinitum.db");
+        when(mockSqliteDb.inTransaction()).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                return transactionOwner.get() == Thread.currentThread();
+            }
+        });
+    }
+
+    @Test
+    public void testOpen_writeAheadLoggingDisabled() {
+        // Setup
+        SqliteConnectionManager connections = new SqliteConnectionManager(mockDbHelper, false, 2);
+
+        // Run
+        SQLiteDatabase writer = connections.open();
+
+        // Verify
+        verify(mockDbHelper).getWritableDatabase();
+        assertSame("Writer should be the helper's writable database", mockSqliteDb, writer);
+        assertFalse("Read-only connections should not be opened without write-ahead logging", connections.isPooled());
+        assertSame("Reads should use the writer", mockSqliteDb, connections.getReader());
+    }
+
+    @Test
+    public void testOpen_isIdempotent() {
+        // Setup
+        SqliteConnectionManager connections = new SqliteConnectionManager(mockDbHelper, false, 2);
+
+        // Run
+        connections.open();
+        connections.open();
+
+        // Verify
+        verify(mockDbHelper).getWritableDatabase();
+    }
+
+    @Test
+    public void testClose() {
+        // Setup
+        SqliteConnectionManager connections = new SqliteConnectionManager(mockDbHelper, false, 2);
+        connections.open();
+
+        // Run
+        connections.close();
+
+        // Verify
+        verify(mockDbHelper).close();
+        assertNull("Writer should be released", connections.getWriter());
+    }
+
+    @Test
+    public void testOpen_writeAheadLoggingEnabled() {
+        // Setup
+        SqliteConnectionManager connections = new PooledConnectionManager();
+
+        // Run
+        SQLiteDatabase writer = connections.open();
+
+        // Verify
+        assertSame("Writer should be the helper's writable database", mockSqliteDb, writer);
+        assertTrue("Read-only connections should be opened with write-ahead logging", connections.isPooled());
+    }
+
+    @Test
+    public void testGetReader_roundRobin() {
+        // Setup
+        SqliteConnectionManager connections = new PooledConnectionManager();
+        connections.open();
+
+        // Run
+        SQLiteDatabase first = connections.getReader();
+        SQLiteDatabase second = connections.getReader();
+        SQLiteDatabase third = connections.getReader();
+
+        // Verify
+        assertSame("First read should use the first reader", mockReader1, first);
+        assertSame("Second read should use the second reader", mockReader2, second);
+        assertSame("Third read should wrap around to the first reader", mockReader1, third);
+    }
+
+    @Test
+    public void testGetReader_inTransaction() {
+        // Setup
+        SqliteConnectionManager connections = new PooledConnectionManager();
+        connections.open();
+        transactionOwner.set(Thread.currentThread());
+
+        // Run
+        SQLiteDatabase reader = connections.getReader();
+
+        // Verify
+        assertSame("Reads in a transaction should use the writer", mockSqliteDb, reader);
+    }
+
+    @Test
+    public void testGetReader_otherThreadDuringTransaction() throws InterruptedException {
+        // Setup
+        final SqliteConnectionManager connections = new PooledConnectionManager();
+        connections.open();
+        transactionOwner.set(Thread.currentThread());
+        final AtomicReference<SQLiteDatabase> otherReader = new AtomicReference<SQLiteDatabase>();
+        final CountDownLatch read = new CountDownLatch(1);
+        Thread other = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                SQLiteDatabase reader = connections.getReader();
+                reader.rawQuery("SELECT * FROM foo", null);
+                otherReader.set(reader);
+                read.countDown();
+            }
+        });
+
+        // Run
+        other.start();
+        boolean completed = read.await(5, TimeUnit.SECONDS);
+
+        // Verify
+        assertTrue("Read on another thread should complete while the transaction is open", completed);
+        assertNotNull("Transaction should still be open", transactionOwner.get());
+        assertSame("Read on another thread should use a reader", mockReader1, otherReader.get());
+        verify(mockReader1).rawQuery("SELECT * FROM foo", null);
+        assertSame("Reads in the transaction should still use the writer", mockSqliteDb, connections.getReader());
+    }
+
+    private class PooledConnectionManager extends SqliteConnectionManager {
+
+        private final SQLiteDatabase[] mReaders = { mockReader1, mockReader2 };
+        private int mOpened;
+
+        PooledConnectionManager() {
+            super(mockDbHelper, true, 2);
+        }
+
+        @Override
+        protected boolean enableWriteAheadLogging(SQLiteDatabase db) {
+            return true;
+        }
+
+        @Override
+        protected SQLiteDatabase openReader(String path) {
+            return mReaders[mOpened++];
+        }
+
+    }
+
+}
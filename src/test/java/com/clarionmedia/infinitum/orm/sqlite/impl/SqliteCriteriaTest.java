@@ -20,14 +20,25 @@ import android.database.Cursor;
 import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext.SessionType;
+import com.clarionmedia.infinitum.orm.criteria.CriteriaIterator;
+import com.clarionmedia.infinitum.orm.criteria.Order;
+import com.clarionmedia.infinitum.orm.exception.InvalidCriteriaException;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
+import com.clarionmedia.infinitum.orm.persistence.QueryCache;
 import com.clarionmedia.infinitum.orm.sql.SqlBuilder;
 import com.xtremelabs.robolectric.RobolectricTestRunner;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
@@ -36,6 +47,8 @@ import static org.mockito.Mockito.*;
 @RunWith(RobolectricTestRunner.class)
 public class SqliteCriteriaTest {
 
+    private static final List<Field> NO_FETCHES = Collections.emptyList();
+
     private SqlBuilder mockSqlBuilder;
     private SqliteSession mockSqliteSession;
     private InfinitumOrmContext mockInfinitumContext;
@@ -81,16 +94,17 @@ public class SqliteCriteriaTest {
     public void testList_noResults() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(sqliteCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createQuery(eq(sqliteCriteria), anyListOf(Object.class))).thenReturn(query);
+        when(mockSqliteSession.executeForResult(eq(query), any(String[].class))).thenReturn(mockCursor);
         when(mockCursor.getCount()).thenReturn(0);
 
         // Run
         List<Object> actual = sqliteCriteria.list();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
-        verify(mockCursor, times(2)).getCount();
+        verify(mockSqliteSession).executeForResult(eq(query), any(String[].class));
+        verify(mockCursor).getCount();
+        verify(mockSqliteModelFactory, never()).createAllFromCursor(mockCursor, entityClass, NO_FETCHES);
         verify(mockCursor).close();
         assertEquals("Returned list should be empty", 0, actual.size());
     }
@@ -99,39 +113,222 @@ public class SqliteCriteriaTest {
     public void testList_results() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(sqliteCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createQuery(eq(sqliteCriteria), anyListOf(Object.class))).thenReturn(query);
+        when(mockSqliteSession.executeForResult(eq(query), any(String[].class))).thenReturn(mockCursor);
         final int RESULT_COUNT = 3;
         when(mockCursor.getCount()).thenReturn(RESULT_COUNT);
-        when(mockCursor.moveToNext()).thenReturn(true).thenReturn(true).thenReturn(true).thenReturn(false);
-        when(mockSqliteModelFactory.createFromCursor(mockCursor, entityClass)).thenReturn(new Object());
+        List<Object> results = new ArrayList<Object>();
+        for (int i = 0; i < RESULT_COUNT; i++)
+            results.add(new Object());
+        when(mockSqliteModelFactory.createAllFromCursor(mockCursor, entityClass, NO_FETCHES)).thenReturn(results);
 
         // Run
         List<Object> actual = sqliteCriteria.list();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
-        verify(mockCursor, times(2)).getCount();
+        verify(mockSqliteSession).executeForResult(eq(query), any(String[].class));
+        verify(mockCursor).getCount();
         verify(mockCursor).close();
-        verify(mockCursor, times(4)).moveToNext();
-        verify(mockSqliteModelFactory, times(3)).createFromCursor(mockCursor, entityClass);
-        verify(mockSqliteSession, times(3)).cache(any(Integer.class), any(Object.class));
+        verify(mockSqliteModelFactory).createAllFromCursor(mockCursor, entityClass, NO_FETCHES);
+        verify(mockSqliteModelFactory, never()).createFromCursor(mockCursor, entityClass, NO_FETCHES, true);
+        verify(mockSqliteSession, times(3)).cache(any(Object.class));
         assertEquals("Returned list should be empty", RESULT_COUNT, actual.size());
     }
 
+    @Test
+    public void testList_cacheable() {
+        // Setup
+        String query = "SQL criteria query";
+        QueryCache queryCache = new QueryCache();
+        when(mockSqliteSession.getQueryCache()).thenReturn(queryCache);
+        when(mockSqlBuilder.createQuery(eq(sqliteCriteria), anyListOf(Object.class))).thenReturn(query);
+        when(mockSqliteSession.executeForResult(eq(query), any(String[].class))).thenReturn(mockCursor);
+        List<Object> results = new ArrayList<Object>();
+        for (long i = 0; i < 3; i++) {
+            Object entity = new Object();
+            when(mockPersistencePolicy.getPrimaryKey(entity)).thenReturn(i);
+            results.add(entity);
+        }
+        when(mockSqliteModelFactory.createAllFromCursor(mockCursor, entityClass, NO_FETCHES)).thenReturn(results);
+        when(mockSqliteModelFactory.loadAll(eq(entityClass), anyListOf(Serializable.class))).thenReturn(results);
+        sqliteCriteria.cacheable();
+
+        // Run
+        List<Object> first = sqliteCriteria.list();
+        List<Object> second = sqliteCriteria.list();
+
+        // Verify
+        verify(mockSqliteSession).executeForResult(eq(query), any(String[].class));
+        verify(mockCursor).close();
+        verify(mockSqliteModelFactory).createAllFromCursor(mockCursor, entityClass, NO_FETCHES);
+        verify(mockSqliteModelFactory).loadAll(entityClass, Arrays.<Serializable>asList(0L, 1L, 2L));
+        assertEquals("Query result should be cached", 1, queryCache.size());
+        assertEquals("First result should contain every entity", results, first);
+        assertEquals("Cached result should contain every entity", results, second);
+    }
+
+    @Test
+    public void testList_cacheableInvalidated() {
+        // Setup
+        String query = "SQL criteria query";
+        QueryCache queryCache = new QueryCache();
+        when(mockSqliteSession.getQueryCache()).thenReturn(queryCache);
+        when(mockSqlBuilder.createQuery(eq(sqliteCriteria), anyListOf(Object.class))).thenReturn(query);
+        when(mockSqliteSession.executeForResult(eq(query), any(String[].class))).thenReturn(mockCursor);
+        when(mockSqliteModelFactory.createAllFromCursor(mockCursor, entityClass, NO_FETCHES)).thenReturn(
+                new ArrayList<Object>());
+        sqliteCriteria.cacheable();
+        sqliteCriteria.list();
+
+        // Run
+        queryCache.invalidate(entityClass);
+        sqliteCriteria.list();
+
+        // Verify
+        verify(mockSqliteSession, times(2)).executeForResult(eq(query), any(String[].class));
+        verify(mockSqliteModelFactory, never()).loadAll(eq(entityClass), anyListOf(Serializable.class));
+    }
+
+    @Test
+    public void testIterate_results() {
+        // Setup
+        String query = "SQL criteria query";
+        when(mockSqlBuilder.createQuery(eq(sqliteCriteria), anyListOf(Object.class))).thenReturn(query);
+        when(mockSqliteSession.executeForResult(eq(query), any(String[].class))).thenReturn(mockCursor);
+        when(mockCursor.moveToNext()).thenReturn(true).thenReturn(true).thenReturn(false);
+        when(mockSqliteModelFactory.createFromCursor(mockCursor, entityClass, NO_FETCHES, true)).thenReturn(new Object());
+
+        // Run
+        CriteriaIterator<Object> iterator = sqliteCriteria.iterate();
+        int count = 0;
+        while (iterator.hasNext()) {
+            assertNotNull("Iterated entity should not be null", iterator.next());
+            count++;
+        }
+
+        // Verify
+        verify(mockSqliteSession).executeForResult(eq(query), any(String[].class));
+        verify(mockCursor, never()).getCount();
+        verify(mockCursor, times(3)).moveToNext();
+        verify(mockCursor).close();
+        verify(mockSqliteModelFactory, times(2)).createFromCursor(mockCursor, entityClass, NO_FETCHES, true);
+        assertEquals("Iterator should return 2 entities", 2, count);
+        assertFalse("Iterator should be exhausted", iterator.hasNext());
+    }
+
+    @Test
+    public void testIterate_noCache() {
+        // Setup
+        String query = "SQL criteria query";
+        when(mockSqlBuilder.createQuery(eq(sqliteCriteria), anyListOf(Object.class))).thenReturn(query);
+        when(mockSqliteSession.executeForResult(eq(query), any(String[].class))).thenReturn(mockCursor);
+        when(mockCursor.moveToNext()).thenReturn(true).thenReturn(false);
+        when(mockSqliteModelFactory.createFromCursor(mockCursor, entityClass, NO_FETCHES, false)).thenReturn(new Object());
+
+        // Run
+        CriteriaIterator<Object> iterator = sqliteCriteria.iterate(false);
+        Object actual = iterator.next();
+
+        // Verify
+        verify(mockSqliteModelFactory).createFromCursor(mockCursor, entityClass, NO_FETCHES, false);
+        verify(mockSqliteSession, never()).cache(any(Object.class));
+        assertNotNull("Iterated entity should not be null", actual);
+    }
+
+    @Test
+    public void testIterate_close() {
+        // Setup
+        String query = "SQL criteria query";
+        when(mockSqlBuilder.createQuery(eq(sqliteCriteria), anyListOf(Object.class))).thenReturn(query);
+        when(mockSqliteSession.executeForResult(eq(query), any(String[].class))).thenReturn(mockCursor);
+        when(mockCursor.moveToNext()).thenReturn(true);
+
+        // Run
+        CriteriaIterator<Object> iterator = sqliteCriteria.iterate();
+        assertTrue("Iterator should have a result", iterator.hasNext());
+        iterator.close();
+        iterator.close();
+
+        // Verify
+        verify(mockCursor).close();
+        verify(mockSqliteModelFactory, never()).createFromCursor(mockCursor, entityClass, NO_FETCHES, true);
+        assertFalse("Closed iterator should not have results", iterator.hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testIterate_exhausted() {
+        // Setup
+        String query = "SQL criteria query";
+        when(mockSqlBuilder.createQuery(eq(sqliteCriteria), anyListOf(Object.class))).thenReturn(query);
+        when(mockSqliteSession.executeForResult(eq(query), any(String[].class))).thenReturn(mockCursor);
+        when(mockCursor.moveToNext()).thenReturn(false);
+
+        // Run
+        sqliteCriteria.iterate().next();
+
+        // Verify
+        assertTrue("Exception should have been thrown", false);
+    }
+
+    @Test
+    public void testSeekAfter() throws Exception {
+        // Setup
+        Field field = ArrayList.class.getDeclaredField("size");
+        Date value = new Date(5);
+        sqliteCriteria.orderBy(Order.asc("size"));
+        doReturn(field).when(mockPersistencePolicy).findPersistentField(entityClass, "size");
+        when(mockSqliteSession.getSqliteMapper()).thenReturn(mockSqliteMapper);
+        when(mockSqliteMapper.toColumnValue(field, value)).thenReturn(5L);
+
+        // Run
+        Object[] actual = sqliteCriteria.seekAfter(value).getSeekValues();
+
+        // Verify
+        verify(mockSqliteMapper).toColumnValue(field, value);
+        assertArrayEquals("Seek values should be mapped to column values", new Object[]{5L}, actual);
+    }
+
+    @Test
+    public void testResumeFrom() {
+        // Run
+        Object[] actual = sqliteCriteria.resumeFrom("sit%27s+here,l42,d1.5,n").getSeekValues();
+
+        // Verify
+        assertArrayEquals("Seek values should be decoded from the token", new Object[]{"it's here", 42L, 1.5, null},
+                actual);
+    }
+
+    @Test(expected = InvalidCriteriaException.class)
+    public void testResumeFrom_invalidToken() {
+        // Run
+        sqliteCriteria.resumeFrom("x42");
+
+        // Verify
+        assertTrue("Exception should have been thrown", false);
+    }
+
+    @Test
+    public void testGetSeekValues_notSeeking() {
+        // Run
+        Object[] actual = sqliteCriteria.getSeekValues();
+
+        // Verify
+        assertNull("Seek values should be null", actual);
+    }
+
     @Test
     public void testUnique_noResult() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(sqliteCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createQuery(eq(sqliteCriteria), anyListOf(Object.class))).thenReturn(query);
+        when(mockSqliteSession.executeForResult(eq(query), any(String[].class))).thenReturn(mockCursor);
         when(mockCursor.getCount()).thenReturn(0);
 
         // Run
         Object actual = sqliteCriteria.unique();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
+        verify(mockSqliteSession).executeForResult(eq(query), any(String[].class));
         verify(mockCursor, times(2)).getCount();
         verify(mockCursor).close();
         assertNull("Returned result should be null", actual);
@@ -141,16 +338,16 @@ public class SqliteCriteriaTest {
     public void testUnique_result() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(sqliteCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createQuery(eq(sqliteCriteria), anyListOf(Object.class))).thenReturn(query);
+        when(mockSqliteSession.executeForResult(eq(query), any(String[].class))).thenReturn(mockCursor);
         when(mockCursor.getCount()).thenReturn(1);
-        when(mockSqliteModelFactory.createFromCursor(mockCursor, entityClass)).thenReturn(new Object());
+        when(mockSqliteModelFactory.createFromCursor(mockCursor, entityClass, NO_FETCHES, true)).thenReturn(new Object());
 
         // Run
         Object actual = sqliteCriteria.unique();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
+        verify(mockSqliteSession).executeForResult(eq(query), any(String[].class));
         verify(mockCursor, times(2)).getCount();
         verify(mockCursor).close();
         assertNotNull("Returned result should not be null", actual);
@@ -160,10 +357,10 @@ public class SqliteCriteriaTest {
     public void testUnique_noUnique() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createQuery(sqliteCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createQuery(eq(sqliteCriteria), anyListOf(Object.class))).thenReturn(query);
+        when(mockSqliteSession.executeForResult(eq(query), any(String[].class))).thenReturn(mockCursor);
         when(mockCursor.getCount()).thenReturn(3);
-        when(mockSqliteModelFactory.createFromCursor(mockCursor, entityClass)).thenReturn(new Object());
+        when(mockSqliteModelFactory.createFromCursor(mockCursor, entityClass, NO_FETCHES, true)).thenReturn(new Object());
 
         // Run
         sqliteCriteria.unique();
@@ -189,8 +386,8 @@ public class SqliteCriteriaTest {
     public void testCount() {
         // Setup
         String query = "SQL criteria query";
-        when(mockSqlBuilder.createCountQuery(sqliteCriteria)).thenReturn(query);
-        when(mockSqliteSession.executeForResult(query)).thenReturn(mockCursor);
+        when(mockSqlBuilder.createCountQuery(eq(sqliteCriteria), anyListOf(Object.class))).thenReturn(query);
+        when(mockSqliteSession.executeForResult(eq(query), any(String[].class))).thenReturn(mockCursor);
         when(mockCursor.moveToFirst()).thenReturn(true);
         final long EXPECTED = 5;
         when(mockCursor.getLong(0)).thenReturn(EXPECTED);
@@ -199,8 +396,8 @@ public class SqliteCriteriaTest {
         long actual = sqliteCriteria.count();
 
         // Verify
-        verify(mockSqliteSession).executeForResult(query);
-        verify(mockSqlBuilder).createCountQuery(sqliteCriteria);
+        verify(mockSqliteSession).executeForResult(eq(query), any(String[].class));
+        verify(mockSqlBuilder).createCountQuery(eq(sqliteCriteria), anyListOf(Object.class));
         verify(mockCursor).moveToFirst();
         verify(mockCursor).getLong(0);
         verify(mockCursor).close();
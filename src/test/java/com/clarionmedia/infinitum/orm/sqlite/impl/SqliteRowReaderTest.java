@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import android.database.Cursor;
+import com.clarionmedia.infinitum.orm.internal.bind.SqliteTypeAdapters;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata.ColumnMetadata;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class SqliteRowReaderTest {
+
+    private static final String[] COLUMNS = {"id", "int_col", "short_col", "float_col", "double_col", "boolean_col",
+            "string_col", "bytes_col", "date_col", "boxed_col"};
+    private static final long DATE_MILLIS = 1792238400000L;
+
+    @Mock
+    private EntityMetadata mockMetadata;
+
+    @Mock
+    private SqliteMapper mockSqliteMapper;
+
+    @Mock
+    private Cursor mockCursor;
+
+    private SqliteRowReader reader;
+
+    @Before
+    public void setup() throws NoSuchFieldException {
+        MockitoAnnotations.initMocks(this);
+        List<ColumnMetadata> columns = new ArrayList<ColumnMetadata>();
+        columns.add(column("mId", COLUMNS[0], true));
+        columns.add(column("mInt", COLUMNS[1], false));
+        columns.add(column("mShort", COLUMNS[2], false));
+        columns.add(column("mFloat", COLUMNS[3], false));
+        columns.add(column("mDouble", COLUMNS[4], false));
+        columns.add(column("mBoolean", COLUMNS[5], false));
+        columns.add(column("mString", COLUMNS[6], false));
+        columns.add(column("mBytes", COLUMNS[7], false));
+        columns.add(column("mDate", COLUMNS[8], false));
+        columns.add(column("mBoxed", COLUMNS[9], false));
+        doReturn(FooModel.class).when(mockMetadata).getEntityClass();
+        when(mockMetadata.getColumns()).thenReturn(columns);
+        when(mockSqliteMapper.resolveType(long.class)).thenReturn(SqliteTypeAdapters.LONG);
+        when(mockSqliteMapper.resolveType(int.class)).thenReturn(SqliteTypeAdapters.INTEGER);
+        when(mockSqliteMapper.resolveType(short.class)).thenReturn(SqliteTypeAdapters.SHORT);
+        when(mockSqliteMapper.resolveType(float.class)).thenReturn(SqliteTypeAdapters.FLOAT);
+        when(mockSqliteMapper.resolveType(double.class)).thenReturn(SqliteTypeAdapters.DOUBLE);
+        when(mockSqliteMapper.resolveType(boolean.class)).thenReturn(SqliteTypeAdapters.BOOLEAN);
+        when(mockSqliteMapper.resolveType(String.class)).thenReturn(SqliteTypeAdapters.STRING);
+        when(mockSqliteMapper.resolveType(byte[].class)).thenReturn(SqliteTypeAdapters.BYTE_ARRAY);
+        when(mockSqliteMapper.resolveType(Date.class)).thenReturn(SqliteTypeAdapters.DATE);
+        when(mockSqliteMapper.resolveType(Integer.class)).thenReturn(SqliteTypeAdapters.INTEGER);
+        when(mockCursor.getColumnNames()).thenReturn(COLUMNS);
+        for (int i = 0; i < COLUMNS.length; i++)
+            when(mockCursor.getColumnIndex(COLUMNS[i])).thenReturn(i);
+        reader = new SqliteRowReader(mockMetadata, mockSqliteMapper);
+    }
+
+    @Test
+    public void testRead_primitives() {
+        // Setup
+        FooModel foo = new FooModel();
+        when(mockCursor.getLong(0)).thenReturn(42L);
+        when(mockCursor.getInt(1)).thenReturn(7);
+        when(mockCursor.getShort(2)).thenReturn((short) 3);
+        when(mockCursor.getFloat(3)).thenReturn(1.5f);
+        when(mockCursor.getDouble(4)).thenReturn(2.25);
+        when(mockCursor.getInt(5)).thenReturn(1);
+
+        // Run
+        reader.read(mockCursor, foo);
+
+        // Verify
+        assertEquals("long column should be read", 42L, foo.mId);
+        assertEquals("int column should be read", 7, foo.mInt);
+        assertEquals("short column should be read", (short) 3, foo.mShort);
+        assertEquals("float column should be read", 1.5f, foo.mFloat, 0);
+        assertEquals("double column should be read", 2.25, foo.mDouble, 0);
+        assertTrue("boolean column should be read", foo.mBoolean);
+    }
+
+    @Test
+    public void testRead_references() {
+        // Setup
+        FooModel foo = new FooModel();
+        byte[] bytes = {1, 2, 3};
+        when(mockCursor.getString(6)).thenReturn("foo");
+        when(mockCursor.getBlob(7)).thenReturn(bytes);
+        when(mockCursor.getLong(8)).thenReturn(DATE_MILLIS);
+
+        // Run
+        reader.read(mockCursor, foo);
+
+        // Verify
+        assertEquals("String column should be read", "foo", foo.mString);
+        assertArrayEquals("byte[] column should be read", bytes, foo.mBytes);
+        assertEquals("Date column should be read", new Date(DATE_MILLIS), foo.mDate);
+    }
+
+    @Test
+    public void testRead_boxedFieldUsesAdapter() {
+        // Setup
+        FooModel foo = new FooModel();
+        when(mockCursor.getInt(9)).thenReturn(11);
+
+        // Run
+        reader.read(mockCursor, foo);
+
+        // Verify
+        assertEquals("Boxed field should be read by its adapter", Integer.valueOf(11), foo.mBoxed);
+    }
+
+    @Test
+    public void testRead_nullColumns() {
+        // Setup
+        FooModel foo = new FooModel();
+        foo.mInt = 5;
+        foo.mString = "foo";
+        foo.mBytes = new byte[]{1};
+        for (int i = 0; i < COLUMNS.length; i++)
+            when(mockCursor.isNull(i)).thenReturn(true);
+
+        // Run
+        reader.read(mockCursor, foo);
+
+        // Verify
+        assertEquals("Null int column should be read as 0", 0, foo.mInt);
+        assertFalse("Null boolean column should be read as false", foo.mBoolean);
+        assertNull("Null String column should be read as null", foo.mString);
+        assertNull("Null byte[] column should be read as null", foo.mBytes);
+    }
+
+    @Test
+    public void testGetValues_copiesMutableValues() {
+        // Setup
+        FooModel foo = new FooModel();
+        foo.mBytes = new byte[]{1, 2};
+        foo.mDate = new Date(DATE_MILLIS);
+
+        // Run
+        Object[] values = reader.getValues(foo);
+
+        // Verify
+        assertNotSame("byte[] should be copied", foo.mBytes, values[7]);
+        assertArrayEquals("Copied byte[] should be equal", foo.mBytes, (byte[]) values[7]);
+        assertNotSame("Date should be copied", foo.mDate, values[8]);
+        assertEquals("Copied Date should be equal", foo.mDate, values[8]);
+    }
+
+    @Test
+    public void testGetDirtyColumns_unchanged() {
+        // Setup
+        FooModel foo = new FooModel();
+        foo.mString = "foo";
+        foo.mBytes = new byte[]{1, 2};
+        foo.mDate = new Date(DATE_MILLIS);
+        Object[] snapshot = reader.getValues(foo);
+
+        // Run
+        boolean[] dirty = reader.getDirtyColumns(foo, snapshot);
+
+        // Verify
+        for (int i = 0; i < dirty.length; i++)
+            assertFalse("Unchanged column " + COLUMNS[i] + " should not be dirty", dirty[i]);
+    }
+
+    @Test
+    public void testGetDirtyColumns_modifiedInPlace() {
+        // Setup
+        FooModel foo = new FooModel();
+        foo.mBytes = new byte[]{1, 2};
+        foo.mDate = new Date(DATE_MILLIS);
+        Object[] snapshot = reader.getValues(foo);
+
+        // Run
+        foo.mBytes[0] = 9;
+        foo.mDate.setTime(DATE_MILLIS + 1);
+        boolean[] dirty = reader.getDirtyColumns(foo, snapshot);
+
+        // Verify
+        assertTrue("byte[] modified in place should be dirty", dirty[7]);
+        assertTrue("Date modified in place should be dirty", dirty[8]);
+        assertFalse("Unmodified column should not be dirty", dirty[6]);
+    }
+
+    @Test
+    public void testGetDirtyColumns_boxedValueUnchanged() {
+        // Setup
+        FooModel foo = new FooModel();
+        foo.mBoxed = 11;
+        Object[] snapshot = reader.getValues(foo);
+
+        // Run
+        boolean[] dirty = reader.getDirtyColumns(foo, snapshot);
+
+        // Verify
+        assertFalse("Boxed primitive is immutable, so an equal value should not be dirty", dirty[9]);
+    }
+
+    @Test
+    public void testSetValues_copiesMutableValues() {
+        // Setup
+        FooModel foo = new FooModel();
+        Object[] values = new Object[COLUMNS.length];
+        values[7] = new byte[]{1, 2};
+        values[8] = new Date(DATE_MILLIS);
+
+        // Run
+        reader.setValues(foo, values);
+        ((byte[]) values[7])[0] = 9;
+        ((Date) values[8]).setTime(0);
+
+        // Verify
+        assertArrayEquals("byte[] should be copied into the model", new byte[]{1, 2}, foo.mBytes);
+        assertEquals("Date should be copied into the model", new Date(DATE_MILLIS), foo.mDate);
+        assertEquals("Null primitive value should leave the default", 0, foo.mInt);
+    }
+
+    private static ColumnMetadata column(String fieldName, String columnName, boolean primaryKey)
+            throws NoSuchFieldException {
+        Field field = FooModel.class.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        return new ColumnMetadata(field, columnName, primaryKey, primaryKey, !primaryKey, false);
+    }
+
+    private static class FooModel {
+        private long mId;
+        private int mInt;
+        private short mShort;
+        private float mFloat;
+        private double mDouble;
+        private boolean mBoolean;
+        private String mString;
+        private byte[] mBytes;
+        private Date mDate;
+        private Integer mBoxed;
+    }
+
+}
@@ -20,11 +20,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Date;
@@ -51,6 +53,9 @@ import com.clarionmedia.infinitum.orm.ResultSet;
 import com.clarionmedia.infinitum.orm.Session;
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata.RelationshipMetadata;
+import com.clarionmedia.infinitum.orm.persistence.IdentityMap;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
 import com.clarionmedia.infinitum.orm.persistence.TypeResolutionPolicy.SqliteDataType;
 import com.clarionmedia.infinitum.orm.rest.RestfulPairsTypeAdapter;
@@ -61,8 +66,6 @@ import com.xtremelabs.robolectric.RobolectricTestRunner;
 public class SqliteSessionTest {
 
 	private static final int FOO_MODEL_HASH = 42;
-	private static final int BAR_MODEL_HASH = 38;
-	private static final int BAZ_MODEL_HASH = 176;
 	private static final long FOO_MODEL_ID = 120;
 	private static final long BAZ_MODEL_ID = 211;
 
@@ -82,7 +85,7 @@ public class SqliteSessionTest {
 	private Context mockContext;
 
 	@Mock
-	private Map<Integer, Object> mockSessionCache;
+	private IdentityMap mockSessionCache;
 
 	@Mock
 	private Criteria<FooModel> mockFooCriteria;
@@ -185,15 +188,15 @@ public class SqliteSessionTest {
 		// Setup
 		FooModel foo = new FooModel();
 		when(mockSqliteTemplate.save(foo)).thenReturn(FOO_MODEL_ID);
-		when(mockPersistencePolicy.computeModelHash(foo)).thenReturn(FOO_MODEL_HASH);
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(FOO_MODEL_ID);
 
 		// Run
 		long actualId = sqliteSession.save(foo);
 
 		// Verify
 		verify(mockSqliteTemplate).save(foo);
-		verify(mockPersistencePolicy).computeModelHash(foo);
-		verify(mockSessionCache).put(FOO_MODEL_HASH, foo);
+		verify(mockPersistencePolicy).getPrimaryKey(foo);
+		verify(mockSessionCache).put(FooModel.class, Long.valueOf(FOO_MODEL_ID), foo);
 		assertEquals("Returned ID should be equal to the model ID", FOO_MODEL_ID, actualId);
 	}
 
@@ -208,8 +211,8 @@ public class SqliteSessionTest {
 
 		// Verify
 		verify(mockSqliteTemplate).save(foo);
-		verify(mockPersistencePolicy, times(0)).computeModelHash(foo);
-		verify(mockSessionCache, times(0)).put(FOO_MODEL_HASH, foo);
+		verify(mockPersistencePolicy, times(0)).getPrimaryKey(foo);
+		verify(mockSessionCache, times(0)).put(eq(FooModel.class), any(Serializable.class), eq(foo));
 		assertEquals("Returned ID should be -1", -1, actualId);
 	}
 
@@ -218,15 +221,15 @@ public class SqliteSessionTest {
 		// Setup
 		FooModel foo = new FooModel();
 		when(mockSqliteTemplate.update(foo)).thenReturn(true);
-		when(mockPersistencePolicy.computeModelHash(foo)).thenReturn(FOO_MODEL_HASH);
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(FOO_MODEL_ID);
 
 		// Run
 		boolean success = sqliteSession.update(foo);
 
 		// Verify
 		verify(mockSqliteTemplate).update(foo);
-		verify(mockPersistencePolicy).computeModelHash(foo);
-		verify(mockSessionCache).put(FOO_MODEL_HASH, foo);
+		verify(mockPersistencePolicy).getPrimaryKey(foo);
+		verify(mockSessionCache).put(FooModel.class, Long.valueOf(FOO_MODEL_ID), foo);
 		assertEquals("Save should have returned successfully", true, success);
 	}
 
@@ -241,8 +244,8 @@ public class SqliteSessionTest {
 
 		// Verify
 		verify(mockSqliteTemplate).update(foo);
-		verify(mockPersistencePolicy, times(0)).computeModelHash(foo);
-		verify(mockSessionCache, times(0)).put(FOO_MODEL_HASH, foo);
+		verify(mockPersistencePolicy, times(0)).getPrimaryKey(foo);
+		verify(mockSessionCache, times(0)).put(eq(FooModel.class), any(Serializable.class), eq(foo));
 		assertEquals("Save should have returned unsuccessfully", false, success);
 	}
 
@@ -251,15 +254,15 @@ public class SqliteSessionTest {
 		// Setup
 		FooModel foo = new FooModel();
 		when(mockSqliteTemplate.delete(foo)).thenReturn(true);
-		when(mockPersistencePolicy.computeModelHash(foo)).thenReturn(FOO_MODEL_HASH);
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(FOO_MODEL_ID);
 
 		// Run
 		boolean success = sqliteSession.delete(foo);
 
 		// Verify
 		verify(mockSqliteTemplate).delete(foo);
-		verify(mockPersistencePolicy).computeModelHash(foo);
-		verify(mockSessionCache).remove(FOO_MODEL_HASH);
+		verify(mockPersistencePolicy).getPrimaryKey(foo);
+		verify(mockSessionCache).remove(FooModel.class, Long.valueOf(FOO_MODEL_ID));
 		assertEquals("Delete should have returned successfully", true, success);
 	}
 
@@ -274,8 +277,8 @@ public class SqliteSessionTest {
 
 		// Verify
 		verify(mockSqliteTemplate).delete(foo);
-		verify(mockPersistencePolicy, times(0)).computeModelHash(foo);
-		verify(mockSessionCache, times(0)).remove(FOO_MODEL_HASH);
+		verify(mockPersistencePolicy, times(0)).getPrimaryKey(foo);
+		verify(mockSessionCache, times(0)).remove(eq(FooModel.class), any(Serializable.class));
 		assertEquals("Delete should have returned unsuccessfully", false, success);
 	}
 
@@ -284,15 +287,15 @@ public class SqliteSessionTest {
 		// Setup
 		FooModel foo = new FooModel();
 		when(mockSqliteTemplate.saveOrUpdate(foo)).thenReturn(FOO_MODEL_ID);
-		when(mockPersistencePolicy.computeModelHash(foo)).thenReturn(FOO_MODEL_HASH);
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(FOO_MODEL_ID);
 
 		// Run
 		long actualId = sqliteSession.saveOrUpdate(foo);
 
 		// Verify
 		verify(mockSqliteTemplate).saveOrUpdate(foo);
-		verify(mockPersistencePolicy).computeModelHash(foo);
-		verify(mockSessionCache).put(FOO_MODEL_HASH, foo);
+		verify(mockPersistencePolicy).getPrimaryKey(foo);
+		verify(mockSessionCache).put(FooModel.class, Long.valueOf(FOO_MODEL_ID), foo);
 		assertEquals("Returned ID should be equal to the model ID", FOO_MODEL_ID, actualId);
 	}
 
@@ -307,8 +310,8 @@ public class SqliteSessionTest {
 
 		// Verify
 		verify(mockSqliteTemplate).saveOrUpdate(foo);
-		verify(mockPersistencePolicy, times(0)).computeModelHash(foo);
-		verify(mockSessionCache, times(0)).put(FOO_MODEL_HASH, foo);
+		verify(mockPersistencePolicy, times(0)).getPrimaryKey(foo);
+		verify(mockSessionCache, times(0)).put(eq(FooModel.class), any(Serializable.class), eq(foo));
 		assertEquals("Returned ID should be -1", -1, actualId);
 	}
 
@@ -325,8 +328,8 @@ public class SqliteSessionTest {
 		when(mockSqliteTemplate.saveOrUpdate(foo)).thenReturn(FOO_MODEL_ID);
 		when(mockSqliteTemplate.saveOrUpdate(bar)).thenReturn((long) -1);
 		when(mockSqliteTemplate.saveOrUpdate(baz)).thenReturn((long) 0);
-		when(mockPersistencePolicy.computeModelHash(foo)).thenReturn(FOO_MODEL_HASH);
-		when(mockPersistencePolicy.computeModelHash(baz)).thenReturn(BAZ_MODEL_HASH);
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(FOO_MODEL_ID);
+		when(mockPersistencePolicy.getPrimaryKey(baz)).thenReturn(BAZ_MODEL_ID);
 
 		// Run
 		int actualResults = sqliteSession.saveOrUpdateAll(models);
@@ -335,12 +338,12 @@ public class SqliteSessionTest {
 		verify(mockSqliteTemplate).saveOrUpdate(foo);
 		verify(mockSqliteTemplate).saveOrUpdate(bar);
 		verify(mockSqliteTemplate).saveOrUpdate(baz);
-		verify(mockPersistencePolicy).computeModelHash(foo);
-		verify(mockPersistencePolicy).computeModelHash(baz);
-		verify(mockPersistencePolicy, times(0)).computeModelHash(bar);
-		verify(mockSessionCache).put(FOO_MODEL_HASH, foo);
-		verify(mockSessionCache).put(BAZ_MODEL_HASH, baz);
-		verify(mockSessionCache, times(0)).put(BAR_MODEL_HASH, bar);
+		verify(mockPersistencePolicy).getPrimaryKey(foo);
+		verify(mockPersistencePolicy).getPrimaryKey(baz);
+		verify(mockPersistencePolicy, times(0)).getPrimaryKey(bar);
+		verify(mockSessionCache).put(FooModel.class, Long.valueOf(FOO_MODEL_ID), foo);
+		verify(mockSessionCache).put(BazModel.class, Long.valueOf(BAZ_MODEL_ID), baz);
+		verify(mockSessionCache, times(0)).put(eq(BarModel.class), any(Serializable.class), eq(bar));
 		assertEquals("Number of items saved or updated should be 2", 2, actualResults);
 	}
 
@@ -354,25 +357,22 @@ public class SqliteSessionTest {
 		models.add(foo);
 		models.add(bar);
 		models.add(baz);
-		when(mockSqliteTemplate.save(foo)).thenReturn(FOO_MODEL_ID);
-		when(mockSqliteTemplate.save(bar)).thenReturn((long) -1);
-		when(mockSqliteTemplate.save(baz)).thenReturn(BAZ_MODEL_ID);
-		when(mockPersistencePolicy.computeModelHash(foo)).thenReturn(FOO_MODEL_HASH);
-		when(mockPersistencePolicy.computeModelHash(baz)).thenReturn(BAZ_MODEL_HASH);
+		when(mockSqliteTemplate.saveAll(models)).thenReturn(new long[] { FOO_MODEL_ID, -1, BAZ_MODEL_ID });
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(FOO_MODEL_ID);
+		when(mockPersistencePolicy.getPrimaryKey(baz)).thenReturn(BAZ_MODEL_ID);
 
 		// Run
 		int actualResults = sqliteSession.saveAll(models);
 
 		// Verify
-		verify(mockSqliteTemplate).save(foo);
-		verify(mockSqliteTemplate).save(bar);
-		verify(mockSqliteTemplate).save(baz);
-		verify(mockPersistencePolicy).computeModelHash(foo);
-		verify(mockPersistencePolicy).computeModelHash(baz);
-		verify(mockPersistencePolicy, times(0)).computeModelHash(bar);
-		verify(mockSessionCache).put(FOO_MODEL_HASH, foo);
-		verify(mockSessionCache).put(BAZ_MODEL_HASH, baz);
-		verify(mockSessionCache, times(0)).put(BAR_MODEL_HASH, bar);
+		verify(mockSqliteTemplate).saveAll(models);
+		verify(mockSqliteTemplate, times(0)).save(any(Object.class));
+		verify(mockPersistencePolicy).getPrimaryKey(foo);
+		verify(mockPersistencePolicy).getPrimaryKey(baz);
+		verify(mockPersistencePolicy, times(0)).getPrimaryKey(bar);
+		verify(mockSessionCache).put(FooModel.class, Long.valueOf(FOO_MODEL_ID), foo);
+		verify(mockSessionCache).put(BazModel.class, Long.valueOf(BAZ_MODEL_ID), baz);
+		verify(mockSessionCache, times(0)).put(eq(BarModel.class), any(Serializable.class), eq(bar));
 		assertEquals("Number of items saved should be 2", 2, actualResults);
 	}
 
@@ -389,8 +389,8 @@ public class SqliteSessionTest {
 		when(mockSqliteTemplate.delete(foo)).thenReturn(true);
 		when(mockSqliteTemplate.delete(bar)).thenReturn(false);
 		when(mockSqliteTemplate.delete(baz)).thenReturn(true);
-		when(mockPersistencePolicy.computeModelHash(foo)).thenReturn(FOO_MODEL_HASH);
-		when(mockPersistencePolicy.computeModelHash(baz)).thenReturn(BAZ_MODEL_HASH);
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(FOO_MODEL_ID);
+		when(mockPersistencePolicy.getPrimaryKey(baz)).thenReturn(BAZ_MODEL_ID);
 
 		// Run
 		int actualResults = sqliteSession.deleteAll(models);
@@ -399,12 +399,12 @@ public class SqliteSessionTest {
 		verify(mockSqliteTemplate).delete(foo);
 		verify(mockSqliteTemplate).delete(bar);
 		verify(mockSqliteTemplate).delete(baz);
-		verify(mockPersistencePolicy).computeModelHash(foo);
-		verify(mockPersistencePolicy).computeModelHash(baz);
-		verify(mockPersistencePolicy, times(0)).computeModelHash(bar);
-		verify(mockSessionCache).remove(FOO_MODEL_HASH);
-		verify(mockSessionCache).remove(BAZ_MODEL_HASH);
-		verify(mockSessionCache, times(0)).remove(BAR_MODEL_HASH);
+		verify(mockPersistencePolicy).getPrimaryKey(foo);
+		verify(mockPersistencePolicy).getPrimaryKey(baz);
+		verify(mockPersistencePolicy, times(0)).getPrimaryKey(bar);
+		verify(mockSessionCache).remove(FooModel.class, Long.valueOf(FOO_MODEL_ID));
+		verify(mockSessionCache).remove(BazModel.class, Long.valueOf(BAZ_MODEL_ID));
+		verify(mockSessionCache, times(0)).remove(eq(BarModel.class), any(Serializable.class));
 		assertEquals("Number of items deleted should be 2", 2, actualResults);
 	}
 
@@ -413,17 +413,14 @@ public class SqliteSessionTest {
 		// Setup
 		FooModel expected = new FooModel();
 		expected.id = FOO_MODEL_ID;
-		when(mockPersistencePolicy.computeModelHash(FooModel.class, FOO_MODEL_ID)).thenReturn(FOO_MODEL_HASH);
-		when(mockSessionCache.containsKey(FOO_MODEL_HASH)).thenReturn(true);
-		when(mockSessionCache.get(FOO_MODEL_HASH)).thenReturn(expected);
+		when(mockSessionCache.get(FooModel.class, Long.valueOf(FOO_MODEL_ID))).thenReturn(expected);
 
 		// Run
 		FooModel actual = sqliteSession.load(FooModel.class, FOO_MODEL_ID);
 
 		// Verify
-		verify(mockPersistencePolicy).computeModelHash(FooModel.class, FOO_MODEL_ID);
-		verify(mockSessionCache).containsKey(FOO_MODEL_HASH);
-		verify(mockSessionCache).get(FOO_MODEL_HASH);
+		verify(mockSessionCache).get(FooModel.class, Long.valueOf(FOO_MODEL_ID));
+		verify(mockPersistencePolicy, times(0)).computeModelHash(FooModel.class, FOO_MODEL_ID);
 		verify(mockSqliteTemplate, times(0)).load(FooModel.class, FOO_MODEL_ID);
 		assertEquals("Loaded object ID should be equal to expected object ID", expected.id, actual.id);
 	}
@@ -433,17 +430,14 @@ public class SqliteSessionTest {
 		// Setup
 		FooModel expected = new FooModel();
 		expected.id = FOO_MODEL_ID;
-		when(mockPersistencePolicy.computeModelHash(FooModel.class, FOO_MODEL_ID)).thenReturn(FOO_MODEL_HASH);
-		when(mockSessionCache.containsKey(FOO_MODEL_HASH)).thenReturn(false);
+		when(mockSessionCache.get(FooModel.class, Long.valueOf(FOO_MODEL_ID))).thenReturn(null);
 		when(mockSqliteTemplate.load(FooModel.class, FOO_MODEL_ID)).thenReturn(expected);
 
 		// Run
 		FooModel actual = sqliteSession.load(FooModel.class, FOO_MODEL_ID);
 
 		// Verify
-		verify(mockPersistencePolicy).computeModelHash(FooModel.class, FOO_MODEL_ID);
-		verify(mockSessionCache).containsKey(FOO_MODEL_HASH);
-		verify(mockSessionCache, times(0)).get(FOO_MODEL_HASH);
+		verify(mockSessionCache).get(FooModel.class, Long.valueOf(FOO_MODEL_ID));
 		verify(mockSqliteTemplate).load(FooModel.class, FOO_MODEL_ID);
 		assertEquals("Loaded object ID should be equal to expected object ID", expected.id, actual.id);
 	}
@@ -573,6 +567,66 @@ public class SqliteSessionTest {
 		assertEquals("Session returned from commit should be the same Session instance", sqliteSession, session);
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testCommit_writeBehind() {
+		// Setup
+		FooModel foo = new FooModel();
+		EntityMetadata metadata = mock(EntityMetadata.class);
+		when(metadata.getRelationships()).thenReturn(new ArrayList<RelationshipMetadata>());
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockPersistencePolicy.getEntityMetadata(FooModel.class)).thenReturn(metadata);
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(FOO_MODEL_ID);
+		when(mockSqliteTemplate.isAutocommit()).thenReturn(true);
+		when(mockSqliteTemplate.flush(any(List.class))).thenReturn(new boolean[] { true });
+		sqliteSession.setWriteBehind(true);
+
+		// Run
+		long actualId = sqliteSession.save(foo);
+		boolean updated = sqliteSession.update(foo);
+		sqliteSession.commit();
+
+		// Verify
+		verify(mockSqliteTemplate, times(0)).save(foo);
+		verify(mockSqliteTemplate, times(0)).update(foo);
+		verify(mockSqliteTemplate).flush(any(List.class));
+		verify(mockSqliteTemplate).commit();
+		verify(mockSessionCache).put(FooModel.class, Long.valueOf(FOO_MODEL_ID), foo);
+		assertEquals("Queued save should return WRITE_QUEUED", SqliteSession.WRITE_QUEUED, actualId);
+		assertFalse("Queued update should return false", updated);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testRollback_writeBehindOtherThread() throws InterruptedException {
+		// Setup
+		FooModel foo = new FooModel();
+		EntityMetadata metadata = mock(EntityMetadata.class);
+		when(metadata.getRelationships()).thenReturn(new ArrayList<RelationshipMetadata>());
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockPersistencePolicy.getEntityMetadata(FooModel.class)).thenReturn(metadata);
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(FOO_MODEL_ID);
+		when(mockSqliteTemplate.isAutocommit()).thenReturn(true);
+		when(mockSqliteTemplate.flush(any(List.class))).thenReturn(new boolean[] { true });
+		sqliteSession.setWriteBehind(true);
+		sqliteSession.save(foo);
+
+		// Run
+		Thread other = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				sqliteSession.rollback();
+			}
+		});
+		other.start();
+		other.join();
+		int flushed = sqliteSession.flush();
+
+		// Verify
+		verify(mockSqliteTemplate).rollback();
+		assertEquals("Rollback on another thread should not discard this thread's queued writes", 1, flushed);
+	}
+
 	@Test
 	public void testRollback() {
 		// Run
@@ -633,47 +687,65 @@ public class SqliteSessionTest {
 		assertEquals("Cursor returned from executeForResult should be equal to the expected Cursor", mockCursor, actual);
 	}
 
+	@Test
+	public void testExecuteForResult_args() {
+		// Setup
+		String sql = "select * from foo where bar = ?";
+		String[] args = new String[] { "baz" };
+		when(mockSqliteTemplate.executeForResult(sql, args)).thenReturn(mockCursor);
+
+		// Run
+		Cursor actual = sqliteSession.executeForResult(sql, args);
+
+		// Verify
+		verify(mockSqliteTemplate).executeForResult(sql, args);
+		assertEquals("Cursor returned from executeForResult should be equal to the expected Cursor", mockCursor, actual);
+	}
+
 	@Test
 	public void testCache_success() {
 		// Setup
 		FooModel foo = new FooModel();
-		when(mockSessionCache.size()).thenReturn(0);
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(FOO_MODEL_ID);
 
 		// Run
 		boolean success = sqliteSession.cache(FOO_MODEL_HASH, foo);
 
 		// Verify
-		verify(mockSessionCache).size();
-		verify(mockSessionCache).put(FOO_MODEL_HASH, foo);
+		verify(mockPersistencePolicy).getPrimaryKey(foo);
+		verify(mockSessionCache).put(FooModel.class, Long.valueOf(FOO_MODEL_ID), foo);
 		assertTrue("Cache should have been successful", success);
 	}
 
 	@Test
-	public void testCache_fail() {
+	public void testCache_noPrimaryKey() {
 		// Setup
 		FooModel foo = new FooModel();
-		when(mockSessionCache.size()).thenReturn(Session.DEFAULT_CACHE_SIZE);
+		when(mockPersistencePolicy.getPrimaryKey(foo)).thenReturn(null);
 
 		// Run
 		boolean success = sqliteSession.cache(FOO_MODEL_HASH, foo);
 
 		// Verify
-		verify(mockSessionCache).size();
-		verify(mockSessionCache, times(0)).put(FOO_MODEL_HASH, foo);
+		verify(mockSessionCache, times(0)).put(eq(FooModel.class), any(Serializable.class), eq(foo));
 		assertFalse("Cache should have been unsuccessful", success);
 	}
 
 	@Test
 	public void testCheckCache() {
 		// Setup
-		when(mockSessionCache.containsKey(FOO_MODEL_HASH)).thenReturn(true);
+		FooModel foo = new FooModel();
+		List<Object> cached = new ArrayList<Object>();
+		cached.add(foo);
+		when(mockSessionCache.values()).thenReturn(cached);
+		when(mockPersistencePolicy.computeModelHash(foo)).thenReturn(FOO_MODEL_HASH);
 
 		// Run
-		boolean cached = sqliteSession.checkCache(FOO_MODEL_HASH);
+		boolean isCached = sqliteSession.checkCache(FOO_MODEL_HASH);
 
 		// Verify
-		verify(mockSessionCache).containsKey(FOO_MODEL_HASH);
-		assertTrue("Cache should contain key", cached);
+		verify(mockSessionCache).values();
+		assertTrue("Cache should contain key", isCached);
 	}
 
 	@Test
@@ -681,16 +753,45 @@ public class SqliteSessionTest {
 		// Setup
 		FooModel foo = new FooModel();
 		foo.id = FOO_MODEL_ID;
-		when(mockSessionCache.get(FOO_MODEL_HASH)).thenReturn(foo);
+		List<Object> cached = new ArrayList<Object>();
+		cached.add(foo);
+		when(mockSessionCache.values()).thenReturn(cached);
+		when(mockPersistencePolicy.computeModelHash(foo)).thenReturn(FOO_MODEL_HASH);
 
 		// Run
 		FooModel actual = (FooModel) sqliteSession.searchCache(FOO_MODEL_HASH);
 
 		// Verify
-		verify(mockSessionCache).get(FOO_MODEL_HASH);
+		verify(mockSessionCache).values();
 		assertEquals("Cached object ID should be the same as the expected object ID", foo.id, actual.id);
 	}
 
+	@Test
+	public void testSearchCache_identity() {
+		// Setup
+		FooModel foo = new FooModel();
+		foo.id = FOO_MODEL_ID;
+		when(mockSessionCache.get(FooModel.class, FOO_MODEL_ID)).thenReturn(foo);
+
+		// Run
+		FooModel actual = (FooModel) sqliteSession.searchCache(FooModel.class, FOO_MODEL_ID);
+
+		// Verify
+		verify(mockSessionCache).get(FooModel.class, FOO_MODEL_ID);
+		verify(mockPersistencePolicy, times(0)).computeModelHash(foo);
+		assertEquals("Cached object should be the expected object", foo, actual);
+	}
+
+	@Test
+	public void testSetCacheSize_class() {
+		// Run
+		Session session = sqliteSession.setCacheSize(FooModel.class, 10);
+
+		// Verify
+		verify(mockSessionCache).setCapacity(FooModel.class, 10);
+		assertEquals("Session returned from setCacheSize should be the same Session instance", sqliteSession, session);
+	}
+
 	@Test
 	public void testGetSqliteMapper() {
 		// Setup
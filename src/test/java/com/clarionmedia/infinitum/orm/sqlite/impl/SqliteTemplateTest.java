@@ -17,23 +17,30 @@
 package com.clarionmedia.infinitum.orm.sqlite.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -42,15 +49,19 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 
 import com.clarionmedia.infinitum.exception.InfinitumRuntimeException;
 import com.clarionmedia.infinitum.internal.Pair;
 import com.clarionmedia.infinitum.logging.Logger;
-import com.clarionmedia.infinitum.orm.ModelFactory;
 import com.clarionmedia.infinitum.orm.context.InfinitumOrmContext;
 import com.clarionmedia.infinitum.orm.criteria.Criteria;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata.ColumnMetadata;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
 import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy.Cascade;
+import com.clarionmedia.infinitum.orm.persistence.QueryCache;
+import com.clarionmedia.infinitum.orm.persistence.SecondLevelCache;
 import com.clarionmedia.infinitum.orm.relationship.ManyToManyRelationship;
 import com.clarionmedia.infinitum.orm.relationship.ManyToOneRelationship;
 import com.clarionmedia.infinitum.orm.relationship.OneToManyRelationship;
@@ -102,9 +113,6 @@ public class SqliteTemplateTest {
 	@Mock
 	private SQLiteDatabase mockSqliteDb;
 	
-	@Mock
-	private Stack<Boolean> mockTransactionStack;
-	
 	@Mock
 	private SqliteCriteria<FooModel> mockCriteria;
 	
@@ -124,11 +132,17 @@ public class SqliteTemplateTest {
 	private SqliteUtils mockSqliteUtil;
 	
 	@Mock
-	private ModelFactory mockSqliteModelFactory;
+	private SqliteModelFactory mockSqliteModelFactory;
 	
 	@Mock
 	private SqlBuilder mockSqlBuilder;
 	
+	@Mock
+	private SecondLevelCache mockSecondLevelCache;
+	
+	@Mock
+	private QueryCache mockQueryCache;
+	
 	private Field mockFooPkField;
 	private Field mockBarPkField;
 	private FooModel foo;
@@ -221,7 +235,7 @@ public class SqliteTemplateTest {
 		
 		// Verify
 		verify(mockSqliteDb, times(0)).beginTransaction();
-		verify(mockTransactionStack, times(0)).push(true);
+		assertFalse("A transaction should not be open", sqliteTemplate.isTransactionOpen());
 	}
 	
 	@Test
@@ -234,27 +248,38 @@ public class SqliteTemplateTest {
 		
 		// Verify
 		verify(mockSqliteDb).beginTransaction();
-		verify(mockTransactionStack).push(true);
+		assertTrue("A transaction should be open", sqliteTemplate.isTransactionOpen());
 	}
 	
 	@Test
-	public void testCommit_transactionClosed() {
+	public void testBeginTransaction_nested() {
 		// Setup
-		when(mockTransactionStack.size()).thenReturn(0);
+		sqliteTemplate.setAutocommit(false);
+		sqliteTemplate.beginTransaction();
+		
+		// Run
+		sqliteTemplate.beginTransaction();
 		
+		// Verify
+		verify(mockSqliteDb).beginTransaction();
+		verify(mockSqliteDb).execSQL("SAVEPOINT infinitum_savepoint_1");
+	}
+	
+	@Test
+	public void testCommit_transactionClosed() {
 		// Run
 		sqliteTemplate.commit();
 		
 		// Verify
 		verify(mockSqliteDb, times(0)).setTransactionSuccessful();
 		verify(mockSqliteDb, times(0)).endTransaction();
-		verify(mockTransactionStack, times(0)).pop();
 	}
 	
 	@Test
 	public void testCommit_transactionOpen() {
 		// Setup
-		when(mockTransactionStack.size()).thenReturn(1);
+		sqliteTemplate.setAutocommit(false);
+		sqliteTemplate.beginTransaction();
 		
 		// Run
 		sqliteTemplate.commit();
@@ -262,46 +287,179 @@ public class SqliteTemplateTest {
 		// Verify
 		verify(mockSqliteDb).setTransactionSuccessful();
 		verify(mockSqliteDb).endTransaction();
-		verify(mockTransactionStack).pop();
+		assertFalse("Transaction should be closed", sqliteTemplate.isTransactionOpen());
+	}
+	
+	@Test
+	public void testCommit_nested() {
+		// Setup
+		sqliteTemplate.setAutocommit(false);
+		sqliteTemplate.beginTransaction();
+		sqliteTemplate.beginTransaction();
+		
+		// Run
+		sqliteTemplate.commit();
+		
+		// Verify
+		verify(mockSqliteDb).execSQL("RELEASE infinitum_savepoint_1");
+		verify(mockSqliteDb, times(0)).setTransactionSuccessful();
+		verify(mockSqliteDb, times(0)).endTransaction();
+		assertTrue("Outer transaction should remain open", sqliteTemplate.isTransactionOpen());
 	}
 	
 	@Test
 	public void testIsTransactionOpen() {
 		// Setup
-		when(mockTransactionStack.size()).thenReturn(1);
+		sqliteTemplate.setAutocommit(false);
+		sqliteTemplate.beginTransaction();
 		
 		// Run
 		boolean actual = sqliteTemplate.isTransactionOpen();
 		
 		// Verify
-		verify(mockTransactionStack).size();
 		assertEquals("A transaction should be open", true, actual);
 	}
 	
 	@Test
-	public void testRollback_transactionClosed() {
+	public void testIsTransactionOpen_otherThread() throws InterruptedException {
 		// Setup
-		when(mockTransactionStack.size()).thenReturn(0);
+		final boolean[] otherThreadOpen = new boolean[1];
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				sqliteTemplate.setAutocommit(false);
+				sqliteTemplate.beginTransaction();
+				otherThreadOpen[0] = sqliteTemplate.isTransactionOpen();
+			}
+		});
+		
+		// Run
+		thread.start();
+		thread.join();
 		
+		// Verify
+		assertTrue("Transaction should be open on the other thread", otherThreadOpen[0]);
+		assertFalse("Transaction should not be visible to this thread", sqliteTemplate.isTransactionOpen());
+		assertTrue("Autocommit override should not be visible to this thread", sqliteTemplate.isAutocommit());
+	}
+	
+	@Test
+	public void testRollback_transactionClosed() {
 		// Run
 		sqliteTemplate.rollback();
 		
 		// Verify
 		verify(mockSqliteDb, times(0)).endTransaction();
-		verify(mockTransactionStack, times(0)).pop();
 	}
 	
 	@Test
 	public void testRollback_transactionOpen() {
 		// Setup
-		when(mockTransactionStack.size()).thenReturn(1);
+		sqliteTemplate.setAutocommit(false);
+		sqliteTemplate.beginTransaction();
 		
 		// Run
 		sqliteTemplate.rollback();
 		
 		// Verify
 		verify(mockSqliteDb).endTransaction();
-		verify(mockTransactionStack).pop();
+		assertFalse("Transaction should be closed", sqliteTemplate.isTransactionOpen());
+	}
+	
+	@Test
+	public void testRollback_nested() {
+		// Setup
+		sqliteTemplate.setAutocommit(false);
+		sqliteTemplate.beginTransaction();
+		sqliteTemplate.beginTransaction();
+		
+		// Run
+		sqliteTemplate.rollback();
+		
+		// Verify
+		verify(mockSqliteDb).execSQL(";ROLLBACK TO infinitum_savepoint_1");
+		verify(mockSqliteDb).execSQL("RELEASE infinitum_savepoint_1");
+		verify(mockSqliteDb, times(0)).endTransaction();
+		assertTrue("Outer transaction should remain open", sqliteTemplate.isTransactionOpen());
+	}
+	
+	@Test
+	public void testCommit_evictsModifiedEntitiesAgain() {
+		// Setup
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockSqliteDb.insert(FOO_MODEL_TABLE, null, mockContentValues)).thenReturn(FOO_MODEL_ID);
+		when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.NONE);
+		sqliteTemplate.setAutocommit(false);
+		sqliteTemplate.beginTransaction();
+		sqliteTemplate.save(foo);
+		
+		// Run
+		sqliteTemplate.commit();
+		
+		// Verify
+		// Once when the entity is written, and again once the transaction is committed
+		verify(mockSecondLevelCache, times(2)).evict(FooModel.class, FOO_MODEL_ID);
+		verify(mockQueryCache, times(2)).invalidate(FooModel.class);
+	}
+	
+	@Test
+	public void testSaveAll_failureInsideTransaction() {
+		// Setup
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockPersistencePolicy.isPersistent(BarModel.class)).thenReturn(false);
+		when(mockSqliteDb.insert(FOO_MODEL_TABLE, null, mockContentValues)).thenReturn(FOO_MODEL_ID);
+		when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.NONE);
+		sqliteTemplate.setAutocommit(false);
+		sqliteTemplate.beginTransaction();
+		sqliteTemplate.save(foo);
+		
+		// Run
+		try {
+			sqliteTemplate.saveAll(Arrays.asList(bar));
+			fail("Saving a transient model should have thrown an exception");
+		} catch (InfinitumRuntimeException e) {
+		}
+		sqliteTemplate.commit();
+		
+		// Verify
+		verify(mockSqliteDb).insert(FOO_MODEL_TABLE, null, mockContentValues);
+		verify(mockSqliteDb).beginTransaction();
+		verify(mockSqliteDb).execSQL("SAVEPOINT infinitum_savepoint_1");
+		verify(mockSqliteDb).execSQL(";ROLLBACK TO infinitum_savepoint_1");
+		verify(mockSqliteDb).execSQL("RELEASE infinitum_savepoint_1");
+		verify(mockSqliteDb).setTransactionSuccessful();
+		verify(mockSqliteDb).endTransaction();
+		assertFalse("Transaction should be closed", sqliteTemplate.isTransactionOpen());
+	}
+	
+	@Test
+	public void testSaveAll_failureRestoresPrimaryKeys() {
+		// Setup
+		EntityMetadata mockFooMetadata = mock(EntityMetadata.class);
+		SQLiteStatement mockInsertStatement = mock(SQLiteStatement.class);
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockPersistencePolicy.isPersistent(BarModel.class)).thenReturn(false);
+		when(mockPersistencePolicy.getEntityMetadata(FooModel.class)).thenReturn(mockFooMetadata);
+		when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.NONE);
+		when(mockFooMetadata.getColumns()).thenReturn(new ArrayList<ColumnMetadata>());
+		when(mockSqlBuilder.createInsertStatement(eq(FooModel.class), anyListOf(Field.class))).thenReturn("insert");
+		when(mockSqliteDb.compileStatement("insert")).thenReturn(mockInsertStatement);
+		when(mockInsertStatement.executeInsert()).thenReturn(FOO_MODEL_ID);
+		when(mockClassReflector.getFieldValue(foo, mockFooPkField)).thenReturn(0L);
+		
+		// Run
+		try {
+			sqliteTemplate.saveAll(Arrays.asList(foo, bar));
+			fail("Saving a transient model should have thrown an exception");
+		} catch (InfinitumRuntimeException e) {
+		}
+		
+		// Verify
+		InOrder inOrder = inOrder(mockClassReflector);
+		inOrder.verify(mockClassReflector).setFieldValue(foo, mockFooPkField, FOO_MODEL_ID);
+		inOrder.verify(mockClassReflector).setFieldValue(foo, mockFooPkField, 0L);
+		verify(mockSqliteDb, times(0)).setTransactionSuccessful();
+		verify(mockSqliteDb).endTransaction();
 	}
 	
 	@Test(expected = InfinitumRuntimeException.class)
@@ -321,7 +479,6 @@ public class SqliteTemplateTest {
 		// Setup
 		sqliteTemplate.setAutocommit(false);
 		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(false);
-		when(mockTransactionStack.size()).thenReturn(0);
 		
 		// Run
 		sqliteTemplate.save(foo);
@@ -392,6 +549,8 @@ public class SqliteTemplateTest {
 		verify(mockSqlBuilder, times(0)).createUpdateQuery(any(Object.class), any(Object.class), any(String.class));
 		verify(mockClassReflector, times(0)).isNull(any(Object.class));
 		verify(mockSqliteDb, times(0)).execSQL(any(String.class));
+		verify(mockSecondLevelCache).evict(FooModel.class, FOO_MODEL_ID);
+		verify(mockQueryCache).invalidate(FooModel.class);
 		assertEquals("ID returned by save should be equal to the expected ID", FOO_MODEL_ID, actualId);
 	}
 	
@@ -437,6 +596,57 @@ public class SqliteTemplateTest {
 		assertEquals("ID returned by save should be -1", -1, actualId);
 	}
 	
+	@Test
+	public void testUpdate_unchangedSinceSnapshot() {
+		// Setup
+		EntitySnapshot snapshot = new EntitySnapshot(foo, new Object[0], new Object[0], new Object[0][]);
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.ALL);
+		when(mockSqliteModelFactory.getSnapshot(foo)).thenReturn(snapshot);
+		when(mockSqliteModelFactory.getDirtyColumns(foo, snapshot)).thenReturn(new boolean[] { false, false });
+		when(mockSqliteModelFactory.getDirtyRelationships(foo, snapshot)).thenReturn(new boolean[] { false });
+		
+		// Run
+		boolean actual = sqliteTemplate.update(foo);
+		
+		// Verify
+		verify(mockSqliteMapper, times(0)).mapModel(any(Object.class), any(boolean[].class), any(boolean[].class));
+		verify(mockSqliteDb, times(0)).update(any(String.class), any(ContentValues.class), any(String.class), any(String[].class));
+		verify(mockSecondLevelCache, times(0)).evict(FooModel.class, FOO_MODEL_ID);
+		assertTrue("Unchanged model should be reported as updated", actual);
+	}
+	
+	@Test
+	public void testUpdate_dirtyColumnsOnly() {
+		// Setup
+		EntitySnapshot snapshot = new EntitySnapshot(foo, new Object[0], new Object[0], new Object[0][]);
+		boolean[] columns = new boolean[] { false, true };
+		boolean[] relationships = new boolean[] { false };
+		when(mockPersistencePolicy.isPersistent(FooModel.class)).thenReturn(true);
+		when(mockPersistencePolicy.getCascadeMode(FooModel.class)).thenReturn(Cascade.ALL);
+		when(mockSqliteModelFactory.getSnapshot(foo)).thenReturn(snapshot);
+		when(mockSqliteModelFactory.getDirtyColumns(foo, snapshot)).thenReturn(columns);
+		when(mockSqliteModelFactory.getDirtyRelationships(foo, snapshot)).thenReturn(relationships);
+		when(mockSqliteMapper.mapModel(foo, columns, relationships)).thenReturn(mockFooModelMap);
+		when(mockSqliteUtil.getWhereClause(foo, mockSqliteMapper)).thenReturn("id = 120");
+		when(mockSqliteDb.update(FOO_MODEL_TABLE, mockContentValues, "id = 120", null)).thenReturn(1);
+		when(mockFooModelMap.getManyToManyRelationships()).thenReturn(new ArrayList<Pair<ManyToManyRelationship, Iterable<Object>>>());
+		when(mockFooModelMap.getManyToOneRelationships()).thenReturn(new ArrayList<Pair<ManyToOneRelationship, Object>>());
+		when(mockFooModelMap.getOneToManyRelationships()).thenReturn(new ArrayList<Pair<OneToManyRelationship, Iterable<Object>>>());
+		when(mockFooModelMap.getOneToOneRelationships()).thenReturn(new ArrayList<Pair<OneToOneRelationship, Object>>());
+		
+		// Run
+		boolean actual = sqliteTemplate.update(foo);
+		
+		// Verify
+		verify(mockSqliteMapper, times(0)).mapModel(foo);
+		verify(mockSqliteMapper).mapModel(foo, columns, relationships);
+		verify(mockSqliteDb).update(FOO_MODEL_TABLE, mockContentValues, "id = 120", null);
+		verify(mockSecondLevelCache).evict(FooModel.class, FOO_MODEL_ID);
+		verify(mockSqliteModelFactory).snapshot(foo);
+		assertTrue("Model should be updated", actual);
+	}
+	
 	@Test
 	public void testSave_oneToOneRelationship_updateRelated_success() {
 		// TODO
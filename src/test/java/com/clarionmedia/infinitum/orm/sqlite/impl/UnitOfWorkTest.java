@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2013 Clarion Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.clarionmedia.infinitum.orm.sqlite.impl;
+
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata;
+import com.clarionmedia.infinitum.orm.persistence.EntityMetadata.RelationshipMetadata;
+import com.clarionmedia.infinitum.orm.persistence.PersistencePolicy;
+import com.clarionmedia.infinitum.orm.relationship.ManyToOneRelationship;
+import com.clarionmedia.infinitum.orm.sqlite.impl.UnitOfWork.Operation;
+import com.clarionmedia.infinitum.orm.sqlite.impl.UnitOfWork.OperationType;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+public class UnitOfWorkTest {
+
+    @Mock
+    private PersistencePolicy mockPersistencePolicy;
+
+    @Mock
+    private EntityMetadata mockFooMetadata;
+
+    @Mock
+    private EntityMetadata mockBarMetadata;
+
+    private UnitOfWork unitOfWork;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        // FooModel holds a foreign key to BarModel
+        ManyToOneRelationship relationship = new ManyToOneRelationship();
+        relationship.setFirstType(FooModel.class);
+        relationship.setSecondType(BarModel.class);
+        List<RelationshipMetadata> relationships = Arrays.asList(new RelationshipMetadata(null, relationship));
+        when(mockPersistencePolicy.getEntityMetadata(FooModel.class)).thenReturn(mockFooMetadata);
+        when(mockPersistencePolicy.getEntityMetadata(BarModel.class)).thenReturn(mockBarMetadata);
+        when(mockFooMetadata.getRelationships()).thenReturn(relationships);
+        when(mockBarMetadata.getRelationships()).thenReturn(new ArrayList<RelationshipMetadata>());
+        unitOfWork = new UnitOfWork(mockPersistencePolicy);
+    }
+
+    @Test
+    public void testRegister_saveThenUpdate() {
+        // Setup
+        FooModel foo = new FooModel();
+
+        // Run
+        unitOfWork.register(OperationType.SAVE, foo);
+        unitOfWork.register(OperationType.UPDATE, foo);
+        unitOfWork.register(OperationType.UPDATE, foo);
+        List<Operation> operations = unitOfWork.getOperations();
+
+        // Verify
+        assertEquals("Repeated writes should be collapsed into one operation", 1, operations.size());
+        assertEquals("Operation should be a save", OperationType.SAVE, operations.get(0).getType());
+        assertSame("Operation should write the registered entity", foo, operations.get(0).getEntity());
+    }
+
+    @Test
+    public void testRegister_saveThenDelete() {
+        // Setup
+        FooModel foo = new FooModel();
+
+        // Run
+        unitOfWork.register(OperationType.SAVE, foo);
+        unitOfWork.register(OperationType.DELETE, foo);
+
+        // Verify
+        assertTrue("Entity which was never written should not be queued", unitOfWork.isEmpty());
+    }
+
+    @Test
+    public void testRegister_sameRowDifferentInstances() {
+        // Setup
+        FooModel deleted = new FooModel();
+        FooModel saved = new FooModel();
+        when(mockPersistencePolicy.getPrimaryKey(deleted)).thenReturn(42L);
+        when(mockPersistencePolicy.getPrimaryKey(saved)).thenReturn(42L);
+
+        // Run
+        unitOfWork.register(OperationType.DELETE, deleted);
+        unitOfWork.register(OperationType.SAVE_OR_UPDATE, saved);
+        List<Operation> operations = unitOfWork.getOperations();
+
+        // Verify
+        assertEquals("Writes of the same row should be collapsed into one operation", 1, operations.size());
+        assertEquals("Saving a deleted row should keep it", OperationType.SAVE_OR_UPDATE, operations.get(0).getType());
+        assertSame("Operation should write the last registered instance", saved, operations.get(0).getEntity());
+    }
+
+    @Test
+    public void testRegister_updateThenDelete() {
+        // Setup
+        FooModel foo = new FooModel();
+
+        // Run
+        unitOfWork.register(OperationType.UPDATE, foo);
+        unitOfWork.register(OperationType.DELETE, foo);
+        List<Operation> operations = unitOfWork.getOperations();
+
+        // Verify
+        assertEquals("Writes should be collapsed into one operation", 1, operations.size());
+        assertEquals("Operation should be a delete", OperationType.DELETE, operations.get(0).getType());
+    }
+
+    @Test
+    public void testGetOperations_foreignKeyOrder() {
+        // Setup
+        FooModel foo = new FooModel();
+        BarModel bar = new BarModel();
+        FooModel deletedFoo = new FooModel();
+        BarModel deletedBar = new BarModel();
+        unitOfWork.register(OperationType.DELETE, deletedBar);
+        unitOfWork.register(OperationType.DELETE, deletedFoo);
+        unitOfWork.register(OperationType.SAVE, foo);
+        unitOfWork.register(OperationType.SAVE, bar);
+
+        // Run
+        List<Operation> operations = unitOfWork.getOperations();
+
+        // Verify
+        assertEquals("All operations should be returned", 4, operations.size());
+        assertSame("Referencing entity should be deleted first", deletedFoo, operations.get(0).getEntity());
+        assertSame("Referenced entity should be deleted second", deletedBar, operations.get(1).getEntity());
+        assertSame("Referenced entity should be saved before the entity referencing it", bar,
+                operations.get(2).getEntity());
+        assertSame("Referencing entity should be saved last", foo, operations.get(3).getEntity());
+    }
+
+    @Test
+    public void testGetOperations_savesBeforeDeletes() {
+        // Setup
+        FooModel foo = new FooModel();
+        BarModel bar = new BarModel();
+        FooModel deletedFoo = new FooModel();
+        BarModel deletedBar = new BarModel();
+        unitOfWork.register(OperationType.SAVE, foo);
+        unitOfWork.register(OperationType.SAVE, bar);
+        unitOfWork.register(OperationType.DELETE, deletedFoo);
+        unitOfWork.register(OperationType.DELETE, deletedBar);
+
+        // Run
+        List<Operation> operations = unitOfWork.getOperations();
+
+        // Verify
+        assertEquals("All operations should be returned", 4, operations.size());
+        assertSame("Referenced entity should be saved first", bar, operations.get(0).getEntity());
+        assertSame("Referencing entity should be saved second", foo, operations.get(1).getEntity());
+        assertSame("Referencing entity should be deleted first", deletedFoo, operations.get(2).getEntity());
+        assertSame("Referenced entity should be deleted last", deletedBar, operations.get(3).getEntity());
+    }
+
+    @Test
+    public void testGetOperations_deleteThenReinsert() {
+        // Setup
+        BarModel deleted = new BarModel();
+        BarModel replacement = new BarModel();
+        unitOfWork.register(OperationType.DELETE, deleted);
+        unitOfWork.register(OperationType.SAVE, replacement);
+
+        // Run
+        List<Operation> operations = unitOfWork.getOperations();
+
+        // Verify
+        assertEquals("Both operations should be returned", 2, operations.size());
+        assertSame("Row should be deleted before its replacement is inserted", deleted,
+                operations.get(0).getEntity());
+        assertSame("Replacement should be inserted after the delete", replacement, operations.get(1).getEntity());
+    }
+
+    private static class FooModel {
+    }
+
+    private static class BarModel {
+    }
+
+}